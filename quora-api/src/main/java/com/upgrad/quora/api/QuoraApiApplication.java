@@ -1,5 +1,6 @@
 package com.upgrad.quora.api;
 
+import com.upgrad.quora.api.startup.StartupTimingListener;
 import com.upgrad.quora.service.ServiceConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -13,7 +14,9 @@ import org.springframework.context.annotation.Import;
 @Import(ServiceConfiguration.class)
 public class QuoraApiApplication {
     public static void main(String[] args) {
-        SpringApplication.run(QuoraApiApplication.class, args);
+        SpringApplication application = new SpringApplication(QuoraApiApplication.class);
+        application.addListeners(new StartupTimingListener());
+        application.run(args);
     }
 }
 
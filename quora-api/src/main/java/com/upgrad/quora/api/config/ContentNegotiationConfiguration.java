@@ -0,0 +1,27 @@
+package com.upgrad.quora.api.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Binary encoding of the responses for the clients which ask for it with {@code Accept: application/cbor}.
+ * <p>
+ * CBOR is written by the same Jackson configuration as JSON, the payload has the same field names and structure
+ * as the swagger generated models. The list endpoints declare it next to JSON in their produces.
+ */
+@Configuration
+public class ContentNegotiationConfiguration {
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(final Jackson2ObjectMapperBuilder builder) {
+        MappingJackson2CborHttpMessageConverter converter = new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+        // A binary payload has no charset, the converter would otherwise add the JSON default to the content type
+        converter.setDefaultCharset(null);
+        return converter;
+    }
+}
@@ -0,0 +1,50 @@
+package com.upgrad.quora.api.config;
+
+import com.upgrad.quora.service.invalidation.InvalidationListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Metrics of the cache invalidations received from the other nodes.
+ * <p>
+ * The meters are registered once the listener exists. Meter binders declared as beans would be bound when the
+ * registry is created, which happens along with the data source, before the beans using it can be created.
+ */
+@Configuration
+public class InvalidationMetricsConfiguration {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private InvalidationListener listener;
+
+    @PostConstruct
+    public void bind() {
+        Gauge.builder("quora.invalidation.lag", listener, InvalidationListener::getLastLagMillis)
+                .description("Time from the sending of the latest cache invalidations applied to their application")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("quora.invalidation.lag.max", listener, InvalidationListener::getMaxLagMillis)
+                .description("Highest cache invalidation lag since the start")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("quora.invalidation.connected", listener, l -> l.isConnected() ? 1 : 0)
+                .description("Whether the cache invalidation channel is listened to")
+                .register(registry);
+        FunctionCounter.builder("quora.invalidation.received", listener, InvalidationListener::getReceivedMessages)
+                .description("Cache invalidation notifications received from the other nodes")
+                .register(registry);
+        FunctionCounter.builder("quora.invalidation.applied", listener, InvalidationListener::getAppliedInvalidations)
+                .description("Cached keys invalidated by the other nodes")
+                .register(registry);
+        FunctionCounter.builder("quora.invalidation.flushes", listener, InvalidationListener::getFullFlushes)
+                .description("Full cache flushes after invalidations may have been missed")
+                .register(registry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.upgrad.quora.api.config;
+
+import com.upgrad.quora.service.job.JobScheduler;
+import com.upgrad.quora.service.job.JobStatistics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the service beans, which do not depend on the metrics library themselves. The meters are registered
+ * once the service beans exist, as for {@link InvalidationMetricsConfiguration}.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @PostConstruct
+    public void bind() {
+        for (JobStatistics statistics : jobScheduler.getStatistics()) {
+            String type = statistics.getJobType();
+            FunctionCounter.builder("quora.jobs.claimed", statistics, JobStatistics::getClaimed)
+                    .description("Jobs claimed by this node")
+                    .tag("type", type)
+                    .register(registry);
+            FunctionCounter.builder("quora.jobs.succeeded", statistics, JobStatistics::getSucceeded)
+                    .tag("type", type)
+                    .register(registry);
+            FunctionCounter.builder("quora.jobs.retried", statistics, JobStatistics::getRetried)
+                    .description("Failed attempts put back to be retried after a backoff")
+                    .tag("type", type)
+                    .register(registry);
+            FunctionCounter.builder("quora.jobs.failed", statistics, JobStatistics::getFailed)
+                    .description("Jobs given up after their last attempt")
+                    .tag("type", type)
+                    .register(registry);
+            FunctionTimer.builder("quora.jobs.runs", statistics, JobStatistics::getRuns,
+                    JobStatistics::getRunNanos, TimeUnit.NANOSECONDS)
+                    .description("Attempts run by this node")
+                    .tag("type", type)
+                    .register(registry);
+            Gauge.builder("quora.jobs.running", statistics, JobStatistics::getRunning)
+                    .description("Jobs being run by this node")
+                    .tag("type", type)
+                    .register(registry);
+            Gauge.builder("quora.jobs.pending", statistics, JobStatistics::getPending)
+                    .description("Jobs waiting to be claimed by any node")
+                    .tag("type", type)
+                    .register(registry);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.upgrad.quora.api.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.spi.DocumentationType;
@@ -11,9 +12,12 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 /**
  * This Configuration integrates Swagger2 into the existing Spring Boot project.
+ * It is left out of the startup profile, springfox scans its own packages for components, which does not work
+ * with the component index built for that profile.
  */
 @Configuration
 @EnableSwagger2
+@Profile("!startup")
 public class SwaggerConfiguration {
 
     @Bean
@@ -1,29 +1,45 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.export.NdjsonCorpusWriter;
 import com.upgrad.quora.api.model.UserDeleteResponse;
+import com.upgrad.quora.api.model.UserDeletionResponse;
 import com.upgrad.quora.service.business.AdminService;
-import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.entity.UserDeletionEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
+import com.upgrad.quora.service.export.CorpusExport;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+
 @RestController
 @RequestMapping("/")
 public class AdminController {
 
+    private static final String IN_PROGRESS = "USER DELETION IN PROGRESS";
+
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private CorpusExport corpusExport;
+
     /**
-     * Get the user details provided the userId.
+     * Deletes a user, the content of the user is removed in the background.
      *
-     * @param userId      user id of the user whose details has to be fetched.
-     * @param accessToken Access token to authenticate the user who is requesting for user details.
-     * @return
+     * @param userId      user id of the user to be deleted.
+     * @param accessToken Access token to authenticate the user who is deleting the user.
+     * @return 202 with the path of the progress of the deletion in the Location header.
      * @throws AuthorizationFailedException - if the access token is invalid or already logged out or
      *                                      user is not an admin or user with enetered uuid does not exist
      * @throws UserNotFoundException        - if the user with given id is not present in the records.
@@ -34,11 +50,68 @@ public class AdminController {
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDeleteResponse> deleteUser(@RequestHeader("authorization") final String accessToken,
                                                          @PathVariable("userId") String userId) throws AuthorizationFailedException, UserNotFoundException {
-        UserEntity userEntity = adminService.deleteUser(userId, accessToken);
+        UserDeletionEntity deletion = adminService.deleteUser(userId, accessToken);
 
         UserDeleteResponse userDeleteResponse =
-                new UserDeleteResponse().id(userEntity.getUuid()).status("USER SUCCESSFULLY DELETED");
+                new UserDeleteResponse().id(deletion.getUserUuid()).status(IN_PROGRESS);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(URI.create("/admin/user/" + deletion.getUserUuid() + "/deletion"));
+        return new ResponseEntity<UserDeleteResponse>(userDeleteResponse, headers, HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Gets the progress of the deletion of a user.
+     *
+     * @param userId      user id of the deleted user.
+     * @param accessToken Access token to authenticate the admin.
+     * @throws AuthorizationFailedException - if the access token is invalid or already logged out or
+     *                                      user is not an admin
+     * @throws UserNotFoundException        - if the user with given id was never deleted.
+     */
+    @RequestMapping(
+            method = RequestMethod.GET,
+            path = "/admin/user/{userId}/deletion",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<UserDeletionResponse> getUserDeletion(@RequestHeader("authorization") final String accessToken,
+                                                                @PathVariable("userId") String userId) throws AuthorizationFailedException, UserNotFoundException {
+        UserDeletionEntity deletion = adminService.getUserDeletion(userId, accessToken);
+
+        UserDeletionResponse userDeletionResponse = new UserDeletionResponse()
+                .id(deletion.getUserUuid())
+                .status(deletion.getCompletedAt() == null ? IN_PROGRESS : "USER SUCCESSFULLY DELETED")
+                .requestedAt(deletion.getRequestedAt().toString())
+                .completedAt(deletion.getCompletedAt() == null ? null : deletion.getCompletedAt().toString())
+                .sessionsDeleted(deletion.getSessionsDeleted())
+                .votesDeleted(deletion.getVotesDeleted())
+                .answersDeleted(deletion.getAnswersDeleted())
+                .questionsDeleted(deletion.getQuestionsDeleted());
+
+        return new ResponseEntity<UserDeletionResponse>(userDeletionResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Exports all the questions with their answers as newline delimited JSON, one question per line, streamed as
+     * it is read. Every line carries the offset of its question, to resume an interrupted export after it.
+     *
+     * @param accessToken Access token to authenticate the admin.
+     * @param after       offset of the last question received, 0 to export everything.
+     * @param response    response the export is written to.
+     * @throws AuthorizationFailedException - if the access token is invalid or already logged out or
+     *                                      user is not an admin
+     * @throws InvalidParameterException    - if the offset is negative.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/admin/export", produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, NDJSON})
+    public void exportCorpus(@RequestHeader("authorization") final String accessToken,
+                             @RequestParam(value = "after", defaultValue = "0") final long after,
+                             final HttpServletResponse response)
+            throws AuthorizationFailedException, InvalidParameterException, IOException {
+        adminService.authorizeCorpusExport(accessToken, after);
 
-        return new ResponseEntity<UserDeleteResponse>(userDeleteResponse, HttpStatus.OK);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        NdjsonCorpusWriter writer = new NdjsonCorpusWriter(response.getOutputStream());
+        corpusExport.export(after, writer);
+        writer.finish();
     }
 }
@@ -1,16 +1,20 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.config.ContentNegotiationConfiguration;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.stream.ContentStreamBroker;
 import com.upgrad.quora.service.business.AnswerBusinessService;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +26,9 @@ public class AnswerController {
     @Autowired
     private AnswerBusinessService answerBusinessService;
 
+    @Autowired
+    private ContentStreamBroker contentStreamBroker;
+
     /**
      * Controller for handle answer a question functionality in quora application.
      *
@@ -98,33 +105,109 @@ public class AnswerController {
         return new ResponseEntity<AnswerDeleteResponse>(answerDeleteResponse, HttpStatus.OK);
     }
 
+    /**
+     * Upvotes or downvotes an answer, replacing the previous vote of the user on it.
+     *
+     * @param authorization access token of the user who votes.
+     * @param answerId      Id of the answer voted on.
+     * @param vote          up or down.
+     * @return Id of the answer and status of the vote.
+     * @throws AuthorizationFailedException ATHR-001 If the user has not signed in and ATHR-002 If the
+     *                                      user is already signed out.
+     * @throws AnswerNotFoundException      ANS-001 if the answer is not found in the database.
+     * @throws InvalidParameterException    REQ-001 if the vote is neither up nor down.
+     */
+    @RequestMapping(
+            method = RequestMethod.PUT,
+            path = "/answer/vote/{answerId}",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<AnswerVoteResponse> voteAnswer(
+            @RequestHeader("authorization") final String authorization,
+            @PathVariable("answerId") final String answerId,
+            @RequestParam("vote") final String vote)
+            throws AuthorizationFailedException, AnswerNotFoundException, InvalidParameterException {
+        AnswerEntity answerEntity = answerBusinessService.voteAnswer(authorization, answerId, vote);
+        AnswerVoteResponse answerVoteResponse = new AnswerVoteResponse().id(answerEntity.getUuid())
+                .status("up".equals(vote) ? "ANSWER UPVOTED" : "ANSWER DOWNVOTED");
+        return new ResponseEntity<AnswerVoteResponse>(answerVoteResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Withdraws the vote of the user on an answer.
+     *
+     * @param authorization access token of the user who voted.
+     * @param answerId      Id of the answer voted on.
+     * @return Id of the answer and status of the vote.
+     * @throws AuthorizationFailedException ATHR-001 If the user has not signed in and ATHR-002 If the
+     *                                      user is already signed out.
+     * @throws AnswerNotFoundException      ANS-001 if the answer is not found in the database.
+     */
+    @RequestMapping(
+            method = RequestMethod.DELETE,
+            path = "/answer/vote/{answerId}",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<AnswerVoteResponse> withdrawVote(
+            @RequestHeader("authorization") final String authorization,
+            @PathVariable("answerId") final String answerId)
+            throws AuthorizationFailedException, AnswerNotFoundException {
+        AnswerEntity answerEntity = answerBusinessService.withdrawVote(authorization, answerId);
+        AnswerVoteResponse answerVoteResponse = new AnswerVoteResponse().id(answerEntity.getUuid()).status("VOTE WITHDRAWN");
+        return new ResponseEntity<AnswerVoteResponse>(answerVoteResponse, HttpStatus.OK);
+    }
+
     /**
      * Get all answers to the question.
      *
      * @param questionId    to fetch all the answers for a question.
      * @param authorization access token to authenticate user.
+     * @param sort          score to get the highest scored answers first.
      * @return List of AnswerDetailsResponse
      * @throws AuthorizationFailedException ATHR-001 - if User has not signed in. ATHR-002 if the User
      *                                      is signed out.
      * @throws InvalidQuestionException     The question with entered uuid whose details are to be seen
      *                                      does not exist.
+     * @throws InvalidParameterException    if the answers cannot be sorted as requested.
      * @Author:Divyank
      */
     @RequestMapping(
             method = RequestMethod.GET,
             path = "/answer/all/{questionId}",
-            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+            produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, ContentNegotiationConfiguration.APPLICATION_CBOR_VALUE})
     public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersToQuestion(
             @RequestHeader("authorization") final String authorization,
-            @PathVariable("questionId") String questionId)
-            throws AuthorizationFailedException, InvalidQuestionException {
-        List<AnswerEntity> answers = answerBusinessService.getAllAnswersToQuestion(questionId, authorization);
+            @PathVariable("questionId") String questionId,
+            @RequestParam(value = "sort", required = false) final String sort)
+            throws AuthorizationFailedException, InvalidQuestionException, InvalidParameterException {
+        List<AnswerEntity> answers = answerBusinessService.getAllAnswersToQuestion(questionId, authorization, sort);
         List<AnswerDetailsResponse> answerDetailsResponseList = new ArrayList<>();
         for (AnswerEntity answerEntity : answers) {
             AnswerDetailsResponse answerDetailsResponse = new AnswerDetailsResponse().id(answerEntity.getUuid()).questionContent(answerEntity.getQuestionEntity().getContent())
-                    .answerContent(answerEntity.getAnswer());
+                    .answerContent(answerEntity.getAnswer()).score(answerEntity.getScore());
             answerDetailsResponseList.add(answerDetailsResponse);
         }
         return new ResponseEntity<List<AnswerDetailsResponse>>(answerDetailsResponseList, HttpStatus.OK);
     }
+
+    /**
+     * Server-Sent Events stream of the answers created, edited and deleted from now on for a question, replaces
+     * polling of /answer/all/{questionId}. The stream ends when the question is deleted.
+     *
+     * @param questionId    question whose answers are followed.
+     * @param authorization access token to authenticate user.
+     * @return stream of answer changes.
+     * @throws AuthorizationFailedException ATHR-001 - if User has not signed in. ATHR-002 if the User
+     *                                      is signed out.
+     * @throws InvalidQuestionException     The question with entered uuid does not exist.
+     */
+    @RequestMapping(
+            method = RequestMethod.GET,
+            path = "/answer/stream/{questionId}",
+            produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public SseEmitter streamAnswersToQuestion(
+            @RequestHeader("authorization") final String authorization,
+            @PathVariable("questionId") final String questionId)
+            throws AuthorizationFailedException, InvalidQuestionException {
+        answerBusinessService.authorizeAnswerStream(questionId, authorization);
+        return contentStreamBroker.subscribeToAnswers(questionId);
+    }
 }
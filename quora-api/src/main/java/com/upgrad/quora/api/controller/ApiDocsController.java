@@ -0,0 +1,34 @@
+package com.upgrad.quora.api.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serves the swagger specs of the endpoints as they are, in the startup profile where the Swagger UI is
+ * left out.
+ */
+@RestController
+@Profile("startup")
+public class ApiDocsController {
+
+    private static final List<String> SPECS = Arrays.asList("user", "common", "admin", "question", "answer");
+
+    @RequestMapping(method = RequestMethod.GET, path = "/api-docs/{spec}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<Resource> getApiDocs(@PathVariable("spec") final String spec) {
+        if (!SPECS.contains(spec)) {
+            return new ResponseEntity<Resource>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<Resource>(new ClassPathResource("endpoints/" + spec + ".json"), HttpStatus.OK);
+    }
+}
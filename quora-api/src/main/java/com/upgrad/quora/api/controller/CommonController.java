@@ -1,9 +1,12 @@
 package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.UserDetailsResponse;
+import com.upgrad.quora.api.model.UserProfileResponse;
 import com.upgrad.quora.service.business.CommonService;
+import com.upgrad.quora.service.cache.UserProfile;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -11,6 +14,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 @RequestMapping("/")
 public class CommonController {
@@ -27,4 +33,24 @@ public class CommonController {
 
         return new ResponseEntity<UserDetailsResponse>(userDetailsResponse, HttpStatus.OK);
     }
+
+    /**
+     * Profiles of several users at once, such as the authors of a page of answers.
+     *
+     * @param ids           comma separated ids of the users.
+     * @param authorization access token to authenticate user.
+     * @return list of UserProfileResponse in the order of the ids, the users which do not exist are left out.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     * @throws InvalidParameterException    In case there are no ids or too many.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/userprofile", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<UserProfileResponse>> userProfiles(@RequestParam(value = "ids", defaultValue = "") final List<String> ids, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, InvalidParameterException {
+        List<UserProfileResponse> userProfileResponses = new ArrayList<UserProfileResponse>();
+        for (UserProfile profile : commonService.getUsers(ids, authorization)) {
+            userProfileResponses.add(new UserProfileResponse().id(profile.getUuid()).firstName(profile.getFirstName()).lastName(profile.getLastName())
+                    .userName(profile.getUserName()).aboutMe(profile.getAboutMe()).contactNumber(profile.getContactNumber()).dob(profile.getDob())
+                    .country(profile.getCountry()).emailAddress(profile.getEmail()));
+        }
+        return new ResponseEntity<List<UserProfileResponse>>(userProfileResponses, HttpStatus.OK);
+    }
 }
@@ -1,16 +1,25 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.config.ContentNegotiationConfiguration;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.stream.ContentStreamBroker;
 import com.upgrad.quora.service.business.QuestionBusinessService;
+import com.upgrad.quora.service.cache.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.ranking.RankedQuestion;
+import com.upgrad.quora.service.similarity.CreatedQuestion;
+import com.upgrad.quora.service.suggest.QuestionSuggestion;
+import com.upgrad.quora.service.sync.ChangeSet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -28,6 +37,9 @@ public class QuestionController {
     @Autowired
     private QuestionBusinessService questionBusinessService;
 
+    @Autowired
+    private ContentStreamBroker contentStreamBroker;
+
     /**
      * Method for signed in user to create a new question..
      *
@@ -43,8 +55,16 @@ public class QuestionController {
         questionEntity.setDate(ZonedDateTime.now());
 
         // Return response with created question entity
-        final QuestionEntity createdQuestionEntity = questionBusinessService.createQuestion(questionEntity, authorization);
-        QuestionResponse questionResponse = new QuestionResponse().id(createdQuestionEntity.getUuid()).status("QUESTION CREATED");
+        final CreatedQuestion createdQuestion = questionBusinessService.createQuestion(questionEntity, authorization);
+        List<SimilarQuestion> similarQuestions = new ArrayList<SimilarQuestion>();
+        for (com.upgrad.quora.service.similarity.SimilarQuestion similarQuestion : createdQuestion.getSimilarQuestions()) {
+            similarQuestions.add(new SimilarQuestion()
+                    .id(similarQuestion.getUuid())
+                    .content(similarQuestion.getContent())
+                    .similarity(similarQuestion.getSimilarity()));
+        }
+        QuestionResponse questionResponse = new QuestionResponse().id(createdQuestion.getQuestion().getUuid()).status("QUESTION CREATED")
+                .similarQuestions(similarQuestions);
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
 
@@ -53,7 +73,7 @@ public class QuestionController {
      *
      * @Author:Vipin P K
      */
-    @RequestMapping(method = RequestMethod.GET, path = "/question/all", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @RequestMapping(method = RequestMethod.GET, path = "/question/all", produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, ContentNegotiationConfiguration.APPLICATION_CBOR_VALUE})
     public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestions(@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException {
 
         // Get all questions
@@ -67,13 +87,139 @@ public class QuestionController {
         for (int i = 0; i < allQuestions.size(); i++) {
             QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse()
                     .content(allQuestions.get(i).getContent())
-                    .id(allQuestions.get(i).getUuid());
+                    .id(allQuestions.get(i).getUuid())
+                    .answerCount(allQuestions.get(i).getAnswerCount());
             allQuestionDetailsResponses.add(questionDetailsResponse);
         }
 
         return new ResponseEntity<List<QuestionDetailsResponse>>(allQuestionDetailsResponses, HttpStatus.OK);
     }
 
+    /**
+     * Server-Sent Events stream of the questions created, edited and deleted from now on, replaces polling of
+     * /question/all. Each event is named after its type and carries the question id and content.
+     *
+     * @param authorization access token to authenticate user.
+     * @return stream of question changes.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/stream", produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public SseEmitter streamQuestions(@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException {
+        questionBusinessService.authorizeQuestionStream(authorization);
+        return contentStreamBroker.subscribeToQuestions();
+    }
+
+    /**
+     * Questions and answers created, edited or deleted since the given sync token, for clients that keep a
+     * local copy instead of reloading all questions.
+     *
+     * @param authorization access token to authenticate user.
+     * @param since         token returned by the previous call, omitted for the initial sync.
+     * @param limit         maximum number of changes to return.
+     * @return page of changes with the token for the next call.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     * @throws InvalidParameterException    In case the token or the limit is invalid.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/changes", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<QuestionChangesResponse> getQuestionChanges(@RequestHeader("authorization") final String authorization,
+                                                                      @RequestParam(value = "since", required = false) final String since,
+                                                                      @RequestParam(value = "limit", defaultValue = "100") final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        ChangeSet changeSet = questionBusinessService.getChanges(authorization, since, limit);
+
+        List<ContentChange> changes = new ArrayList<ContentChange>();
+        for (com.upgrad.quora.service.sync.ContentChange change : changeSet.getChanges()) {
+            changes.add(new ContentChange()
+                    .type(change.getKind().name())
+                    .operation(change.isDeleted() ? "DELETE" : "UPSERT")
+                    .id(change.getUuid())
+                    .questionId(change.getQuestionUuid())
+                    .content(change.getContent())
+                    .changedAt(change.getChangedAt().toOffsetDateTime().toString()));
+        }
+
+        QuestionChangesResponse questionChangesResponse = new QuestionChangesResponse()
+                .changes(changes)
+                .nextToken(changeSet.getNextToken().encode())
+                .hasMore(changeSet.isHasMore());
+        return new ResponseEntity<QuestionChangesResponse>(questionChangesResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Questions with the most answers, most answered first.
+     *
+     * @param authorization access token to authenticate user.
+     * @param by            what the questions are ranked by, only answers for now.
+     * @param limit         maximum number of questions to return.
+     * @return list of QuestionDetailsResponse with the answer counts.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     * @throws InvalidParameterException    In case the ranking or the limit is invalid.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/top", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionDetailsResponse>> getTopQuestions(@RequestHeader("authorization") final String authorization,
+                                                                         @RequestParam(value = "by", defaultValue = "answers") final String by,
+                                                                         @RequestParam(value = "limit", defaultValue = "10") final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        List<RankedQuestion> questions = questionBusinessService.getTopQuestions(authorization, by, limit);
+        return new ResponseEntity<List<QuestionDetailsResponse>>(toQuestionDetailsResponses(questions), HttpStatus.OK);
+    }
+
+    /**
+     * Questions with the most answers posted within a recent window, most answered first.
+     *
+     * @param authorization access token to authenticate user.
+     * @param window        length of the window such as 1h, one of the configured trending windows.
+     * @param limit         maximum number of questions to return.
+     * @return list of QuestionDetailsResponse with the answers posted within the window as answer counts.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     * @throws InvalidParameterException    In case the window or the limit is invalid.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/trending", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionDetailsResponse>> getTrendingQuestions(@RequestHeader("authorization") final String authorization,
+                                                                              @RequestParam(value = "window", defaultValue = "24h") final String window,
+                                                                              @RequestParam(value = "limit", defaultValue = "10") final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        List<RankedQuestion> questions = questionBusinessService.getTrendingQuestions(authorization, window, limit);
+        return new ResponseEntity<List<QuestionDetailsResponse>>(toQuestionDetailsResponses(questions), HttpStatus.OK);
+    }
+
+    /**
+     * Questions whose content starts with the text typed so far, most answered first. Case and punctuation are ignored.
+     *
+     * @param authorization access token to authenticate user.
+     * @param prefix        text typed so far.
+     * @param limit         maximum number of questions to return.
+     * @return list of QuestionDetailsResponse with the answer counts.
+     * @throws AuthorizationFailedException In case the access token is invalid.
+     * @throws InvalidParameterException    In case the prefix or the limit is invalid.
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/suggest", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionDetailsResponse>> suggestQuestions(@RequestHeader("authorization") final String authorization,
+                                                                          @RequestParam(value = "prefix", defaultValue = "") final String prefix,
+                                                                          @RequestParam(value = "limit", defaultValue = "10") final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        List<QuestionSuggestion> suggestions = questionBusinessService.suggestQuestions(authorization, prefix, limit);
+        List<QuestionDetailsResponse> questionDetailsResponses = new ArrayList<QuestionDetailsResponse>();
+        for (QuestionSuggestion suggestion : suggestions) {
+            questionDetailsResponses.add(new QuestionDetailsResponse()
+                    .id(suggestion.getUuid())
+                    .content(suggestion.getContent())
+                    .answerCount((int) suggestion.getAnswers()));
+        }
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponses, HttpStatus.OK);
+    }
+
+    private List<QuestionDetailsResponse> toQuestionDetailsResponses(final List<RankedQuestion> questions) {
+        List<QuestionDetailsResponse> questionDetailsResponses = new ArrayList<QuestionDetailsResponse>();
+        for (RankedQuestion question : questions) {
+            questionDetailsResponses.add(new QuestionDetailsResponse()
+                    .id(question.getUuid())
+                    .content(question.getContent())
+                    .answerCount((int) question.getAnswers()));
+        }
+        return questionDetailsResponses;
+    }
+
     /**
      * Edit a question
      *
@@ -136,12 +282,12 @@ public class QuestionController {
             @PathVariable("userId") String userId)
             throws AuthorizationFailedException, UserNotFoundException {
 
-        List<QuestionEntity> questions = questionBusinessService.getAllQuestionsByUser(userId, accessToken);
+        List<QuestionSummary> questions = questionBusinessService.getAllQuestionsByUser(userId, accessToken);
         List<QuestionDetailsResponse> questionDetailResponses = new ArrayList<>();
-        for (QuestionEntity questionEntity : questions) {
+        for (QuestionSummary question : questions) {
             QuestionDetailsResponse questionDetailResponse = new QuestionDetailsResponse();
-            questionDetailResponse.setId(questionEntity.getUuid());
-            questionDetailResponse.setContent(questionEntity.getContent());
+            questionDetailResponse.setId(question.getUuid());
+            questionDetailResponse.setContent(question.getContent());
             questionDetailResponses.add(questionDetailResponse);
         }
         return new ResponseEntity<List<QuestionDetailsResponse>>(
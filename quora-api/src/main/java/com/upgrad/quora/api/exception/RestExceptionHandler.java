@@ -92,5 +92,15 @@ public class RestExceptionHandler {
         );
     }
 
+    /**
+     * Exception handler method for malformed or out of range request parameters..
+     */
+    @ExceptionHandler(InvalidParameterException.class)
+    public ResponseEntity<ErrorResponse> invalidParameterException(InvalidParameterException exe, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(
+                new ErrorResponse().code(exe.getCode()).message(exe.getErrorMessage()), HttpStatus.BAD_REQUEST
+        );
+    }
+
 
 }
@@ -0,0 +1,71 @@
+package com.upgrad.quora.api.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.upgrad.quora.service.export.CorpusRow;
+import com.upgrad.quora.service.export.CorpusRowHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the corpus export as newline delimited JSON, one line per question with its answers. A line is written
+ * out as its rows come in, so a question with many answers is never held in memory either.
+ * <p>
+ * Every line carries the offset of its question. A client which lost the connection drops the last line if it
+ * is incomplete and asks again for the questions after the offset of the last complete line.
+ */
+public class NdjsonCorpusWriter implements CorpusRowHandler {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final JsonGenerator generator;
+
+    private long questionId = -1;
+
+    public NdjsonCorpusWriter(final OutputStream out) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void handle(final CorpusRow row) throws IOException {
+        if (row.getQuestionId() != questionId) {
+            endQuestion();
+            questionId = row.getQuestionId();
+            generator.writeStartObject();
+            generator.writeNumberField("offset", row.getQuestionId());
+            generator.writeStringField("id", row.getQuestionUuid());
+            generator.writeStringField("content", row.getQuestionContent());
+            generator.writeStringField("date", row.getQuestionDate().toOffsetDateTime().toString());
+            generator.writeStringField("user_id", row.getQuestionUserUuid());
+            generator.writeArrayFieldStart("answers");
+        }
+        if (row.hasAnswer()) {
+            generator.writeStartObject();
+            generator.writeStringField("id", row.getAnswerUuid());
+            generator.writeStringField("content", row.getAnswerContent());
+            generator.writeStringField("date", row.getAnswerDate().toOffsetDateTime().toString());
+            generator.writeStringField("user_id", row.getAnswerUserUuid());
+            generator.writeNumberField("score", row.getAnswerScore());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Ends the last question and flushes what is left.
+     */
+    public void finish() throws IOException {
+        endQuestion();
+        generator.flush();
+    }
+
+    private void endQuestion() throws IOException {
+        if (questionId >= 0) {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+}
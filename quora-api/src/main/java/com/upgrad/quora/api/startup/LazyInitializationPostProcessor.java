@@ -0,0 +1,92 @@
+package com.upgrad.quora.api.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.web.servlet.ServletContextInitializer;
+import org.springframework.context.Lifecycle;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Marks the application beans as lazy, so that they are created when first used instead of while the
+ * application starts.
+ * <p>
+ * The beans which do their work without being asked for stay eager: scheduled jobs, lifecycle beans,
+ * servlets and filters, and the beans listed explicitly.
+ */
+public class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+    private static final Collection<Class<?>> EAGER_TYPES = Arrays.asList(
+            Lifecycle.class, SmartInitializingSingleton.class, BeanPostProcessor.class,
+            ServletContextInitializer.class, Servlet.class, Filter.class);
+
+    private final Set<String> eagerBeans;
+
+    /**
+     * @param eagerBeans names of the beans which must be created at startup.
+     */
+    public LazyInitializationPostProcessor(final Collection<String> eagerBeans) {
+        this.eagerBeans = new HashSet<>(eagerBeans);
+    }
+
+    @Override
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+            if (beanDefinition.getRole() == BeanDefinition.ROLE_APPLICATION && beanDefinition.isSingleton()
+                    && !beanDefinition.isAbstract() && !eagerBeans.contains(beanName)
+                    && !isEager(beanClass(beanDefinition, beanFactory.getBeanClassLoader()))) {
+                beanDefinition.setLazyInit(true);
+            }
+        }
+    }
+
+    private static boolean isEager(final Class<?> beanClass) {
+        if (beanClass == null) {
+            // Type unknown without creating the bean, leave it alone
+            return true;
+        }
+        if (EAGER_TYPES.stream().anyMatch(type -> type.isAssignableFrom(beanClass))) {
+            return true;
+        }
+        for (Method method : ReflectionUtils.getAllDeclaredMethods(beanClass)) {
+            if (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?> beanClass(final BeanDefinition beanDefinition, final ClassLoader classLoader) {
+        String className = beanDefinition.getBeanClassName();
+        if (beanDefinition.getFactoryMethodName() != null) {
+            className = beanDefinition instanceof AnnotatedBeanDefinition
+                    && ((AnnotatedBeanDefinition) beanDefinition).getFactoryMethodMetadata() != null
+                    ? ((AnnotatedBeanDefinition) beanDefinition).getFactoryMethodMetadata().getReturnTypeName()
+                    : null;
+        }
+        if (className == null) {
+            return null;
+        }
+        try {
+            return ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.upgrad.quora.api.startup;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Startup optimized profile, used by the pods which are added while traffic spikes. The application beans
+ * are created lazily and the Swagger UI is left out; the API specs are served as they are instead.
+ * <p>
+ * The profile is also active in the training run of the startup build, which records the classes to put in
+ * the class-data sharing archive and exits once the application is ready.
+ */
+@Configuration
+@Profile("startup")
+public class StartupConfiguration {
+
+    @Bean
+    public static LazyInitializationPostProcessor lazyInitializationPostProcessor(final Environment environment) {
+        return new LazyInitializationPostProcessor(
+                Arrays.asList(environment.getProperty("quora.startup.eager-beans", String[].class, new String[0])));
+    }
+}
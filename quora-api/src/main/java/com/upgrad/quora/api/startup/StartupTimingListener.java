@@ -0,0 +1,95 @@
+package com.upgrad.quora.api.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.*;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports where the startup time goes: from the JVM start to main, then each phase of SpringApplication up
+ * to the application being ready, and the beans which took longest to create.
+ * <p>
+ * A bean's time includes the creation of the dependencies it pulled in, so the entity manager factory shows
+ * the Hibernate metamodel building for instance. Beans created before the post processor is registered,
+ * such as other post processors, are not measured.
+ */
+public class StartupTimingListener implements ApplicationListener<ApplicationEvent>, Ordered {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupTimingListener.class);
+
+    private static final int SLOWEST_BEANS = 10;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final long mainMillis = System.currentTimeMillis();
+
+    private final Map<String, Long> beanStartNanos = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> beanNanos = new ConcurrentHashMap<>();
+
+    private long environmentPreparedMillis;
+
+    private long contextPreparedMillis;
+
+    private long contextRefreshedMillis;
+
+    @Override
+    public void onApplicationEvent(final ApplicationEvent event) {
+        if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            environmentPreparedMillis = System.currentTimeMillis();
+        } else if (event instanceof ApplicationPreparedEvent) {
+            contextPreparedMillis = System.currentTimeMillis();
+            ((ApplicationPreparedEvent) event).getApplicationContext().getBeanFactory().addBeanPostProcessor(new BeanTimer());
+        } else if (event instanceof ApplicationStartedEvent) {
+            contextRefreshedMillis = System.currentTimeMillis();
+        } else if (event instanceof ApplicationReadyEvent) {
+            report(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private void report(final long readyMillis) {
+        LOG.info("Startup timing: jvm to main {}ms, environment {}ms, context preparation {}ms, context refresh {}ms, "
+                        + "runners {}ms, total {}ms",
+                mainMillis - jvmStartMillis, environmentPreparedMillis - mainMillis,
+                contextPreparedMillis - environmentPreparedMillis, contextRefreshedMillis - contextPreparedMillis,
+                readyMillis - contextRefreshedMillis, readyMillis - jvmStartMillis);
+        LOG.info("Slowest beans: {}", beanNanos.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(SLOWEST_BEANS)
+                .map(bean -> bean.getKey() + " " + bean.getValue() / 1_000_000 + "ms")
+                .collect(Collectors.joining(", ")));
+        beanStartNanos.clear();
+    }
+
+    private final class BeanTimer implements InstantiationAwareBeanPostProcessor {
+
+        @Override
+        public Object postProcessBeforeInstantiation(final Class<?> beanClass, final String beanName) throws BeansException {
+            beanStartNanos.putIfAbsent(beanName, System.nanoTime());
+            return null;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+            Long start = beanStartNanos.remove(beanName);
+            if (start != null) {
+                beanNanos.put(beanName, System.nanoTime() - start);
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.upgrad.quora.api.startup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ends the training run of the startup build once the application is ready and warmed up, so that the
+ * classes loaded during startup and by the warm-up traffic can be archived.
+ */
+@Component
+@Profile("startup")
+@ConditionalOnProperty("quora.startup.exit-when-ready")
+public class TrainingRunTerminator {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @EventListener
+    public void onWarmupCompleted(final WarmupCompletedEvent event) {
+        System.exit(SpringApplication.exit(context));
+    }
+}
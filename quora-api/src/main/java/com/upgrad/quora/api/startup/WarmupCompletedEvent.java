@@ -0,0 +1,21 @@
+package com.upgrad.quora.api.startup;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published once the JIT warm-up is over, or right when the application is ready if there is none, at
+ * which point the application reports itself ready for traffic.
+ */
+public class WarmupCompletedEvent extends ApplicationEvent {
+
+    private final long durationMillis;
+
+    public WarmupCompletedEvent(final Object source, final long durationMillis) {
+        super(source);
+        this.durationMillis = durationMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,219 @@
+package com.upgrad.quora.api.startup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.controller.AnswerController;
+import com.upgrad.quora.api.controller.CommonController;
+import com.upgrad.quora.api.controller.QuestionController;
+import com.upgrad.quora.api.controller.UserController;
+import com.upgrad.quora.api.model.AnswerEditRequest;
+import com.upgrad.quora.api.model.AnswerRequest;
+import com.upgrad.quora.api.model.QuestionEditRequest;
+import com.upgrad.quora.api.model.QuestionRequest;
+import com.upgrad.quora.api.model.SigninResponse;
+import com.upgrad.quora.api.model.SignupUserRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.UUID;
+
+/**
+ * Runs synthetic traffic through the controllers and services before the application reports itself ready,
+ * so that the first real requests do not run in the interpreter.
+ * <p>
+ * Each scenario signs up a throwaway user and goes through the question and answer endpoints in one
+ * transaction which is rolled back, nothing of it is ever committed. The controllers are called directly and
+ * their responses serialized to JSON, which leaves out the servlet plumbing but covers the code which is ours.
+ * Scenarios are run in rounds until the rate of the last rounds has stabilized.
+ * <p>
+ * The readiness probe is the health endpoint, this indicator keeps it out of service until then.
+ */
+@Component
+public class WarmupRunner implements HealthIndicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final int REQUESTS_PER_SCENARIO = 12;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserController userController;
+
+    @Autowired
+    private QuestionController questionController;
+
+    @Autowired
+    private AnswerController answerController;
+
+    @Autowired
+    private CommonController commonController;
+
+    @Value("${quora.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quora.warmup.round-size:20}")
+    private int roundSize;
+
+    @Value("${quora.warmup.min-rounds:5}")
+    private int minRounds;
+
+    @Value("${quora.warmup.stable-rounds:3}")
+    private int stableRounds;
+
+    @Value("${quora.warmup.tolerance:0.1}")
+    private double tolerance;
+
+    @Value("${quora.warmup.max-duration-ms:120000}")
+    private long maxDurationMillis;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean ready;
+
+    private volatile boolean stopped;
+
+    private volatile int rounds;
+
+    private volatile double requestsPerSecond;
+
+    private volatile long durationMillis;
+
+    @Autowired
+    public WarmupRunner(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener
+    public void onApplicationReady(final ApplicationReadyEvent event) {
+        // Only worth it when a server takes real traffic, not in a mock web environment
+        if (!enabled || !(context instanceof ServletWebServerApplicationContext)) {
+            complete();
+            return;
+        }
+        Thread warmup = new Thread(this::warmUp, "jit-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    @EventListener
+    public void onContextClosed(final ContextClosedEvent event) {
+        stopped = true;
+    }
+
+    @Override
+    public Health health() {
+        if (!ready) {
+            return Health.outOfService().withDetail("rounds", rounds).withDetail("requestsPerSecond", requestsPerSecond).build();
+        }
+        return Health.up().withDetail("durationMs", durationMillis).withDetail("requestsPerSecond", requestsPerSecond).build();
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        Deque<Double> recentRates = new ArrayDeque<>();
+        try {
+            while (!stopped) {
+                long roundStart = System.nanoTime();
+                for (int i = 0; i < roundSize && !stopped; i++) {
+                    transactionTemplate.execute(status -> {
+                        status.setRollbackOnly();
+                        try {
+                            runScenario();
+                        } catch (Exception e) {
+                            throw new IllegalStateException("Warm-up scenario failed", e);
+                        }
+                        return null;
+                    });
+                }
+                requestsPerSecond = roundSize * REQUESTS_PER_SCENARIO * 1e9 / (System.nanoTime() - roundStart);
+                rounds++;
+                recentRates.addLast(requestsPerSecond);
+                if (recentRates.size() > stableRounds) {
+                    recentRates.removeFirst();
+                }
+
+                if (rounds >= minRounds && recentRates.size() == stableRounds && isStable(recentRates)) {
+                    break;
+                }
+                if (System.nanoTime() - start > maxDurationMillis * 1_000_000L) {
+                    LOG.warn("JIT warm-up did not stabilize within {}ms", maxDurationMillis);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("JIT warm-up failed, the application is reported ready without it", e);
+        }
+        durationMillis = (System.nanoTime() - start) / 1_000_000;
+        LOG.info("JIT warm-up finished in {}ms after {} rounds of {} scenarios, {} requests/s in the last round",
+                durationMillis, rounds, roundSize, Math.round(requestsPerSecond));
+        complete();
+    }
+
+    private boolean isStable(final Deque<Double> rates) {
+        double mean = rates.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        return rates.stream().allMatch(rate -> Math.abs(rate - mean) <= tolerance * mean);
+    }
+
+    private void complete() {
+        ready = true;
+        context.publishEvent(new WarmupCompletedEvent(this, durationMillis));
+    }
+
+    /**
+     * One user session touching the endpoints on the hot path, {@value #REQUESTS_PER_SCENARIO} requests.
+     */
+    private void runScenario() throws Exception {
+        String userName = "warmup-" + UUID.randomUUID().toString().substring(0, 8);
+        serialize(userController.signup(new SignupUserRequest().firstName("warmup").lastName("warmup")
+                .userName(userName).emailAddress(userName + "@warmup").password("warmup").country("warmup")
+                .aboutMe("warmup").dob("01-01-2000").contactNumber("0000000000")));
+
+        String credentials = Base64.getEncoder().encodeToString((userName + ":warmup").getBytes(StandardCharsets.UTF_8));
+        ResponseEntity<SigninResponse> signin = serialize(userController.signin("Basic " + credentials));
+        String accessToken = signin.getHeaders().getFirst("access-token");
+        String userId = signin.getBody().getId();
+
+        String questionId = serialize(questionController.createQuestion(
+                new QuestionRequest().content("warmup question"), accessToken)).getBody().getId();
+        serialize(questionController.editQuestionContent(accessToken, questionId,
+                new QuestionEditRequest().content("edited warmup question")));
+        serialize(questionController.getQuestionByUserId(accessToken, userId));
+        serialize(questionController.getAllQuestions(accessToken));
+
+        String answerId = serialize(answerController.createAnswer(
+                new AnswerRequest().answer("warmup answer"), accessToken, questionId)).getBody().getId();
+        serialize(answerController.editAnswerContent(accessToken, answerId,
+                new AnswerEditRequest().content("edited warmup answer")));
+        serialize(answerController.getAllAnswersToQuestion(accessToken, questionId, null));
+        serialize(answerController.deleteAnswer(answerId, accessToken));
+        serialize(commonController.userProfile(userId, accessToken));
+        serialize(userController.signout(accessToken));
+    }
+
+    private <T> ResponseEntity<T> serialize(final ResponseEntity<T> response) throws JsonProcessingException {
+        objectMapper.writeValueAsBytes(response.getBody());
+        return response;
+    }
+}
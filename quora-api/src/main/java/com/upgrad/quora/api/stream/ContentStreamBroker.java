@@ -0,0 +1,220 @@
+package com.upgrad.quora.api.stream;
+
+import com.upgrad.quora.api.model.AnswerDetailsResponse;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import com.upgrad.quora.service.event.DomainEvent;
+import com.upgrad.quora.service.event.DomainEventSubscriber;
+import com.upgrad.quora.service.event.DomainEventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Pushes the committed question and answer changes to the clients of the Server-Sent Events endpoints.
+ * <p>
+ * The outbox dispatcher of every node relays every event to its own broker, so a client connected to any node
+ * receives the changes made on all of them.
+ * <p>
+ * The outbox dispatcher only ever offers an event to the bounded buffer of each subscriber, it never waits on a
+ * client socket. The buffers are drained by a small pool of sender threads. A subscriber whose buffer is full is
+ * too slow to keep up and is disconnected, the client is expected to reload the list and reconnect.
+ */
+@Component
+public class ContentStreamBroker implements DomainEventSubscriber {
+
+    private final Set<Subscription> questionSubscriptions = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, Set<Subscription>> answerSubscriptions = new ConcurrentHashMap<>();
+
+    private final ExecutorService senders;
+
+    private final int bufferSize;
+
+    private final long timeoutMillis;
+
+    public ContentStreamBroker(@Value("${quora.stream.sender-threads:4}") final int senderThreads,
+                               @Value("${quora.stream.buffer-size:256}") final int bufferSize,
+                               @Value("${quora.stream.timeout-ms:1800000}") final long timeoutMillis) {
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "content-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Opens a stream of question creations, edits and deletions.
+     */
+    public SseEmitter subscribeToQuestions() {
+        Subscription subscription = new Subscription(null);
+        questionSubscriptions.add(subscription);
+        return subscription.emitter;
+    }
+
+    /**
+     * Opens a stream of the answer creations, edits and deletions for one question.
+     *
+     * @param questionId uuid of the question whose answers are followed.
+     */
+    public SseEmitter subscribeToAnswers(final String questionId) {
+        Subscription subscription = new Subscription(questionId);
+        answerSubscriptions.compute(questionId, (key, followers) -> {
+            Set<Subscription> subscriptions = followers == null ? ConcurrentHashMap.newKeySet() : followers;
+            subscriptions.add(subscription);
+            return subscriptions;
+        });
+        return subscription.emitter;
+    }
+
+    @Override
+    public void onEvent(final DomainEvent event) {
+        switch (event.getType().getAggregateType()) {
+            case QUESTION:
+                QuestionDetailsResponse question = new QuestionDetailsResponse().id(event.getAggregateId()).content(event.getPayload());
+                publish(questionSubscriptions, event, question);
+                if (event.getType() == DomainEventType.QUESTION_DELETED) {
+                    Set<Subscription> followers = answerSubscriptions.remove(event.getAggregateId());
+                    if (followers != null) {
+                        publish(followers, event, question);
+                        followers.forEach(Subscription::close);
+                    }
+                }
+                break;
+            case ANSWER:
+                Set<Subscription> followers = answerSubscriptions.get(event.getParentId());
+                if (followers != null) {
+                    publish(followers, event, new AnswerDetailsResponse().id(event.getAggregateId()).answerContent(event.getPayload()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Sends a comment line to every subscriber so that dead connections are detected and proxies keep idle
+     * streams open.
+     */
+    @Scheduled(fixedDelayString = "${quora.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        Supplier<SseEmitter.SseEventBuilder> ping = () -> SseEmitter.event().comment("ping");
+        questionSubscriptions.forEach(subscription -> subscription.offer(ping));
+        answerSubscriptions.values().forEach(followers -> followers.forEach(subscription -> subscription.offer(ping)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        questionSubscriptions.forEach(Subscription::close);
+        answerSubscriptions.values().forEach(followers -> followers.forEach(Subscription::close));
+        senders.shutdownNow();
+    }
+
+    private void publish(final Set<Subscription> subscriptions, final DomainEvent event, final Object data) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        // An event builder is stateful, every subscriber gets its own
+        Supplier<SseEmitter.SseEventBuilder> sseEvent = () -> SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name(event.getType().name())
+                .data(data);
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(sseEvent);
+        }
+    }
+
+    /**
+     * One connected client with its own bounded buffer of events waiting to be written.
+     */
+    private final class Subscription {
+
+        private final SseEmitter emitter = new SseEmitter(timeoutMillis);
+
+        private final String questionId;
+
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Subscription(final String questionId) {
+            this.questionId = questionId;
+            emitter.onCompletion(this::detach);
+            emitter.onTimeout(this::detach);
+        }
+
+        void offer(final Supplier<SseEmitter.SseEventBuilder> event) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Slow consumer, the client has to resync instead of slowing everyone down
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while (!closed && (event = buffer.poll()) != null) {
+                    emitter.send(event.get());
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                detach();
+                buffer.clear();
+                try {
+                    emitter.complete();
+                } catch (IllegalStateException e) {
+                    // The connection is already gone
+                }
+            }
+        }
+
+        void detach() {
+            closed = true;
+            if (questionId == null) {
+                questionSubscriptions.remove(this);
+            } else {
+                answerSubscriptions.computeIfPresent(questionId, (key, followers) -> {
+                    followers.remove(this);
+                    return followers.isEmpty() ? null : followers;
+                });
+            }
+        }
+    }
+}
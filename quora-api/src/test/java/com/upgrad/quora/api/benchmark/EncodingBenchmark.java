@@ -0,0 +1,129 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.model.AnswerDetailsResponse;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Payload size and encoding time of the question and answer lists in JSON, gzipped JSON and CBOR.
+ * <p>
+ * The lists are encoded and decoded with the object mappers of the application's message converters, so the
+ * payloads are the ones the list endpoints serve. Run with {@code mvn -Pbenchmark clean install}, the figures
+ * are printed and written to target/benchmark/encoding.txt.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EncodingBenchmark {
+
+    private static final int ITEMS = Integer.getInteger("benchmark.items", 2000);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 50);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+
+    @Autowired
+    private ObjectMapper jsonMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    private final List<String> results = new ArrayList<>();
+
+    @After
+    public void report() throws IOException {
+        Path report = Paths.get("target", "benchmark", "encoding.txt");
+        Files.createDirectories(report.getParent());
+        Files.write(report, results, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void encodeLists() throws Exception {
+        Random random = new Random(42);
+        QuestionDetailsResponse[] questions = new QuestionDetailsResponse[ITEMS];
+        AnswerDetailsResponse[] answers = new AnswerDetailsResponse[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            questions[i] = new QuestionDetailsResponse().id(UUID.randomUUID().toString()).content(text(random));
+            answers[i] = new AnswerDetailsResponse().id(UUID.randomUUID().toString())
+                    .questionContent(questions[0].getContent()).answerContent(text(random));
+        }
+
+        ObjectMapper cborMapper = cborConverter.getObjectMapper();
+        for (Object[] list : new Object[][]{questions, answers}) {
+            String name = list instanceof QuestionDetailsResponse[] ? "questions" : "answers";
+            measure(name, "json", () -> jsonMapper.writeValueAsBytes(list), bytes -> jsonMapper.readValue(bytes, list.getClass()));
+            measure(name, "json+gzip", () -> gzip(jsonMapper.writeValueAsBytes(list)), bytes -> jsonMapper.readValue(new GZIPInputStream(new ByteArrayInputStream(bytes)), list.getClass()));
+            measure(name, "cbor", () -> cborMapper.writeValueAsBytes(list), bytes -> cborMapper.readValue(bytes, list.getClass()));
+        }
+    }
+
+    private void measure(final String list, final String encoding, final Encoder encoder, final Decoder decoder) throws Exception {
+        byte[] payload = encoder.encode();
+        for (int i = 0; i < WARMUP; i++) {
+            decoder.decode(encoder.encode());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encoder.encode();
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decoder.decode(payload);
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        String result = String.format("%-9s %-9s items=%d bytes=%d encode=%.3fms decode=%.3fms",
+                list, encoding, ITEMS, payload.length, encodeNanos / 1e6 / ITERATIONS, decodeNanos / 1e6 / ITERATIONS);
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // Sentences of 5 to 30 words out of a small vocabulary, about the length of the fixture questions
+    private static String text(final Random random) {
+        String[] words = {"how", "does", "the", "quora", "answer", "question", "spring", "java", "work", "why", "is", "my",
+                "database", "slow", "when", "using", "hibernate", "with", "postgres", "and", "what", "should", "i", "do"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 5 + random.nextInt(26); i > 0; i--) {
+            text.append(words[random.nextInt(words.length)]).append(i > 1 ? ' ' : '?');
+        }
+        return text.toString();
+    }
+
+    private interface Encoder {
+        byte[] encode() throws Exception;
+    }
+
+    private interface Decoder {
+        Object decode(byte[] payload) throws Exception;
+    }
+}
@@ -0,0 +1,55 @@
+package com.upgrad.quora.api.benchmark;
+
+import org.hibernate.BaseSessionEventListener;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session event listener adding up the time Hibernate spends flushing, including the automatic flushes
+ * before queries. Registered through the hibernate.session.events.auto property, one instance per session.
+ */
+public class FlushTimer extends BaseSessionEventListener {
+
+    private static final LongAdder FLUSH_NANOS = new LongAdder();
+
+    private static final LongAdder FLUSHED_ENTITIES = new LongAdder();
+
+    private long flushStart;
+
+    private long partialFlushStart;
+
+    static void reset() {
+        FLUSH_NANOS.reset();
+        FLUSHED_ENTITIES.reset();
+    }
+
+    static long flushNanos() {
+        return FLUSH_NANOS.sum();
+    }
+
+    static long flushedEntities() {
+        return FLUSHED_ENTITIES.sum();
+    }
+
+    @Override
+    public void flushStart() {
+        flushStart = System.nanoTime();
+    }
+
+    @Override
+    public void flushEnd(final int numberOfEntities, final int numberOfCollections) {
+        FLUSH_NANOS.add(System.nanoTime() - flushStart);
+        FLUSHED_ENTITIES.add(numberOfEntities);
+    }
+
+    @Override
+    public void partialFlushStart() {
+        partialFlushStart = System.nanoTime();
+    }
+
+    @Override
+    public void partialFlushEnd(final int numberOfEntities, final int numberOfCollections) {
+        FLUSH_NANOS.add(System.nanoTime() - partialFlushStart);
+        FLUSHED_ENTITIES.add(numberOfEntities);
+    }
+}
@@ -0,0 +1,122 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.upgrad.quora.service.entity.QuestionEntity;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Flush cost and allocation of the question list and edit endpoints.
+ * <p>
+ * Run with {@code mvn -Pbenchmark clean install} for the enhanced entities, and with
+ * {@code mvn -Pbenchmark -DskipEnhancement clean install} for plain POJOs with snapshot dirty checking. Each run
+ * prints its figures and writes them to target/benchmark so that both can be compared.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session.events.auto=com.upgrad.quora.api.benchmark.FlushTimer")
+@AutoConfigureMockMvc
+public class PersistenceBenchmark {
+
+    private static final int QUESTIONS = Integer.getInteger("benchmark.questions", 2000);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 50);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+
+    // Ids are given explicitly as the fixture rows were inserted past the sequence
+    private static final long FIRST_ID = 1_000_000;
+
+    // Owner of the benchmark questions, signed in as database_accesstoken1
+    private static final long OWNER_ID = 1026;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<String> results = new ArrayList<>();
+
+    @Before
+    public void seed() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            rows.add(new Object[]{FIRST_ID + i, "benchmark-question-" + i, "benchmark question " + i, OWNER_ID});
+        }
+        jdbcTemplate.batchUpdate("insert into question(id, uuid, content, date, user_id) values (?, ?, ?, now(), ?)", rows);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        jdbcTemplate.update("delete from question where uuid like 'benchmark-question-%'");
+        Path report = Paths.get("target", "benchmark", "persistence-" + mode() + ".txt");
+        Files.createDirectories(report.getParent());
+        Files.write(report, results, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void listAndEditQuestions() throws Exception {
+        measure("list", i -> mvc.perform(MockMvcRequestBuilders.get("/question/all")
+                .header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk()));
+
+        measure("edit", i -> mvc.perform(MockMvcRequestBuilders.put("/question/edit/benchmark-question-" + (i % QUESTIONS))
+                .param("content", "edited benchmark question " + i)
+                .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+                .header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk()));
+    }
+
+    private void measure(final String endpoint, final Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run(i);
+        }
+        System.gc();
+        FlushTimer.reset();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run(WARMUP + i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        String result = String.format("%s %-4s questions=%d ops=%d avg=%.3fms flush=%.3fms flushedEntities=%d allocated=%dKB/op",
+                mode(), endpoint, QUESTIONS, ITERATIONS, elapsed / 1e6 / ITERATIONS, FlushTimer.flushNanos() / 1e6 / ITERATIONS,
+                FlushTimer.flushedEntities() / ITERATIONS, allocated / 1024 / ITERATIONS);
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private static String mode() {
+        return PersistentAttributeInterceptable.class.isAssignableFrom(QuestionEntity.class) ? "enhanced" : "plain";
+    }
+
+    private interface Operation {
+        void run(int iteration) throws Exception;
+    }
+}
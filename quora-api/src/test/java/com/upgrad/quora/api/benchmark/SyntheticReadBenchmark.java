@@ -0,0 +1,135 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.upgrad.quora.db.synthetic.SyntheticDataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Latency of the read endpoints over a synthetic dataset, skewed like production: the answers of the most answered
+ * question and of the others, the profile of a power user and the questions with the most answers. Each request is
+ * signed in with another of the synthetic sessions.
+ * <p>
+ * Run with {@code mvn -Pbenchmark clean install}, the sizes are given with -Dbenchmark.users, -Dbenchmark.questions,
+ * -Dbenchmark.answers and -Dbenchmark.sessions and the dataset with -Dbenchmark.seed. The percentiles are printed
+ * and written to target/benchmark/synthetic-read.txt.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SyntheticReadBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 5_000);
+
+    private static final int QUESTIONS = Integer.getInteger("benchmark.questions", 20_000);
+
+    private static final int ANSWERS = Integer.getInteger("benchmark.answers", 200_000);
+
+    private static final int SESSIONS = Integer.getInteger("benchmark.sessions", 2_000);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 50);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+
+    private final SyntheticDataset dataset = new SyntheticDataset(Long.getLong("benchmark.seed", 42))
+            .prefix("benchmark").users(USERS).questions(QUESTIONS).answers(ANSWERS).sessions(SESSIONS);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final List<String> results = new ArrayList<>();
+
+    @Before
+    public void seed() throws IOException, SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            dataset.remove(connection);
+            dataset.generate(connection);
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException, SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            dataset.remove(connection);
+        }
+        Path report = Paths.get("target", "benchmark", "synthetic-read.txt");
+        Files.createDirectories(report.getParent());
+        Files.write(report, results, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readEndpoints() throws Exception {
+        String hottest = dataset.questionUuid(dataset.questionIndex(1));
+        measure("answers of the most answered question", i -> mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + hottest)
+                .header("authorization", token(i)))
+                .andExpect(status().isOk()));
+
+        measure("answers of any question", i -> mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + dataset.questionUuid(i * 7919 % QUESTIONS))
+                .header("authorization", token(i)))
+                .andExpect(status().isOk()));
+
+        String powerUser = dataset.userUuid(dataset.userIndex(1));
+        measure("profile of a power user", i -> mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + powerUser)
+                .header("authorization", token(i)))
+                .andExpect(status().isOk()));
+
+        measure("top questions by answers", i -> mvc.perform(MockMvcRequestBuilders.get("/question/top")
+                .param("by", "answers")
+                .header("authorization", token(i)))
+                .andExpect(status().isOk()));
+    }
+
+    private String token(final int iteration) {
+        return dataset.accessToken(iteration % SESSIONS);
+    }
+
+    private void measure(final String endpoint, final Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run(i);
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run(WARMUP + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        String result = String.format("%-38s users=%d questions=%d answers=%d ops=%d p50=%.3fms p90=%.3fms p99=%.3fms",
+                endpoint, USERS, QUESTIONS, ANSWERS, ITERATIONS, percentile(nanos, 50), percentile(nanos, 90), percentile(nanos, 99));
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private static double percentile(final long[] sorted, final int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+
+    private interface Operation {
+        void run(int iteration) throws Exception;
+    }
+}
@@ -1,16 +1,26 @@
 package com.upgrad.quora.api.controller;
 
-
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -48,5 +58,171 @@ public class AdminControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when a deleted user is signed out right away and its content is removed in the background.
+    @Test
+    public void deleteUserRemovesContentInBackground() throws Exception {
+        String userName = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+        MvcResult signedUp = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=secret&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String userId = JsonPath.read(signedUp.getResponse().getContentAsString(), "$.id");
+        String credentials = Base64.getEncoder().encodeToString((userName + ":secret").getBytes(StandardCharsets.UTF_8));
+        String accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=deleted_user_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=other_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=deleted_user_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated());
+        // Caches the questions of the user
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + userId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "/admin/user/" + userId + "/deletion"))
+                .andExpect(MockMvcResultMatchers.jsonPath("status").value("USER DELETION IN PROGRESS"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + userId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+        mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isUnauthorized())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-001"));
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
+
+        String deletion = null;
+        for (int i = 0; i < 100; i++) {
+            deletion = mvc.perform(MockMvcRequestBuilders.get("/admin/user/" + userId + "/deletion").header("authorization", "database_accesstoken"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            if ("USER SUCCESSFULLY DELETED".equals(JsonPath.read(deletion, "$.status"))) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        assertEquals("USER SUCCESSFULLY DELETED", JsonPath.read(deletion, "$.status"));
+        assertEquals(Integer.valueOf(1), JsonPath.read(deletion, "$.sessions_deleted"));
+        assertEquals(Integer.valueOf(2), JsonPath.read(deletion, "$.answers_deleted"));
+        assertEquals(Integer.valueOf(1), JsonPath.read(deletion, "$.questions_deleted"));
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
+    //This test case passes when a client following the change feed is handed the deletion of the questions and answers of a deleted user.
+    @Test
+    public void deleteUserIsFollowedByTheChangeFeed() throws Exception {
+        String token = readDeletions(null, new ArrayList<>());
+        String userName = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+        MvcResult signedUp = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=secret&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String userId = JsonPath.read(signedUp.getResponse().getContentAsString(), "$.id");
+        String credentials = Base64.getEncoder().encodeToString((userName + ":secret").getBytes(StandardCharsets.UTF_8));
+        String accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=followed_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        MvcResult otherAnswer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=other_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        MvcResult ownAnswer = mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=followed_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn();
 
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isAccepted());
+        for (int i = 0; i < 100; i++) {
+            String deletion = mvc.perform(MockMvcRequestBuilders.get("/admin/user/" + userId + "/deletion").header("authorization", "database_accesstoken"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            if ("USER SUCCESSFULLY DELETED".equals(JsonPath.read(deletion, "$.status"))) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+
+        List<String> deleted = new ArrayList<>();
+        readDeletions(token, deleted);
+        assertTrue(deleted.contains(questionId));
+        assertTrue(deleted.contains(JsonPath.<String>read(otherAnswer.getResponse().getContentAsString(), "$.id")));
+        assertTrue(deleted.contains(JsonPath.<String>read(ownAnswer.getResponse().getContentAsString(), "$.id")));
+    }
+
+    //This test case passes when a non admin user tries to export the questions and answers.
+    @Test
+    public void exportWithnonadminAsRole() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/admin/export").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+    }
+
+    //This test case passes when the export streams one line per question with its answers and resumes after an offset.
+    @Test
+    public void exportStreamsQuestionsWithAnswers() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=exported_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=first_exported_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=second_exported_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+                .andExpect(status().isCreated());
+
+        String export = mvc.perform(MockMvcRequestBuilders.get("/admin/export").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String exported = null;
+        long previousOffset = 0;
+        for (String line : export.split("\n")) {
+            long offset = ((Number) JsonPath.read(line, "$.offset")).longValue();
+            assertTrue(offset > previousOffset);
+            previousOffset = offset;
+            if (questionId.equals(JsonPath.read(line, "$.id"))) {
+                exported = line;
+            }
+        }
+        assertEquals("exported_question", JsonPath.read(exported, "$.content"));
+        assertEquals("database_uuid1", JsonPath.read(exported, "$.user_id"));
+        assertEquals("first_exported_answer", JsonPath.read(exported, "$.answers[0].content"));
+        assertEquals("database_uuid2", JsonPath.read(exported, "$.answers[0].user_id"));
+        assertEquals("second_exported_answer", JsonPath.read(exported, "$.answers[1].content"));
+
+        long offset = ((Number) JsonPath.read(exported, "$.offset")).longValue();
+        String resumed = mvc.perform(MockMvcRequestBuilders.get("/admin/export?after=" + (offset - 1)).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(questionId, JsonPath.read(resumed.split("\n")[0], "$.id"));
+        mvc.perform(MockMvcRequestBuilders.get("/admin/export?after=-1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    private String readDeletions(final String since, final List<String> deleted) throws Exception {
+        String token = since;
+        boolean hasMore = true;
+        while (hasMore) {
+            MvcResult page = mvc.perform(MockMvcRequestBuilders.get("/question/changes?limit=500" + (token == null ? "" : "&since=" + token)).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            String body = page.getResponse().getContentAsString();
+            deleted.addAll(JsonPath.read(body, "$.changes[?(@.operation == 'DELETE')].id"));
+            token = JsonPath.read(body, "$.next_token");
+            hasMore = JsonPath.read(body, "$.has_more");
+        }
+        return token;
+    }
 }
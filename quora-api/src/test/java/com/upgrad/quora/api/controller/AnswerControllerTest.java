@@ -1,6 +1,11 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.api.model.AnswerDetailsResponse;
+import com.upgrad.quora.service.counter.AnswerScoreBuffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,9 +14,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,6 +39,12 @@ public class AnswerControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private AnswerScoreBuffer answerScoreBuffer;
+
+    @Autowired
+    private DataSource dataSource;
+
 
     //This test case passes when you try to create the answer but the JWT token entered does not exist in the database.
     @Test
@@ -136,5 +158,144 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you try to follow the stream of answers to a question which does not exist in the database.
+    @Test
+    public void streamAnswersToNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/stream/non_existing_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when you get all the answers posted for a specific question in the binary encoding.
+    @Test
+    public void getAllAnswersToQuestionAsCbor() throws Exception {
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").accept("application/cbor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/cbor"))
+                .andReturn();
+        AnswerDetailsResponse[] answers = new ObjectMapper(new CBORFactory()).readValue(result.getResponse().getContentAsByteArray(), AnswerDetailsResponse[].class);
+        AnswerDetailsResponse answer = Arrays.stream(answers).filter(response -> "database_answer_uuid".equals(response.getId())).findFirst().orElse(null);
+        assertNotNull(answer);
+        assertEquals("my_answer", answer.getAnswerContent());
+        assertEquals("database_question_content", answer.getQuestionContent());
+        assertNotNull(answer.getScore());
+    }
+
+    //This test case passes when you try to vote on an answer but the user corresponding to the JWT token entered is signed out of the application.
+    @Test
+    public void voteAnswerWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.put("/answer/vote/database_answer_uuid?vote=up").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
 
+    //This test case passes when you try to vote on an answer which does not exist in the database.
+    @Test
+    public void voteNonExistingAnswer() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.put("/answer/vote/non_existing_answer_uuid?vote=up").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ANS-001"));
+    }
+
+    //This test case passes when you try to vote on an answer with a vote other than up or down.
+    @Test
+    public void voteAnswerWithInvalidVote() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.put("/answer/vote/database_answer_uuid?vote=sideways").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when the answers to a question are sorted by their score, counting one vote per user, once the buffered scores are flushed.
+    @Test
+    public void getAllAnswersToQuestionSortedByScore() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=voted_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        String[] answerIds = new String[2];
+        for (int i = 0; i < answerIds.length; i++) {
+            MvcResult answer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=voted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            answerIds[i] = JsonPath.read(answer.getResponse().getContentAsString(), "$.id");
+        }
+
+        mvc.perform(MockMvcRequestBuilders.put("/answer/vote/" + answerIds[0] + "?vote=down").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("status").value("ANSWER DOWNVOTED"));
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.put("/answer/vote/" + answerIds[1] + "?vote=up").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("status").value("ANSWER UPVOTED"));
+        }
+        mvc.perform(MockMvcRequestBuilders.put("/answer/vote/" + answerIds[1] + "?vote=up").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk());
+        answerScoreBuffer.flush();
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId + "?sort=score").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(answerIds[1]))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].score").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].score").value(-1));
+
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/vote/" + answerIds[0]).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("status").value("VOTE WITHDRAWN"));
+        answerScoreBuffer.flush();
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId + "?sort=score").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].score").value(0));
+    }
+
+    //This test case passes when a vote racing with the same first vote of the user, committed in the meantime, is not counted twice.
+    @Test
+    public void voteAnswerRacingWithTheSameVote() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=raced_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        MvcResult answer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=raced_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String answerId = JsonPath.read(answer.getResponse().getContentAsString(), "$.id");
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            long answerRowId;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into answer_vote(answer_id, user_id, vote, voted_at) select a.id, s.user_id, 1, now() "
+                            + "from answer a, user_auth s where a.uuid = ? and s.access_token = 'database_accesstoken2' returning answer_id")) {
+                statement.setString(1, answerId);
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+                answerRowId = resultSet.getLong(1);
+            }
+            // The same upvote, waiting for the first one to commit
+            CompletableFuture<MvcResult> racing = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return mvc.perform(MockMvcRequestBuilders.put("/answer/vote/" + answerId + "?vote=up").header("authorization", "database_accesstoken2")).andReturn();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(500);
+            connection.commit();
+            answerScoreBuffer.voteChanged(answerRowId, 1);
+            assertEquals(200, racing.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+        }
+        answerScoreBuffer.flush();
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId + "?sort=score").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].score").value(1));
+    }
+
+    //This test case passes when you try to sort the answers to a question by something other than their score.
+    @Test
+    public void getAllAnswersToQuestionSortedByUnsupportedField() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?sort=date").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
 }
@@ -1,16 +1,20 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.upgrad.quora.service.invalidation.InvalidationListener;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import static org.junit.Assert.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -21,6 +25,12 @@ public class CommonControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InvalidationListener invalidationListener;
+
     //This test case passes when you try to get the details of the existing user and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void details() throws Exception {
@@ -43,4 +53,67 @@ public class CommonControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
+
+    //This test case passes when you get the details of several users at once, the repeated and non existing ones left out.
+    @Test
+    public void detailsOfSeveralUsers() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=database_uuid2,non_existing_user,database_uuid1,database_uuid2").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("database_uuid2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value("database_uuid1"));
+    }
+
+    //This test case passes when the cached details of a user changed by another node are read again once its invalidation has arrived.
+    @Test
+    public void detailsOfSeveralUsersInvalidatedByAnotherNode() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=database_uuid1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        jdbcTemplate.update("update users set firstname = 'changed_firstname1' where uuid = 'database_uuid1'");
+        try {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=database_uuid1").header("authorization", "database_accesstoken"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].first_name").value("database_firstname1"));
+
+            for (int attempt = 0; attempt < 100 && !invalidationListener.isConnected(); attempt++) {
+                Thread.sleep(100);
+            }
+            jdbcTemplate.queryForObject("select 1 from pg_notify('quora_invalidation', ?)", Integer.class,
+                    "another_node " + System.currentTimeMillis() + "\nUSER:database_uuid1");
+            String firstName = null;
+            for (int attempt = 0; attempt < 100 && !"changed_firstname1".equals(firstName); attempt++) {
+                Thread.sleep(100);
+                String response = mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=database_uuid1").header("authorization", "database_accesstoken"))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                firstName = JsonPath.read(response, "$[0].first_name");
+            }
+            assertEquals("changed_firstname1", firstName);
+        } finally {
+            jdbcTemplate.update("update users set firstname = 'database_firstname1' where uuid = 'database_uuid1'");
+        }
+    }
+
+    //This test case passes when you try to get the details of several users without any user id.
+    @Test
+    public void detailsOfSeveralUsersWithoutIds() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=").header("authorization", "database_accesstoken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when you try to get the details of several users and the user is signed out.
+    @Test
+    public void detailsOfSeveralUsersWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile?ids=database_uuid1").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when you try to get the details of a user with a session which has expired without signing out.
+    @Test
+    public void detailsUsingExpiredSession() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken4"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
 }
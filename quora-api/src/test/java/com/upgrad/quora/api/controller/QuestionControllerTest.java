@@ -1,6 +1,12 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import com.upgrad.quora.service.counter.AnswerCountBuffer;
+import com.upgrad.quora.service.event.OutboxDispatcher;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,9 +15,22 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,6 +42,15 @@ public class QuestionControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private AnswerCountBuffer answerCountBuffer;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private DataSource dataSource;
+
 
     //This test case passes when you try to create the question but the JWT token entered does not exist in the database.
     @Test
@@ -152,6 +180,342 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when you try to follow the stream of questions but the JWT token entered does not exist in the database.
+    @Test
+    public void streamQuestionsWithNonExistingAccessToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/stream").header("authorization", "non_existing_access_token"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
 
-}
+    //This test case passes when you try to follow the stream of questions and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
+    @Test
+    public void streamQuestions() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/stream").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+    }
+
+    //This test case passes when a question created while the stream of questions is open reaches the stream.
+    @Test
+    public void streamQuestionsReceivesCreatedQuestion() throws Exception {
+        MvcResult stream = mvc.perform(MockMvcRequestBuilders.get("/question/stream").header("authorization", "database_accesstoken1"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        outboxDispatcher.dispatch();
+
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=streamed_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        outboxDispatcher.dispatch();
+
+        // The events are written to the stream by the sender threads
+        String expected = "event:QUESTION_CREATED\ndata:{\"id\":\"" + questionId + "\",\"content\":\"streamed_question\"";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stream.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(stream.getResponse().getContentAsString(), stream.getResponse().getContentAsString().contains(expected));
+    }
+
+    //This test case passes when you try to get the question changes but the sync token entered is not one returned by the application.
+    @Test
+    public void getQuestionChangesWithInvalidSyncToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/changes?since=not_a_sync_token").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when you get the first page of question changes without a sync token and the user corresponding to the JWT token is signed in.
+    @Test
+    public void getQuestionChangesForInitialSync() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/changes?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("changes.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("next_token").isNotEmpty());
+    }
+
+    //This test case passes when a question committed after a later one is still handed out by the changes read meanwhile.
+    @Test
+    public void getQuestionChangesKeepsLateCommits() throws Exception {
+        List<String> seen = new ArrayList<>();
+        String token = readAllChanges(null, seen);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            String lateQuestionId = UUID.randomUUID().toString();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into question(uuid, content, date, user_id) values (?, 'late_question', now(), 1026)")) {
+                statement.setString(1, lateQuestionId);
+                statement.executeUpdate();
+            }
+            MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=early_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            String earlyQuestionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+            token = readAllChanges(token, seen);
+            assertFalse(seen.contains(earlyQuestionId));
+
+            connection.commit();
+            readAllChanges(token, seen);
+            assertTrue(seen.contains(lateQuestionId));
+            assertTrue(seen.contains(earlyQuestionId));
+        }
+    }
+
+    //This test case passes when you get the detail of all the questions in the binary encoding and it reads back into the swagger models.
+    @Test
+    public void getAllQuestionsAsCbor() throws Exception {
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/question/all").accept("application/cbor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/cbor"))
+                .andReturn();
+        QuestionDetailsResponse[] questions = new ObjectMapper(new CBORFactory()).readValue(result.getResponse().getContentAsByteArray(), QuestionDetailsResponse[].class);
+        QuestionDetailsResponse question = Arrays.stream(questions).filter(response -> "database_question_uuid".equals(response.getId())).findFirst().orElse(null);
+        assertNotNull(question);
+        assertEquals("database_question_content", question.getContent());
+        assertTrue(question.getAnswerCount() >= 1);
+    }
+
+    //This test case passes when the questions posted by a specific user, once read, reflect the questions the user creates and edits afterwards.
+    @Test
+    public void getAllQuestionsByUserAfterCreateAndEdit() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk());
+
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=cached_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].content").value("cached_question"));
+
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionId + "?content=edited_cached_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].content").value("edited_cached_question"));
+    }
+
+    //This test case passes when the detail of all the questions includes the answers posted to a question, once the buffered answer counts are flushed.
+    @Test
+    public void getAllQuestionsWithAnswerCount() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=counted_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=counted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+        answerCountBuffer.flush();
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].answer_count").value(2));
+    }
+
+    //This test case passes when the answer counts reconciled while answers are still buffered count each answer once.
+    @Test
+    public void reconcileAnswerCountsWithBufferedAnswers() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=reconciled_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=reconciled_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+        answerCountBuffer.reconcile();
+        answerCountBuffer.flush();
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].answer_count").value(2));
+    }
+
+    //This test case passes when you try to rank the questions by something other than their answers.
+    @Test
+    public void getTopQuestionsByUnsupportedRanking() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/top?by=views").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when you try to get the top questions and the user corresponding to the JWT token is signed out.
+    @Test
+    public void getTopQuestionsWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/top").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when you try to get the trending questions of a window which is not configured.
+    @Test
+    public void getTrendingQuestionsForUnknownWindow() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/trending?window=5m").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when a newly answered question shows up in the top and trending questions once the events of the answers are handed over.
+    @Test
+    public void getTopAndTrendingQuestionsAfterAnswers() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=ranked_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=ranked_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+        // Handed over once the transactions started before the answers have ended
+        String top = "[]";
+        for (int attempt = 0; attempt < 50 && !top.contains(questionId); attempt++) {
+            outboxDispatcher.dispatch();
+            top = mvc.perform(MockMvcRequestBuilders.get("/question/top?limit=100").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            if (!top.contains(questionId)) {
+                Thread.sleep(100);
+            }
+        }
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/top?limit=100").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].answer_count").value(2));
+        mvc.perform(MockMvcRequestBuilders.get("/question/trending?window=1h&limit=100").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].content").value("ranked_question"));
+    }
 
+    //This test case passes when an edited answer is not counted again and a deleted one is no longer counted in the top questions.
+    @Test
+    public void getTopQuestionsAfterAnswersEditedAndDeleted() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=recounted_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        List<String> answerIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MvcResult answer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=recounted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            answerIds.add(JsonPath.read(answer.getResponse().getContentAsString(), "$.id"));
+        }
+        outboxDispatcher.dispatch();
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerIds.get(0) + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + answerIds.get(1)).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        String count = "";
+        for (int attempt = 0; attempt < 50 && !count.equals("[2]"); attempt++) {
+            outboxDispatcher.dispatch();
+            count = mvc.perform(MockMvcRequestBuilders.get("/question/top?limit=100").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            count = JsonPath.read(count, "$[?(@.id == '" + questionId + "')].answer_count").toString();
+            if (!count.equals("[2]")) {
+                Thread.sleep(100);
+            }
+        }
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/top?limit=100").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')].answer_count").value(2));
+    }
+
+    //This test case passes when a question posted again with different case and punctuation is reported as a likely duplicate of the first one.
+    @Test
+    public void createQuestionReturnsLikelyDuplicates() throws Exception {
+        String content = "How do I learn functional programming in Java " + UUID.randomUUID();
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", content).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", content.toUpperCase() + "??").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("similar_questions[0].id").value(questionId))
+                .andExpect(MockMvcResultMatchers.jsonPath("similar_questions[0].similarity").value(1.0));
+    }
+
+    //This test case passes when a question just posted is suggested for the start of its content, ignoring case and punctuation.
+    @Test
+    public void suggestQuestionsIncludesPostedQuestion() throws Exception {
+        String marker = UUID.randomUUID().toString().replace("-", "");
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", "Suggested " + marker + " question?").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/suggest").param("prefix", "SUGGESTED, " + marker.substring(0, 12).toUpperCase()).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(questionId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answer_count").value(0));
+    }
+
+    //This test case passes when you try to get suggestions for a prefix without any letter or digit.
+    @Test
+    public void suggestQuestionsWithoutLettersOrDigits() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/suggest").param("prefix", " ?! ").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("REQ-001"));
+    }
+
+    //This test case passes when you try to get suggestions and the user is signed out.
+    @Test
+    public void suggestQuestionsWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/suggest").param("prefix", "how").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when a deleted question is left out along with its answers until they are purged.
+    @Test
+    public void deleteQuestionHidesItsAnswers() throws Exception {
+        MvcResult created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=soon_deleted_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String questionId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        MvcResult answer = mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=orphaned_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String answerId = JsonPath.read(answer.getResponse().getContentAsString(), "$.id");
+
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ANS-001"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionId + "')]").isEmpty());
+    }
+
+    // Reads the question changes after the token until there are no more, returns the token to continue after
+    private String readAllChanges(final String since, final List<String> seen) throws Exception {
+        String token = since;
+        boolean hasMore = true;
+        while (hasMore) {
+            MvcResult page = mvc.perform(MockMvcRequestBuilders.get("/question/changes?limit=500" + (token == null ? "" : "&since=" + token)).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            String body = page.getResponse().getContentAsString();
+            seen.addAll(JsonPath.read(body, "$.changes[*].id"));
+            token = JsonPath.read(body, "$.next_token");
+            hasMore = JsonPath.read(body, "$.has_more");
+        }
+        return token;
+    }
+}
@@ -8,9 +8,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -45,4 +50,48 @@ public class UserControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
+
+    //This test case passes when a session signed in can be used until it is signed out, and is refused right after.
+    @Test
+    public void signinAndSignout() throws Exception {
+        String userName = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=secret&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        String credentials = Base64.getEncoder().encodeToString((userName + ":secret").getBytes(StandardCharsets.UTF_8));
+        MvcResult signin = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn();
+        String accessToken = signin.getResponse().getHeader("access-token");
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when signing in beyond the cap of active sessions signs out the oldest session of the user.
+    @Test
+    public void signinBeyondActiveSessionCap() throws Exception {
+        String userName = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=secret&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        String credentials = Base64.getEncoder().encodeToString((userName + ":secret").getBytes(StandardCharsets.UTF_8));
+        String[] accessTokens = new String[11];
+        for (int i = 0; i < accessTokens.length; i++) {
+            accessTokens[i] = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials).contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader("access-token");
+        }
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessTokens[0]))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessTokens[1]))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessTokens[10]))
+                .andExpect(status().isOk());
+    }
 }
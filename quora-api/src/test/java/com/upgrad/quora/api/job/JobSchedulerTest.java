@@ -0,0 +1,277 @@
+package com.upgrad.quora.api.job;
+
+import com.upgrad.quora.service.dao.JobDao;
+import com.upgrad.quora.service.entity.JobEntity;
+import com.upgrad.quora.service.job.JobHandler;
+import com.upgrad.quora.service.job.JobScheduler;
+import com.upgrad.quora.service.job.JobStatistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"quora.jobs.poll-interval-ms=3600000", "quora.jobs.lease-check-interval-ms=3600000",
+        "quora.jobs.purge-interval-ms=3600000", "quora.jobs.backoff-base-ms=1000", "quora.jobs.retention-hours=24"})
+public class JobSchedulerTest {
+
+    private static final String FAILING = "test-failing";
+
+    private static final String BLOCKING = "test-blocking";
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private BlockingHandler blockingHandler;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate.update("delete from job where job_type in (?, ?)", FAILING, BLOCKING);
+    }
+
+    //This test case passes when two nodes claiming the same due jobs get different ones without waiting for each other.
+    @Test
+    public void claimSkipsTheJobsClaimedByAnotherNode() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            jobScheduler.enqueue(BLOCKING, null);
+        }
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        CompletableFuture<Set<Long>> first = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            Set<Long> ids = idsOf(jobDao.claimDueJobs(BLOCKING, ZonedDateTime.now(), 3));
+            claimed.countDown();
+            await(done);
+            return ids;
+        }));
+        assertTrue(claimed.await(10, TimeUnit.SECONDS));
+
+        Set<Long> second = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status ->
+                idsOf(jobDao.claimDueJobs(BLOCKING, ZonedDateTime.now(), 3)))).get(5, TimeUnit.SECONDS);
+        done.countDown();
+
+        Set<Long> firstIds = first.get(10, TimeUnit.SECONDS);
+        assertEquals(3, firstIds.size());
+        assertEquals(1, second.size());
+        assertFalse(firstIds.containsAll(second));
+    }
+
+    //This test case passes when the jobs whose lease expired are released, and the ones of a live lease are kept.
+    @Test
+    public void expiredLeasesAreReleased() {
+        long expired = jobScheduler.enqueue(BLOCKING, null).getId();
+        long lastAttempt = jobScheduler.enqueue(BLOCKING, null).getId();
+        long held = jobScheduler.enqueue(BLOCKING, null).getId();
+        jdbcTemplate.update("update job set status = 'RUNNING', attempts = 1, locked_by = 'gone',"
+                + " locked_until = now() - interval '1 minute' where id in (?, ?)", expired, lastAttempt);
+        jdbcTemplate.update("update job set attempts = max_attempts where id = ?", lastAttempt);
+        jdbcTemplate.update("update job set status = 'RUNNING', attempts = 1, locked_by = 'alive',"
+                + " locked_until = now() + interval '1 minute' where id = ?", held);
+
+        jobScheduler.releaseExpiredLeases();
+
+        assertEquals("PENDING", job(expired).get("status"));
+        assertEquals("The lease expired", job(expired).get("last_error"));
+        assertEquals("FAILED", job(lastAttempt).get("status"));
+        assertNotNull(job(lastAttempt).get("finished_at"));
+        assertEquals("RUNNING", job(held).get("status"));
+    }
+
+    //This test case passes when a failing job is retried after a doubling backoff and given up after its last attempt.
+    @Test
+    public void failingJobIsRetriedWithBackoffThenFailed() throws Exception {
+        long id = jobScheduler.enqueue(FAILING, null).getId();
+
+        for (int attempt = 1; attempt < 3; attempt++) {
+            long before = System.currentTimeMillis();
+            jobScheduler.poll();
+            Map<String, Object> job = awaitEnd(id);
+            assertEquals("PENDING", job.get("status"));
+            assertEquals(attempt, job.get("attempts"));
+            assertEquals("java.lang.IllegalStateException: attempt failed", job.get("last_error"));
+            // 1s then 2s, spread by up to a fifth either way
+            long backoff = ((Timestamp) job.get("run_at")).getTime() - before;
+            long expected = 1000L << (attempt - 1);
+            assertTrue("Backoff of " + backoff + "ms", backoff >= expected * 0.8 && backoff <= expected * 1.2 + 1000);
+            jdbcTemplate.update("update job set run_at = now() where id = ?", id);
+        }
+
+        jobScheduler.poll();
+        Map<String, Object> job = awaitEnd(id);
+        assertEquals("FAILED", job.get("status"));
+        assertEquals(3, job.get("attempts"));
+        assertNotNull(job.get("finished_at"));
+    }
+
+    //This test case passes when a node runs no more jobs of a type at a time than the handler allows.
+    @Test
+    public void concurrencyIsLimitedPerType() throws Exception {
+        blockingHandler.release = new CountDownLatch(1);
+        long first = jobScheduler.enqueue(BLOCKING, null).getId();
+        long second = jobScheduler.enqueue(BLOCKING, null).getId();
+        long third = jobScheduler.enqueue(BLOCKING, null).getId();
+
+        jobScheduler.poll();
+        jobScheduler.poll();
+        assertEquals(2, statistics(BLOCKING).getRunning());
+        assertEquals("RUNNING", job(first).get("status"));
+        assertEquals("RUNNING", job(second).get("status"));
+        assertEquals("PENDING", job(third).get("status"));
+
+        blockingHandler.release.countDown();
+        awaitEnd(first);
+        awaitEnd(second);
+        jobScheduler.poll();
+        assertEquals("DONE", awaitEnd(third).get("status"));
+    }
+
+    //This test case passes when the jobs ended before the retention period are purged and the others are kept.
+    @Test
+    public void finishedJobsArePurgedAfterRetention() {
+        long old = jobScheduler.enqueue(BLOCKING, null).getId();
+        long recent = jobScheduler.enqueue(BLOCKING, null).getId();
+        long pending = jobScheduler.enqueue(BLOCKING, null).getId();
+        jdbcTemplate.update("update job set status = 'DONE', finished_at = now() - interval '25 hours' where id = ?", old);
+        jdbcTemplate.update("update job set status = 'FAILED', finished_at = now() - interval '23 hours' where id = ?", recent);
+        jdbcTemplate.update("update job set created_at = now() - interval '25 hours' where id = ?", pending);
+
+        jobScheduler.purgeFinished();
+
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from job where id = ?", Integer.class, old));
+        assertEquals("FAILED", job(recent).get("status"));
+        assertEquals("PENDING", job(pending).get("status"));
+    }
+
+    //This test case passes when a unique job is enqueued once while it is pending, and again once it is done.
+    @Test
+    public void uniqueJobIsEnqueuedOnceAtATime() throws Exception {
+        blockingHandler.release = new CountDownLatch(0);
+        assertTrue(jobScheduler.enqueueUnique(BLOCKING, ZonedDateTime.now()));
+        assertFalse(jobScheduler.enqueueUnique(BLOCKING, ZonedDateTime.now()));
+        long id = jdbcTemplate.queryForObject("select id from job where job_type = ?", Long.class, BLOCKING);
+
+        jobScheduler.poll();
+        assertEquals("DONE", awaitEnd(id).get("status"));
+        assertTrue(jobScheduler.enqueueUnique(BLOCKING, ZonedDateTime.now()));
+    }
+
+    private Map<String, Object> job(final long id) {
+        return jdbcTemplate.queryForMap("select * from job where id = ?", id);
+    }
+
+    private Map<String, Object> awaitEnd(final long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> job = job(id);
+            if (!"RUNNING".equals(job.get("status"))) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Job " + id + " is still running");
+    }
+
+    private JobStatistics statistics(final String jobType) {
+        return jobScheduler.getStatistics().stream()
+                .filter(typeStatistics -> typeStatistics.getJobType().equals(jobType)).findFirst().get();
+    }
+
+    private static Set<Long> idsOf(final List<JobEntity> jobs) {
+        return jobs.stream().map(JobEntity::getId).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @TestConfiguration
+    static class Handlers {
+
+        @Bean
+        public JobHandler failingHandler() {
+            return new JobHandler() {
+                @Override
+                public String getJobType() {
+                    return FAILING;
+                }
+
+                @Override
+                public void run(final String payload) {
+                    throw new IllegalStateException("attempt failed");
+                }
+
+                @Override
+                public int getMaxAttempts() {
+                    return 3;
+                }
+            };
+        }
+
+        @Bean
+        public BlockingHandler blockingHandler() {
+            return new BlockingHandler();
+        }
+    }
+
+    static class BlockingHandler implements JobHandler {
+
+        private volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public String getJobType() {
+            return BLOCKING;
+        }
+
+        @Override
+        public void run(final String payload) throws InterruptedException {
+            release.await(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.upgrad.quora.api.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.db.synthetic.SyntheticDataset;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.session.SessionPartitions;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs EXPLAIN (ANALYZE, BUFFERS) for every named query of the users, sessions, questions and answers against a
+ * synthetic dataset, and fails when a plan no longer matches its snapshot, when a lookup scans a whole table, or
+ * when a query touches more buffers or rows than its bounds.
+ * <p>
+ * The snapshots in src/test/resources/plans keep the shape of each plan: its nodes with the tables and indexes they
+ * read, without the costs and timings. A missing or changed snapshot fails the run, it is written by running with
+ * {@code -Dplans.update=true} and reviewing the snapshots in the diff. Every statement runs in a transaction which is
+ * rolled back, the updates included.
+ * <p>
+ * The shapes depend on the planner, whose nodes differ between major versions of PostgreSQL, such as the Memoize and
+ * Incremental Sort nodes of 14. The major version the snapshots were written on is kept in the server-version file
+ * next to them, the shapes are only compared on that version: on another one the bounds are still checked and the
+ * test is then reported as skipped.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+// Shares the application context of the controller tests
+@AutoConfigureMockMvc
+public class NamedQueryPlanTest {
+
+    private static final Path SNAPSHOTS = Paths.get("src", "test", "resources", "plans");
+
+    private static final Path SERVER_VERSION = SNAPSHOTS.resolve("server-version");
+
+    private static final long SMALL_TABLE_ROWS = 100;
+
+    private static final Class<?>[] ENTITIES = {UserEntity.class, UserAuthTokenEntity.class, QuestionEntity.class, AnswerEntity.class};
+
+    private final SyntheticDataset dataset = new SyntheticDataset(42)
+            .prefix("plan").users(10_000).questions(50_000).answers(200_000).sessions(50_000);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionPartitions sessionPartitions;
+
+    @Before
+    public void seed() throws IOException, SQLException {
+        // The sessions go to the monthly partitions rather than the default one
+        sessionPartitions.maintain();
+        try (Connection connection = dataSource.getConnection()) {
+            dataset.remove(connection);
+            dataset.generate(connection);
+            connection.setAutoCommit(true);
+            // Rewritten so that the plans do not depend on the space left by the rows of earlier runs, then vacuumed
+            // again to mark the pages all visible, which the index only scans depend on and which autovacuum would
+            // otherwise do at any time. The tables are analyzed whole rather than by a random sample, a sample of 300
+            // rows per unit of the target, else the estimates would change the plans from run to run
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("vacuum full users, user_auth, question, answer");
+                statement.execute("set default_statistics_target = 1000");
+                statement.execute("vacuum analyze users, user_auth, question, answer");
+            }
+        }
+    }
+
+    @After
+    public void cleanUp() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            dataset.remove(connection);
+        }
+    }
+
+    @Test
+    public void namedQueriesKeepTheirPlans() throws Exception {
+        List<String> failures = new ArrayList<>();
+        boolean update = Boolean.getBoolean("plans.update");
+        String recordedOn = Files.exists(SERVER_VERSION)
+                ? new String(Files.readAllBytes(SERVER_VERSION), StandardCharsets.UTF_8).trim() : null;
+        String serverVersion;
+        try (Connection connection = dataSource.getConnection()) {
+            serverVersion = String.valueOf(connection.getMetaData().getDatabaseMajorVersion());
+            if (update) {
+                Files.createDirectories(SNAPSHOTS);
+                Files.write(SERVER_VERSION, (serverVersion + "\n").getBytes(StandardCharsets.UTF_8));
+            } else if (recordedOn == null) {
+                failures.add(SERVER_VERSION + " is missing, write the snapshots with -Dplans.update=true");
+            }
+            boolean compareShapes = update || serverVersion.equals(recordedOn);
+            connection.setAutoCommit(false);
+            try {
+                Map<String, PlanCase> cases = cases(connection);
+                for (Class<?> entity : ENTITIES) {
+                    for (NamedQuery query : entity.getAnnotation(NamedQueries.class).value()) {
+                        PlanCase planCase = cases.get(query.name());
+                        if (planCase == null) {
+                            failures.add(query.name() + ": no plan case, add one to NamedQueryPlanTest");
+                        } else {
+                            // Undoes an update before the next query, which may read the same rows
+                            Savepoint savepoint = connection.setSavepoint();
+                            check(planCase, explain(connection, query.query(), planCase.parameters), compareShapes, failures);
+                            connection.rollback(savepoint);
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+        assumeTrue("The plans were written on PostgreSQL " + recordedOn + ", the server is " + serverVersion
+                + ", their shapes were not compared", update || serverVersion.equals(recordedOn));
+    }
+
+    /**
+     * The parameters of each query, chosen for its worst case on the dataset: the most answered question and the
+     * user who writes the most. The bounds leave two to three times the buffers and rows of the plans of the
+     * snapshots, the buffers vary from run to run with the pages already cached.
+     */
+    private Map<String, PlanCase> cases(final Connection connection) throws SQLException {
+        int powerUser = dataset.userIndex(1);
+        String hottestQuestion = dataset.questionUuid(dataset.questionIndex(1));
+        Timestamp now = timestamp(ZonedDateTime.now());
+        long horizon = horizon(connection);
+        long[] recentQuestions = feedPosition(connection, "question", 20);
+        long[] recentAnswers = feedPosition(connection, "answer", 200);
+        List<String> profileUuids = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            profileUuids.add(dataset.userUuid(dataset.userIndex(i)));
+        }
+        List<String> answeredUuids = new ArrayList<>();
+        for (int i = 1001; i <= 1020; i++) {
+            answeredUuids.add(dataset.questionUuid(dataset.questionIndex(i)));
+        }
+        List<Long> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sessionIds.add(idOf(connection, "select id from user_auth where access_token = ?", dataset.accessToken(i)));
+        }
+
+        Map<String, PlanCase> cases = new LinkedHashMap<>();
+        add(cases, new PlanCase("userByUserName", 8, 2).with("userName", dataset.userName(powerUser)));
+        add(cases, new PlanCase("userByEmail", 8, 2).with("email", dataset.userName(powerUser) + "@example.com"));
+        add(cases, new PlanCase("userByUserUuid", 8, 2).with("uuid", dataset.userUuid(powerUser)));
+        add(cases, new PlanCase("usersByUserUuids", 120, 40).with("uuids", profileUuids));
+
+        add(cases, new PlanCase("userAuthTokenByAccessToken", 40, 20).with("accessToken", dataset.accessToken(0)));
+        add(cases, new PlanCase("expireUserAuthTokens", 4_000, 300).with("ids", sessionIds));
+
+        add(cases, new PlanCase("getQuestionById", 8, 2).with("uuid", hottestQuestion));
+        add(cases, new PlanCase("allQuestions", 5_000, 110_000).scans("question"));
+        add(cases, new PlanCase("maxQuestionId", 8, 2));
+        add(cases, new PlanCase("questionSummariesByUser", 3_000, 30_000)
+                .with("user", idOf(connection, "select id from users where uuid = ?", dataset.userUuid(powerUser))));
+        add(cases, new PlanCase("questionEntityByUuid", 8, 2).with("uuid", hottestQuestion));
+        add(cases, new PlanCase("questionChangesSince", 40, 40)
+                .with("sinceXid", recentQuestions[0]).with("afterId", recentQuestions[1]).with("horizon", horizon));
+        add(cases, new PlanCase("questionCorpusAfter", 500_000, 600_000).scans("question", "answer", "users").with("afterId", 0L));
+        add(cases, new PlanCase("softDeleteQuestion", 40, 2)
+                .with("deletedAt", now).with("id", idOf(connection, "select id from question where uuid = ?", hottestQuestion)));
+
+        add(cases, new PlanCase("getAnswerByUuid", 16, 4).with("uuid", dataset.answerUuid(0)));
+        add(cases, new PlanCase("getAllAnswersToQuestion", 10_000, 70_000).with("uuid", hottestQuestion));
+        add(cases, new PlanCase("getAllAnswersToQuestionByScore", 10_000, 70_000).with("uuid", hottestQuestion));
+        add(cases, new PlanCase("maxAnswerId", 8, 2));
+        add(cases, new PlanCase("answerCountsByQuestion", 400_000, 600_000).scans("answer", "question"));
+        add(cases, new PlanCase("answerDatesSince", 12_000, 120_000)
+                // The questions of a day of answers are joined by hash
+                .scans("question").with("since", timestamp(ZonedDateTime.now().minusHours(24))));
+        // Questions of ordinary popularity counted again after a page of the change feed, the answers of the most
+        // answered question are bounded by the cases above
+        add(cases, new PlanCase("answerCountsOfQuestions", 1_200, 1_000).with("uuids", answeredUuids));
+        add(cases, new PlanCase("answerDatesOfQuestionsSince", 400, 100)
+                .with("uuids", answeredUuids).with("since", timestamp(ZonedDateTime.now().minusHours(24))));
+        add(cases, new PlanCase("answerChangesSince", 1_500, 1_500)
+                .with("sinceXid", recentAnswers[0]).with("afterId", recentAnswers[1]).with("horizon", horizon));
+        add(cases, new PlanCase("softDeleteAnswer", 40, 2).with("deletedAt", now).with("uuid", dataset.answerUuid(0)));
+        return cases;
+    }
+
+    private void check(final PlanCase planCase, final Plan plan, final boolean compareShapes, final List<String> failures)
+            throws IOException {
+        String name = planCase.query;
+        List<String> sequentialScans = new ArrayList<>(plan.sequentialScans);
+        sequentialScans.removeAll(planCase.sequentialScans);
+        if (!sequentialScans.isEmpty()) {
+            failures.add(name + ": scans " + sequentialScans + " sequentially\n" + plan.shape);
+        }
+        if (plan.buffers > planCase.maxBuffers) {
+            failures.add(name + ": " + plan.buffers + " buffers, at most " + planCase.maxBuffers);
+        }
+        if (plan.rows > planCase.maxRows) {
+            failures.add(name + ": " + plan.rows + " rows touched, at most " + planCase.maxRows);
+        }
+
+        Path snapshot = SNAPSHOTS.resolve(name + ".plan");
+        if (Boolean.getBoolean("plans.update")) {
+            Files.createDirectories(SNAPSHOTS);
+            Files.write(snapshot, plan.shape.getBytes(StandardCharsets.UTF_8));
+        } else if (!Files.exists(snapshot)) {
+            failures.add(name + ": no snapshot " + snapshot + ", write it with -Dplans.update=true");
+        } else if (compareShapes) {
+            String expected = new String(Files.readAllBytes(snapshot), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            if (!expected.equals(plan.shape)) {
+                failures.add(name + ": plan changed from its snapshot " + snapshot + "\n" + expected + "to\n" + plan.shape);
+            }
+        }
+    }
+
+    /**
+     * Translates the query as Hibernate does and explains its SQL with the parameters bound where Hibernate binds
+     * them. A collection parameter is expanded to one parameter per element first, like Hibernate does.
+     */
+    private Plan explain(final Connection connection, final String query, final Map<String, Object> parameters)
+            throws SQLException, IOException {
+        String hql = query;
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            if (parameter.getValue() instanceof Collection) {
+                List<String> names = new ArrayList<>();
+                for (Object element : (Collection<?>) parameter.getValue()) {
+                    String elementName = parameter.getKey() + "_" + names.size();
+                    names.add(":" + elementName);
+                    values.put(elementName, element);
+                }
+                hql = hql.replaceAll(":" + parameter.getKey() + "\\b", "(" + String.join(", ", names) + ")");
+            } else {
+                values.put(parameter.getKey(), parameter.getValue());
+            }
+        }
+
+        HQLQueryPlan queryPlan = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getQueryPlanCache()
+                .getHQLQueryPlan(hql, false, Collections.emptyMap());
+        ParameterTranslations translations = queryPlan.getTranslators()[0].getParameterTranslations();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "explain (analyze, buffers, format json) " + queryPlan.getSqlStrings()[0])) {
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                for (int location : translations.getNamedParameterSqlLocations(value.getKey())) {
+                    statement.setObject(location + 1, value.getValue());
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return new Plan(objectMapper.readTree(resultSet.getString(1)).get(0).get("Plan"));
+            }
+        }
+    }
+
+    private static void add(final Map<String, PlanCase> cases, final PlanCase planCase) {
+        cases.put(planCase.query, planCase);
+    }
+
+    private static long idOf(final Connection connection, final String query, final String uuid) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, uuid);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private static long horizon(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select pg_snapshot_xmin(pg_current_snapshot())::text::bigint")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    // Position in the change feed of a table before its last changes
+    private static long[] feedPosition(final Connection connection, final String table, final int changes) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select change_xid, id from " + table
+                     + " where deleted_at is null order by change_xid desc, id desc offset " + changes + " limit 1")) {
+            resultSet.next();
+            return new long[]{resultSet.getLong(1), resultSet.getLong(2)};
+        }
+    }
+
+    // Bound as Hibernate binds the ZonedDateTime attributes
+    private static Timestamp timestamp(final ZonedDateTime dateTime) {
+        return Timestamp.from(dateTime.toInstant());
+    }
+
+    private static final class PlanCase {
+
+        private final String query;
+
+        private final long maxBuffers;
+
+        private final long maxRows;
+
+        private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+        // Tables read whole by design, such as the questions of the list of all questions
+        private final List<String> sequentialScans = new ArrayList<>();
+
+        private PlanCase(final String query, final long maxBuffers, final long maxRows) {
+            this.query = query;
+            this.maxBuffers = maxBuffers;
+            this.maxRows = maxRows;
+        }
+
+        private PlanCase with(final String name, final Object value) {
+            parameters.put(name, value);
+            return this;
+        }
+
+        private PlanCase scans(final String... tables) {
+            sequentialScans.addAll(Arrays.asList(tables));
+            return this;
+        }
+    }
+
+    /**
+     * Shape of an executed plan, with the shared buffers it hit or read and the rows its scans read, those removed
+     * by a filter included.
+     */
+    private static final class Plan {
+
+        private final List<String> sequentialScans = new ArrayList<>();
+
+        private final long buffers;
+
+        private long rows;
+
+        private final String shape;
+
+        private Plan(final JsonNode root) {
+            buffers = root.path("Shared Hit Blocks").asLong() + root.path("Shared Read Blocks").asLong();
+            shape = render(root, 0).stream().map(line -> line + "\n").collect(Collectors.joining());
+        }
+
+        private List<String> render(final JsonNode node, final int depth) {
+            String type = node.path("Node Type").asText();
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                line.append("  ");
+            }
+            line.append(type);
+            if (node.has("Index Name")) {
+                line.append(" using ").append(normalize(node.get("Index Name").asText()));
+            }
+            if (node.has("Relation Name")) {
+                line.append(" on ").append(normalize(node.get("Relation Name").asText()));
+            }
+            if (type.endsWith("Scan")) {
+                long read = node.path("Actual Rows").asLong() + node.path("Rows Removed by Filter").asLong()
+                        + node.path("Rows Removed by Index Recheck").asLong();
+                rows += read * node.path("Actual Loops").asLong();
+                // An empty or nearly empty table, such as a partition of the coming months, is read whole at no cost
+                if (type.equals("Seq Scan") && read > SMALL_TABLE_ROWS) {
+                    sequentialScans.add(node.path("Relation Name").asText());
+                }
+            }
+
+            List<String> lines = new ArrayList<>();
+            lines.add(line.toString());
+            // The partitions of the sessions differ from month to month, each way of reading them is kept once
+            Collection<String> children = type.equals("Append") ? new TreeSet<>() : new ArrayList<>();
+            for (JsonNode child : node.path("Plans")) {
+                children.add(String.join("\n", render(child, depth + 1)));
+            }
+            for (String child : children) {
+                lines.addAll(Arrays.asList(child.split("\n")));
+            }
+            return lines;
+        }
+
+        private static String normalize(final String name) {
+            return name.replaceAll("user_auth_(p\\d{6}|default)", "user_auth_<partition>");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.upgrad.quora.api.startup;
+
+import com.upgrad.quora.service.invalidation.InvalidationListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("startup")
+public class StartupProfileTest {
+
+    // The beans are looked up rather than autowired, autowiring them would create the lazy ones
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    //This test case passes when the cache invalidation listener runs in the startup profile although nothing asks for it.
+    @Test
+    public void invalidationListenerIsStarted() throws InterruptedException {
+        assertTrue(context.getBeanFactory().containsSingleton("invalidationListener"));
+        InvalidationListener listener = context.getBean(InvalidationListener.class);
+        assertTrue(listener.isRunning());
+        for (int i = 0; i < 100 && !listener.isConnected(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(listener.isConnected());
+    }
+
+    //This test case passes when the cache invalidation meters are registered in the startup profile.
+    @Test
+    public void invalidationMetersAreRegistered() {
+        assertTrue(context.getBeanFactory().containsSingleton("invalidationMetricsConfiguration"));
+        assertNotNull(context.getBean(MeterRegistry.class).find("quora.invalidation.connected").gauge());
+    }
+
+    //This test case passes when the application beans nothing asks for are left to be created on first use.
+    @Test
+    public void otherBeansAreLazy() {
+        assertTrue(context.getBeanFactory().getBeanDefinition("commonService").isLazyInit());
+    }
+}
@@ -0,0 +1,376 @@
+package com.upgrad.quora.db.bulk;
+
+import com.upgrad.quora.service.business.PasswordCryptographyProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads users, questions and answers from CSV or newline delimited JSON files with COPY, to seed an environment or
+ * to migrate from another forum far faster than through the API. Each batch of rows is copied in one transaction.
+ * <p>
+ * The files refer to users and questions by uuid. The ids of the new rows are taken from the sequences of their
+ * tables up front and every uuid is mapped to its id in memory, along with the uuids already in the database, so
+ * that the references are resolved without a lookup. Records whose uuid is already in the database are skipped,
+ * an interrupted import is simply run again. The users whose user name or email is taken, in the database or by an
+ * earlier record, are skipped too rather than failing their whole batch on the unique constraints. The passwords are
+ * hashed by a pool of threads, a batch is hashed while the one before it is copied.
+ * <p>
+ * Fields, by CSV header or JSON name:
+ * <ul>
+ * <li>users: uuid, first_name, last_name, user_name, email, password, country, about_me, dob, role, contact_number</li>
+ * <li>questions: uuid, content, date, user_id</li>
+ * <li>answers: uuid, content, date, user_id, question_id</li>
+ * </ul>
+ * A missing uuid is generated, a missing date is the time of the import. The user_id and question_id are uuids.
+ * <p>
+ * Run from quora-db with the connection of config/localhost.properties:
+ * {@code mvn -Pimport -Dimport.args="--users users.csv --questions questions.ndjson --answers answers.ndjson" process-classes}
+ */
+public class BulkImport {
+
+    private static final String[] USER_COLUMNS = {"id", "uuid", "firstname", "lastname", "username", "email",
+            "password", "salt", "country", "aboutme", "dob", "role", "contactnumber"};
+
+    private static final String[] QUESTION_COLUMNS = {"id", "uuid", "content", "date", "user_id"};
+
+    private static final String[] ANSWER_COLUMNS = {"id", "uuid", "ans", "date", "user_id", "question_id"};
+
+    private final Connection connection;
+
+    private final int batchSize;
+
+    private final int hashThreads;
+
+    private final PasswordCryptographyProvider passwordCryptographyProvider = new PasswordCryptographyProvider();
+
+    private final Map<String, Integer> userIds = new HashMap<>();
+
+    private final Set<String> userNames = new HashSet<>();
+
+    private final Set<String> emails = new HashSet<>();
+
+    private final Map<String, Integer> questionIds = new HashMap<>();
+
+    private final Set<String> answerUuids = new HashSet<>();
+
+    public BulkImport(final Connection connection, final int batchSize, final int hashThreads) throws SQLException {
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.hashThreads = hashThreads;
+        connection.setAutoCommit(false);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                break;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (args.length % 2 != 0 || !options.containsKey("url")) {
+            System.err.println("Usage: BulkImport --url <jdbc url> [--user <user>] [--password <password>]"
+                    + " [--users <file>] [--questions <file>] [--answers <file>] [--batch-size <rows>] [--hash-threads <threads>]");
+            System.exit(2);
+        }
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "50000"));
+        int hashThreads = Integer.parseInt(options.getOrDefault("hash-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try (Connection connection = DriverManager.getConnection(options.get("url"), options.get("user"), options.get("password"))) {
+            BulkImport bulkImport = new BulkImport(connection, batchSize, hashThreads);
+            // Users first, the questions and answers refer to them, then the questions the answers refer to
+            if (options.containsKey("users")) {
+                bulkImport.importUsers(Paths.get(options.get("users")));
+            }
+            if (options.containsKey("questions")) {
+                bulkImport.importQuestions(Paths.get(options.get("questions")));
+            }
+            if (options.containsKey("answers")) {
+                bulkImport.importAnswers(Paths.get(options.get("answers")));
+            }
+        }
+    }
+
+    /**
+     * @param file users, with their passwords in plain text.
+     * @return number of users imported.
+     */
+    public long importUsers(final Path file) throws IOException, SQLException, InterruptedException {
+        loadUserIds();
+        Sequences.advance(connection, "users");
+        Throughput throughput = new Throughput("users");
+        ForkJoinPool hashers = new ForkJoinPool(hashThreads);
+        try (RecordReader reader = RecordReader.open(file)) {
+            Future<List<Object[]>> hashed = null;
+            for (List<Map<String, String>> batch = readBatch(reader); !batch.isEmpty(); batch = readBatch(reader)) {
+                List<Map<String, String>> users = new ArrayList<>();
+                Set<String> uuids = new HashSet<>();
+                for (Map<String, String> user : batch) {
+                    if (userIds.containsKey(uuidOf(user))
+                            || !has(user, "first_name", "last_name", "user_name", "email", "password")
+                            || userNames.contains(user.get("user_name")) || emails.contains(user.get("email"))
+                            || !uuids.add(uuidOf(user))) {
+                        throughput.skipped();
+                    } else {
+                        userNames.add(user.get("user_name"));
+                        emails.add(user.get("email"));
+                        users.add(user);
+                    }
+                }
+                List<Integer> ids = Sequences.next(connection, "users", users.size());
+                for (int i = 0; i < users.size(); i++) {
+                    userIds.put(uuidOf(users.get(i)), ids.get(i));
+                }
+                Future<List<Object[]>> next = hashers.submit(() -> IntStream.range(0, users.size()).parallel()
+                        .mapToObj(i -> toUserRow(ids.get(i), users.get(i)))
+                        .collect(Collectors.toList()));
+                if (hashed != null) {
+                    copyBatch("users", USER_COLUMNS, get(hashed), null, throughput);
+                }
+                hashed = next;
+            }
+            if (hashed != null) {
+                copyBatch("users", USER_COLUMNS, get(hashed), null, throughput);
+            }
+        } finally {
+            hashers.shutdownNow();
+        }
+        throughput.finished();
+        return throughput.getRows();
+    }
+
+    /**
+     * @param file questions, each referring to its user by uuid.
+     * @return number of questions imported.
+     */
+    public long importQuestions(final Path file) throws IOException, SQLException {
+        loadUserIds();
+        loadQuestionIds();
+        Sequences.advance(connection, "question");
+        Throughput throughput = new Throughput("questions");
+        try (RecordReader reader = RecordReader.open(file)) {
+            for (List<Map<String, String>> batch = readBatch(reader); !batch.isEmpty(); batch = readBatch(reader)) {
+                List<Map<String, String>> questions = new ArrayList<>();
+                Set<String> uuids = new HashSet<>();
+                for (Map<String, String> question : batch) {
+                    if (questionIds.containsKey(uuidOf(question)) || !uuids.add(uuidOf(question)) || !has(question, "content")
+                            || !userIds.containsKey(question.get("user_id"))) {
+                        throughput.skipped();
+                    } else {
+                        questions.add(question);
+                    }
+                }
+                List<Integer> ids = Sequences.next(connection, "question", questions.size());
+                List<Object[]> rows = new ArrayList<>(questions.size());
+                for (int i = 0; i < questions.size(); i++) {
+                    Map<String, String> question = questions.get(i);
+                    questionIds.put(uuidOf(question), ids.get(i));
+                    rows.add(new Object[]{ids.get(i), uuidOf(question), question.get("content"),
+                            timestampOf(question.get("date")), userIds.get(question.get("user_id"))});
+                }
+                copyBatch("question", QUESTION_COLUMNS, rows, null, throughput);
+            }
+        }
+        throughput.finished();
+        return throughput.getRows();
+    }
+
+    /**
+     * @param file answers, each referring to its user and its question by uuid.
+     * @return number of answers imported.
+     */
+    public long importAnswers(final Path file) throws IOException, SQLException {
+        loadUserIds();
+        loadQuestionIds();
+        loadAnswerUuids();
+        Sequences.advance(connection, "answer");
+        Throughput throughput = new Throughput("answers");
+        try (RecordReader reader = RecordReader.open(file)) {
+            for (List<Map<String, String>> batch = readBatch(reader); !batch.isEmpty(); batch = readBatch(reader)) {
+                List<Map<String, String>> answers = new ArrayList<>();
+                for (Map<String, String> answer : batch) {
+                    if (!answerUuids.add(uuidOf(answer)) || !has(answer, "content")
+                            || !userIds.containsKey(answer.get("user_id")) || !questionIds.containsKey(answer.get("question_id"))) {
+                        throughput.skipped();
+                    } else {
+                        answers.add(answer);
+                    }
+                }
+                List<Integer> ids = Sequences.next(connection, "answer", answers.size());
+                List<Object[]> rows = new ArrayList<>(answers.size());
+                Map<Integer, Integer> answerCounts = new HashMap<>();
+                for (int i = 0; i < answers.size(); i++) {
+                    Map<String, String> answer = answers.get(i);
+                    Integer questionId = questionIds.get(answer.get("question_id"));
+                    answerCounts.merge(questionId, 1, Integer::sum);
+                    rows.add(new Object[]{ids.get(i), uuidOf(answer), answer.get("content"),
+                            timestampOf(answer.get("date")), userIds.get(answer.get("user_id")), questionId});
+                }
+                copyBatch("answer", ANSWER_COLUMNS, rows, answerCounts, throughput);
+            }
+        }
+        throughput.finished();
+        return throughput.getRows();
+    }
+
+    private List<Map<String, String>> readBatch(final RecordReader reader) throws IOException {
+        List<Map<String, String>> batch = new ArrayList<>(batchSize);
+        Map<String, String> record;
+        while (batch.size() < batchSize && (record = reader.next()) != null) {
+            // Generated once so that the record keeps it from the filter to the row
+            record.putIfAbsent("uuid", UUID.randomUUID().toString());
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    /**
+     * Copies the rows in one transaction, along with the answer counts of their questions for a batch of answers.
+     */
+    private void copyBatch(final String table, final String[] columns, final List<Object[]> rows,
+                           final Map<Integer, Integer> answerCounts, final Throughput throughput)
+            throws IOException, SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            try (CopyWriter writer = new CopyWriter(connection, table, columns)) {
+                for (Object[] row : rows) {
+                    writer.write(row);
+                }
+            }
+            if (answerCounts != null) {
+                addToAnswerCounts(answerCounts);
+            }
+            connection.commit();
+        } catch (IOException | SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        throughput.imported(rows.size());
+    }
+
+    // Same statement as the answer count buffer, the arrays are parallel
+    private void addToAnswerCounts(final Map<Integer, Integer> answerCounts) throws SQLException {
+        Long[] ids = new Long[answerCounts.size()];
+        Integer[] deltas = new Integer[answerCounts.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> count : answerCounts.entrySet()) {
+            ids[i] = count.getKey().longValue();
+            deltas[i++] = count.getValue();
+        }
+        try (PreparedStatement statement = connection.prepareStatement("update question q set answer_count = q.answer_count + d.delta "
+                + "from (select unnest(cast(? as bigint[])) as id, unnest(cast(? as int[])) as delta) d where q.id = d.id")) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids));
+            statement.setArray(2, connection.createArrayOf("integer", deltas));
+            statement.executeUpdate();
+        }
+    }
+
+    private void loadUserIds() throws SQLException {
+        if (userIds.isEmpty()) {
+            loadIds("select uuid, id, username, email from users", row -> {
+                userIds.put(row.getString(1), row.getInt(2));
+                userNames.add(row.getString(3));
+                emails.add(row.getString(4));
+            });
+        }
+    }
+
+    private void loadQuestionIds() throws SQLException {
+        if (questionIds.isEmpty()) {
+            loadIds("select uuid, id from question", row -> questionIds.put(row.getString(1), row.getInt(2)));
+        }
+    }
+
+    private void loadAnswerUuids() throws SQLException {
+        if (answerUuids.isEmpty()) {
+            loadIds("select uuid from answer", row -> answerUuids.add(row.getString(1)));
+        }
+    }
+
+    private void loadIds(final String query, final RowHandler rows) throws SQLException {
+        // Read through a cursor rather than all at once, within the transaction
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(batchSize);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    rows.accept(resultSet);
+                }
+            }
+        }
+        connection.commit();
+    }
+
+    private Object[] toUserRow(final Integer id, final Map<String, String> user) {
+        String[] encryptedPassword = passwordCryptographyProvider.encrypt(user.get("password"));
+        return new Object[]{id, uuidOf(user), user.get("first_name"), user.get("last_name"), user.get("user_name"),
+                user.get("email"), encryptedPassword[1], encryptedPassword[0], user.get("country"), user.get("about_me"),
+                user.get("dob"), user.getOrDefault("role", "nonadmin"), user.get("contact_number")};
+    }
+
+    private static String uuidOf(final Map<String, String> record) {
+        return record.get("uuid");
+    }
+
+    private static boolean has(final Map<String, String> record, final String... fields) {
+        for (String field : fields) {
+            if (record.get(field) == null || record.get(field).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param date ISO date and time with or without an offset, a local time is taken in the zone of the import.
+     * @return the local date and time of the timestamp columns, which are written in the zone of the application.
+     */
+    private static LocalDateTime timestampOf(final String date) {
+        if (date == null || date.isEmpty()) {
+            return LocalDateTime.now();
+        }
+        try {
+            return OffsetDateTime.parse(date).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(date);
+        }
+    }
+
+    private static List<Object[]> get(final Future<List<Object[]>> hashed) throws InterruptedException, IOException {
+        try {
+            return hashed.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not hash the passwords", e.getCause());
+        }
+    }
+
+    private interface RowHandler {
+        void accept(ResultSet row) throws SQLException;
+    }
+}
@@ -0,0 +1,95 @@
+package com.upgrad.quora.db.bulk;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into a table with COPY FROM STDIN in the text format, the rows go to the server as they are written
+ * rather than one statement each.
+ */
+public class CopyWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final PGCopyOutputStream copy;
+
+    private final Writer writer;
+
+    private long rows;
+
+    /**
+     * @param connection connection of the transaction the rows are copied in.
+     * @param table      table copied into.
+     * @param columns    columns of the rows, the other columns take their default.
+     */
+    public CopyWriter(final Connection connection, final String table, final String... columns) throws SQLException {
+        this.copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN", BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @param values one value per column, in their order. Null values are written as NULL, the others as their
+     *               string form.
+     */
+    public void write(final Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            if (values[i] == null) {
+                writer.write("\\N");
+            } else {
+                writeEscaped(values[i].toString());
+            }
+        }
+        writer.write('\n');
+        rows++;
+    }
+
+    /**
+     * Ends the copy, the rows are in the table once the transaction commits.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * @return number of rows written so far.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.upgrad.quora.db.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a CSV file whose first row names the fields. Fields may be quoted with double quotes, a quoted field may
+ * hold commas, line breaks and doubled quotes. An empty unquoted field is read as missing.
+ */
+public class CsvRecordReader implements RecordReader {
+
+    private final BufferedReader reader;
+
+    private final List<String> header;
+
+    public CsvRecordReader(final Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        List<String> names = readRow();
+        if (names == null) {
+            throw new IOException("No header row in " + file);
+        }
+        this.header = new ArrayList<>();
+        for (String name : names) {
+            this.header.add(name == null ? "" : name.trim().toLowerCase());
+        }
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        List<String> values = readRow();
+        if (values == null) {
+            return null;
+        }
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < header.size() && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                record.put(header.get(i), values.get(i));
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> readRow() throws IOException {
+        int c = reader.read();
+        while (c == '\r' || c == '\n') {
+            c = reader.read();
+        }
+        if (c < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int following = reader.read();
+                    if (following == '"') {
+                        value.append('"');
+                    } else {
+                        inQuotes = false;
+                        reader.reset();
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"' && value.length() == 0) {
+                quoted = true;
+                inQuotes = true;
+            } else if (c == ',' || c == '\n' || c == '\r' || c < 0) {
+                values.add(quoted || value.length() > 0 ? value.toString() : null);
+                value.setLength(0);
+                quoted = false;
+                if (c != ',') {
+                    return values;
+                }
+            } else {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+}
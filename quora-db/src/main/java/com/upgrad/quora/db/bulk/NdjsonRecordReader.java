@@ -0,0 +1,54 @@
+package com.upgrad.quora.db.bulk;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a file of JSON objects, one per line. The scalar fields of an object are read as text, null and nested
+ * values are left out.
+ */
+public class NdjsonRecordReader implements RecordReader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+
+    public NdjsonRecordReader(final Path file) throws IOException {
+        this.parser = JSON_FACTORY.createParser(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object at line " + parser.getCurrentLocation().getLineNr());
+        }
+        Map<String, String> record = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName().toLowerCase();
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if (value != JsonToken.VALUE_NULL) {
+                record.put(name, parser.getText());
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,29 @@
+package com.upgrad.quora.db.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Reads the records of an import file one at a time, each as its fields by name.
+ */
+public interface RecordReader extends Closeable {
+
+    /**
+     * @return the next record, null at the end of the file.
+     */
+    Map<String, String> next() throws IOException;
+
+    /**
+     * Opens a file of newline delimited JSON objects if its name ends with .ndjson or .jsonl, a CSV file with a
+     * header row otherwise.
+     */
+    static RecordReader open(final Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return new NdjsonRecordReader(file);
+        }
+        return new CsvRecordReader(file);
+    }
+}
@@ -0,0 +1,52 @@
+package com.upgrad.quora.db.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ids taken from the sequences of the tables up front, the rows are copied with their ids so that they can be
+ * referred to before they are written.
+ */
+public final class Sequences {
+
+    private Sequences() {
+    }
+
+    /**
+     * Moves the sequence of the table past the ids in use, in a transaction of its own. Rows inserted with explicit
+     * ids such as the fixtures would otherwise collide with the ids taken from it.
+     */
+    public static void advance(final Connection connection, final String table) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("select setval(pg_get_serial_sequence('" + table + "', 'id'), greatest(nextval(pg_get_serial_sequence('"
+                    + table + "', 'id')), (select coalesce(max(id), 0) + 1 from " + table + ")))");
+        }
+        connection.commit();
+    }
+
+    /**
+     * @return the next {@code count} ids of the sequence of the table.
+     */
+    public static List<Integer> next(final Connection connection, final String table, final int count) throws SQLException {
+        List<Integer> ids = new ArrayList<>(count);
+        if (count == 0) {
+            return ids;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select nextval(pg_get_serial_sequence(?, 'id')) from generate_series(1, ?)")) {
+            statement.setString(1, table);
+            statement.setInt(2, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,60 @@
+package com.upgrad.quora.db.bulk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the rows imported into a table and reports the rate, every few seconds while importing and once at the end.
+ */
+public class Throughput {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Throughput.class);
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final String table;
+
+    private final long startedAt = System.nanoTime();
+
+    private long lastReportAt = startedAt;
+
+    private long rows;
+
+    private long skipped;
+
+    public Throughput(final String table) {
+        this.table = table;
+    }
+
+    public void imported(final long count) {
+        rows += count;
+        long now = System.nanoTime();
+        if (now - lastReportAt >= REPORT_INTERVAL_NANOS) {
+            lastReportAt = now;
+            LOG.info("{}: {} rows imported, {} rows/s", table, rows, rate(now));
+        }
+    }
+
+    /**
+     * Counts a record left out, already imported or referring to a missing row.
+     */
+    public void skipped() {
+        skipped++;
+    }
+
+    public void finished() {
+        long now = System.nanoTime();
+        LOG.info("{}: {} rows imported in {} s, {} rows/s, {} records skipped", table, rows,
+                String.format("%.1f", (now - startedAt) / 1e9), rate(now), skipped);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    private long rate(final long now) {
+        return now == startedAt ? 0 : rows * TimeUnit.SECONDS.toNanos(1) / (now - startedAt);
+    }
+}
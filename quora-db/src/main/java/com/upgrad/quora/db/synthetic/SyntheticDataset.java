@@ -0,0 +1,415 @@
+package com.upgrad.quora.db.synthetic;
+
+import com.upgrad.quora.db.bulk.CopyWriter;
+import com.upgrad.quora.db.bulk.Sequences;
+import com.upgrad.quora.db.bulk.Throughput;
+import com.upgrad.quora.service.business.PasswordCryptographyProvider;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates users, questions, answers and signed in sessions at scale, written straight into the schema with COPY,
+ * for the benchmarks and the load tests to run against a database the size and shape of production.
+ * <p>
+ * The rows are skewed the way a forum is. The number of answers per question follows a Zipf distribution, a few
+ * questions draw most of the answers and most have a handful or none. The questions and answers are written by the
+ * users following another Zipf distribution, a few power users write most of the content. The sessions are
+ * signed in and unexpired, of the same users as the content, at most 10 to a user like the session cap. The most
+ * popular questions and the power users are spread over the ids rather than being the first rows.
+ * <p>
+ * The dataset is deterministic: the same seed and sizes give the same rows, only the ids taken from the sequences
+ * and the dates, which are relative to the time of generation, differ between runs. The rows are named after the
+ * prefix so that the harnesses can refer to them and the dataset can be removed:
+ * <ul>
+ * <li>users: uuid {@code <prefix>-user-<n>}, user name {@code <prefix>-<n>}, all with the same password</li>
+ * <li>questions: uuid {@code <prefix>-question-<n>}</li>
+ * <li>answers: uuid {@code <prefix>-answer-<n>}</li>
+ * <li>sessions: access token {@code <prefix>-token-<n>}</li>
+ * </ul>
+ * Run from quora-db with the connection of config/localhost.properties, a dataset with the same prefix is replaced:
+ * {@code mvn -Psynthetic -Dsynthetic.args="--seed 42 --users 100000 --questions 1000000 --answers 10000000" process-classes}
+ */
+public class SyntheticDataset {
+
+    private static final String[] USER_COLUMNS = {"id", "uuid", "firstname", "lastname", "username", "email",
+            "password", "salt", "country", "aboutme", "dob", "role", "contactnumber"};
+
+    private static final String[] QUESTION_COLUMNS = {"id", "uuid", "content", "date", "user_id", "updated_at", "answer_count"};
+
+    private static final String[] ANSWER_COLUMNS = {"uuid", "ans", "date", "user_id", "question_id", "updated_at"};
+
+    private static final String[] SESSION_COLUMNS = {"uuid", "user_id", "access_token", "expires_at", "login_at"};
+
+    // At most 9 letters, so that the longest answer fits its 255 characters
+    private static final String[] WORDS = {"how", "does", "the", "quora", "answer", "question", "spring", "java",
+            "work", "why", "is", "my", "database", "slow", "when", "using", "hibernate", "with", "postgres", "and",
+            "what", "should", "i", "do", "best", "way", "to", "learn", "cook", "travel", "money", "invest", "city",
+            "live", "in", "job", "career", "book", "read", "film", "music", "play", "game", "health", "sleep", "run",
+            "food", "history", "science", "space", "planet", "code", "team", "startup", "market", "school", "exam",
+            "language", "family", "friend", "advice", "better", "first", "year", "life"};
+
+    private static final String[] FIRST_NAMES = {"Abhi", "Anita", "Carlos", "Chen", "Fatima", "Ivan", "Kofi", "Lena",
+            "Maria", "Mohan", "Noor", "Olga", "Priya", "Sam", "Yuki", "Zara"};
+
+    private static final String[] LAST_NAMES = {"Mahajan", "Garcia", "Wang", "Khan", "Petrov", "Mensah", "Fischer",
+            "Silva", "Rao", "Haddad", "Ivanova", "Sharma", "Lee", "Tanaka", "Okafor", "Smith"};
+
+    private static final String[] COUNTRIES = {"India", "United States", "Brazil", "Germany", "Nigeria", "Japan",
+            "United Kingdom", "Indonesia"};
+
+    private static final int MAX_ACTIVE_SESSIONS_PER_USER = 10;
+
+    private static final int SESSION_HOURS = 8;
+
+    private final long seed;
+
+    private String prefix = "synthetic";
+
+    private int users = 10_000;
+
+    private int questions = 100_000;
+
+    private int answers = 1_000_000;
+
+    private int sessions = 1_000;
+
+    private double answerSkew = 1.0;
+
+    private double authorSkew = 1.1;
+
+    private int days = 365;
+
+    private int batchSize = 50_000;
+
+    private String password = "synthetic";
+
+    public SyntheticDataset(final long seed) {
+        this.seed = seed;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                break;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (args.length % 2 != 0 || !options.containsKey("url")) {
+            System.err.println("Usage: SyntheticDataset --url <jdbc url> [--user <user>] [--password <password>] [--seed <seed>]"
+                    + " [--prefix <prefix>] [--users <rows>] [--questions <rows>] [--answers <rows>] [--sessions <rows>]"
+                    + " [--answer-skew <exponent>] [--author-skew <exponent>] [--days <days>] [--batch-size <rows>]");
+            System.exit(2);
+        }
+        SyntheticDataset dataset = new SyntheticDataset(Long.parseLong(options.getOrDefault("seed", "1")));
+        dataset.prefix(options.getOrDefault("prefix", dataset.prefix))
+                .users(Integer.parseInt(options.getOrDefault("users", String.valueOf(dataset.users))))
+                .questions(Integer.parseInt(options.getOrDefault("questions", String.valueOf(dataset.questions))))
+                .answers(Integer.parseInt(options.getOrDefault("answers", String.valueOf(dataset.answers))))
+                .sessions(Integer.parseInt(options.getOrDefault("sessions", String.valueOf(dataset.sessions))))
+                .answerSkew(Double.parseDouble(options.getOrDefault("answer-skew", String.valueOf(dataset.answerSkew))))
+                .authorSkew(Double.parseDouble(options.getOrDefault("author-skew", String.valueOf(dataset.authorSkew))))
+                .days(Integer.parseInt(options.getOrDefault("days", String.valueOf(dataset.days))))
+                .batchSize(Integer.parseInt(options.getOrDefault("batch-size", String.valueOf(dataset.batchSize))));
+        try (Connection connection = DriverManager.getConnection(options.get("url"), options.get("user"), options.get("password"))) {
+            dataset.remove(connection);
+            dataset.generate(connection);
+        }
+    }
+
+    /**
+     * @param prefix names the rows of the dataset, up to 16 lower case letters, digits and dashes.
+     */
+    public SyntheticDataset prefix(final String prefix) {
+        if (!prefix.matches("[a-z0-9-]{1,16}")) {
+            throw new IllegalArgumentException("Prefix of up to 16 lower case letters, digits and dashes: " + prefix);
+        }
+        this.prefix = prefix;
+        return this;
+    }
+
+    public SyntheticDataset users(final int users) {
+        this.users = users;
+        return this;
+    }
+
+    public SyntheticDataset questions(final int questions) {
+        this.questions = questions;
+        return this;
+    }
+
+    public SyntheticDataset answers(final int answers) {
+        this.answers = answers;
+        return this;
+    }
+
+    /**
+     * @param sessions signed in sessions, at most 10 per user.
+     */
+    public SyntheticDataset sessions(final int sessions) {
+        this.sessions = sessions;
+        return this;
+    }
+
+    /**
+     * @param answerSkew exponent of the Zipf distribution of the answers over the questions, above 0.
+     */
+    public SyntheticDataset answerSkew(final double answerSkew) {
+        this.answerSkew = answerSkew;
+        return this;
+    }
+
+    /**
+     * @param authorSkew exponent of the Zipf distribution of the content and sessions over the users, above 0.
+     */
+    public SyntheticDataset authorSkew(final double authorSkew) {
+        this.authorSkew = authorSkew;
+        return this;
+    }
+
+    /**
+     * @param days the questions are dated evenly over this many days up to the time of generation.
+     */
+    public SyntheticDataset days(final int days) {
+        this.days = days;
+        return this;
+    }
+
+    /**
+     * @param batchSize rows copied per transaction.
+     */
+    public SyntheticDataset batchSize(final int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Writes the dataset, each batch of rows in a transaction of its own.
+     *
+     * @param connection connection to the database, left out of auto-commit.
+     */
+    public void generate(final Connection connection) throws IOException, SQLException {
+        if (users < 1 || questions < 1 || answers < 0 || sessions < 0 || days < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Dataset of " + users + " users, " + questions + " questions, " + answers
+                    + " answers and " + sessions + " sessions over " + days + " days in batches of " + batchSize);
+        }
+        if (sessions > (long) users * MAX_ACTIVE_SESSIONS_PER_USER) {
+            throw new IllegalArgumentException(sessions + " sessions for " + users + " users, at most "
+                    + MAX_ACTIVE_SESSIONS_PER_USER + " to a user");
+        }
+        connection.setAutoCommit(false);
+        if (exists(connection)) {
+            throw new IllegalStateException("A dataset named " + prefix + " is already in the database, remove it first");
+        }
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        ZipfSampler authors = new ZipfSampler(users, authorSkew);
+
+        // One stream of random numbers per table, taken in this order whatever the sizes
+        SplittableRandom random = new SplittableRandom(seed);
+        long placementSeed = random.nextLong();
+        SplittableRandom userRandom = random.split();
+        SplittableRandom questionRandom = random.split();
+        SplittableRandom answerRandom = random.split();
+        SplittableRandom sessionRandom = random.split();
+
+        int[] userIds = new int[users];
+        String[] encryptedPassword = new PasswordCryptographyProvider().encrypt(password);
+        Sequences.advance(connection, "users");
+        copyInBatches(connection, "users", USER_COLUMNS, users, userIds, (writer, i) -> {
+            String userName = userName(i);
+            writer.write(userIds[i], userUuid(i), pick(userRandom, FIRST_NAMES), pick(userRandom, LAST_NAMES), userName,
+                    userName + "@example.com", encryptedPassword[1], encryptedPassword[0], pick(userRandom, COUNTRIES),
+                    "Synthetic user", String.format("%02d-%02d-%d", 1 + userRandom.nextInt(28), 1 + userRandom.nextInt(12),
+                            1950 + userRandom.nextInt(55)), "nonadmin", String.valueOf(6_000_000_000L + userRandom.nextInt(1_000_000_000)));
+        });
+
+        // The answers are placed on their questions up front for the answer counts, and again as they are written
+        int[] answerCounts = new int[questions];
+        SplittableRandom placement = new SplittableRandom(placementSeed);
+        ZipfSampler popularity = new ZipfSampler(questions, answerSkew);
+        for (int i = 0; i < answers; i++) {
+            answerCounts[questionIndex(popularity.sample(placement))]++;
+        }
+        int[] questionIds = new int[questions];
+        Sequences.advance(connection, "question");
+        copyInBatches(connection, "question", QUESTION_COLUMNS, questions, questionIds, (writer, i) -> {
+            LocalDateTime date = questionDate(now, i);
+            writer.write(questionIds[i], questionUuid(i), text(questionRandom, 5, 30, '?'),
+                    date, userIds[userIndex(authors.sample(questionRandom))], date, answerCounts[i]);
+        });
+
+        SplittableRandom replay = new SplittableRandom(placementSeed);
+        Sequences.advance(connection, "answer");
+        copyInBatches(connection, "answer", ANSWER_COLUMNS, answers, null, (writer, i) -> {
+            int question = questionIndex(popularity.sample(replay));
+            LocalDateTime questionDate = questionDate(now, question);
+            LocalDateTime date = questionDate.plusSeconds(answerRandom.nextLong(1 + ChronoUnit.SECONDS.between(questionDate, now)));
+            writer.write(answerUuid(i), text(answerRandom, 5, 25, '.'), date,
+                    userIds[userIndex(authors.sample(answerRandom))], questionIds[question], date);
+        });
+
+        // A user at the cap passes the session on to the next user with room for it
+        int[] activeSessions = new int[users];
+        Sequences.advance(connection, "user_auth");
+        copyInBatches(connection, "user_auth", SESSION_COLUMNS, sessions, null, (writer, i) -> {
+            int user = userIndex(authors.sample(sessionRandom));
+            while (activeSessions[user] == MAX_ACTIVE_SESSIONS_PER_USER) {
+                user = (user + 1) % users;
+            }
+            activeSessions[user]++;
+            LocalDateTime expiresAt = now.plusSeconds(60 + sessionRandom.nextInt(SESSION_HOURS * 3600 - 60));
+            writer.write(prefix + "-session-" + i, userIds[user], accessToken(i), expiresAt, expiresAt.minusHours(SESSION_HOURS));
+        });
+    }
+
+    /**
+     * Removes the dataset, the content and sessions of its users go with them through the cascade.
+     *
+     * @return number of users removed.
+     */
+    public int remove(final Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("delete from users where uuid like ?")) {
+            statement.setString(1, prefix + "-user-%");
+            int removed = statement.executeUpdate();
+            connection.commit();
+            return removed;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    public String userUuid(final int index) {
+        return prefix + "-user-" + index;
+    }
+
+    public String userName(final int index) {
+        return prefix + "-" + index;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String questionUuid(final int index) {
+        return prefix + "-question-" + index;
+    }
+
+    public String answerUuid(final int index) {
+        return prefix + "-answer-" + index;
+    }
+
+    public String accessToken(final int session) {
+        return prefix + "-token-" + session;
+    }
+
+    /**
+     * @param rank 1 for the user who writes the most.
+     * @return index of the user.
+     */
+    public int userIndex(final int rank) {
+        return permute(rank, users, 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * @param rank 1 for the question with the most answers.
+     * @return index of the question.
+     */
+    public int questionIndex(final int rank) {
+        return permute(rank, questions, 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private boolean exists(final Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("select 1 from users where uuid = ?")) {
+            statement.setString(1, userUuid(0));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Copies the rows in batches, one transaction each.
+     *
+     * @param ids filled with the ids of the rows ahead of each batch when given, the rows are written with them.
+     */
+    private void copyInBatches(final Connection connection, final String table, final String[] columns, final int count,
+                               final int[] ids, final RowWriter rows) throws IOException, SQLException {
+        Throughput throughput = new Throughput(table);
+        for (int from = 0; from < count; from += batchSize) {
+            int to = (int) Math.min(count, (long) from + batchSize);
+            try {
+                if (ids != null) {
+                    List<Integer> batchIds = Sequences.next(connection, table, to - from);
+                    for (int i = from; i < to; i++) {
+                        ids[i] = batchIds.get(i - from);
+                    }
+                }
+                try (CopyWriter writer = new CopyWriter(connection, table, columns)) {
+                    for (int i = from; i < to; i++) {
+                        rows.write(writer, i);
+                    }
+                }
+                connection.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            throughput.imported(to - from);
+        }
+        throughput.finished();
+    }
+
+    private LocalDateTime questionDate(final LocalDateTime now, final int index) {
+        long span = ChronoUnit.SECONDS.between(now.minusDays(days), now);
+        return now.minusSeconds(span - (long) ((index + 0.5) * span / questions));
+    }
+
+    /**
+     * Maps the ranks 1 to n onto the indexes 0 to n - 1 from an offset with a stride coprime to n, which visits
+     * every index once and scatters the first ranks over the table.
+     */
+    private int permute(final int rank, final int n, final long salt) {
+        long hash = (seed + 1) * salt;
+        long stride = 1 + Math.floorMod(hash, (long) n);
+        while (gcd(stride, n) != 1) {
+            stride++;
+        }
+        return (int) (((rank - 1) * stride + Math.floorMod(Long.rotateLeft(hash, 32), (long) n)) % n);
+    }
+
+    private static long gcd(final long a, final long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static String pick(final SplittableRandom random, final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String text(final SplittableRandom random, final int minWords, final int maxWords, final char end) {
+        StringBuilder text = new StringBuilder();
+        for (int i = minWords + random.nextInt(maxWords - minWords + 1); i > 0; i--) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(i > 1 ? ' ' : end);
+        }
+        text.setCharAt(0, Character.toUpperCase(text.charAt(0)));
+        return text.toString();
+    }
+
+    private interface RowWriter {
+        void write(CopyWriter writer, int index) throws IOException;
+    }
+}
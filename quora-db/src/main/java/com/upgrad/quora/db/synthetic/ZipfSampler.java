@@ -0,0 +1,88 @@
+package com.upgrad.quora.db.synthetic;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks 1 to n with a probability proportional to 1 / rank^exponent, by the rejection-inversion method of
+ * Hörmann and Derflinger. It takes constant memory and time whatever the number of ranks, unlike a table of the
+ * cumulative probabilities.
+ */
+final class ZipfSampler {
+
+    private final int numberOfElements;
+
+    private final double exponent;
+
+    private final double hIntegralX1;
+
+    private final double hIntegralNumberOfElements;
+
+    private final double s;
+
+    /**
+     * @param numberOfElements number of ranks, at least 1.
+     * @param exponent         skew of the distribution, above 0. The larger it is, the more the first ranks are drawn.
+     */
+    ZipfSampler(final int numberOfElements, final double exponent) {
+        if (numberOfElements < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("Zipf distribution of " + numberOfElements + " elements with exponent " + exponent);
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * @return a rank from 1 to the number of elements.
+     */
+    int sample(final SplittableRandom random) {
+        while (true) {
+            double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double hIntegral(final double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double h(final double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(final double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            t = -1;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, continued to 1 at 0
+    private static double helper1(final double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - x * 0.25));
+    }
+
+    // (exp(x) - 1) / x, continued to 1 at 0
+    private static double helper2(final double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + x * 0.25));
+    }
+}
@@ -1,30 +1,100 @@
 
 --USERS table is created to store the details of all the users
 DROP TABLE IF EXISTS USERS CASCADE;
-CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), deleted_at TIMESTAMP NULL, PRIMARY KEY (id));
 INSERT INTO users(
 	id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
 	VALUES (1024,'rdtrdtdyt','Abhi','Mahajan','abhi','a@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
+--Users looked up by uuid, for the profiles and the authorization of their content
+CREATE INDEX IF NOT EXISTS USERS_UUID_IDX ON USERS(uuid);
 
 --USER_AUTH table is created to store the login information of all the users
+--It is partitioned by month of EXPIRES_AT, the partitions are created ahead and dropped once expired by the session partition maintenance
 DROP TABLE IF EXISTS USER_AUTH CASCADE;
 CREATE TABLE IF NOT EXISTS USER_AUTH(
-	ID BIGSERIAL PRIMARY KEY,
+	ID BIGSERIAL,
 	uuid VARCHAR(200) NOT NULL,
 	USER_ID INTEGER NOT NULL,
 	ACCESS_TOKEN VARCHAR(500) NOT NULL,
 	EXPIRES_AT TIMESTAMP NOT NULL,
 	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-	LOGOUT_AT TIMESTAMP NULL
-);
+	LOGOUT_AT TIMESTAMP NULL,
+	PRIMARY KEY (ID, EXPIRES_AT)
+) PARTITION BY RANGE (EXPIRES_AT);
+--Sessions expiring outside of the monthly partitions, the expired ones are purged in batches
+CREATE TABLE IF NOT EXISTS USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
 
 ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
+CREATE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_IDX ON USER_AUTH(ACCESS_TOKEN);
+--Active sessions of a user for the session cap, and the sessions removed with a deleted user
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(USER_ID, LOGIN_AT);
+--Sessions which expired without signing out, marked signed out at their expiry in batches
+CREATE INDEX IF NOT EXISTS USER_AUTH_ACTIVE_EXPIRES_AT_IDX ON USER_AUTH(EXPIRES_AT) WHERE LOGOUT_AT IS NULL;
+
+--The change feed and the outbox are read in the order of the transaction ids stamped on their rows, up to the oldest transaction still running
+--Rows written through an update of updated_at are stamped again, the body is quoted without $$ for the statement splitter
+CREATE OR REPLACE FUNCTION SET_CHANGE_XID() RETURNS TRIGGER AS 'BEGIN NEW.change_xid := pg_current_xact_id()::text::bigint; RETURN NEW; END' LANGUAGE plpgsql;
 
 --QUESTION table is created to store the questions related information posted by any user in the Application
 DROP TABLE IF EXISTS QUESTION CASCADE;
-CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, answer_count INTEGER NOT NULL DEFAULT 0, deleted_at TIMESTAMP NULL, change_xid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+--Deleted questions are only marked deleted and left out by every query, the indexes of the lookups cover the live questions only
+CREATE INDEX IF NOT EXISTS QUESTION_UUID_IDX ON QUESTION(uuid) WHERE deleted_at IS NULL;
+CREATE INDEX IF NOT EXISTS QUESTION_CHANGE_XID_IDX ON QUESTION(change_xid, id) WHERE deleted_at IS NULL;
+CREATE TRIGGER QUESTION_CHANGE_XID BEFORE UPDATE OF updated_at ON QUESTION FOR EACH ROW EXECUTE FUNCTION SET_CHANGE_XID();
+--Questions of a user, for the user's question list and the removal of a deleted user's content
+CREATE INDEX IF NOT EXISTS QUESTION_USER_ID_IDX ON QUESTION(user_id);
+--Deleted questions waiting for the purge
+CREATE INDEX IF NOT EXISTS QUESTION_DELETED_AT_IDX ON QUESTION(deleted_at) WHERE deleted_at IS NOT NULL;
 
 
 --ANSWER table is created to store the answers related information in reply to any question posted in the Application
 DROP TABLE IF EXISTS ANSWER CASCADE;
-CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, score INTEGER NOT NULL DEFAULT 0, deleted_at TIMESTAMP NULL, change_xid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+--Deleted answers are only marked deleted like the questions
+CREATE INDEX IF NOT EXISTS ANSWER_UUID_IDX ON ANSWER(uuid) WHERE deleted_at IS NULL;
+CREATE INDEX IF NOT EXISTS ANSWER_CHANGE_XID_IDX ON ANSWER(change_xid, id) WHERE deleted_at IS NULL;
+CREATE TRIGGER ANSWER_CHANGE_XID BEFORE UPDATE OF updated_at ON ANSWER FOR EACH ROW EXECUTE FUNCTION SET_CHANGE_XID();
+CREATE INDEX IF NOT EXISTS ANSWER_DATE_IDX ON ANSWER(date) WHERE deleted_at IS NULL;
+--All the answers of a question, live or not, for the cascade of the purged questions
+CREATE INDEX IF NOT EXISTS ANSWER_QUESTION_ID_IDX ON ANSWER(question_id);
+--Live answers of a question by score
+CREATE INDEX IF NOT EXISTS ANSWER_QUESTION_ID_SCORE_IDX ON ANSWER(question_id, score DESC, id) WHERE deleted_at IS NULL;
+--Live answers of a question by posting time with their uuid, loaded by the question rankings without visiting the table
+CREATE INDEX IF NOT EXISTS ANSWER_QUESTION_ID_DATE_IDX ON ANSWER(question_id, date) INCLUDE (uuid) WHERE deleted_at IS NULL;
+CREATE INDEX IF NOT EXISTS ANSWER_USER_ID_IDX ON ANSWER(user_id);
+CREATE INDEX IF NOT EXISTS ANSWER_DELETED_AT_IDX ON ANSWER(deleted_at) WHERE deleted_at IS NOT NULL;
+
+
+--ANSWER_VOTE table stores the vote of each user on an answer, a user has at most one vote per answer
+DROP TABLE IF EXISTS ANSWER_VOTE CASCADE;
+CREATE TABLE IF NOT EXISTS ANSWER_VOTE(id BIGSERIAL, answer_id INTEGER NOT NULL, user_id INTEGER NOT NULL, vote SMALLINT NOT NULL CHECK (vote IN (-1, 1)), voted_at TIMESTAMP NOT NULL, PRIMARY KEY(id), UNIQUE(answer_id, user_id), FOREIGN KEY (answer_id) REFERENCES ANSWER(id) ON DELETE CASCADE, FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+CREATE INDEX IF NOT EXISTS ANSWER_VOTE_USER_ID_IDX ON ANSWER_VOTE(user_id);
+
+
+--OUTBOX table stores the domain events raised by content changes in the same transaction, read by every node from its own position and kept for the retention period
+DROP TABLE IF EXISTS OUTBOX CASCADE;
+CREATE TABLE IF NOT EXISTS OUTBOX(id BIGSERIAL, event_type VARCHAR(50) NOT NULL, aggregate_id VARCHAR(200) NOT NULL, parent_id VARCHAR(200), payload TEXT, created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, change_xid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint, PRIMARY KEY(id));
+CREATE INDEX IF NOT EXISTS OUTBOX_CHANGE_XID_IDX ON OUTBOX(change_xid, id);
+CREATE INDEX IF NOT EXISTS OUTBOX_CREATED_AT_IDX ON OUTBOX(created_at);
+
+
+--TOMBSTONE table records the deleted questions and answers for the clients which sync incrementally
+DROP TABLE IF EXISTS TOMBSTONE CASCADE;
+CREATE TABLE IF NOT EXISTS TOMBSTONE(id BIGSERIAL, entity_type VARCHAR(30) NOT NULL, uuid VARCHAR(200) NOT NULL, question_uuid VARCHAR(200) NOT NULL, deleted_at TIMESTAMP NOT NULL, change_xid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint, PRIMARY KEY(id));
+CREATE INDEX IF NOT EXISTS TOMBSTONE_CHANGE_XID_IDX ON TOMBSTONE(change_xid, id);
+--Tombstones older than the retention period, purged
+CREATE INDEX IF NOT EXISTS TOMBSTONE_DELETED_AT_IDX ON TOMBSTONE(deleted_at);
+
+--JOB table stores the background jobs, claimed by the nodes with FOR UPDATE SKIP LOCKED and run under a lease renewed while running
+DROP TABLE IF EXISTS JOB CASCADE;
+CREATE TABLE IF NOT EXISTS JOB(id BIGSERIAL, job_type VARCHAR(50) NOT NULL, payload TEXT, status VARCHAR(20) NOT NULL, attempts INTEGER NOT NULL DEFAULT 0, max_attempts INTEGER NOT NULL, run_at TIMESTAMP NOT NULL, locked_by VARCHAR(100), locked_until TIMESTAMP, last_error VARCHAR(1000), unique_key VARCHAR(100), created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, finished_at TIMESTAMP, PRIMARY KEY(id));
+CREATE INDEX IF NOT EXISTS JOB_DUE_IDX ON JOB(job_type, run_at, id) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS JOB_LEASE_IDX ON JOB(locked_until) WHERE status = 'RUNNING';
+CREATE INDEX IF NOT EXISTS JOB_FINISHED_AT_IDX ON JOB(finished_at) WHERE finished_at IS NOT NULL;
+--At most one job of a key is pending or running, the periodic jobs scheduled by every node run once at a time
+CREATE UNIQUE INDEX IF NOT EXISTS JOB_UNIQUE_KEY_IDX ON JOB(unique_key) WHERE status IN ('PENDING', 'RUNNING');
+
+--USER_DELETION table tracks the removal of the content of deleted users, done in chunks by a background job after the user is marked deleted
+DROP TABLE IF EXISTS USER_DELETION CASCADE;
+CREATE TABLE IF NOT EXISTS USER_DELETION(id BIGSERIAL, user_id INTEGER NOT NULL, user_uuid VARCHAR(200) NOT NULL, requested_at TIMESTAMP NOT NULL, sessions_deleted INTEGER NOT NULL DEFAULT 0, votes_deleted INTEGER NOT NULL DEFAULT 0, answers_deleted INTEGER NOT NULL DEFAULT 0, questions_deleted INTEGER NOT NULL DEFAULT 0, completed_at TIMESTAMP NULL, PRIMARY KEY(id), UNIQUE(user_uuid));
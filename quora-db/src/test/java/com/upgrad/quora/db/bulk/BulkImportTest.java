@@ -0,0 +1,86 @@
+package com.upgrad.quora.db.bulk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkImportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:postgresql://localhost:5432/quora", "postgres", "divyankadmin");
+        deleteImportedUsers();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        deleteImportedUsers();
+        connection.close();
+    }
+
+    //This test case passes when the users whose uuid, user name or email is taken, in the database or by an earlier
+    //record of another batch, are skipped and the others are imported.
+    @Test
+    public void usersTakenAreSkipped() throws Exception {
+        Path file = folder.newFile("users.csv").toPath();
+        Files.write(file, Arrays.asList(
+                "uuid,first_name,last_name,user_name,email,password",
+                "bulk-import-test-1,Jane,Doe,bulk_jane,jane@bulk.test,secret",
+                "bulk-import-test-2,Taken,Name,database_username,taken@bulk.test,secret",
+                "bulk-import-test-3,Taken,Email,bulk_taken,database_email,secret",
+                "bulk-import-test-4,Same,Name,bulk_jane,other@bulk.test,secret",
+                "bulk-import-test-5,Same,Email,bulk_other,jane@bulk.test,secret",
+                "bulk-import-test-6,Missing,Password,bulk_nopassword,nopassword@bulk.test,",
+                "bulk-import-test-1,Same,Uuid,bulk_uuid,uuid@bulk.test,secret",
+                "bulk-import-test-7,Joe,Doe,bulk_joe,joe@bulk.test,secret"), StandardCharsets.UTF_8);
+
+        assertEquals(2, new BulkImport(connection, 2, 1).importUsers(file));
+        assertEquals(Arrays.asList("bulk-import-test-1:bulk_jane", "bulk-import-test-7:bulk_joe"), importedUsers());
+
+        // An import run again skips every user
+        assertEquals(0, new BulkImport(connection, 2, 1).importUsers(file));
+    }
+
+    private List<String> importedUsers() throws SQLException {
+        List<String> users = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "select uuid, username from users where uuid like 'bulk-import-test-%' order by uuid")) {
+            while (resultSet.next()) {
+                users.add(resultSet.getString(1) + ":" + resultSet.getString(2));
+            }
+        }
+        connection.commit();
+        return users;
+    }
+
+    private void deleteImportedUsers() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("delete from users where uuid like 'bulk-import-test-%'");
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+}
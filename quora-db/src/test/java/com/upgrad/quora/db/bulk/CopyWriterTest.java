@@ -0,0 +1,61 @@
+package com.upgrad.quora.db.bulk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CopyWriterTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:postgresql://localhost:5432/quora", "postgres", "divyankadmin");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create temporary table copied(id integer, text varchar(200)) on commit drop");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    //This test case passes when the values holding the separators and escapes of the text format are copied as they are.
+    @Test
+    public void specialCharactersAreCopiedAsTheyAre() throws IOException, SQLException {
+        String[] texts = {"tab\there", "line\nbreak", "carriage\rreturn", "back\\slash", "\\N", "", "naïve ✓"};
+        try (CopyWriter writer = new CopyWriter(connection, "copied", "id", "text")) {
+            for (int i = 0; i < texts.length; i++) {
+                writer.write(i, texts[i]);
+            }
+            writer.write(texts.length, null);
+            assertEquals(texts.length + 1, writer.getRows());
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select id, text from copied order by id")) {
+            for (String text : texts) {
+                assertTrue(resultSet.next());
+                assertEquals(text, resultSet.getString(2));
+            }
+            assertTrue(resultSet.next());
+            assertNull(resultSet.getString(2));
+            assertFalse(resultSet.next());
+        }
+    }
+}
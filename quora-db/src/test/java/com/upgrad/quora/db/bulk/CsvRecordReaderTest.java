@@ -0,0 +1,68 @@
+package com.upgrad.quora.db.bulk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CsvRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //This test case passes when a quoted field keeps its commas, line breaks and doubled quotes.
+    @Test
+    public void quotedFieldKeepsSeparatorsAndQuotes() throws IOException {
+        try (RecordReader reader = open("uuid,content\r\n1,\"Commas, \"\"quotes\"\"\r\nand lines\"\r\n2,plain\n")) {
+            assertEquals("Commas, \"quotes\"\r\nand lines", reader.next().get("content"));
+            assertEquals("plain", reader.next().get("content"));
+            assertNull(reader.next());
+        }
+    }
+
+    //This test case passes when an empty unquoted field is missing and an empty quoted field is kept.
+    @Test
+    public void emptyUnquotedFieldIsMissing() throws IOException {
+        try (RecordReader reader = open("uuid,country,about_me\n1,,\"\"\n")) {
+            Map<String, String> record = reader.next();
+            assertFalse(record.containsKey("country"));
+            assertEquals("", record.get("about_me"));
+        }
+    }
+
+    //This test case passes when the header names are trimmed and lower cased, and a short row leaves the rest missing.
+    @Test
+    public void headerNamesTheFields() throws IOException {
+        try (RecordReader reader = open(" UUID ,User_Name,Email\n1,jane\n\n2,joe,joe@example.com")) {
+            Map<String, String> record = reader.next();
+            assertEquals("1", record.get("uuid"));
+            assertEquals("jane", record.get("user_name"));
+            assertFalse(record.containsKey("email"));
+            assertEquals("joe@example.com", reader.next().get("email"));
+            assertNull(reader.next());
+        }
+    }
+
+    //This test case passes when a quoted field which never ends is refused.
+    @Test(expected = IOException.class)
+    public void unterminatedQuoteIsRefused() throws IOException {
+        try (RecordReader reader = open("uuid,content\n1,\"never closed\n")) {
+            reader.next();
+        }
+    }
+
+    private RecordReader open(final String content) throws IOException {
+        Path file = folder.newFile("records.csv").toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return RecordReader.open(file);
+    }
+}
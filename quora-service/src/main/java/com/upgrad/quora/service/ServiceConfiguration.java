@@ -4,12 +4,15 @@ package com.upgrad.quora.service;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Enabling the component scan and entity scan of classes in the below mentioned "com.upgrad.quora.service" and "com.upgrad.quora.service.entity" packages respectively.
+ * Scheduling is enabled for the background relays such as the outbox dispatcher.
  */
 @Configuration
 @ComponentScan("com.upgrad.quora.service")
 @EntityScan("com.upgrad.quora.service.entity")
+@EnableScheduling
 public class ServiceConfiguration {
 }
@@ -1,36 +1,139 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.UserProfileCache;
+import com.upgrad.quora.service.cache.UserQuestionCache;
 import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.dao.UserDeletionDao;
+import com.upgrad.quora.service.deletion.UserDeletionJob;
+import com.upgrad.quora.service.export.CorpusExport;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.entity.UserDeletionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.invalidation.InvalidationPublisher;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import com.upgrad.quora.service.job.JobScheduler;
+import com.upgrad.quora.service.session.SessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
+
 @Service
 public class AdminService {
 
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserDeletionDao userDeletionDao;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private UserQuestionCache userQuestionCache;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private InvalidationPublisher invalidationPublisher;
+
     /**
-     * Deletes the user form the database.
+     * Marks the user deleted and schedules the removal of its content, the user can no longer sign in and its
+     * sessions are signed out right away. The questions, answers, votes and sessions of the user are then removed
+     * in the background, see {@link UserDeletionJob}.
      *
      * @param userId      ID of the user to be deleted.
      * @param accessToken To authenticate if the user who is tying to delete the user.
-     * @return
+     * @return the deletion, to follow its progress.
      * @throws AuthorizationFailedException ATHR-001 if the access token is invalid or ATHR-002
      *                                      already logged out or ATHR-003 user is not an admin or user with enetered uuid does not
      *                                      exist
-     * @throws UserNotFoundException        USR-001 if the user with given id is not present in the records.
+     * @throws UserNotFoundException        USR-001 if the user with given id is not present in the records, or
+     *                                      was already deleted.
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity deleteUser(final String userId, final String accessToken)
+    public UserDeletionEntity deleteUser(final String userId, final String accessToken)
             throws AuthorizationFailedException, UserNotFoundException {
-        UserAuthTokenEntity userAuthTokenEntity = this.userDao.getUserAuthToken(accessToken);
+        authorizeAdmin(accessToken);
+
+        UserEntity existingUser = this.userDao.getUserById(userId);
+
+        if (existingUser == null) {
+            throw new UserNotFoundException(
+                    "USR-001", "User with entered uuid to be deleted does not exist");
+        }
+
+        ZonedDateTime now = ZonedDateTime.now();
+        existingUser.setDeletedAt(now);
+        UserDeletionEntity deletion = new UserDeletionEntity();
+        deletion.setUserId(existingUser.getId());
+        deletion.setUserUuid(userId);
+        deletion.setRequestedAt(now);
+        userDeletionDao.createUserDeletion(deletion);
+        jobScheduler.enqueue(UserDeletionJob.JOB_TYPE, String.valueOf(deletion.getId()));
+
+        // The profile and the questions of the user are dropped now, the lookups then find the user missing
+        userProfileCache.userChanged(userId);
+        userQuestionCache.invalidate(userId);
+        sessionStore.userDeleted(existingUser.getId());
+        invalidationPublisher.publish(InvalidationType.USER, userId);
+        invalidationPublisher.publish(InvalidationType.USER_QUESTIONS, userId);
+        invalidationPublisher.publish(InvalidationType.USER_SESSIONS, String.valueOf(existingUser.getId()));
+        return deletion;
+    }
+
+    /**
+     * Gets the progress of the deletion of a user.
+     *
+     * @param userId      ID of the deleted user.
+     * @param accessToken To authenticate the admin following the deletion.
+     * @return the deletion, with the content removed so far.
+     * @throws AuthorizationFailedException ATHR-001 if the access token is invalid or ATHR-002
+     *                                      already logged out or ATHR-003 user is not an admin
+     * @throws UserNotFoundException        USR-001 if the user with given id was never deleted.
+     */
+    public UserDeletionEntity getUserDeletion(final String userId, final String accessToken)
+            throws AuthorizationFailedException, UserNotFoundException {
+        authorizeAdmin(accessToken);
+        UserDeletionEntity deletion = userDeletionDao.getUserDeletionByUserUuid(userId);
+        if (deletion == null) {
+            throw new UserNotFoundException("USR-001", "User with entered uuid has not been deleted");
+        }
+        return deletion;
+    }
+
+    /**
+     * Checks that the user may export the questions and answers, see {@link CorpusExport}.
+     *
+     * @param accessToken To authenticate the admin exporting.
+     * @param after       id of the question the export resumes after.
+     * @throws AuthorizationFailedException ATHR-001 if the access token is invalid or ATHR-002
+     *                                      already logged out or ATHR-003 user is not an admin
+     * @throws InvalidParameterException    REQ-001 if the question id to resume after is negative.
+     */
+    public void authorizeCorpusExport(final String accessToken, final long after)
+            throws AuthorizationFailedException, InvalidParameterException {
+        authorizeAdmin(accessToken);
+        if (after < 0) {
+            throw new InvalidParameterException("REQ-001", "The export can only resume after a question id of 0 or more");
+        }
+    }
+
+    private void authorizeAdmin(final String accessToken) throws AuthorizationFailedException {
+        UserAuthTokenEntity userAuthTokenEntity = this.sessionService.getUserAuthToken(accessToken);
 
         if (userAuthTokenEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
@@ -44,15 +147,5 @@ public class AdminService {
             throw new AuthorizationFailedException(
                     "ATHR-003", "Unauthorized Access, Entered user is not an admin");
         }
-
-        UserEntity existingUser = this.userDao.getUserById(userId);
-
-        if (existingUser == null) {
-            throw new UserNotFoundException(
-                    "USR-001", "User with entered uuid to be deleted does not exist");
-        }
-
-        UserEntity deletedUser = this.userDao.deleteUser(userId);
-        return deletedUser;
     }
 }
@@ -1,15 +1,22 @@
 package com.upgrad.quora.service.business;
 
 
+import com.upgrad.quora.service.counter.AnswerCountBuffer;
+import com.upgrad.quora.service.counter.AnswerScoreBuffer;
 import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.ChangeFeedDao;
 import com.upgrad.quora.service.dao.QuestionDao;
-import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.AnswerVoteEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.event.DomainEventPublisher;
+import com.upgrad.quora.service.event.DomainEventType;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.sync.ChangeKind;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -23,7 +30,7 @@ import java.util.UUID;
 public class AnswerBusinessService {
 
     @Autowired
-    private UserDao userDao;
+    private SessionService sessionService;
 
     @Autowired
     private QuestionDao questionDao;
@@ -31,6 +38,18 @@ public class AnswerBusinessService {
     @Autowired
     private AnswerDao answerDao;
 
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
+    @Autowired
+    private ChangeFeedDao changeFeedDao;
+
+    @Autowired
+    private AnswerCountBuffer answerCountBuffer;
+
+    @Autowired
+    private AnswerScoreBuffer answerScoreBuffer;
+
 
     /**
      * Method will help to post an answer to any question after user validations..
@@ -41,7 +60,7 @@ public class AnswerBusinessService {
      */
     @Transactional(propagation = Propagation.REQUIRED)
     public AnswerEntity createAnswer(final AnswerEntity answerEntity, final String questionId, final String authorization) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
 
         // Validate if the user is signed in or not
         if (userAuthEntity == null) {
@@ -64,7 +83,10 @@ public class AnswerBusinessService {
         answerEntity.setUserEntity(userAuthEntity.getUser());
         answerEntity.setQuestionEntity(questionEntity);
 
-        return answerDao.createAnswer(answerEntity);
+        AnswerEntity createdAnswer = answerDao.createAnswer(answerEntity);
+        eventPublisher.publish(DomainEventType.ANSWER_CREATED, createdAnswer.getUuid(), questionId, createdAnswer.getAnswer());
+        answerCountBuffer.answerCreated(questionEntity.getId());
+        return createdAnswer;
     }
 
     /**
@@ -83,7 +105,7 @@ public class AnswerBusinessService {
     public AnswerEntity editAnswer(
             final String authorization, final String answerId, final String newAnswer)
             throws AnswerNotFoundException, AuthorizationFailedException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
         if (userAuthEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         } else if (userAuthEntity.getLogoutAt() != null) {
@@ -100,6 +122,8 @@ public class AnswerBusinessService {
         }
         answerEntity.setAnswer(newAnswer);
         answerDao.updateAnswer(answerEntity);
+        eventPublisher.publish(DomainEventType.ANSWER_EDITED, answerEntity.getUuid(),
+                answerEntity.getQuestionEntity().getUuid(), newAnswer);
         return answerEntity;
     }
 
@@ -113,7 +137,7 @@ public class AnswerBusinessService {
 
     @Transactional(propagation = Propagation.REQUIRED)
     public void deleteAnswer(final String answerId, final String authorization) throws AuthorizationFailedException, AnswerNotFoundException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
 
         // Validate if user is signed in or not
         if (userAuthEntity == null) {
@@ -126,18 +150,117 @@ public class AnswerBusinessService {
         }
 
         // Validate if requested answer exist or not
-        if (answerDao.getAnswerById(answerId) == null) {
+        AnswerEntity answerEntity = answerDao.getAnswerById(answerId);
+        if (answerEntity == null) {
             throw new AnswerNotFoundException("ANS-001", "Entered answer uuid does not exist");
         }
 
         // Validate if current user is the owner of requested answer or the role of user is not non-admin
-        if (!userAuthEntity.getUser().getUuid().equals(answerDao.getAnswerById(answerId).getUserEntity().getUuid())) {
+        if (!userAuthEntity.getUser().getUuid().equals(answerEntity.getUserEntity().getUuid())) {
             if (userAuthEntity.getUser().getRole().equals("nonadmin")) {
                 throw new AuthorizationFailedException("ATHR-003", "Only the answer owner or admin can delete the answer");
             }
         }
         //Delete the answer
         answerDao.performDeleteAnswer(answerId);
+        changeFeedDao.createTombstone(ChangeKind.ANSWER, answerId, answerEntity.getQuestionEntity().getUuid());
+        eventPublisher.publish(DomainEventType.ANSWER_DELETED, answerId, answerEntity.getQuestionEntity().getUuid(), null);
+        answerCountBuffer.answerDeleted(answerEntity.getQuestionEntity().getId());
+    }
+
+    /**
+     * Records the upvote or downvote of the user on an answer, replacing the previous vote of the user on it. The
+     * score of the answer follows shortly after the commit.
+     *
+     * @param authorization access token of the user who votes.
+     * @param answerId      uuid of the answer voted on.
+     * @param vote          up or down.
+     * @return the answer voted on.
+     * @throws AuthorizationFailedException ATHR-001 If the user has not signed in and ATHR-002 If the
+     *                                      user is already signed out.
+     * @throws AnswerNotFoundException      ANS-001 if the answer is not found in the database.
+     * @throws InvalidParameterException    REQ-001 if the vote is neither up nor down.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public AnswerEntity voteAnswer(final String authorization, final String answerId, final String vote)
+            throws AuthorizationFailedException, AnswerNotFoundException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = authorizeVote(authorization);
+        int value;
+        if ("up".equals(vote)) {
+            value = AnswerVoteEntity.UPVOTE;
+        } else if ("down".equals(vote)) {
+            value = AnswerVoteEntity.DOWNVOTE;
+        } else {
+            throw new InvalidParameterException("REQ-001", "Vote must be up or down");
+        }
+
+        AnswerEntity answerEntity = answerDao.getAnswerById(answerId);
+        if (answerEntity == null) {
+            throw new AnswerNotFoundException("ANS-001", "Entered answer uuid does not exist");
+        }
+
+        int previous = answerDao.recordVote(answerEntity.getId(), userAuthEntity.getUser().getId(), value);
+        answerScoreBuffer.voteChanged(answerEntity.getId(), value - previous);
+        return answerEntity;
+    }
+
+    /**
+     * Removes the vote of the user on an answer, if the user has voted on it.
+     *
+     * @param authorization access token of the user who voted.
+     * @param answerId      uuid of the answer voted on.
+     * @return the answer voted on.
+     * @throws AuthorizationFailedException ATHR-001 If the user has not signed in and ATHR-002 If the
+     *                                      user is already signed out.
+     * @throws AnswerNotFoundException      ANS-001 if the answer is not found in the database.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public AnswerEntity withdrawVote(final String authorization, final String answerId)
+            throws AuthorizationFailedException, AnswerNotFoundException {
+        UserAuthTokenEntity userAuthEntity = authorizeVote(authorization);
+        AnswerEntity answerEntity = answerDao.getAnswerById(answerId);
+        if (answerEntity == null) {
+            throw new AnswerNotFoundException("ANS-001", "Entered answer uuid does not exist");
+        }
+
+        int previous = answerDao.withdrawVote(answerEntity.getId(), userAuthEntity.getUser().getId());
+        answerScoreBuffer.voteChanged(answerEntity.getId(), -previous);
+        return answerEntity;
+    }
+
+    private UserAuthTokenEntity authorizeVote(final String authorization) throws AuthorizationFailedException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        } else if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException(
+                    "ATHR-002", "User is signed out.Sign in first to vote on an answer");
+        }
+        return userAuthEntity;
+    }
+
+    /**
+     * Checks that the user may follow the stream of answer changes for a question.
+     *
+     * @param questionId  id of the question whose answers are followed.
+     * @param accessToken accessToken of the user for valid authentication.
+     * @throws AuthorizationFailedException ATHR-001 - if User has not signed in. ATHR-002 if the User
+     *                                      is signed out.
+     * @throws InvalidQuestionException     The question with entered uuid does not exist.
+     */
+    public void authorizeAnswerStream(final String questionId, final String accessToken)
+            throws AuthorizationFailedException, InvalidQuestionException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(accessToken);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        } else if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException(
+                    "ATHR-002", "User is signed out.Sign in first to follow the answers");
+        }
+        if (questionDao.getQuestionById(questionId) == null) {
+            throw new InvalidQuestionException(
+                    "QUES-001", "The question with entered uuid whose answers are to be followed does not exist");
+        }
     }
 
     /**
@@ -145,27 +268,32 @@ public class AnswerBusinessService {
      *
      * @param questionId  id of the question to fetch the answers.
      * @param accessToken accessToken of the user for valid authentication.
+     * @param sort        score for the highest scored answers first, null for no particular order.
      * @throws AuthorizationFailedException ATHR-001 - if User has not signed in. ATHR-002 if the User
      *                                      is signed out.
      * @throws InvalidQuestionException     The question with entered uuid whose details are to be seen
      *                                      does not exist.
+     * @throws InvalidParameterException    REQ-001 if the answers cannot be sorted as requested.
      *  @author Divyank
      */
     public List<AnswerEntity> getAllAnswersToQuestion(
-            final String questionId, final String accessToken)
-            throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
+            final String questionId, final String accessToken, final String sort)
+            throws AuthorizationFailedException, InvalidQuestionException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(accessToken);
         if (userAuthEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         } else if (userAuthEntity.getLogoutAt() != null) {
             throw new AuthorizationFailedException(
                     "ATHR-002", "User is signed out.Sign in first to get the answers");
         }
+        if (sort != null && !"score".equals(sort)) {
+            throw new InvalidParameterException("REQ-001", "Answers can only be sorted by score");
+        }
         QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
         if (questionEntity == null) {
             throw new InvalidQuestionException(
                     "QUES-001", "The question with entered uuid whose details are to be seen does not exist");
         }
-        return answerDao.getAllAnswersToQuestion(questionId);
+        return sort == null ? answerDao.getAllAnswersToQuestion(questionId) : answerDao.getAllAnswersToQuestionByScore(questionId);
     }
 }
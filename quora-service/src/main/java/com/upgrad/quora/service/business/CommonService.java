@@ -1,21 +1,40 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.UserProfile;
+import com.upgrad.quora.service.cache.UserProfileCache;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class CommonService {
 
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Value("${quora.profiles.max-batch-size:100}")
+    private int maxProfileBatchSize;
+
     public UserEntity getUser(final String userUuid, final String authorization) throws AuthorizationFailedException, UserNotFoundException{
-        UserAuthTokenEntity userAuthTokenEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthTokenEntity = sessionService.getUserAuthToken(authorization);
         if(userAuthTokenEntity==null){
             throw new AuthorizationFailedException("ATHR-001", "'User has not signed in");
         }
@@ -31,4 +50,59 @@ public class CommonService {
         return userEntity;
 
     }
+
+    /**
+     * Gets the profiles of several users at once, for instance the authors of a page of answers. The access
+     * token is checked once and the profiles which are not cached are loaded with a single query.
+     *
+     * @param userUuids     ids of the users, repeated ids are returned once.
+     * @param authorization accessToken of the user for valid authentication.
+     * @return the profiles of the users which exist, in the order of the ids.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     * @throws InvalidParameterException    REQ-001 - if there are no ids or more than the batch size.
+     */
+    public List<UserProfile> getUsers(final List<String> userUuids, final String authorization)
+            throws AuthorizationFailedException, InvalidParameterException {
+        UserAuthTokenEntity userAuthTokenEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthTokenEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+        if (userAuthTokenEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get user details");
+        }
+
+        Set<String> uuids = new LinkedHashSet<>();
+        for (String userUuid : userUuids) {
+            if (!userUuid.trim().isEmpty()) {
+                uuids.add(userUuid.trim());
+            }
+        }
+        if (uuids.isEmpty() || uuids.size() > maxProfileBatchSize) {
+            throw new InvalidParameterException("REQ-001", "Between 1 and " + maxProfileBatchSize + " user ids are required");
+        }
+
+        Map<String, UserProfile> profiles = userProfileCache.getAll(uuids);
+        if (profiles.size() < uuids.size()) {
+            List<String> missing = new ArrayList<>(uuids);
+            missing.removeAll(profiles.keySet());
+            long stamp = userProfileCache.stamp();
+            List<UserProfile> loaded = new ArrayList<>();
+            for (UserEntity userEntity : userDao.getUsersByIds(missing)) {
+                UserProfile profile = new UserProfile(userEntity);
+                loaded.add(profile);
+                profiles.put(profile.getUuid(), profile);
+            }
+            userProfileCache.putAll(loaded, stamp);
+        }
+
+        List<UserProfile> found = new ArrayList<>(profiles.size());
+        for (String userUuid : uuids) {
+            UserProfile profile = profiles.get(userUuid);
+            if (profile != null) {
+                found.add(profile);
+            }
+        }
+        return found;
+    }
 }
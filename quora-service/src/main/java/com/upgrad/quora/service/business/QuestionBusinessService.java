@@ -1,14 +1,35 @@
 package com.upgrad.quora.service.business;
 
 
+import com.upgrad.quora.service.cache.QuestionSummary;
+import com.upgrad.quora.service.cache.UserQuestionCache;
+import com.upgrad.quora.service.common.TextNormalizer;
+import com.upgrad.quora.service.dao.ChangeFeedDao;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.event.DomainEventPublisher;
+import com.upgrad.quora.service.event.DomainEventType;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidParameterException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.invalidation.InvalidationPublisher;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import com.upgrad.quora.service.ranking.QuestionRankings;
+import com.upgrad.quora.service.ranking.RankedQuestion;
+import com.upgrad.quora.service.similarity.CreatedQuestion;
+import com.upgrad.quora.service.similarity.QuestionSimilarityIndex;
+import com.upgrad.quora.service.similarity.SimilarQuestion;
+import com.upgrad.quora.service.suggest.QuestionSuggestion;
+import com.upgrad.quora.service.suggest.QuestionSuggestions;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ChangeSet;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -25,17 +46,54 @@ public class QuestionBusinessService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
+    @Autowired
+    private ChangeFeedDao changeFeedDao;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private UserQuestionCache userQuestionCache;
+
+    @Autowired
+    private InvalidationPublisher invalidationPublisher;
+
+    @Autowired
+    private QuestionRankings questionRankings;
+
+    @Autowired
+    private QuestionSimilarityIndex questionSimilarityIndex;
+
+    @Autowired
+    private QuestionSuggestions questionSuggestions;
+
+    @Value("${quora.sync.max-page-size:500}")
+    private int maxChangesPageSize;
+
+    @Value("${quora.ranking.max-limit:100}")
+    private int maxRankingLimit;
+
+    @Value("${quora.duplicates.max-results:5}")
+    private int maxSimilarQuestions;
+
     /**
      * Used to create a question in the Quora Application which will be shown to all the users.
      * <p>
      * If the access token provided by the user does not exist in the database throw "AuthorizationFailedException" with the message code - 'ATHR-001' and message - 'User has not signed in'.
      * If the user has signed out, throw 'AuthorizationFailedException' with the message code- 'ATHR-002' and message -'User is signed out.Sign in first to post a question'.
+     * The question is posted along with the existing questions it likely duplicates, if any.
      *
      * @Author:Vipin P K
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity createQuestion(QuestionEntity questionEntity, final String authorizationToken) throws AuthorizationFailedException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorizationToken);
+    public CreatedQuestion createQuestion(QuestionEntity questionEntity, final String authorizationToken) throws AuthorizationFailedException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorizationToken);
 
         // Validate if user is signed in or not
         if (userAuthEntity == null) {
@@ -47,8 +105,19 @@ public class QuestionBusinessService {
             throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to post a question");
         }
 
+        List<SimilarQuestion> similarQuestions =
+                questionSimilarityIndex.findSimilar(questionEntity.getContent(), maxSimilarQuestions);
+
         questionEntity.setUserEntity(userAuthEntity.getUser());
-        return questionDao.createQuestion(questionEntity);
+        QuestionEntity createdQuestion = questionDao.createQuestion(questionEntity);
+        eventPublisher.publish(DomainEventType.QUESTION_CREATED, createdQuestion.getUuid(),
+                createdQuestion.getUserEntity().getUuid(), createdQuestion.getContent());
+        userQuestionCache.questionCreated(createdQuestion.getUserEntity().getUuid(),
+                new QuestionSummary(createdQuestion.getUuid(), createdQuestion.getContent()));
+        invalidationPublisher.publish(InvalidationType.USER_QUESTIONS, createdQuestion.getUserEntity().getUuid());
+        questionSimilarityIndex.questionChanged(createdQuestion.getUuid(), createdQuestion.getContent());
+        questionSuggestions.questionChanged(createdQuestion.getUuid(), createdQuestion.getContent());
+        return new CreatedQuestion(createdQuestion, similarQuestions);
     }
 
     /**
@@ -61,7 +130,7 @@ public class QuestionBusinessService {
      */
     @Transactional(propagation = Propagation.REQUIRED)
     public List<QuestionEntity> getAllQuestions(final String authorization) throws AuthorizationFailedException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
 
         // Validate if user is signed in or not
         if (userAuthEntity == null) {
@@ -76,6 +145,161 @@ public class QuestionBusinessService {
         return questionDao.getAllQuestions();
     }
 
+    /**
+     * Gets the questions and answers created, edited or deleted since the last sync of the client.
+     * <p>
+     * A deleted question stands for its answers as well, they are not reported one by one.
+     *
+     * @param authorization accessToken of the user for valid authentication.
+     * @param since         token returned by the previous call, null for the initial sync.
+     * @param limit         maximum number of changes to return.
+     * @return ChangeSet with the changes and the token for the next call.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     * @throws InvalidParameterException    REQ-001 - if the token or the limit is invalid. REQ-002 - if the
+     *                                      token is too old to resume from.
+     */
+    public ChangeSet getChanges(final String authorization, final String since, final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // Validate if user has signed out
+        if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the changes");
+        }
+
+        if (limit < 1 || limit > maxChangesPageSize) {
+            throw new InvalidParameterException("REQ-001", "Limit must be between 1 and " + maxChangesPageSize);
+        }
+
+        SyncToken sinceToken = since == null ? SyncToken.START : SyncToken.decode(since);
+        if (sinceToken == null) {
+            throw new InvalidParameterException("REQ-001", "Entered sync token is invalid");
+        }
+        if (!changeFeed.isResumable(sinceToken)) {
+            throw new InvalidParameterException("REQ-002", "Sync token has expired.Reload all the questions");
+        }
+
+        return changeFeed.readChanges(sinceToken, limit);
+    }
+
+    /**
+     * Gets the questions ranked first by the given criterion, from the in-memory rankings.
+     *
+     * @param authorization accessToken of the user for valid authentication.
+     * @param by            ranking criterion, only "answers" is supported.
+     * @param limit         maximum number of questions to return.
+     * @return List of RankedQuestion, first ranked first.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     * @throws InvalidParameterException    REQ-001 - if the criterion or the limit is invalid.
+     */
+    public List<RankedQuestion> getTopQuestions(final String authorization, final String by, final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // Validate if user has signed out
+        if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the top questions");
+        }
+
+        if (!"answers".equals(by)) {
+            throw new InvalidParameterException("REQ-001", "Questions can only be ranked by answers");
+        }
+        validateRankingLimit(limit);
+        return questionRankings.getTopByAnswers(limit);
+    }
+
+    /**
+     * Gets the questions with the most answers posted within a recent window, from the in-memory rankings.
+     *
+     * @param authorization accessToken of the user for valid authentication.
+     * @param window        length of the window such as 1h, one of the configured trending windows.
+     * @param limit         maximum number of questions to return.
+     * @return List of RankedQuestion, most answered within the window first.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     * @throws InvalidParameterException    REQ-001 - if the window or the limit is invalid.
+     */
+    public List<RankedQuestion> getTrendingQuestions(final String authorization, final String window, final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // Validate if user has signed out
+        if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the trending questions");
+        }
+
+        validateRankingLimit(limit);
+        List<RankedQuestion> questions = questionRankings.getTrending(window, limit);
+        if (questions == null) {
+            throw new InvalidParameterException("REQ-001",
+                    "Trending window must be one of " + String.join(", ", questionRankings.getTrendingWindows()));
+        }
+        return questions;
+    }
+
+    /**
+     * Suggests the questions whose content starts with the text typed so far, from the in-memory prefix index.
+     * Case and punctuation are ignored.
+     *
+     * @param authorization accessToken of the user for valid authentication.
+     * @param prefix        text typed so far.
+     * @param limit         maximum number of questions to return.
+     * @return List of QuestionSuggestion, most answered first.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     * @throws InvalidParameterException    REQ-001 - if the prefix has no letter or digit or the limit is invalid.
+     */
+    public List<QuestionSuggestion> suggestQuestions(final String authorization, final String prefix, final int limit)
+            throws AuthorizationFailedException, InvalidParameterException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // Validate if user has signed out
+        if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the suggestions");
+        }
+
+        if (prefix == null || TextNormalizer.normalize(prefix).isEmpty()) {
+            throw new InvalidParameterException("REQ-001", "Prefix must contain a letter or digit");
+        }
+        if (limit < 1 || limit > questionSuggestions.getMaxResults()) {
+            throw new InvalidParameterException("REQ-001", "Limit must be between 1 and " + questionSuggestions.getMaxResults());
+        }
+        return questionSuggestions.suggest(prefix, limit);
+    }
+
+    /**
+     * Checks that the user may follow the stream of question changes.
+     *
+     * @param authorization accessToken of the user for valid authentication.
+     * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
+     *                                      the user has already signed out.
+     */
+    public void authorizeQuestionStream(final String authorization) throws AuthorizationFailedException {
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // Validate if user has signed out
+        if (userAuthEntity.getLogoutAt() != null) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to follow the questions");
+        }
+    }
+
     /**
      * * Edit the question
      *
@@ -91,7 +315,7 @@ public class QuestionBusinessService {
 
     @Transactional(propagation = Propagation.REQUIRED)
     public QuestionEntity editQuestion(final String authorization, final String questionId, final String content) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
         if (userAuthEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         }
@@ -111,6 +335,13 @@ public class QuestionBusinessService {
         }
         questionEntity.setContent(content);
         questionDao.updateQuestion(questionEntity);
+        eventPublisher.publish(DomainEventType.QUESTION_EDITED, questionEntity.getUuid(),
+                questionEntity.getUserEntity().getUuid(), content);
+        userQuestionCache.questionEdited(questionEntity.getUserEntity().getUuid(),
+                new QuestionSummary(questionEntity.getUuid(), content));
+        invalidationPublisher.publish(InvalidationType.USER_QUESTIONS, questionEntity.getUserEntity().getUuid());
+        questionSimilarityIndex.questionChanged(questionEntity.getUuid(), content);
+        questionSuggestions.questionChanged(questionEntity.getUuid(), content);
 
         return questionEntity;
     }
@@ -128,7 +359,7 @@ public class QuestionBusinessService {
      */
     @Transactional(propagation = Propagation.REQUIRED)
     public QuestionEntity deleteQuestion(final String authorization, final String questionId) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorization);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(authorization);
         if (userAuthEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         }
@@ -149,25 +380,39 @@ public class QuestionBusinessService {
         }
 
         questionDao.deleteQuestion(questionEntity);
+        changeFeedDao.createTombstone(ChangeKind.QUESTION, questionEntity.getUuid(), questionEntity.getUuid());
+        eventPublisher.publish(DomainEventType.QUESTION_DELETED, questionEntity.getUuid(),
+                questionEntity.getUserEntity().getUuid(), null);
+        userQuestionCache.questionDeleted(questionEntity.getUserEntity().getUuid(), questionEntity.getUuid());
+        invalidationPublisher.publish(InvalidationType.USER_QUESTIONS, questionEntity.getUserEntity().getUuid());
+        questionSimilarityIndex.questionDeleted(questionEntity.getUuid());
+        questionSuggestions.questionDeleted(questionEntity.getUuid());
 
         return questionEntity;
 
     }
 
+    private void validateRankingLimit(final int limit) throws InvalidParameterException {
+        if (limit < 1 || limit > maxRankingLimit) {
+            throw new InvalidParameterException("REQ-001", "Limit must be between 1 and " + maxRankingLimit);
+        }
+    }
+
     /**
-     * Gets all the questions posted by a specific user.
+     * Gets all the questions posted by a specific user. The lists are cached, a cached list is returned without
+     * looking up the user or the questions.
      *
      * @param userId userId of the user whose posted questions have to be retrieved
      * @param accessToken accessToken of the user for valid authentication.
-     * @return List of QuestionEntity
+     * @return List of QuestionSummary
      * @throws AuthorizationFailedException ATHR-001 - if user token is not present in DB. ATHR-002 if
      *     the user has already signed out.
      * @throws UserNotFoundException  USR-001 - if user doesn't have any question
      * @Author: Divyank
      */
-    public List<QuestionEntity> getAllQuestionsByUser(final String userId, final String accessToken)
+    public List<QuestionSummary> getAllQuestionsByUser(final String userId, final String accessToken)
             throws AuthorizationFailedException, UserNotFoundException {
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthToken(accessToken);
         if (userAuthEntity == null) {
             throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
         } else if (userAuthEntity.getLogoutAt() != null) {
@@ -175,12 +420,20 @@ public class QuestionBusinessService {
                     "ATHR-002",
                     "User is signed out.Sign in first to get all questions posted by a specific user");
         }
+        List<QuestionSummary> cachedQuestions = userQuestionCache.get(userId);
+        if (cachedQuestions != null) {
+            return cachedQuestions;
+        }
+
+        long stamp = userQuestionCache.stamp();
         UserEntity user = userDao.getUserById(userId);
         if (user == null) {
             throw new UserNotFoundException(
                     "USR-001", "User with entered uuid whose question details are to be seen does not exist");
         }
-        return questionDao.getAllQuestionsByUser(user);
+        List<QuestionSummary> questions = questionDao.getQuestionSummariesByUser(user);
+        userQuestionCache.put(userId, questions, stamp);
+        return questions;
     }
 
 }
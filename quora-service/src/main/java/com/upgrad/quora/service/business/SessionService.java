@@ -0,0 +1,55 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.session.SessionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Looks up the session of an access token for the other services. An expired session is returned as signed out at
+ * its expiry, and a session of a user marked deleted as signed out at the deletion, so that the services reject
+ * both as signed out.
+ */
+@Service
+public class SessionService {
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    /**
+     * @param accessToken access token of the session.
+     * @return the session, possibly served from the session store and not managed, null if there is none.
+     */
+    public UserAuthTokenEntity getUserAuthToken(final String accessToken) {
+        return checkSignedIn(userDao.getUserAuthToken(accessToken));
+    }
+
+    /**
+     * @param accessToken access token of the session.
+     * @return the session read from the database, managed unless it is returned as signed out, null if there is none.
+     */
+    public UserAuthTokenEntity getUserAuthTokenForUpdate(final String accessToken) {
+        return checkSignedIn(userDao.getUserAuthTokenForUpdate(accessToken));
+    }
+
+    private UserAuthTokenEntity checkSignedIn(final UserAuthTokenEntity userAuthTokenEntity) {
+        if (userAuthTokenEntity == null || userAuthTokenEntity.getLogoutAt() != null) {
+            return userAuthTokenEntity;
+        }
+        ZonedDateTime deletedAt = userAuthTokenEntity.getUser().getDeletedAt();
+        if (deletedAt != null) {
+            // The sessions of a deleted user are removed with its content, they are not signed out one by one
+            userDao.signOutUnsaved(userAuthTokenEntity, deletedAt);
+        } else if (sessionRegistry.hasExpired(userAuthTokenEntity)) {
+            // Signed out at its expiry, the registry records it in the database shortly
+            userDao.signOutUnsaved(userAuthTokenEntity, userAuthTokenEntity.getExpiresAt());
+        }
+        return userAuthTokenEntity;
+    }
+}
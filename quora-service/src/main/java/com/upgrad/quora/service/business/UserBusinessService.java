@@ -1,17 +1,26 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.dao.SessionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.event.DomainEventPublisher;
+import com.upgrad.quora.service.event.DomainEventType;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
+import com.upgrad.quora.service.invalidation.InvalidationPublisher;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import com.upgrad.quora.service.session.SessionRegistry;
+import com.upgrad.quora.service.session.SessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 @Service
 public class UserBusinessService {
@@ -19,9 +28,30 @@ public class UserBusinessService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private SessionService sessionService;
+
     @Autowired
     private PasswordCryptographyProvider cryptographyProvider;
 
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private InvalidationPublisher invalidationPublisher;
+
+    @Autowired
+    private SessionDao sessionDao;
+
+    @Value("${quora.session.max-active-per-user:10}")
+    private int maxActiveSessionsPerUser;
+
     /**
      * The method to create new user
      *
@@ -55,14 +85,17 @@ public class UserBusinessService {
         userEntity.setSalt(encryptedText[0]);
         userEntity.setPassword(encryptedText[1]);
 
-        return userDao.createUser(userEntity);
+        UserEntity createdUser = userDao.createUser(userEntity);
+        eventPublisher.publish(DomainEventType.USER_SIGNED_UP, createdUser.getUuid(), null, null);
+        return createdUser;
     }
 
     @Transactional(propagation = Propagation.REQUIRED)
     public UserAuthTokenEntity signin(final String username, final String password) throws AuthenticationFailedException {
         UserEntity userEntity = userDao.getUserByUserName(username);
 
-        if (userEntity == null) {
+        // A user marked deleted keeps its username until its content is removed
+        if (userEntity == null || userEntity.getDeletedAt() != null) {
             throw new AuthenticationFailedException("ATH-001", "This username does not exist");
         }
         final String encryptedPassword = cryptographyProvider.encrypt(password, userEntity.getSalt());
@@ -74,14 +107,27 @@ public class UserBusinessService {
             final ZonedDateTime now = ZonedDateTime.now();
             final ZonedDateTime expiresAt = now.plusHours(8);
 
+            // The oldest sessions of the user are signed out to keep the new one within the cap
+            List<UserAuthTokenEntity> activeSessions = sessionDao.getActiveSessionsForUpdate(userEntity, now);
+            for (int i = 0; i <= activeSessions.size() - maxActiveSessionsPerUser; i++) {
+                UserAuthTokenEntity oldestSession = activeSessions.get(i);
+                oldestSession.setLogoutAt(now);
+                sessionRegistry.sessionEnded(oldestSession.getAccessToken());
+                sessionStore.sessionChanged(oldestSession);
+                invalidationPublisher.publish(InvalidationType.SESSION, sessionStore.keyOf(oldestSession.getAccessToken()));
+            }
+
             userAuthTokenEntity.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
 
             userAuthTokenEntity.setLoginAt(now);
             userAuthTokenEntity.setExpiresAt(expiresAt);
 
             userDao.createAuthToken(userAuthTokenEntity);
+            sessionRegistry.sessionStarted(userAuthTokenEntity);
+            sessionStore.sessionChanged(userAuthTokenEntity);
 
             userDao.updateUser(userEntity);
+            eventPublisher.publish(DomainEventType.USER_SIGNED_IN, userEntity.getUuid(), null, null);
 //            userEntity.setLastLoginAt(now);
             return userAuthTokenEntity;
         } else {
@@ -97,7 +143,7 @@ public class UserBusinessService {
     @Transactional(propagation = Propagation.REQUIRED)
     public UserEntity signout(final String authorizationToken) throws SignOutRestrictedException {
 
-        UserAuthTokenEntity userAuthEntity = userDao.getUserAuthToken(authorizationToken);
+        UserAuthTokenEntity userAuthEntity = sessionService.getUserAuthTokenForUpdate(authorizationToken);
 
         // Validate if user is signed in or not
         if (userAuthEntity == null) {
@@ -106,6 +152,10 @@ public class UserBusinessService {
 
         final ZonedDateTime now = ZonedDateTime.now();
         userAuthEntity.setLogoutAt(now);
+        sessionRegistry.sessionEnded(authorizationToken);
+        sessionStore.sessionChanged(userAuthEntity);
+        invalidationPublisher.publish(InvalidationType.SESSION, sessionStore.keyOf(authorizationToken));
+        eventPublisher.publish(DomainEventType.USER_SIGNED_OUT, userAuthEntity.getUser().getUuid(), null, null);
 
         return userAuthEntity.getUser();
 
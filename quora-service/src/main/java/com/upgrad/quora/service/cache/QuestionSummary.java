@@ -0,0 +1,32 @@
+package com.upgrad.quora.service.cache;
+
+/**
+ * The fields of a question shown in the question lists, detached from the persistence context so that it can be
+ * kept in a cache.
+ */
+public class QuestionSummary {
+
+    private final String uuid;
+
+    private final String content;
+
+    public QuestionSummary(final String uuid, final String content) {
+        this.uuid = uuid;
+        this.content = content;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Approximate heap footprint in bytes, used to bound the cache.
+     */
+    int weight() {
+        return 64 + 2 * (uuid.length() + (content == null ? 0 : content.length()));
+    }
+}
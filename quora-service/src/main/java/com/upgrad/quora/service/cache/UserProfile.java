@@ -0,0 +1,76 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserEntity;
+
+/**
+ * The fields of a user shown on the profile, detached from the persistence context so that it can be kept in a
+ * cache. The password, salt and role are left out.
+ */
+public class UserProfile {
+
+    private final String uuid;
+
+    private final String firstName;
+
+    private final String lastName;
+
+    private final String userName;
+
+    private final String email;
+
+    private final String country;
+
+    private final String aboutMe;
+
+    private final String dob;
+
+    private final String contactNumber;
+
+    public UserProfile(final UserEntity userEntity) {
+        this.uuid = userEntity.getUuid();
+        this.firstName = userEntity.getFirstName();
+        this.lastName = userEntity.getLastName();
+        this.userName = userEntity.getUserName();
+        this.email = userEntity.getEmail();
+        this.country = userEntity.getCountry();
+        this.aboutMe = userEntity.getAboutMe();
+        this.dob = userEntity.getDob();
+        this.contactNumber = userEntity.getContactNumber();
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getAboutMe() {
+        return aboutMe;
+    }
+
+    public String getDob() {
+        return dob;
+    }
+
+    public String getContactNumber() {
+        return contactNumber;
+    }
+}
@@ -0,0 +1,145 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.invalidation.InvalidationSubscriber;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profiles of the users, for the batch profile lookups. The least recently read profiles are evicted once the
+ * cache holds more profiles than the entry limit.
+ * <p>
+ * The business services drop the profile of a user once the transaction which updated or deleted the user has
+ * committed. A profile loaded from the database is only cached if that user was not written in the meantime, the
+ * version of the last write of each user is kept for that. These versions are forgotten once there are too many
+ * of them, and the loads begun before are then not cached at all. The profiles changed on the other nodes are
+ * dropped as their invalidations arrive.
+ */
+@Component
+public class UserProfileCache implements InvalidationSubscriber {
+
+    private final int maxEntries;
+
+    private static final int MAX_WRITE_VERSIONS = 10_000;
+
+    private final LinkedHashMap<String, UserProfile> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Incremented by every committed write, the stamp of the loads
+    private long version;
+
+    // Version of the last write of the users written lately, a profile is only cached if it is older than its load
+    private final Map<String, Long> writeVersions = new HashMap<>();
+
+    // Loads stamped before this version are not cached, the versions of their writes were forgotten
+    private long oldestKnownVersion;
+
+    public UserProfileCache(@Value("${quora.cache.user-profiles.max-entries:50000}") final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param userUuids uuids of the users.
+     * @return the cached profiles among them by uuid, the ones not cached are missing.
+     */
+    public synchronized Map<String, UserProfile> getAll(final Collection<String> userUuids) {
+        Map<String, UserProfile> found = new HashMap<>();
+        for (String userUuid : userUuids) {
+            UserProfile profile = entries.get(userUuid);
+            if (profile != null) {
+                found.put(userUuid, profile);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * To be called before loading profiles from the database, the returned stamp is passed to {@link #putAll}
+     * with the loaded profiles.
+     */
+    public synchronized long stamp() {
+        return version;
+    }
+
+    /**
+     * Caches the profiles loaded from the database, after the commit if a transaction is active.
+     *
+     * @param profiles profiles as loaded from the database.
+     * @param stamp    value of {@link #stamp()} before the profiles were loaded.
+     */
+    public void putAll(final Collection<UserProfile> profiles, final long stamp) {
+        List<UserProfile> loaded = new ArrayList<>(profiles);
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                if (stamp < oldestKnownVersion) {
+                    return;
+                }
+                for (UserProfile profile : loaded) {
+                    Long written = writeVersions.get(profile.getUuid());
+                    if (written == null || written <= stamp) {
+                        entries.put(profile.getUuid(), profile);
+                    }
+                }
+                evict();
+            }
+        });
+    }
+
+    /**
+     * Drops the profile of a user updated or deleted once the transaction has committed.
+     */
+    public void userChanged(final String userUuid) {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                version++;
+                if (writeVersions.size() >= MAX_WRITE_VERSIONS) {
+                    forgetWriteVersions();
+                }
+                writeVersions.put(userUuid, version);
+                entries.remove(userUuid);
+            }
+        });
+    }
+
+    @Override
+    public void invalidate(final InvalidationType type, final String key) {
+        if (type == InvalidationType.USER) {
+            userChanged(key);
+        }
+    }
+
+    /**
+     * Drops every cached profile once the transaction has committed.
+     */
+    @Override
+    public void invalidateAll() {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                version++;
+                forgetWriteVersions();
+                entries.clear();
+            }
+        });
+    }
+
+    private void forgetWriteVersions() {
+        writeVersions.clear();
+        oldestKnownVersion = version;
+    }
+
+    private void evict() {
+        Iterator<UserProfile> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
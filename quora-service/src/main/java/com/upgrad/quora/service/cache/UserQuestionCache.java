@@ -0,0 +1,219 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.invalidation.InvalidationSubscriber;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Questions posted by each user, for the profile page. The least recently read users are evicted once the cache
+ * holds more users than the entry limit, or once the approximate size in bytes of the cached lists exceeds the
+ * weight limit.
+ * <p>
+ * The business services update the cached lists in place when a question is created, edited or deleted, once
+ * their transaction has committed. A list loaded from the database is only cached if no question of that user was
+ * written in the meantime, a load racing with a write could otherwise cache the state from before the write. The
+ * version of the last write of each user is kept for that, like the profiles do. These versions are forgotten once
+ * there are too many of them, and the loads begun before are then not cached at all. The lists changed on the
+ * other nodes are dropped as their invalidations arrive.
+ */
+@Component
+public class UserQuestionCache implements InvalidationSubscriber {
+
+    private static final int MAX_WRITE_VERSIONS = 10_000;
+
+    private final int maxEntries;
+
+    private final long maxWeight;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+
+    // Incremented by every committed write, the stamp of the loads
+    private long version;
+
+    // Version of the last write of the users written lately, a list is only cached if it is older than its load
+    private final Map<String, Long> writeVersions = new HashMap<>();
+
+    // Loads stamped before this version are not cached, the versions of their writes were forgotten
+    private long oldestKnownVersion;
+
+    public UserQuestionCache(@Value("${quora.cache.user-questions.max-entries:10000}") final int maxEntries,
+                             @Value("${quora.cache.user-questions.max-weight:67108864}") final long maxWeight) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param userUuid uuid of the user.
+     * @return the cached questions of the user, null if they are not cached.
+     */
+    public synchronized List<QuestionSummary> get(final String userUuid) {
+        Entry entry = entries.get(userUuid);
+        return entry == null ? null : entry.questions;
+    }
+
+    /**
+     * To be called before loading the questions of a user from the database, the returned stamp is passed to
+     * {@link #put} with the loaded questions.
+     */
+    public synchronized long stamp() {
+        return version;
+    }
+
+    /**
+     * Caches the questions loaded for a user, after the commit if a transaction is active as the loaded
+     * state might include uncommitted writes of that transaction.
+     *
+     * @param userUuid  uuid of the user.
+     * @param questions questions of the user as loaded from the database.
+     * @param stamp     value of {@link #stamp()} before the questions were loaded.
+     */
+    public void put(final String userUuid, final List<QuestionSummary> questions, final long stamp) {
+        List<QuestionSummary> snapshot = Collections.unmodifiableList(new ArrayList<>(questions));
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                Long written = writeVersions.get(userUuid);
+                if (stamp >= oldestKnownVersion && (written == null || written <= stamp)) {
+                    replace(userUuid, new Entry(snapshot));
+                    evict();
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends a question created by the user to the cached list once the transaction has committed.
+     */
+    public void questionCreated(final String userUuid, final QuestionSummary question) {
+        TransactionCallbacks.afterCommit(() -> update(userUuid, questions -> {
+            // Already there if the list was loaded by the transaction which created the question
+            if (questions.stream().anyMatch(existing -> existing.getUuid().equals(question.getUuid()))) {
+                return questions;
+            }
+            List<QuestionSummary> updated = new ArrayList<>(questions.size() + 1);
+            updated.addAll(questions);
+            updated.add(question);
+            return updated;
+        }));
+    }
+
+    /**
+     * Replaces an edited question of the user in the cached list once the transaction has committed.
+     */
+    public void questionEdited(final String userUuid, final QuestionSummary question) {
+        TransactionCallbacks.afterCommit(() -> update(userUuid, questions -> {
+            List<QuestionSummary> updated = new ArrayList<>(questions.size());
+            for (QuestionSummary existing : questions) {
+                updated.add(existing.getUuid().equals(question.getUuid()) ? question : existing);
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * Removes a deleted question of the user from the cached list once the transaction has committed.
+     */
+    public void questionDeleted(final String userUuid, final String questionUuid) {
+        TransactionCallbacks.afterCommit(() -> update(userUuid, questions -> {
+            List<QuestionSummary> updated = new ArrayList<>(questions);
+            updated.removeIf(existing -> existing.getUuid().equals(questionUuid));
+            return updated;
+        }));
+    }
+
+    /**
+     * Drops the cached list of a user once the transaction has committed.
+     */
+    public void invalidate(final String userUuid) {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                written(userUuid);
+                Entry entry = entries.remove(userUuid);
+                if (entry != null) {
+                    weight -= entry.weight;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void invalidate(final InvalidationType type, final String key) {
+        if (type == InvalidationType.USER_QUESTIONS) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Drops every cached list once the transaction has committed.
+     */
+    @Override
+    public void invalidateAll() {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                version++;
+                forgetWriteVersions();
+                entries.clear();
+                weight = 0;
+            }
+        });
+    }
+
+    private synchronized void update(final String userUuid, final UnaryOperator<List<QuestionSummary>> change) {
+        written(userUuid);
+        Entry entry = entries.get(userUuid);
+        if (entry != null) {
+            replace(userUuid, new Entry(Collections.unmodifiableList(change.apply(entry.questions))));
+            evict();
+        }
+    }
+
+    private void written(final String userUuid) {
+        version++;
+        if (writeVersions.size() >= MAX_WRITE_VERSIONS) {
+            forgetWriteVersions();
+        }
+        writeVersions.put(userUuid, version);
+    }
+
+    private void forgetWriteVersions() {
+        writeVersions.clear();
+        oldestKnownVersion = version;
+    }
+
+    private void replace(final String userUuid, final Entry entry) {
+        Entry previous = entries.put(userUuid, entry);
+        weight += entry.weight - (previous == null ? 0 : previous.weight);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final List<QuestionSummary> questions;
+
+        private final long weight;
+
+        private Entry(final List<QuestionSummary> questions) {
+            this.questions = questions;
+            this.weight = questions.stream().mapToLong(QuestionSummary::weight).sum() + 128;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.upgrad.quora.service.common;
+
+/**
+ * Canonical form of question texts for comparing and matching them, so that case, punctuation and spacing do not
+ * tell two texts apart.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * @return the text lower cased, with every run of characters other than letters and digits replaced by a
+     * single space, and without leading or trailing spaces.
+     */
+    public static String normalize(final String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.upgrad.quora.service.counter;
+
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.job.JobHandler;
+import com.upgrad.quora.service.job.JobScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+/**
+ * Maintains the answer_count column of QUESTION without updating the question row in every answer transaction.
+ * <p>
+ * Committed answer creations and deletions are buffered as deltas by question. The cascades of question and user
+ * deletions are not counted at all, the reconciliation against the ANSWER table corrects them along with the
+ * deltas lost when a node stops.
+ */
+@Component
+public class AnswerCountBuffer extends DeltaBuffer implements JobHandler {
+
+    public static final String RECONCILIATION_JOB_TYPE = "answer-count-reconciliation";
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Value("${quora.answer-count.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${quora.answer-count.reconcile-chunk-size:10000}")
+    private int reconcileChunkSize;
+
+    @Value("${quora.answer-count.reconcile-interval-ms:3600000}")
+    private long reconcileIntervalMillis;
+
+    @Autowired
+    public AnswerCountBuffer(final PlatformTransactionManager transactionManager) {
+        super(transactionManager, "answer counts");
+    }
+
+    /**
+     * Counts an answer posted to the question once the transaction has committed.
+     */
+    public void answerCreated(final long questionId) {
+        addAfterCommit(questionId, 1);
+    }
+
+    /**
+     * Uncounts an answer deleted from the question once the transaction has committed.
+     */
+    public void answerDeleted(final long questionId) {
+        addAfterCommit(questionId, -1);
+    }
+
+    /**
+     * Applies the buffered deltas to the database.
+     */
+    @Scheduled(fixedDelayString = "${quora.answer-count.flush-interval-ms:1000}")
+    public void flush() {
+        flushDeltas(flushBatchSize);
+    }
+
+    /**
+     * Schedules the next reconciliation an interval from now, unless a node already scheduled one.
+     */
+    @Scheduled(fixedDelayString = "${quora.answer-count.reconcile-interval-ms:3600000}")
+    public void scheduleReconciliation() {
+        jobScheduler.enqueueUnique(RECONCILIATION_JOB_TYPE, ZonedDateTime.now().plusNanos(reconcileIntervalMillis * 1_000_000L));
+    }
+
+    /**
+     * Corrects the answer counts which drifted from the actual number of answers, one id range per transaction.
+     */
+    public void reconcile() {
+        long maxId = transactionTemplate.execute(status -> questionDao.getMaxQuestionId());
+        reconcileRanges(maxId, reconcileChunkSize, questionDao::reconcileAnswerCounts);
+    }
+
+    @Override
+    public String getJobType() {
+        return RECONCILIATION_JOB_TYPE;
+    }
+
+    @Override
+    public void run(final String payload) {
+        reconcile();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Override
+    protected void apply(final Map<Long, Integer> deltas) {
+        questionDao.addToAnswerCounts(deltas);
+    }
+}
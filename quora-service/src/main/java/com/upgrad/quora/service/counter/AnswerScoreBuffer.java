@@ -0,0 +1,104 @@
+package com.upgrad.quora.service.counter;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.job.JobHandler;
+import com.upgrad.quora.service.job.JobScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+/**
+ * Maintains the score column of ANSWER without locking the answer row in every vote transaction, so that the
+ * votes on a popular answer do not queue up behind each other.
+ * <p>
+ * The votes themselves are recorded in ANSWER_VOTE, one row per user and answer, and the committed score changes
+ * are buffered as deltas by answer. A score is behind the votes by at most the flush interval while the database
+ * is available. The votes removed with a deleted user are not subtracted, the reconciliation against ANSWER_VOTE
+ * corrects them along with the deltas lost when a node stops.
+ */
+@Component
+public class AnswerScoreBuffer extends DeltaBuffer implements JobHandler {
+
+    public static final String RECONCILIATION_JOB_TYPE = "answer-score-reconciliation";
+
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Value("${quora.answer-score.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${quora.answer-score.reconcile-chunk-size:10000}")
+    private int reconcileChunkSize;
+
+    @Value("${quora.answer-score.reconcile-interval-ms:3600000}")
+    private long reconcileIntervalMillis;
+
+    @Autowired
+    public AnswerScoreBuffer(final PlatformTransactionManager transactionManager) {
+        super(transactionManager, "answer scores");
+    }
+
+    /**
+     * Adds the change of a vote to the score of the answer once the transaction has committed.
+     *
+     * @param delta new vote minus previous vote, an upvote counts 1 and a downvote -1.
+     */
+    public void voteChanged(final long answerId, final int delta) {
+        if (delta != 0) {
+            addAfterCommit(answerId, delta);
+        }
+    }
+
+    /**
+     * Applies the buffered deltas to the database.
+     */
+    @Scheduled(fixedDelayString = "${quora.answer-score.flush-interval-ms:1000}")
+    public void flush() {
+        flushDeltas(flushBatchSize);
+    }
+
+    /**
+     * Schedules the next reconciliation an interval from now, unless a node already scheduled one.
+     */
+    @Scheduled(fixedDelayString = "${quora.answer-score.reconcile-interval-ms:3600000}")
+    public void scheduleReconciliation() {
+        jobScheduler.enqueueUnique(RECONCILIATION_JOB_TYPE, ZonedDateTime.now().plusNanos(reconcileIntervalMillis * 1_000_000L));
+    }
+
+    /**
+     * Corrects the scores which drifted from the sum of the votes, one id range per transaction.
+     */
+    public void reconcile() {
+        long maxId = transactionTemplate.execute(status -> answerDao.getMaxAnswerId());
+        reconcileRanges(maxId, reconcileChunkSize, answerDao::reconcileScores);
+    }
+
+    @Override
+    public String getJobType() {
+        return RECONCILIATION_JOB_TYPE;
+    }
+
+    @Override
+    public void run(final String payload) {
+        reconcile();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Override
+    protected void apply(final Map<Long, Integer> deltas) {
+        answerDao.addToScores(deltas);
+    }
+}
@@ -0,0 +1,202 @@
+package com.upgrad.quora.service.counter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory deltas of a counter column, applied to the database periodically for many rows in one update.
+ * <p>
+ * The deltas are striped by thread so that concurrent changes to the same row do not contend. A delta is taken
+ * out of its stripe atomically when flushed, so no two flushes apply it, and put back if the update fails. The
+ * deltas of a node which stops without flushing are lost, a periodic reconciliation against the source rows
+ * corrects the drift.
+ * <p>
+ * The reconciliation sets the counters from the committed source rows, which already account for the buffered
+ * deltas: the deltas of each range are taken out of the buffer before the range is counted and dropped once it is
+ * corrected. A range is counted under the write lock of the buffer, while the flushes hold its read lock from
+ * taking their deltas out until they are committed and the source transactions from their commit until their
+ * delta is buffered. No delta of this node is then in flight while a range is counted, to be applied on top of it.
+ * The reconciliation runs as a job on one node at a time, the deltas of the other nodes buffered or being flushed
+ * when a range is counted may still be applied on top, until the next reconciliation.
+ */
+abstract class DeltaBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeltaBuffer.class);
+
+    private final String counterName;
+
+    private final ConcurrentHashMap<Long, Integer>[] stripes;
+
+    private final ReadWriteLock rangeLock = new ReentrantReadWriteLock();
+
+    protected final TransactionTemplate transactionTemplate;
+
+    @SuppressWarnings("unchecked")
+    protected DeltaBuffer(final PlatformTransactionManager transactionManager, final String counterName) {
+        int stripeCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.stripes = new ConcurrentHashMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.counterName = counterName;
+    }
+
+    /**
+     * Applies the deltas of one batch in the current transaction.
+     *
+     * @param deltas delta by row id, in id order.
+     */
+    protected abstract void apply(Map<Long, Integer> deltas);
+
+    /**
+     * Buffers the delta once the current transaction has committed, right away if there is no transaction.
+     */
+    protected void addAfterCommit(final long id, final int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(id, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(final boolean readOnly) {
+                rangeLock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        add(id, delta);
+                    }
+                } finally {
+                    if (locked) {
+                        rangeLock.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the buffered deltas, batchSize rows per transaction.
+     */
+    protected void flushDeltas(final int batchSize) {
+        rangeLock.readLock().lock();
+        try {
+            flushLocked(batchSize);
+        } finally {
+            rangeLock.readLock().unlock();
+        }
+    }
+
+    private void flushLocked(final int batchSize) {
+        // Taken out in id order, concurrent flushes of several nodes then lock the rows in the same order
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (ConcurrentHashMap<Long, Integer> stripe : stripes) {
+            for (Long id : stripe.keySet()) {
+                Integer delta = stripe.remove(id);
+                if (delta != null && delta != 0) {
+                    deltas.merge(id, delta, Integer::sum);
+                }
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+
+        List<Map<Long, Integer>> batches = new ArrayList<>();
+        Map<Long, Integer> batch = new TreeMap<>();
+        for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+            batch.put(delta.getKey(), delta.getValue());
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new TreeMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        for (Map<Long, Integer> pending : batches) {
+            try {
+                transactionTemplate.execute(status -> {
+                    apply(pending);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                LOG.warn("Could not flush the {} of {} rows, retrying with the next flush", counterName, pending.size(), e);
+                pending.forEach(this::add);
+            }
+        }
+    }
+
+    /**
+     * Corrects the counters of the rows with ids up to maxId, one range of chunkSize ids per transaction.
+     */
+    protected void reconcileRanges(final long maxId, final int chunkSize, final RangeReconciliation reconciliation) {
+        int corrected = 0;
+        for (long fromId = 0; fromId <= maxId; fromId += chunkSize) {
+            long from = fromId;
+            rangeLock.writeLock().lock();
+            try {
+                Map<Long, Integer> drained = drain(from, from + chunkSize);
+                try {
+                    corrected += transactionTemplate.execute(status ->
+                            reconciliation.reconcile(from, from + chunkSize));
+                } catch (RuntimeException e) {
+                    drained.forEach(this::add);
+                    throw e;
+                }
+            } finally {
+                rangeLock.writeLock().unlock();
+            }
+        }
+        if (corrected > 0) {
+            LOG.info("Corrected the {} of {} rows", counterName, corrected);
+        }
+    }
+
+    // Takes the deltas of the rows with ids in [fromId, toId) out of the buffer
+    private Map<Long, Integer> drain(final long fromId, final long toId) {
+        Map<Long, Integer> drained = new TreeMap<>();
+        for (ConcurrentHashMap<Long, Integer> stripe : stripes) {
+            for (Long id : stripe.keySet()) {
+                if (id >= fromId && id < toId) {
+                    Integer delta = stripe.remove(id);
+                    if (delta != null) {
+                        drained.merge(id, delta, Integer::sum);
+                    }
+                }
+            }
+        }
+        return drained;
+    }
+
+    private void add(final long id, final int delta) {
+        ConcurrentHashMap<Long, Integer> stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        stripe.merge(id, delta, Integer::sum);
+    }
+
+    protected interface RangeReconciliation {
+
+        /**
+         * @return number of rows with ids in [fromId, toId) whose counter was corrected.
+         */
+        int reconcile(long fromId, long toId);
+    }
+}
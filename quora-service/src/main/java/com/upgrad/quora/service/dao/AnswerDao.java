@@ -1,12 +1,19 @@
 package com.upgrad.quora.service.dao;
 
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.ranking.RankedQuestion;
+import com.upgrad.quora.service.sync.TransactionSnapshot;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @Repository
 public class AnswerDao {
@@ -14,6 +21,130 @@ public class AnswerDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    /**
+     * Counts the answers of every question which has any.
+     *
+     * @return the answered questions with their number of answers, in no particular order.
+     */
+    public List<RankedQuestion> getAnswerCountsByQuestion() {
+        return entityManager.createNamedQuery("answerCountsByQuestion", RankedQuestion.class).getResultList();
+    }
+
+    /**
+     * @param since earliest posting time of the answers.
+     * @return the uuid of the answer, the uuid of its question and the posting time of every answer posted since
+     * then.
+     */
+    public List<Object[]> getAnswerDatesSince(final ZonedDateTime since) {
+        return entityManager.createNamedQuery("answerDatesSince", Object[].class)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    /**
+     * @return the snapshot the transaction reads with, if it is repeatable read.
+     */
+    public TransactionSnapshot getCurrentSnapshot() {
+        return TransactionSnapshot.parse((String) entityManager.createNamedQuery("currentSnapshot").getSingleResult());
+    }
+
+    /**
+     * @param questionUuids uuids of the questions to count the answers of.
+     * @return those of the questions which have any answer, with their number of answers.
+     */
+    public List<RankedQuestion> getAnswerCountsOfQuestions(final Collection<String> questionUuids) {
+        return entityManager.createNamedQuery("answerCountsOfQuestions", RankedQuestion.class)
+                .setParameter("uuids", questionUuids)
+                .getResultList();
+    }
+
+    /**
+     * @param questionUuids uuids of the questions.
+     * @param since         earliest posting time of the answers.
+     * @return the uuid of the answer, the uuid of its question and the posting time of every answer to them
+     * posted since then.
+     */
+    public List<Object[]> getAnswerDatesOfQuestionsSince(final Collection<String> questionUuids, final ZonedDateTime since) {
+        return entityManager.createNamedQuery("answerDatesOfQuestionsSince", Object[].class)
+                .setParameter("uuids", questionUuids)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    /**
+     * Records the vote of a user on an answer, replacing the previous vote of the user on it.
+     *
+     * @param vote 1 for an upvote, -1 for a downvote.
+     * @return the previous vote of the user on the answer, 0 if there was none.
+     */
+    public int recordVote(final long answerId, final long userId, final int vote) {
+        return (Integer) entityManager.createNamedQuery("recordAnswerVote")
+                .setParameter("answerId", answerId)
+                .setParameter("userId", userId)
+                .setParameter("vote", vote)
+                .setParameter("votedAt", ZonedDateTime.now())
+                .getSingleResult();
+    }
+
+    /**
+     * Removes the vote of a user on an answer.
+     *
+     * @return the removed vote, 0 if the user had not voted on the answer.
+     */
+    public int withdrawVote(final long answerId, final long userId) {
+        List<?> withdrawn = entityManager.createNamedQuery("withdrawAnswerVote")
+                .setParameter("answerId", answerId)
+                .setParameter("userId", userId)
+                .getResultList();
+        return withdrawn.isEmpty() ? 0 : (Integer) withdrawn.get(0);
+    }
+
+    /**
+     * Adds deltas to the scores of many answers in a single update.
+     *
+     * @param deltas score delta by answer id.
+     * @return number of answers updated, deleted answers are skipped.
+     */
+    public int addToScores(final Map<Long, Integer> deltas) {
+        StringJoiner ids = new StringJoiner(",", "{", "}");
+        StringJoiner values = new StringJoiner(",", "{", "}");
+        deltas.forEach((answerId, delta) -> {
+            ids.add(answerId.toString());
+            values.add(delta.toString());
+        });
+        return entityManager
+                .createNamedQuery("addToAnswerScores")
+                .setParameter("ids", ids.toString())
+                .setParameter("deltas", values.toString())
+                .executeUpdate();
+    }
+
+    /**
+     * Sets the score of the answers with ids in [fromId, toId) to the sum of their votes.
+     *
+     * @return number of answers whose score was corrected.
+     */
+    public int reconcileScores(final long fromId, final long toId) {
+        int corrected = entityManager
+                .createNamedQuery("reconcileAnswerScores")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+        return corrected + entityManager
+                .createNamedQuery("resetAnswerScoresWithoutVotes")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the highest answer id, 0 if there is no answer.
+     */
+    public long getMaxAnswerId() {
+        Integer maxId = entityManager.createNamedQuery("maxAnswerId", Integer.class).getSingleResult();
+        return maxId == null ? 0 : maxId;
+    }
+
     /**
      * Method to persist the new answer posted by any user on a question.
      *
@@ -55,14 +186,40 @@ public class AnswerDao {
 
 
     /**
-     * Removes the entity from database
+     * Marks the answer deleted, it is left out by every query from then on and removed by the purge later.
      *
      * @param answerId uuid of the answer to be deleted
      * @author Vipin P K
      */
     public void performDeleteAnswer(final String answerId) {
-        AnswerEntity answerEntity = getAnswerById(answerId);
-        entityManager.remove(answerEntity);
+        entityManager.createNamedQuery("softDeleteAnswer")
+                .setParameter("uuid", answerId)
+                .setParameter("deletedAt", ZonedDateTime.now())
+                .executeUpdate();
+    }
+
+    /**
+     * Removes a chunk of the answers deleted before the given time.
+     *
+     * @return number of answers removed.
+     */
+    public int purgeDeletedAnswers(final ZonedDateTime before, final int chunkSize) {
+        return entityManager.createNamedQuery("purgeDeletedAnswers")
+                .setParameter("before", Timestamp.from(before.toInstant()))
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes a chunk of the answers to the questions deleted before the given time, ahead of the questions.
+     *
+     * @return number of answers removed.
+     */
+    public int purgeAnswersOfDeletedQuestions(final ZonedDateTime before, final int chunkSize) {
+        return entityManager.createNamedQuery("purgeAnswersOfDeletedQuestions")
+                .setParameter("before", Timestamp.from(before.toInstant()))
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
     }
 
     /**
@@ -79,4 +236,15 @@ public class AnswerDao {
                 .getResultList();
     }
 
+    /**
+     * @param questionId uuid of the question.
+     * @return the answers to the question, highest score first.
+     */
+    public List<AnswerEntity> getAllAnswersToQuestionByScore(final String questionId) {
+        return entityManager
+                .createNamedQuery("getAllAnswersToQuestionByScore", AnswerEntity.class)
+                .setParameter("uuid", questionId)
+                .getResultList();
+    }
+
 }
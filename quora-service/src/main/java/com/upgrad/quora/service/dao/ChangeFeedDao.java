@@ -0,0 +1,107 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.TombstoneEntity;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class ChangeFeedDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Records the deletion of a question or answer for the clients which sync incrementally.
+     *
+     * @param kind         kind of the deleted content.
+     * @param uuid         uuid of the deleted question or answer.
+     * @param questionUuid uuid of the question, or of the question the answer belonged to.
+     */
+    public void createTombstone(final ChangeKind kind, final String uuid, final String questionUuid) {
+        TombstoneEntity tombstoneEntity = new TombstoneEntity();
+        tombstoneEntity.setEntityType(kind);
+        tombstoneEntity.setUuid(uuid);
+        tombstoneEntity.setQuestionUuid(questionUuid);
+        tombstoneEntity.setDeletedAt(ZonedDateTime.now());
+        entityManager.persist(tombstoneEntity);
+    }
+
+    /**
+     * @return id of the oldest transaction still running, every transaction with a lower id has ended and the
+     * rows it committed are all visible.
+     */
+    public long getCommittedHorizon() {
+        return ((Number) entityManager.createNamedQuery("committedHorizon").getSingleResult()).longValue();
+    }
+
+    /**
+     * @param since   position to continue after.
+     * @param horizon changes of this transaction and the later ones are left for the next call.
+     * @param limit   maximum number of changes.
+     * @return created or edited questions ordered by transaction and id.
+     */
+    public List<ContentChange> getQuestionChanges(final SyncToken since, final long horizon, final int limit) {
+        List<ContentChange> changes = new ArrayList<>();
+        for (Object[] row : getChanges("questionChangesSince", since, SyncToken.Source.QUESTION, horizon, limit)) {
+            changes.add(new ContentChange((Number) row[0], (String) row[1], (String) row[2], (String) row[3],
+                    (ZonedDateTime) row[4], (Number) row[5], ChangeKind.QUESTION));
+        }
+        return changes;
+    }
+
+    /**
+     * @return created or edited answers ordered by transaction and id.
+     * @see #getQuestionChanges(SyncToken, long, int)
+     */
+    public List<ContentChange> getAnswerChanges(final SyncToken since, final long horizon, final int limit) {
+        List<ContentChange> changes = new ArrayList<>();
+        for (Object[] row : getChanges("answerChangesSince", since, SyncToken.Source.ANSWER, horizon, limit)) {
+            changes.add(new ContentChange((Number) row[0], (String) row[1], (String) row[2], (String) row[3],
+                    (ZonedDateTime) row[4], (Number) row[5], ChangeKind.ANSWER));
+        }
+        return changes;
+    }
+
+    /**
+     * @return deleted questions and answers ordered by transaction and id.
+     * @see #getQuestionChanges(SyncToken, long, int)
+     */
+    public List<ContentChange> getTombstones(final SyncToken since, final long horizon, final int limit) {
+        List<ContentChange> changes = new ArrayList<>();
+        for (Object[] row : getChanges("tombstoneChangesSince", since, SyncToken.Source.TOMBSTONE, horizon, limit)) {
+            changes.add(new ContentChange((Number) row[0], (String) row[1], (String) row[2], (ZonedDateTime) row[3],
+                    (Number) row[5], (ChangeKind) row[4]));
+        }
+        return changes;
+    }
+
+    /**
+     * @param before tombstones written earlier than this are removed.
+     * @return number of removed tombstones.
+     */
+    public int deleteTombstonesBefore(final ZonedDateTime before) {
+        return entityManager
+                .createNamedQuery("deleteTombstonesBefore")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+
+    private List<Object[]> getChanges(final String queryName, final SyncToken since, final SyncToken.Source source,
+                                      final long horizon, final int limit) {
+        return entityManager
+                .createNamedQuery(queryName, Object[].class)
+                .setParameter("sinceXid", since.getChangeXid())
+                .setParameter("afterId", since.rowIdFor(source))
+                .setParameter("horizon", horizon)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
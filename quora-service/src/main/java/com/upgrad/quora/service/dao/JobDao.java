@@ -0,0 +1,151 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.JobEntity;
+import com.upgrad.quora.service.job.JobStatus;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class JobDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Stores a job, it can be claimed only once the surrounding transaction commits.
+     *
+     * @param jobEntity job to be stored.
+     * @return the stored job.
+     */
+    public JobEntity createJob(final JobEntity jobEntity) {
+        entityManager.persist(jobEntity);
+        return jobEntity;
+    }
+
+    /**
+     * Stores a job without payload unless a job of the same key is pending or running.
+     *
+     * @return true if the job was stored.
+     */
+    public boolean createUniqueJob(final String jobType, final String uniqueKey, final int maxAttempts,
+                                   final ZonedDateTime runAt) {
+        return entityManager
+                .createNamedQuery("createUniqueJob")
+                .setParameter("jobType", jobType)
+                .setParameter("uniqueKey", uniqueKey)
+                .setParameter("maxAttempts", maxAttempts)
+                .setParameter("runAt", runAt)
+                .setParameter("now", ZonedDateTime.now())
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Locks the due jobs of a type for the current transaction. Jobs already locked by another node are skipped
+     * instead of waited for.
+     *
+     * @param jobType   type of the jobs.
+     * @param now       jobs due at or before this time are claimed.
+     * @param batchSize maximum number of jobs to claim.
+     * @return due jobs, the earliest due first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<JobEntity> claimDueJobs(final String jobType, final ZonedDateTime now, final int batchSize) {
+        return entityManager
+                .createNamedQuery("claimDueJobs")
+                .setParameter("jobType", jobType)
+                .setParameter("now", now)
+                .setParameter("batchSize", batchSize)
+                .getResultList();
+    }
+
+    /**
+     * Extends the lease of running jobs, the ones no longer held by the node are left as they are.
+     *
+     * @return number of leases extended.
+     */
+    public int renewLeases(final Collection<Long> ids, final String nodeId, final ZonedDateTime lockedUntil) {
+        return entityManager
+                .createNamedQuery("renewJobLeases")
+                .setParameter("ids", ids)
+                .setParameter("nodeId", nodeId)
+                .setParameter("lockedUntil", lockedUntil)
+                .executeUpdate();
+    }
+
+    /**
+     * Releases the running jobs whose lease expired, to be retried or failed after their last attempt.
+     *
+     * @return number of jobs released.
+     */
+    public int releaseExpiredLeases(final ZonedDateTime now) {
+        return entityManager
+                .createNamedQuery("releaseExpiredJobLeases")
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+
+    /**
+     * Ends a job run by the node.
+     *
+     * @param status    {@link JobStatus#DONE} or {@link JobStatus#FAILED}.
+     * @param lastError error of the last attempt, null if it succeeded.
+     * @return false if the node no longer held the lease of the job.
+     */
+    public boolean finishJob(final long id, final String nodeId, final JobStatus status, final String lastError) {
+        return entityManager
+                .createNamedQuery("finishJob")
+                .setParameter("id", id)
+                .setParameter("nodeId", nodeId)
+                .setParameter("status", status)
+                .setParameter("now", ZonedDateTime.now())
+                .setParameter("lastError", lastError)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Puts back a job run by the node after a failed attempt.
+     *
+     * @param runAt     time of the next attempt.
+     * @param lastError error of the failed attempt.
+     * @return false if the node no longer held the lease of the job.
+     */
+    public boolean retryJob(final long id, final String nodeId, final ZonedDateTime runAt, final String lastError) {
+        return entityManager
+                .createNamedQuery("retryJob")
+                .setParameter("id", id)
+                .setParameter("nodeId", nodeId)
+                .setParameter("runAt", runAt)
+                .setParameter("lastError", lastError)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * @return number of pending jobs by type, the types without any are missing.
+     */
+    public Map<String, Long> getPendingJobCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : entityManager.createNamedQuery("pendingJobCounts", Object[].class).getResultList()) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    /**
+     * Removes the jobs which were done or failed before the given time.
+     *
+     * @return number of jobs deleted.
+     */
+    public int deleteFinishedJobs(final ZonedDateTime before) {
+        return entityManager
+                .createNamedQuery("deleteFinishedJobs")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
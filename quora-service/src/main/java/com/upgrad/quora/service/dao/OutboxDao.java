@@ -0,0 +1,82 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.OutboxEventEntity;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+@Repository
+public class OutboxDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Writes a domain event to the outbox, it becomes visible to the dispatchers only when the surrounding
+     * transaction commits.
+     *
+     * @param outboxEventEntity event to be stored.
+     * @return the stored event.
+     */
+    public OutboxEventEntity createEvent(final OutboxEventEntity outboxEventEntity) {
+        entityManager.persist(outboxEventEntity);
+        return outboxEventEntity;
+    }
+
+    /**
+     * @return id of the oldest transaction still running, every event raised by a transaction with a lower id
+     * is committed or gone.
+     */
+    public long getCommittedHorizon() {
+        return ((Number) entityManager.createNamedQuery("committedHorizon").getSingleResult()).longValue();
+    }
+
+    /**
+     * @param sinceXid  transaction of the position to continue after.
+     * @param afterId   id of the event at that position.
+     * @param horizon   events of this transaction and the later ones are left for the next call.
+     * @param batchSize maximum number of events.
+     * @return events ordered by transaction and id.
+     */
+    public List<OutboxEventEntity> getEventsSince(final long sinceXid, final long afterId, final long horizon,
+                                                  final int batchSize) {
+        return entityManager
+                .createNamedQuery("outboxEventsSince", OutboxEventEntity.class)
+                .setParameter("sinceXid", sinceXid)
+                .setParameter("afterId", afterId)
+                .setParameter("horizon", horizon)
+                .setMaxResults(batchSize)
+                .getResultList();
+    }
+
+    /**
+     * Removes the events which were raised before the given time.
+     *
+     * @param before events raised earlier than this are deleted.
+     * @return number of events deleted.
+     */
+    public int deleteEventsBefore(final ZonedDateTime before) {
+        return entityManager
+                .createNamedQuery("deleteOutboxEventsBefore")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+
+    /**
+     * Sends a notification to the listeners of a channel, it is delivered only when the surrounding transaction
+     * commits.
+     *
+     * @param channel name of the channel.
+     * @param payload payload of the notification, shorter than 8000 bytes.
+     */
+    public void sendNotification(final String channel, final String payload) {
+        entityManager
+                .createNamedQuery("notifyChannel")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload)
+                .getSingleResult();
+    }
+}
@@ -1,5 +1,6 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.cache.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import org.springframework.stereotype.Repository;
@@ -7,7 +8,11 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @Repository
 public class QuestionDao {
@@ -77,29 +82,91 @@ public class QuestionDao {
     }
 
     /**
-     * Delete the question
+     * Marks the question deleted, it is left out by every query from then on along with its answers. They are
+     * removed by the purge later.
      *
      * @param questionEntity question entity to be deleted.
      * @Author: Divyank
      */
     public void deleteQuestion(QuestionEntity questionEntity) {
-        entityManager.remove(questionEntity);
+        entityManager.createNamedQuery("softDeleteQuestion")
+                .setParameter("id", questionEntity.getId())
+                .setParameter("deletedAt", ZonedDateTime.now())
+                .executeUpdate();
     }
 
     /**
-     * Fetch all the questions from the DB.
+     * Removes a chunk of the questions deleted before the given time, their answers are expected to be purged
+     * first.
      *
-     * @param userId userId of the user whose list of asked questions has to be retrieved
-     * @return List of QuestionEntity
-     * @Author: Divyank
+     * @return number of questions removed.
+     */
+    public int purgeDeletedQuestions(final ZonedDateTime before, final int chunkSize) {
+        return entityManager.createNamedQuery("purgeDeletedQuestions")
+                .setParameter("before", Timestamp.from(before.toInstant()))
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Fetch the uuid and content of the questions posted by a user, in the order they were posted.
+     *
+     * @param user user whose questions are to be retrieved.
+     * @return List of QuestionSummary
      */
-    public List<QuestionEntity> getAllQuestionsByUser(final UserEntity userId) {
+    public List<QuestionSummary> getQuestionSummariesByUser(final UserEntity user) {
         return entityManager
-                .createNamedQuery("getQuestionByUser", QuestionEntity.class)
-                .setParameter("user", userId)
+                .createNamedQuery("questionSummariesByUser", QuestionSummary.class)
+                .setParameter("user", user)
                 .getResultList();
     }
 
+    /**
+     * Adds deltas to the answer counts of many questions in a single update.
+     *
+     * @param deltas answer count delta by question id.
+     * @return number of questions updated, deleted questions are skipped.
+     */
+    public int addToAnswerCounts(final Map<Long, Integer> deltas) {
+        StringJoiner ids = new StringJoiner(",", "{", "}");
+        StringJoiner values = new StringJoiner(",", "{", "}");
+        deltas.forEach((questionId, delta) -> {
+            ids.add(questionId.toString());
+            values.add(delta.toString());
+        });
+        return entityManager
+                .createNamedQuery("addToAnswerCounts")
+                .setParameter("ids", ids.toString())
+                .setParameter("deltas", values.toString())
+                .executeUpdate();
+    }
+
+    /**
+     * Sets the answer count of the questions with ids in [fromId, toId) to their actual number of answers.
+     *
+     * @return number of questions whose count was corrected.
+     */
+    public int reconcileAnswerCounts(final long fromId, final long toId) {
+        int corrected = entityManager
+                .createNamedQuery("reconcileAnswerCounts")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+        return corrected + entityManager
+                .createNamedQuery("resetAnswerCountsWithoutAnswers")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the highest question id, 0 if there is no question.
+     */
+    public long getMaxQuestionId() {
+        Long maxId = entityManager.createNamedQuery("maxQuestionId", Long.class).getSingleResult();
+        return maxId == null ? 0 : maxId;
+    }
+
     /**
      * Method will get the question using the uuid entered by the user and return result
      * if no results exception will be thrown..
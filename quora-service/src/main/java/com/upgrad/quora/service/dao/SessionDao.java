@@ -0,0 +1,167 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public class SessionDao {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Marks the sessions as signed out at their expiry, the ones already signed out are left as they are.
+     *
+     * @param ids ids of the expired USER_AUTH rows, not empty.
+     * @return number of sessions marked.
+     */
+    public int expireSessions(final Collection<Integer> ids) {
+        return entityManager
+                .createNamedQuery("expireUserAuthTokens")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * Marks the sessions which expired without signing out as signed out at their expiry, oldest first.
+     *
+     * @param now       sessions expiring at or before this time are marked.
+     * @param batchSize maximum number of sessions to mark.
+     * @return number of sessions marked, less than the batch size once none is left.
+     */
+    public int expireOverdueSessions(final ZonedDateTime now, final int batchSize) {
+        return entityManager
+                .createNamedQuery("expireOverdueUserAuthTokens")
+                .setParameter("now", now)
+                .setParameter("batchSize", batchSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Locks the user until the end of the transaction, so that concurrent sign ins of the user count its active
+     * sessions one after the other.
+     *
+     * @param user user signing in.
+     * @param now  sessions expiring after this time are active.
+     * @return the sessions neither signed out nor expired, the oldest sign in first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UserAuthTokenEntity> getActiveSessionsForUpdate(final UserEntity user, final ZonedDateTime now) {
+        entityManager.lock(user, LockModeType.PESSIMISTIC_WRITE);
+        return entityManager
+                .createNamedQuery("activeUserAuthTokensByUser")
+                .setParameter("userId", user.getId())
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    /**
+     * @param key advisory lock key of the maintenance.
+     * @return whether the partitions may be maintained in this transaction, false while another node does.
+     */
+    public boolean tryLockPartitions(final long key) {
+        return (Boolean) entityManager
+                .createNamedQuery("tryLockUserAuthPartitions")
+                .setParameter("key", key)
+                .getSingleResult();
+    }
+
+    /**
+     * @return names of the partitions of USER_AUTH, including the default one.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getPartitionNames() {
+        return entityManager.createNamedQuery("userAuthPartitions").getResultList();
+    }
+
+    /**
+     * @return names of the tables left detached from USER_AUTH by a maintenance which could not drop them.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getDetachedPartitionNames() {
+        return entityManager.createNamedQuery("detachedUserAuthPartitions").getResultList();
+    }
+
+    /**
+     * Bounds the time the statements of the current transaction wait for a lock, they fail after it instead of
+     * queueing the other sessions of the table behind them.
+     */
+    public void setLockTimeout(final long millis) {
+        execute("set local lock_timeout = " + millis);
+    }
+
+    /**
+     * Adds a partition to USER_AUTH for the sessions expiring in the range. The sessions of the range stored in
+     * the default partition meanwhile are moved to it. The indexes, the foreign key and a check of the range are
+     * in place before the partition is attached, which then neither builds nor validates anything on it.
+     *
+     * @param name name of the partition, a plain identifier.
+     * @param from start of the range, included.
+     * @param to   end of the range, excluded.
+     */
+    public void createPartition(final String name, final LocalDateTime from, final LocalDateTime to) {
+        String range = String.format("expires_at >= '%s' and expires_at < '%s'", TIMESTAMP.format(from), TIMESTAMP.format(to));
+        execute("create table " + name + " (like user_auth including defaults including constraints including indexes)");
+        execute("alter table " + name + " add foreign key (user_id) references users(id) on delete cascade");
+        // Taken before the move so that no session of the range is stored in the default partition until attached
+        execute("lock table user_auth_default in share row exclusive mode");
+        execute("insert into " + name + " select * from user_auth_default where " + range);
+        execute("delete from user_auth_default where " + range);
+        execute("alter table " + name + " add constraint " + name + "_range check (" + range + ")");
+        execute(String.format("alter table user_auth attach partition %s for values from ('%s') to ('%s')",
+                name, TIMESTAMP.format(from), TIMESTAMP.format(to)));
+        // Implied by the partition bounds from here on
+        execute("alter table " + name + " drop constraint " + name + "_range");
+    }
+
+    /**
+     * Detaches a partition from USER_AUTH, its sessions are no longer found. Not concurrently, which Postgres
+     * refuses while the table has a default partition, so the table is locked until the transaction ends.
+     *
+     * @param name name of the partition, a plain identifier.
+     */
+    public void detachPartition(final String name) {
+        execute("alter table user_auth detach partition " + name);
+    }
+
+    /**
+     * Drops a partition detached from USER_AUTH with all of its sessions.
+     *
+     * @param name name of the partition, a plain identifier.
+     */
+    public void dropPartition(final String name) {
+        execute("drop table " + name);
+    }
+
+    /**
+     * Deletes the sessions of the default partition which expired before the given time.
+     *
+     * @param before    sessions expiring earlier than this are deleted.
+     * @param batchSize maximum number of sessions to delete.
+     * @return number of sessions deleted, less than the batch size once none is left.
+     */
+    public int deleteExpiredDefaultSessions(final LocalDateTime before, final int batchSize) {
+        return entityManager
+                .createNamedQuery("deleteExpiredDefaultUserAuthTokens")
+                .setParameter("before", before)
+                .setParameter("batchSize", batchSize)
+                .executeUpdate();
+    }
+
+    // Partition DDL takes identifiers and literals which cannot be bind parameters
+    private void execute(final String statement) {
+        entityManager.createNativeQuery(statement).executeUpdate();
+    }
+}
@@ -2,11 +2,19 @@ package com.upgrad.quora.service.dao;
 
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.session.SessionStore;
+import com.upgrad.quora.service.session.StoredSession;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public class UserDao {
@@ -14,6 +22,9 @@ public class UserDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private SessionStore sessionStore;
+
     /**
      * The method to create a new user from given UserEntity object
      *
@@ -79,12 +90,36 @@ public class UserDao {
     }
 
     /**
-     * The method to get the user access token
+     * The method to get the user access token, whether or not it has expired.
+     * <p>
+     * When the session store is enabled, a recently verified session is served from it with only the user read
+     * from the database, the returned token is then not managed. Use {@link #getUserAuthTokenForUpdate} to change
+     * the session.
      *
      * @param accessToken: will be searched in database for existing user
      * @Author: Vipin P K
      */
     public UserAuthTokenEntity getUserAuthToken(final String accessToken) {
+        StoredSession storedSession = sessionStore.get(accessToken);
+        if (storedSession != null) {
+            UserEntity userEntity = entityManager.find(UserEntity.class, storedSession.getUserId());
+            if (userEntity != null) {
+                return toUserAuthToken(accessToken, storedSession, userEntity);
+            }
+        }
+        UserAuthTokenEntity userAuthTokenEntity = getUserAuthTokenForUpdate(accessToken);
+        if (userAuthTokenEntity != null) {
+            sessionStore.put(userAuthTokenEntity);
+        }
+        return userAuthTokenEntity;
+    }
+
+    /**
+     * The method to get the user access token from the database as a managed entity, whether or not it has expired.
+     *
+     * @param accessToken: will be searched in database for existing user
+     */
+    public UserAuthTokenEntity getUserAuthTokenForUpdate(final String accessToken) {
         try {
             return entityManager.createNamedQuery("userAuthTokenByAccessToken", UserAuthTokenEntity.class).setParameter("accessToken", accessToken).getSingleResult();
         } catch (NoResultException nre) {
@@ -92,6 +127,19 @@ public class UserDao {
         }
     }
 
+    /**
+     * Marks a user access token as signed out for the caller only, the change is not written to the database.
+     *
+     * @param userAuthTokenEntity token read by this dao, managed or not.
+     * @param logoutAt            time it is signed out at.
+     */
+    public void signOutUnsaved(final UserAuthTokenEntity userAuthTokenEntity, final ZonedDateTime logoutAt) {
+        if (entityManager.contains(userAuthTokenEntity)) {
+            entityManager.detach(userAuthTokenEntity);
+        }
+        userAuthTokenEntity.setLogoutAt(logoutAt);
+    }
+
     /**
      * Fetch a single user by given id from the DB.
      *
@@ -110,16 +158,48 @@ public class UserDao {
     }
 
     /**
-     * Delete a user by given id from the DB.
+     * Fetch the users with the given ids from the DB in a single query.
      *
-     * @param userUuid Id of the user whose information is to be fetched.
+     * @param userUuids Ids of the users whose information is to be fetched, not empty.
+     * @return Details of the users which exist in the DB, in no particular order.
+     */
+    public List<UserEntity> getUsersByIds(final Collection<String> userUuids) {
+        return entityManager
+                .createNamedQuery("usersByUserUuids", UserEntity.class)
+                .setParameter("uuids", userUuids)
+                .getResultList();
+    }
+
+    /**
+     * Delete a user by given id from the DB, along with whatever still references it.
+     *
+     * @param userId Id of the user, deleted or not.
      * @return User details which is to be deleted if exist in the DB else null.
      */
-    public UserEntity deleteUser(final String userUuid) {
-        UserEntity deleteUser = getUserById(userUuid);
+    public UserEntity deleteUser(final long userId) {
+        UserEntity deleteUser = entityManager.find(UserEntity.class, userId);
         if (deleteUser != null) {
             this.entityManager.remove(deleteUser);
         }
         return deleteUser;
     }
+
+    private static UserAuthTokenEntity toUserAuthToken(final String accessToken, final StoredSession storedSession,
+                                                       final UserEntity userEntity) {
+        UserAuthTokenEntity userAuthTokenEntity = new UserAuthTokenEntity();
+        userAuthTokenEntity.setId(storedSession.getId());
+        userAuthTokenEntity.setUser(userEntity);
+        userAuthTokenEntity.setUserUuid(userEntity.getUuid());
+        userAuthTokenEntity.setAccessToken(accessToken);
+        userAuthTokenEntity.setLoginAt(toDateTime(storedSession.getLoginAt()));
+        userAuthTokenEntity.setExpiresAt(toDateTime(storedSession.getExpiresAt()));
+        if (storedSession.getLogoutAt() != 0) {
+            userAuthTokenEntity.setLogoutAt(toDateTime(storedSession.getLogoutAt()));
+        }
+        return userAuthTokenEntity;
+    }
+
+    private static ZonedDateTime toDateTime(final long epochMillis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
 }
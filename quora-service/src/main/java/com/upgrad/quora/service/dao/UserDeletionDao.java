@@ -0,0 +1,123 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.UserDeletionEntity;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Tracks the deletions of users and removes the content of a deleted user one chunk at a time. Every chunk method
+ * removes at most the given number of rows, fewer once the user has none left.
+ */
+@Repository
+public class UserDeletionDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserDeletionEntity createUserDeletion(final UserDeletionEntity userDeletionEntity) {
+        entityManager.persist(userDeletionEntity);
+        return userDeletionEntity;
+    }
+
+    public UserDeletionEntity getUserDeletion(final long id) {
+        return entityManager.find(UserDeletionEntity.class, id);
+    }
+
+    /**
+     * @return the deletion of the user, null if the user was never deleted.
+     */
+    public UserDeletionEntity getUserDeletionByUserUuid(final String userUuid) {
+        try {
+            return entityManager.createNamedQuery("userDeletionByUserUuid", UserDeletionEntity.class)
+                    .setParameter("userUuid", userUuid)
+                    .getSingleResult();
+        } catch (NoResultException nre) {
+            return null;
+        }
+    }
+
+    /**
+     * @return number of sessions removed.
+     */
+    public int deleteSessionsChunk(final long userId, final int chunkSize) {
+        return entityManager.createNamedQuery("deleteUserSessionsChunk")
+                .setParameter("userId", userId)
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes votes the user cast, the scores of the answers are corrected by their reconciliation.
+     *
+     * @return number of votes removed.
+     */
+    public int deleteVotesChunk(final long userId, final int chunkSize) {
+        return entityManager.createNamedQuery("deleteUserVotesChunk")
+                .setParameter("userId", userId)
+                .setParameter("chunkSize", chunkSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes answers the user posted, recording their deletion for the clients which sync incrementally.
+     *
+     * @return the uuid of every answer removed, the uuid of its question and true if it was not marked deleted
+     * before.
+     */
+    public List<Object[]> deleteAnswersChunk(final long userId, final int chunkSize, final ZonedDateTime deletedAt) {
+        return deleteAnswers("deleteUserAnswersChunk", userId, chunkSize, deletedAt);
+    }
+
+    /**
+     * Removes answers posted by anyone to the questions of the user, recording their deletion.
+     *
+     * @return the uuid of every answer removed, the uuid of its question and true if it was not marked deleted
+     * before.
+     */
+    public List<Object[]> deleteAnswersToQuestionsChunk(final long userId, final int chunkSize,
+                                                        final ZonedDateTime deletedAt) {
+        return deleteAnswers("deleteAnswersToUserQuestionsChunk", userId, chunkSize, deletedAt);
+    }
+
+    /**
+     * Removes questions of the user, recording their deletion.
+     *
+     * @return number of questions removed.
+     */
+    public int deleteQuestionsChunk(final long userId, final int chunkSize, final ZonedDateTime deletedAt) {
+        return deleteChunk("deleteUserQuestionsChunk", userId, chunkSize, deletedAt);
+    }
+
+    /**
+     * Locks the user and the questions of the user until the end of the transaction, the questions and answers
+     * added to them meanwhile are committed first or wait for it.
+     */
+    public void lockForRemoval(final long userId) {
+        entityManager.createNamedQuery("lockUserForRemoval").setParameter("userId", userId).getResultList();
+        entityManager.createNamedQuery("lockUserQuestionsForRemoval").setParameter("userId", userId).getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> deleteAnswers(final String queryName, final long userId, final int chunkSize,
+                                         final ZonedDateTime deletedAt) {
+        return entityManager.createNamedQuery(queryName)
+                .setParameter("userId", userId)
+                .setParameter("chunkSize", chunkSize)
+                .setParameter("deletedAt", Timestamp.from(deletedAt.toInstant()))
+                .getResultList();
+    }
+
+    private int deleteChunk(final String queryName, final long userId, final int chunkSize, final ZonedDateTime deletedAt) {
+        return ((Number) entityManager.createNamedQuery(queryName)
+                .setParameter("userId", userId)
+                .setParameter("chunkSize", chunkSize)
+                .setParameter("deletedAt", Timestamp.from(deletedAt.toInstant()))
+                .getSingleResult()).intValue();
+    }
+}
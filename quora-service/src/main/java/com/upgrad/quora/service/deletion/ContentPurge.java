@@ -0,0 +1,132 @@
+package com.upgrad.quora.service.deletion;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.job.JobHandler;
+import com.upgrad.quora.service.job.JobScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.function.IntSupplier;
+
+/**
+ * Removes the questions and answers marked deleted, once they have been deleted for the grace period. Deleting
+ * only marks the rows so that a deletion never waits on the answers of a question, the rows are removed here in
+ * chunks, one per transaction with a pause in between, and only within the off-peak window.
+ * <p>
+ * The answers are removed first, those deleted on their own and those of the deleted questions, then the questions
+ * which are left without answers. A purge is a job due at the start of the next window, enqueued by every node
+ * but run by one node at a time, and it can last as long as the window.
+ */
+@Component
+public class ContentPurge implements JobHandler {
+
+    public static final String JOB_TYPE = "content-purge";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContentPurge.class);
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Value("${quora.purge.window-start:02:00}")
+    private String windowStart;
+
+    @Value("${quora.purge.window-end:05:00}")
+    private String windowEnd;
+
+    @Value("${quora.purge.grace-hours:24}")
+    private int graceHours;
+
+    @Value("${quora.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${quora.purge.throttle-ms:100}")
+    private long throttleMillis;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ContentPurge(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Schedules the purge of the current or next off-peak window, unless a node already scheduled one.
+     */
+    @Scheduled(fixedDelayString = "${quora.purge.interval-ms:600000}")
+    public void schedulePurge() {
+        jobScheduler.enqueueUnique(JOB_TYPE, nextWindowStart());
+    }
+
+    @Override
+    public String getJobType() {
+        return JOB_TYPE;
+    }
+
+    /**
+     * Purges the deleted questions and answers, nothing if the window is over by then.
+     */
+    @Override
+    public void run(final String payload) throws InterruptedException {
+        if (inWindow()) {
+            purge();
+        }
+    }
+
+    private void purge() throws InterruptedException {
+        ZonedDateTime before = ZonedDateTime.now().minusHours(graceHours);
+        long answers = purgeInChunks(() -> answerDao.purgeDeletedAnswers(before, chunkSize))
+                + purgeInChunks(() -> answerDao.purgeAnswersOfDeletedQuestions(before, chunkSize));
+        long questions = purgeInChunks(() -> questionDao.purgeDeletedQuestions(before, chunkSize));
+        if (answers > 0 || questions > 0) {
+            LOG.info("Purged {} deleted answers and {} deleted questions", answers, questions);
+        }
+    }
+
+    private ZonedDateTime nextWindowStart() {
+        ZonedDateTime now = ZonedDateTime.now();
+        if (inWindow()) {
+            return now;
+        }
+        ZonedDateTime start = now.with(LocalTime.parse(windowStart));
+        return start.isAfter(now) ? start : start.plusDays(1);
+    }
+
+    // The window may span midnight
+    private boolean inWindow() {
+        LocalTime now = LocalTime.now();
+        LocalTime start = LocalTime.parse(windowStart);
+        LocalTime end = LocalTime.parse(windowEnd);
+        if (start.isBefore(end)) {
+            return !now.isBefore(start) && now.isBefore(end);
+        }
+        return !now.isBefore(start) || now.isBefore(end);
+    }
+
+    private long purgeInChunks(final IntSupplier chunk) throws InterruptedException {
+        long total = 0;
+        int purged = chunkSize;
+        while (purged == chunkSize && inWindow()) {
+            purged = transactionTemplate.execute(status -> chunk.getAsInt());
+            total += purged;
+            if (purged == chunkSize) {
+                Thread.sleep(throttleMillis);
+            }
+        }
+        return total;
+    }
+}
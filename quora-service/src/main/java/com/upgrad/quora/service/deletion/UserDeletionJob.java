@@ -0,0 +1,167 @@
+package com.upgrad.quora.service.deletion;
+
+import com.upgrad.quora.service.cache.UserQuestionCache;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.dao.UserDeletionDao;
+import com.upgrad.quora.service.entity.UserDeletionEntity;
+import com.upgrad.quora.service.event.DomainEventPublisher;
+import com.upgrad.quora.service.event.DomainEventType;
+import com.upgrad.quora.service.invalidation.InvalidationPublisher;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import com.upgrad.quora.service.job.JobHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Removes the content of a user marked deleted, then the user. The sessions, the votes, the answers of the user,
+ * the answers to the questions of the user and the questions are removed in turn, one chunk per transaction, so
+ * that no transaction holds many locks or writes much at once. The job pauses between chunks to leave room for the
+ * requests and for the replicas to keep up.
+ * <p>
+ * The progress is counted in the deletion after every chunk. A job run again continues with what is left, as the
+ * chunks are picked by the user rather than by position. The last transaction locks the user and the questions,
+ * removes the answers and questions added since their chunks with their tombstones, then removes the user.
+ */
+@Component
+public class UserDeletionJob implements JobHandler {
+
+    public static final String JOB_TYPE = "user-deletion";
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserDeletionJob.class);
+
+    @Autowired
+    private UserDeletionDao userDeletionDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private DomainEventPublisher eventPublisher;
+
+    @Autowired
+    private UserQuestionCache userQuestionCache;
+
+    @Autowired
+    private InvalidationPublisher invalidationPublisher;
+
+    @Value("${quora.user-deletion.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${quora.user-deletion.throttle-ms:50}")
+    private long throttleMillis;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public UserDeletionJob(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public String getJobType() {
+        return JOB_TYPE;
+    }
+
+    /**
+     * @param payload id of the deletion.
+     */
+    @Override
+    public void run(final String payload) throws InterruptedException {
+        long deletionId = Long.parseLong(payload);
+        UserDeletionEntity deletion = transactionTemplate.execute(status -> userDeletionDao.getUserDeletion(deletionId));
+        if (deletion == null || deletion.getCompletedAt() != null) {
+            return;
+        }
+        long userId = deletion.getUserId();
+        removeInChunks(deletionId, "sessions", d -> {
+            int deleted = userDeletionDao.deleteSessionsChunk(userId, chunkSize);
+            d.setSessionsDeleted(d.getSessionsDeleted() + deleted);
+            return deleted;
+        });
+        removeInChunks(deletionId, "votes", d -> {
+            int deleted = userDeletionDao.deleteVotesChunk(userId, chunkSize);
+            d.setVotesDeleted(d.getVotesDeleted() + deleted);
+            return deleted;
+        });
+        removeInChunks(deletionId, "answers", d -> deleteAnswersChunk(userId, d));
+        removeInChunks(deletionId, "answers to the questions", d -> deleteAnswersToQuestionsChunk(userId, d));
+        removeInChunks(deletionId, "questions", d -> deleteQuestionsChunk(userId, d));
+        UserDeletionEntity completed = transactionTemplate.execute(status -> {
+            UserDeletionEntity d = userDeletionDao.getUserDeletion(deletionId);
+            // The answers and questions added since the last chunks are removed with their tombstones rather than
+            // through the cascade, those added from now on wait for the user to be gone and fail
+            userDeletionDao.lockForRemoval(userId);
+            removeRest(() -> deleteAnswersChunk(userId, d));
+            removeRest(() -> deleteAnswersToQuestionsChunk(userId, d));
+            removeRest(() -> deleteQuestionsChunk(userId, d));
+            userDao.deleteUser(userId);
+            d.setCompletedAt(ZonedDateTime.now());
+            eventPublisher.publish(DomainEventType.USER_DELETED, d.getUserUuid(), null, null);
+            userQuestionCache.invalidate(d.getUserUuid());
+            invalidationPublisher.publish(InvalidationType.USER_QUESTIONS, d.getUserUuid());
+            return d;
+        });
+        LOG.info("Deleted user {} with {} sessions, {} votes, {} answers and {} questions", completed.getUserUuid(),
+                completed.getSessionsDeleted(), completed.getVotesDeleted(), completed.getAnswersDeleted(),
+                completed.getQuestionsDeleted());
+    }
+
+    // The tombstones of a chunk are dated when it is removed, so the clients syncing meanwhile are not handed
+    // deletions older than the changes they already read
+    private int deleteAnswersChunk(final long userId, final UserDeletionEntity deletion) {
+        return answersDeleted(deletion, userDeletionDao.deleteAnswersChunk(userId, chunkSize, ZonedDateTime.now()));
+    }
+
+    private int deleteAnswersToQuestionsChunk(final long userId, final UserDeletionEntity deletion) {
+        return answersDeleted(deletion,
+                userDeletionDao.deleteAnswersToQuestionsChunk(userId, chunkSize, ZonedDateTime.now()));
+    }
+
+    // The views following the answers through the events are told like for an answer deleted by its author
+    private int answersDeleted(final UserDeletionEntity deletion, final List<Object[]> deleted) {
+        for (Object[] answer : deleted) {
+            if ((Boolean) answer[2]) {
+                eventPublisher.publish(DomainEventType.ANSWER_DELETED, (String) answer[0], (String) answer[1], null);
+            }
+        }
+        deletion.setAnswersDeleted(deletion.getAnswersDeleted() + deleted.size());
+        return deleted.size();
+    }
+
+    private int deleteQuestionsChunk(final long userId, final UserDeletionEntity deletion) {
+        int deleted = userDeletionDao.deleteQuestionsChunk(userId, chunkSize, ZonedDateTime.now());
+        deletion.setQuestionsDeleted(deletion.getQuestionsDeleted() + deleted);
+        return deleted;
+    }
+
+    private void removeInChunks(final long deletionId, final String content, final ToIntFunction<UserDeletionEntity> chunk)
+            throws InterruptedException {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> chunk.applyAsInt(userDeletionDao.getUserDeletion(deletionId)));
+            total += deleted;
+            if (deleted == chunkSize) {
+                LOG.debug("Deleted {} {} of the user of deletion {} so far", total, content, deletionId);
+                Thread.sleep(throttleMillis);
+            }
+        } while (deleted == chunkSize);
+    }
+
+    private void removeRest(final IntSupplier chunk) {
+        int deleted;
+        do {
+            deleted = chunk.getAsInt();
+        } while (deleted == chunkSize);
+    }
+}
@@ -15,9 +15,66 @@ import java.time.ZonedDateTime;
 @SuppressWarnings("all")
 @Entity
 @Table(name = "answer")
+@NamedNativeQueries({
+        // Applies the buffered score deltas of many answers in one statement, the arrays are parallel
+        @NamedNativeQuery(name = "addToAnswerScores",
+                query = "update answer a set score = a.score + d.delta "
+                        + "from (select unnest(cast(:ids as bigint[])) as id, unnest(cast(:deltas as int[])) as delta) d "
+                        + "where a.id = d.id"),
+        // Resets the score of the answers in an id range to the sum of their votes where it drifted
+        @NamedNativeQuery(name = "reconcileAnswerScores",
+                query = "update answer a set score = s.votes "
+                        + "from (select v.answer_id, sum(v.vote) as votes from answer_vote v "
+                        + "where v.answer_id >= :fromId and v.answer_id < :toId group by v.answer_id) s "
+                        + "where a.id = s.answer_id and a.score <> s.votes and a.deleted_at is null"),
+        @NamedNativeQuery(name = "resetAnswerScoresWithoutVotes",
+                query = "update answer a set score = 0 where a.id >= :fromId and a.id < :toId and a.score <> 0 "
+                        + "and a.deleted_at is null and not exists (select 1 from answer_vote v where v.answer_id = a.id)"),
+        // Answers deleted before the given time, and the answers left under the questions deleted before then,
+        // removed physically. Rows locked by another node purging at the same time are left to it.
+        @NamedNativeQuery(name = "purgeDeletedAnswers",
+                query = "delete from answer where id in (select id from answer where deleted_at < :before "
+                        + "limit :chunkSize for update skip locked)"),
+        @NamedNativeQuery(name = "purgeAnswersOfDeletedQuestions",
+                query = "delete from answer where id in (select a.id from answer a join question q on q.id = a.question_id "
+                        + "where q.deleted_at < :before limit :chunkSize for update of a skip locked)"),
+        // Snapshot of the statement, the one of the whole transaction when it is repeatable read
+        @NamedNativeQuery(name = "currentSnapshot", query = "select cast(pg_current_snapshot() as text)")
+})
 @NamedQueries({
-        @NamedQuery(name = "getAnswerByUuid", query = "select a from AnswerEntity a where a.uuid=:uuid"),
-        @NamedQuery(name = "getAllAnswersToQuestion", query = "select a from AnswerEntity a where a.questionEntity.uuid=:uuid"),
+        // The answers of a deleted question are left out along with it
+        @NamedQuery(name = "getAnswerByUuid",
+                query = "select a from AnswerEntity a where a.uuid=:uuid and a.deletedAt is null and a.questionEntity.deletedAt is null"),
+        @NamedQuery(name = "getAllAnswersToQuestion",
+                query = "select a from AnswerEntity a where a.questionEntity.uuid=:uuid and a.deletedAt is null and a.questionEntity.deletedAt is null"),
+        @NamedQuery(name = "getAllAnswersToQuestionByScore",
+                query = "select a from AnswerEntity a where a.questionEntity.uuid = :uuid and a.deletedAt is null "
+                        + "and a.questionEntity.deletedAt is null order by a.score desc, a.id"),
+        @NamedQuery(name = "maxAnswerId", query = "select max(a.id) from AnswerEntity a where a.deletedAt is null"),
+        // Loading of the question rankings
+        @NamedQuery(name = "answerCountsByQuestion",
+                query = "select new com.upgrad.quora.service.ranking.RankedQuestion(q.uuid, q.content, count(a)) "
+                        + "from AnswerEntity a join a.questionEntity q where a.deletedAt is null and q.deletedAt is null "
+                        + "group by q.id, q.uuid, q.content"),
+        @NamedQuery(name = "answerDatesSince",
+                query = "select a.uuid, q.uuid, a.date from AnswerEntity a join a.questionEntity q "
+                        + "where a.date >= :since and a.deletedAt is null and q.deletedAt is null"),
+        // Recounting of the questions changed since the rankings were loaded
+        @NamedQuery(name = "answerCountsOfQuestions",
+                query = "select new com.upgrad.quora.service.ranking.RankedQuestion(q.uuid, q.content, count(a)) "
+                        + "from AnswerEntity a join a.questionEntity q where q.uuid in :uuids and a.deletedAt is null "
+                        + "and q.deletedAt is null group by q.id, q.uuid, q.content"),
+        @NamedQuery(name = "answerDatesOfQuestionsSince",
+                query = "select a.uuid, q.uuid, a.date from AnswerEntity a join a.questionEntity q "
+                        + "where q.uuid in :uuids and a.date >= :since and a.deletedAt is null and q.deletedAt is null"),
+        // Answers changed after the given (changeXid, id) position of the change feed, by the transactions
+        // older than the horizon
+        @NamedQuery(name = "answerChangesSince",
+                query = "select a.id, a.uuid, q.uuid, a.answer, a.updatedAt, a.changeXid from AnswerEntity a join a.questionEntity q "
+                        + "where (a.changeXid, a.id) > (:sinceXid, :afterId) and a.changeXid < :horizon and a.deletedAt is null "
+                        + "and q.deletedAt is null order by a.changeXid, a.id"),
+        @NamedQuery(name = "softDeleteAnswer",
+                query = "update AnswerEntity a set a.deletedAt = :deletedAt where a.uuid = :uuid and a.deletedAt is null"),
 })
 public class AnswerEntity {
     @Id
@@ -49,6 +106,21 @@ public class AnswerEntity {
     @JoinColumn(name = "question_id")
     private QuestionEntity questionEntity;
 
+    @Column(name = "updated_at")
+    @NotNull
+    private ZonedDateTime updatedAt;
+
+    // Sum of the votes, maintained by AnswerScoreBuffer with its own updates, never written through the entity
+    @Column(name = "score", insertable = false, updatable = false)
+    private int score;
+
+    @Column(name = "deleted_at")
+    private ZonedDateTime deletedAt;
+
+    // Transaction which wrote the row last, stamped by the database, orders the change feed
+    @Column(name = "change_xid", insertable = false, updatable = false)
+    private long changeXid;
+
     public Integer getId() {
         return id;
     }
@@ -97,6 +169,37 @@ public class AnswerEntity {
         this.questionEntity = questionEntity;
     }
 
+    public ZonedDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(ZonedDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public ZonedDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(ZonedDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // Every update writes updated_at, which has the database stamp change_xid for the change feed
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = ZonedDateTime.now();
+    }
+
     @Override
     public boolean equals(Object obj) {
         return new EqualsBuilder().append(this, obj).isEquals();
@@ -0,0 +1,94 @@
+package com.upgrad.quora.service.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.ZonedDateTime;
+
+@SuppressWarnings("all")
+@Entity
+@Table(name = "answer_vote")
+@NamedNativeQueries({
+        // Records the vote of a user on an answer and returns the vote it replaced, 0 if there was none. The previous
+        // vote is told by the upsert itself, which waits for a concurrent vote of the same user: a row it inserted has
+        // no xmax, a row it updated held the opposite vote, and no row means the same vote was already there.
+        @NamedNativeQuery(name = "recordAnswerVote",
+                query = "with recorded as (insert into answer_vote(answer_id, user_id, vote, voted_at) values (:answerId, :userId, :vote, :votedAt) "
+                        + "on conflict (answer_id, user_id) do update set vote = excluded.vote, voted_at = excluded.voted_at "
+                        + "where answer_vote.vote <> excluded.vote returning answer_vote.xmax = 0 as inserted) "
+                        + "select cast(case when not exists (select 1 from recorded) then :vote "
+                        + "when (select inserted from recorded) then 0 else 0 - :vote end as integer)"),
+        @NamedNativeQuery(name = "withdrawAnswerVote",
+                query = "delete from answer_vote v where v.answer_id = :answerId and v.user_id = :userId returning cast(v.vote as integer)")
+})
+public class AnswerVoteEntity {
+
+    public static final int UPVOTE = 1;
+
+    public static final int DOWNVOTE = -1;
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "answer_id")
+    private AnswerEntity answerEntity;
+
+    @ManyToOne
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "user_id")
+    private UserEntity userEntity;
+
+    @Column(name = "vote")
+    @NotNull
+    private short vote;
+
+    @Column(name = "voted_at")
+    @NotNull
+    private ZonedDateTime votedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public AnswerEntity getAnswerEntity() {
+        return answerEntity;
+    }
+
+    public void setAnswerEntity(AnswerEntity answerEntity) {
+        this.answerEntity = answerEntity;
+    }
+
+    public UserEntity getUserEntity() {
+        return userEntity;
+    }
+
+    public void setUserEntity(UserEntity userEntity) {
+        this.userEntity = userEntity;
+    }
+
+    public short getVote() {
+        return vote;
+    }
+
+    public void setVote(short vote) {
+        this.vote = vote;
+    }
+
+    public ZonedDateTime getVotedAt() {
+        return votedAt;
+    }
+
+    public void setVotedAt(ZonedDateTime votedAt) {
+        this.votedAt = votedAt;
+    }
+}
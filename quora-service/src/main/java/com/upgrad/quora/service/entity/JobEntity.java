@@ -0,0 +1,203 @@
+package com.upgrad.quora.service.entity;
+
+import com.upgrad.quora.service.job.JobStatus;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+@SuppressWarnings("all")
+@Entity
+@Table(name = "job")
+@NamedNativeQueries({
+        // Due jobs of a type in the order they are due, jobs claimed by another node are skipped
+        @NamedNativeQuery(name = "claimDueJobs",
+                query = "select * from job where job_type = :jobType and status = 'PENDING' and run_at <= :now"
+                        + " order by run_at, id limit :batchSize for update skip locked",
+                resultClass = JobEntity.class),
+        // Jobs of a node which stopped renewing its lease are retried, or failed after their last attempt
+        @NamedNativeQuery(name = "releaseExpiredJobLeases",
+                query = "update job set status = case when attempts >= max_attempts then 'FAILED' else 'PENDING' end,"
+                        + " finished_at = case when attempts >= max_attempts then cast(:now as timestamp) end,"
+                        + " run_at = :now, locked_by = null, locked_until = null, last_error = 'The lease expired'"
+                        + " where status = 'RUNNING' and locked_until < :now"),
+        // Skipped when a job of the key is already pending or running
+        @NamedNativeQuery(name = "createUniqueJob",
+                query = "insert into job(job_type, status, max_attempts, run_at, unique_key, created_at)"
+                        + " values (:jobType, 'PENDING', :maxAttempts, :runAt, :uniqueKey, :now)"
+                        + " on conflict (unique_key) where status in ('PENDING', 'RUNNING') do nothing")
+})
+@NamedQueries({
+        @NamedQuery(name = "renewJobLeases",
+                query = "update JobEntity j set j.lockedUntil = :lockedUntil where j.id in :ids and j.lockedBy = :nodeId"
+                        + " and j.status = com.upgrad.quora.service.job.JobStatus.RUNNING"),
+        @NamedQuery(name = "finishJob",
+                query = "update JobEntity j set j.status = :status, j.finishedAt = :now, j.lockedBy = null,"
+                        + " j.lockedUntil = null, j.lastError = :lastError where j.id = :id and j.lockedBy = :nodeId"
+                        + " and j.status = com.upgrad.quora.service.job.JobStatus.RUNNING"),
+        @NamedQuery(name = "retryJob",
+                query = "update JobEntity j set j.status = com.upgrad.quora.service.job.JobStatus.PENDING,"
+                        + " j.runAt = :runAt, j.lockedBy = null, j.lockedUntil = null, j.lastError = :lastError"
+                        + " where j.id = :id and j.lockedBy = :nodeId and j.status = com.upgrad.quora.service.job.JobStatus.RUNNING"),
+        @NamedQuery(name = "pendingJobCounts",
+                query = "select j.jobType, count(j) from JobEntity j"
+                        + " where j.status = com.upgrad.quora.service.job.JobStatus.PENDING group by j.jobType"),
+        @NamedQuery(name = "deleteFinishedJobs", query = "delete from JobEntity j where j.finishedAt < :before")
+})
+public class JobEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "job_type")
+    @Size(max = 50)
+    @NotNull
+    private String jobType;
+
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private JobStatus status;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "max_attempts")
+    private int maxAttempts;
+
+    @Column(name = "run_at")
+    @NotNull
+    private ZonedDateTime runAt;
+
+    @Column(name = "locked_by")
+    @Size(max = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private ZonedDateTime lockedUntil;
+
+    @Column(name = "last_error")
+    @Size(max = 1000)
+    private String lastError;
+
+    @Column(name = "unique_key")
+    @Size(max = 100)
+    private String uniqueKey;
+
+    @Column(name = "created_at")
+    @NotNull
+    private ZonedDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private ZonedDateTime finishedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(String jobType) {
+        this.jobType = jobType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public ZonedDateTime getRunAt() {
+        return runAt;
+    }
+
+    public void setRunAt(ZonedDateTime runAt) {
+        this.runAt = runAt;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public ZonedDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(ZonedDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public void setUniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public ZonedDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(ZonedDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,108 @@
+package com.upgrad.quora.service.entity;
+
+import com.upgrad.quora.service.event.DomainEventType;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+@SuppressWarnings("all")
+@Entity
+@Table(name = "outbox")
+@NamedNativeQueries({
+        // Delivered to the listeners of the channel when the transaction commits, pg_notify itself returns nothing
+        @NamedNativeQuery(name = "notifyChannel", query = "select 1 from pg_notify(:channel, :payload)")
+})
+@NamedQueries({
+        // Events after the given (changeXid, id) position, raised by the transactions older than the horizon
+        @NamedQuery(name = "outboxEventsSince",
+                query = "select o from OutboxEventEntity o where (o.changeXid, o.id) > (:sinceXid, :afterId) "
+                        + "and o.changeXid < :horizon order by o.changeXid, o.id"),
+        @NamedQuery(name = "deleteOutboxEventsBefore",
+                query = "delete from OutboxEventEntity o where o.createdAt < :before")
+})
+public class OutboxEventEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "event_type")
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private DomainEventType eventType;
+
+    @Column(name = "aggregate_id")
+    @Size(max = 200)
+    @NotNull
+    private String aggregateId;
+
+    @Column(name = "parent_id")
+    @Size(max = 200)
+    private String parentId;
+
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at")
+    @NotNull
+    private ZonedDateTime createdAt;
+
+    // Transaction which raised the event, stamped by the database, orders the relay
+    @Column(name = "change_xid", insertable = false, updatable = false)
+    private long changeXid;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public DomainEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(DomainEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(String parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+}
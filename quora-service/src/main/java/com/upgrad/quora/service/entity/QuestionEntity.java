@@ -11,19 +11,63 @@ import java.time.ZonedDateTime;
 @SuppressWarnings("all")
 @Entity
 @Table(name = "question")
+@NamedNativeQueries({
+        // Applies the buffered answer count deltas of many questions in one statement, the arrays are parallel
+        @NamedNativeQuery(name = "addToAnswerCounts",
+                query = "update question q set answer_count = q.answer_count + d.delta "
+                        + "from (select unnest(cast(:ids as bigint[])) as id, unnest(cast(:deltas as int[])) as delta) d "
+                        + "where q.id = d.id"),
+        // Resets the answer count of the questions in an id range to the actual number of answers where it drifted
+        @NamedNativeQuery(name = "reconcileAnswerCounts",
+                query = "update question q set answer_count = c.answers "
+                        + "from (select a.question_id, count(*) as answers from answer a "
+                        + "where a.question_id >= :fromId and a.question_id < :toId and a.deleted_at is null group by a.question_id) c "
+                        + "where q.id = c.question_id and q.answer_count <> c.answers"),
+        @NamedNativeQuery(name = "resetAnswerCountsWithoutAnswers",
+                query = "update question q set answer_count = 0 where q.id >= :fromId and q.id < :toId and q.answer_count <> 0 "
+                        + "and not exists (select 1 from answer a where a.question_id = q.id and a.deleted_at is null)"),
+        // Questions deleted before the given time, removed physically along with their remaining answers. Rows
+        // locked by another node purging at the same time are left to it.
+        @NamedNativeQuery(name = "purgeDeletedQuestions",
+                query = "delete from question where id in (select id from question where deleted_at < :before "
+                        + "limit :chunkSize for update skip locked)")
+})
 @NamedQueries(
         {
                 @NamedQuery(
                         name = "getQuestionById",
-                        query = "select q from QuestionEntity q where q.uuid = :uuid"),
-                @NamedQuery(
-                        name = "getQuestionByUser",
-                        query = "select q from QuestionEntity q where q.userEntity=:user"),
-                @NamedQuery(name = "allQuestions", query = "select q from QuestionEntity q"),
+                        query = "select q from QuestionEntity q where q.uuid = :uuid and q.deletedAt is null"),
+                @NamedQuery(name = "allQuestions", query = "select q from QuestionEntity q where q.deletedAt is null"),
+                @NamedQuery(name = "maxQuestionId", query = "select max(q.id) from QuestionEntity q where q.deletedAt is null"),
+
+                // Cached question list of the profile page
+                @NamedQuery(name = "questionSummariesByUser",
+                        query = "select new com.upgrad.quora.service.cache.QuestionSummary(q.uuid, q.content) "
+                                + "from QuestionEntity q where q.userEntity = :user and q.deletedAt is null order by q.id"),
 
                 //@Vipin P K: Added query to get the question using uuid..to implement in createanswer
                 @NamedQuery(name = "questionEntityByUuid",
-                        query = "select qe from QuestionEntity qe where qe.uuid = :uuid"),
+                        query = "select qe from QuestionEntity qe where qe.uuid = :uuid and qe.deletedAt is null"),
+
+                // Questions changed after the given (changeXid, id) position of the change feed, by the
+                // transactions older than the horizon
+                @NamedQuery(name = "questionChangesSince",
+                        query = "select q.id, q.uuid, q.uuid, q.content, q.updatedAt, q.changeXid from QuestionEntity q "
+                                + "where (q.changeXid, q.id) > (:sinceXid, :afterId) and q.changeXid < :horizon and q.deletedAt is null "
+                                + "order by q.changeXid, q.id"),
+
+                // Questions after the given id with their answers, one row per answer or a single row for a
+                // question without answers, read through a cursor by the corpus export
+                @NamedQuery(name = "questionCorpusAfter",
+                        query = "select q.id, q.uuid, q.content, q.date, qu.uuid, a.uuid, a.answer, a.date, au.uuid, a.score "
+                                + "from QuestionEntity q join q.userEntity qu "
+                                + "left join AnswerEntity a on a.questionEntity = q and a.deletedAt is null "
+                                + "left join a.userEntity au "
+                                + "where q.id > :afterId and q.deletedAt is null order by q.id, a.id"),
+
+                // Deleting only marks the question, its answers are left out along with it until the purge
+                @NamedQuery(name = "softDeleteQuestion",
+                        query = "update QuestionEntity q set q.deletedAt = :deletedAt where q.id = :id and q.deletedAt is null"),
 
         }
 )
@@ -54,6 +98,21 @@ public class QuestionEntity {
     @JoinColumn(name = "user_id")
     private UserEntity userEntity;
 
+    @Column(name = "updated_at")
+    @NotNull
+    private ZonedDateTime updatedAt;
+
+    // Maintained by AnswerCountBuffer with its own updates, never written through the entity
+    @Column(name = "answer_count", insertable = false, updatable = false)
+    private int answerCount;
+
+    @Column(name = "deleted_at")
+    private ZonedDateTime deletedAt;
+
+    // Transaction which wrote the row last, stamped by the database, orders the change feed
+    @Column(name = "change_xid", insertable = false, updatable = false)
+    private long changeXid;
+
     public long getId() {
         return id;
     }
@@ -93,4 +152,35 @@ public class QuestionEntity {
     public void setUserEntity(UserEntity userEntity) {
         this.userEntity = userEntity;
     }
+
+    public ZonedDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public int getAnswerCount() {
+        return answerCount;
+    }
+
+    public void setUpdatedAt(ZonedDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public ZonedDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(ZonedDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+
+    // Every update writes updated_at, which has the database stamp change_xid for the change feed
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = ZonedDateTime.now();
+    }
 }
@@ -0,0 +1,100 @@
+package com.upgrad.quora.service.entity;
+
+import com.upgrad.quora.service.sync.ChangeKind;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+@SuppressWarnings("all")
+@Entity
+@Table(name = "tombstone")
+@NamedNativeQueries({
+        // Every transaction older than the oldest one still running has ended, the rows they wrote are all visible
+        @NamedNativeQuery(name = "committedHorizon",
+                query = "select cast(cast(pg_snapshot_xmin(pg_current_snapshot()) as text) as bigint)")
+})
+@NamedQueries({
+        // Deletions after the given (changeXid, id) position of the change feed, by the transactions older than
+        // the horizon
+        @NamedQuery(name = "tombstoneChangesSince",
+                query = "select t.id, t.uuid, t.questionUuid, t.deletedAt, t.entityType, t.changeXid from TombstoneEntity t "
+                        + "where (t.changeXid, t.id) > (:sinceXid, :afterId) and t.changeXid < :horizon order by t.changeXid, t.id"),
+        @NamedQuery(name = "deleteTombstonesBefore",
+                query = "delete from TombstoneEntity t where t.deletedAt < :before")
+})
+public class TombstoneEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "entity_type")
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private ChangeKind entityType;
+
+    @Column(name = "uuid")
+    @Size(max = 200)
+    @NotNull
+    private String uuid;
+
+    @Column(name = "question_uuid")
+    @Size(max = 200)
+    @NotNull
+    private String questionUuid;
+
+    @Column(name = "deleted_at")
+    @NotNull
+    private ZonedDateTime deletedAt;
+
+    // Transaction which wrote the row last, stamped by the database, orders the change feed
+    @Column(name = "change_xid", insertable = false, updatable = false)
+    private long changeXid;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public ChangeKind getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(ChangeKind entityType) {
+        this.entityType = entityType;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getQuestionUuid() {
+        return questionUuid;
+    }
+
+    public void setQuestionUuid(String questionUuid) {
+        this.questionUuid = questionUuid;
+    }
+
+    public ZonedDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(ZonedDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+}
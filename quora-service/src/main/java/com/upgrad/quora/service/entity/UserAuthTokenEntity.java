@@ -15,8 +15,33 @@ import java.time.ZonedDateTime;
 @SuppressWarnings("All")
 @Entity
 @Table(name = "user_auth")
+@NamedNativeQueries({
+        // Sessions which expired without signing out are marked signed out at their expiry, oldest first
+        @NamedNativeQuery(name = "expireOverdueUserAuthTokens",
+                query = "update user_auth set logout_at = expires_at where id in (select id from user_auth"
+                        + " where logout_at is null and expires_at <= :now order by expires_at limit :batchSize)"),
+        // Active sessions of a user, the oldest sign in first
+        @NamedNativeQuery(name = "activeUserAuthTokensByUser",
+                query = "select * from user_auth where user_id = :userId and logout_at is null and expires_at > :now"
+                        + " order by login_at",
+                resultClass = UserAuthTokenEntity.class),
+        // Held by the node maintaining the partitions until its transaction ends
+        @NamedNativeQuery(name = "tryLockUserAuthPartitions", query = "select pg_try_advisory_xact_lock(:key)"),
+        @NamedNativeQuery(name = "userAuthPartitions",
+                query = "select cast(c.relname as varchar) from pg_inherits i join pg_class c on c.oid = i.inhrelid"
+                        + " where i.inhparent = cast('user_auth' as regclass)"),
+        @NamedNativeQuery(name = "detachedUserAuthPartitions",
+                query = "select cast(relname as varchar) from pg_class where relname like 'user\\_auth\\_p%'"
+                        + " and relkind = 'r' and not relispartition"),
+        // Expired sessions which fell outside of the monthly partitions
+        @NamedNativeQuery(name = "deleteExpiredDefaultUserAuthTokens",
+                query = "delete from user_auth_default where ctid = any(array(select ctid from user_auth_default"
+                        + " where expires_at < :before limit :batchSize))")
+})
 @NamedQueries({
-        @NamedQuery(name = "userAuthTokenByAccessToken" , query = "select ut from UserAuthTokenEntity ut where ut.accessToken = :accessToken ")
+        @NamedQuery(name = "userAuthTokenByAccessToken" , query = "select ut from UserAuthTokenEntity ut where ut.accessToken = :accessToken "),
+        @NamedQuery(name = "expireUserAuthTokens",
+                query = "update UserAuthTokenEntity ut set ut.logoutAt = ut.expiresAt where ut.id in :ids and ut.logoutAt is null")
 })
 public class UserAuthTokenEntity implements Serializable {
 
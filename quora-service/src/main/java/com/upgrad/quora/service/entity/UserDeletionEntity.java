@@ -0,0 +1,160 @@
+package com.upgrad.quora.service.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+@SuppressWarnings("all")
+@Entity
+@Table(name = "user_deletion")
+@NamedNativeQueries({
+        // Each chunk is picked through the index on the user and removed by primary key, the dependent rows of a
+        // removed answer or question go with it through the cascade. The deletion of the questions and answers
+        // marked deleted earlier was already recorded.
+        @NamedNativeQuery(name = "deleteUserSessionsChunk",
+                query = "delete from user_auth where (id, expires_at) in (select id, expires_at from user_auth"
+                        + " where user_id = :userId limit :chunkSize)"),
+        @NamedNativeQuery(name = "deleteUserVotesChunk",
+                query = "delete from answer_vote where id in (select id from answer_vote where user_id = :userId"
+                        + " limit :chunkSize)"),
+        @NamedNativeQuery(name = "deleteUserAnswersChunk",
+                query = "with deleted as (delete from answer where id in (select id from answer where user_id = :userId"
+                        + " limit :chunkSize) returning uuid, question_id, deleted_at),"
+                        + " tombstones as (insert into tombstone(entity_type, uuid, question_uuid, deleted_at)"
+                        + " select 'ANSWER', d.uuid, q.uuid, :deletedAt from deleted d join question q on q.id = d.question_id where d.deleted_at is null)"
+                        + " select d.uuid as answer_uuid, q.uuid as question_uuid, d.deleted_at is null as live"
+                        + " from deleted d join question q on q.id = d.question_id"),
+        // Answers of the other users to the questions of the user, removed ahead of the questions
+        @NamedNativeQuery(name = "deleteAnswersToUserQuestionsChunk",
+                query = "with deleted as (delete from answer where id in (select a.id from answer a"
+                        + " join question q on q.id = a.question_id where q.user_id = :userId limit :chunkSize)"
+                        + " returning uuid, question_id, deleted_at),"
+                        + " tombstones as (insert into tombstone(entity_type, uuid, question_uuid, deleted_at)"
+                        + " select 'ANSWER', d.uuid, q.uuid, :deletedAt from deleted d join question q on q.id = d.question_id where d.deleted_at is null)"
+                        + " select d.uuid as answer_uuid, q.uuid as question_uuid, d.deleted_at is null as live"
+                        + " from deleted d join question q on q.id = d.question_id"),
+        @NamedNativeQuery(name = "deleteUserQuestionsChunk",
+                query = "with deleted as (delete from question where id in (select id from question where user_id = :userId"
+                        + " limit :chunkSize) returning uuid, deleted_at),"
+                        + " tombstones as (insert into tombstone(entity_type, uuid, question_uuid, deleted_at)"
+                        + " select 'QUESTION', uuid, uuid, :deletedAt from deleted where deleted_at is null)"
+                        + " select count(*) from deleted"),
+        // The foreign keys of a new question or answer share the lock of the user or question they reference, these
+        // locks make them wait for the removal of the user
+        @NamedNativeQuery(name = "lockUserForRemoval",
+                query = "select id from users where id = :userId for update"),
+        @NamedNativeQuery(name = "lockUserQuestionsForRemoval",
+                query = "select id from question where user_id = :userId for update")
+})
+@NamedQueries({
+        @NamedQuery(name = "userDeletionByUserUuid",
+                query = "select d from UserDeletionEntity d where d.userUuid = :userUuid")
+})
+public class UserDeletionEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    // Not a reference, the user row is removed last while the deletion is kept
+    @Column(name = "user_id")
+    private long userId;
+
+    @Column(name = "user_uuid")
+    @Size(max = 200)
+    @NotNull
+    private String userUuid;
+
+    @Column(name = "requested_at")
+    @NotNull
+    private ZonedDateTime requestedAt;
+
+    @Column(name = "sessions_deleted")
+    private int sessionsDeleted;
+
+    @Column(name = "votes_deleted")
+    private int votesDeleted;
+
+    @Column(name = "answers_deleted")
+    private int answersDeleted;
+
+    @Column(name = "questions_deleted")
+    private int questionsDeleted;
+
+    @Column(name = "completed_at")
+    private ZonedDateTime completedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+
+    public void setUserUuid(String userUuid) {
+        this.userUuid = userUuid;
+    }
+
+    public ZonedDateTime getRequestedAt() {
+        return requestedAt;
+    }
+
+    public void setRequestedAt(ZonedDateTime requestedAt) {
+        this.requestedAt = requestedAt;
+    }
+
+    public int getSessionsDeleted() {
+        return sessionsDeleted;
+    }
+
+    public void setSessionsDeleted(int sessionsDeleted) {
+        this.sessionsDeleted = sessionsDeleted;
+    }
+
+    public int getVotesDeleted() {
+        return votesDeleted;
+    }
+
+    public void setVotesDeleted(int votesDeleted) {
+        this.votesDeleted = votesDeleted;
+    }
+
+    public int getAnswersDeleted() {
+        return answersDeleted;
+    }
+
+    public void setAnswersDeleted(int answersDeleted) {
+        this.answersDeleted = answersDeleted;
+    }
+
+    public int getQuestionsDeleted() {
+        return questionsDeleted;
+    }
+
+    public void setQuestionsDeleted(int questionsDeleted) {
+        this.questionsDeleted = questionsDeleted;
+    }
+
+    public ZonedDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(ZonedDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
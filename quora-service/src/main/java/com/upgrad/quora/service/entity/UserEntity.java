@@ -1,10 +1,12 @@
 package com.upgrad.quora.service.entity;
 
 import org.apache.commons.lang3.builder.ToStringExclude;
+import org.hibernate.annotations.LazyGroup;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
 
 @SuppressWarnings("all")
 @Entity
@@ -17,7 +19,9 @@ import javax.validation.constraints.Size;
         {
                 @NamedQuery(name = "userByUserName", query = "select u from UserEntity u where u.userName = :userName"),
                 @NamedQuery(name = "userByEmail", query = "select u from UserEntity u where u.email = :email"),
-                @NamedQuery(name = "userByUserUuid", query = "select u from UserEntity u where u.uuid = :uuid")
+                // Users marked deleted are left out, their content is being removed
+                @NamedQuery(name = "userByUserUuid", query = "select u from UserEntity u where u.uuid = :uuid and u.deletedAt is null"),
+                @NamedQuery(name = "usersByUserUuids", query = "select u from UserEntity u where u.uuid in :uuids and u.deletedAt is null")
         }
 )
 public class UserEntity {
@@ -45,7 +49,10 @@ public class UserEntity {
     @Size(max = 30)
     private String userName;
 
+    // Only needed to sign in, loaded together with the salt on first access
     @Column(name = "password")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("credentials")
     private String password;
 
     @Column(name = "email")
@@ -74,11 +81,16 @@ public class UserEntity {
     private String role;
 
     @Column(name = "salt")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("credentials")
     @ToStringExclude
     @NotNull
     @Size(max = 200)
     private String salt;
 
+    @Column(name = "deleted_at")
+    private ZonedDateTime deletedAt;
+
     public String getCountry() {
         return country;
     }
@@ -176,6 +188,14 @@ public class UserEntity {
         this.contactnumber = contactNumber;
     }
 
+    public ZonedDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(ZonedDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public String getLastName() {
         return lastName;
     }
@@ -0,0 +1,65 @@
+package com.upgrad.quora.service.event;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Immutable view of an event read back from the outbox and handed over to the subscribers.
+ * <p>
+ * aggregateId is the uuid of the user, question or answer that changed. parentId is the uuid of the owning
+ * aggregate: the author for a question and the question for an answer. payload carries the new content for
+ * created and edited questions and answers. changeXid is the id of the transaction which raised the event.
+ */
+public final class DomainEvent {
+
+    private final long id;
+    private final DomainEventType type;
+    private final String aggregateId;
+    private final String parentId;
+    private final String payload;
+    private final ZonedDateTime occurredAt;
+    private final long changeXid;
+
+    public DomainEvent(final long id, final DomainEventType type, final String aggregateId, final String parentId,
+                       final String payload, final ZonedDateTime occurredAt, final long changeXid) {
+        this.id = id;
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.parentId = parentId;
+        this.payload = payload;
+        this.occurredAt = occurredAt;
+        this.changeXid = changeXid;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public DomainEventType getType() {
+        return type;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public ZonedDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + id + "(" + aggregateId + ")";
+    }
+}
@@ -0,0 +1,40 @@
+package com.upgrad.quora.service.event;
+
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.entity.OutboxEventEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Used by the business services to raise domain events. The event is written to the outbox table in the
+ * transaction of the change itself, so it is relayed if and only if the change commits.
+ */
+@Component
+public class DomainEventPublisher {
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    /**
+     * Raise an event for a changed aggregate.
+     *
+     * @param type        type of the event.
+     * @param aggregateId uuid of the changed user, question or answer.
+     * @param parentId    uuid of the owning aggregate, may be null.
+     * @param payload     new content of the aggregate, may be null.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(final DomainEventType type, final String aggregateId, final String parentId, final String payload) {
+        OutboxEventEntity outboxEventEntity = new OutboxEventEntity();
+        outboxEventEntity.setEventType(type);
+        outboxEventEntity.setAggregateId(aggregateId);
+        outboxEventEntity.setParentId(parentId);
+        outboxEventEntity.setPayload(payload);
+        outboxEventEntity.setCreatedAt(ZonedDateTime.now());
+        outboxDao.createEvent(outboxEventEntity);
+    }
+}
@@ -0,0 +1,13 @@
+package com.upgrad.quora.service.event;
+
+/**
+ * Implemented by the beans which maintain a derived view of the content (caches, counters, indexes, feeds).
+ * <p>
+ * Every node hands every event over to its own subscribers, each one in a transaction of its own. Delivery is
+ * at-least-once: an event is handed over again when the subscriber fails on it, so implementations must be
+ * idempotent. Events are delivered in the order of the transactions which raised them.
+ */
+public interface DomainEventSubscriber {
+
+    void onEvent(DomainEvent event);
+}
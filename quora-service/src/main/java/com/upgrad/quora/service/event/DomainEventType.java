@@ -0,0 +1,35 @@
+package com.upgrad.quora.service.event;
+
+/**
+ * Types of the domain events raised by the business services whenever users, questions or answers change.
+ * Every type belongs to one aggregate, the events of one aggregate are delivered in the order they were raised.
+ */
+public enum DomainEventType {
+
+    USER_SIGNED_UP(AggregateType.USER),
+    USER_SIGNED_IN(AggregateType.USER),
+    USER_SIGNED_OUT(AggregateType.USER),
+    USER_DELETED(AggregateType.USER),
+
+    QUESTION_CREATED(AggregateType.QUESTION),
+    QUESTION_EDITED(AggregateType.QUESTION),
+    QUESTION_DELETED(AggregateType.QUESTION),
+
+    ANSWER_CREATED(AggregateType.ANSWER),
+    ANSWER_EDITED(AggregateType.ANSWER),
+    ANSWER_DELETED(AggregateType.ANSWER);
+
+    private final AggregateType aggregateType;
+
+    DomainEventType(final AggregateType aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    public AggregateType getAggregateType() {
+        return aggregateType;
+    }
+
+    public enum AggregateType {
+        USER, QUESTION, ANSWER
+    }
+}
@@ -0,0 +1,180 @@
+package com.upgrad.quora.service.event;
+
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.entity.OutboxEventEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Relays the committed outbox events to the in-process subscribers of this node.
+ * <p>
+ * Every node reads the whole outbox from positions of its own, so the subscribers of each node see every event
+ * whichever node raised it. The subscribers keep in-memory views built at startup, the positions are therefore
+ * kept in memory too and a node starts at the end of the outbox. Events are kept for the retention period, long
+ * enough for the slowest node, and purged by their age.
+ * <p>
+ * Events are read in the order of the transactions which raised them, up to the oldest transaction still running
+ * like the change feed, so an event committing late is never skipped. Each subscriber handles an event in a
+ * transaction of its own and has its own position: a subscriber which fails is handed the event again on the next
+ * poll and its later events wait, the other subscribers carry on.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired(required = false)
+    private List<DomainEventSubscriber> subscribers = Collections.emptyList();
+
+    @Value("${quora.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${quora.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${quora.outbox.retention-hours:24}")
+    private int retentionHours;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<DomainEventSubscriber, Position> positions = new HashMap<>();
+
+    private final Map<DomainEventSubscriber, Integer> failedAttempts = new HashMap<>();
+
+    @Autowired
+    public OutboxDispatcher(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Starts the subscribers at the end of the outbox. Taken before the subscribers build their views once every
+     * bean is created, so no event is missed in between: the events raised meanwhile are handed over although the
+     * views may already have them.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long horizon = transactionTemplate.execute(status -> outboxDao.getCommittedHorizon());
+        subscribers.forEach(subscriber -> positions.put(subscriber, new Position(horizon - 1, Long.MAX_VALUE)));
+    }
+
+    /**
+     * Relays the committed events until the outbox is drained or a subscriber could not handle an event.
+     */
+    @Scheduled(fixedDelayString = "${quora.outbox.poll-interval-ms:500}")
+    public synchronized void dispatch() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        boolean drained;
+        do {
+            drained = relayBatch();
+        } while (!drained);
+    }
+
+    /**
+     * Removes the events which were raised longer ago than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${quora.outbox.purge-interval-ms:3600000}")
+    public void purge() {
+        transactionTemplate.execute(status ->
+                outboxDao.deleteEventsBefore(ZonedDateTime.now().minusHours(retentionHours)));
+    }
+
+    /**
+     * @return true if there is nothing more to relay right now, false if the next batch can be read.
+     */
+    private boolean relayBatch() {
+        Position from = Collections.min(positions.values());
+        List<OutboxEventEntity> events = transactionTemplate.execute(status ->
+                outboxDao.getEventsSince(from.changeXid, from.id, outboxDao.getCommittedHorizon(), batchSize));
+        Set<DomainEventSubscriber> heldBack = new HashSet<>();
+
+        for (OutboxEventEntity outboxEvent : events) {
+            Position position = new Position(outboxEvent.getChangeXid(), outboxEvent.getId());
+            DomainEvent event = toDomainEvent(outboxEvent);
+            for (DomainEventSubscriber subscriber : subscribers) {
+                if (heldBack.contains(subscriber) || positions.get(subscriber).compareTo(position) >= 0) {
+                    continue;
+                }
+                if (deliver(subscriber, event)) {
+                    positions.put(subscriber, position);
+                } else {
+                    heldBack.add(subscriber);
+                }
+            }
+        }
+
+        return events.size() < batchSize || !heldBack.isEmpty();
+    }
+
+    /**
+     * @return true if the subscriber is done with the event, false if it has to be handed over again.
+     */
+    private boolean deliver(final DomainEventSubscriber subscriber, final DomainEvent event) {
+        try {
+            transactionTemplate.execute(status -> {
+                subscriber.onEvent(event);
+                return null;
+            });
+            failedAttempts.remove(subscriber);
+            return true;
+        } catch (RuntimeException e) {
+            int attempts = failedAttempts.merge(subscriber, 1, Integer::sum);
+            if (attempts >= maxAttempts) {
+                LOG.error("{} gave up on {} after {} attempts", subscriber.getClass().getSimpleName(), event, attempts, e);
+                failedAttempts.remove(subscriber);
+                return true;
+            }
+            LOG.warn("{} failed on {}, it will be retried", subscriber.getClass().getSimpleName(), event, e);
+            return false;
+        }
+    }
+
+    private DomainEvent toDomainEvent(final OutboxEventEntity outboxEvent) {
+        return new DomainEvent(outboxEvent.getId(), outboxEvent.getEventType(), outboxEvent.getAggregateId(),
+                outboxEvent.getParentId(), outboxEvent.getPayload(), outboxEvent.getCreatedAt(),
+                outboxEvent.getChangeXid());
+    }
+
+    /**
+     * Position of a subscriber in the outbox, the last event it is done with.
+     */
+    private static final class Position implements Comparable<Position> {
+
+        private final long changeXid;
+
+        private final long id;
+
+        private Position(final long changeXid, final long id) {
+            this.changeXid = changeXid;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(final Position other) {
+            int byTransaction = Long.compare(changeXid, other.changeXid);
+            return byTransaction != 0 ? byTransaction : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.upgrad.quora.service.export;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+
+/**
+ * Reads all the questions with their answers for the corpus export, in constant memory whatever the size of the
+ * corpus. The rows are read through a server-side cursor a fetch size at a time, in a stateless session which keeps
+ * no persistence context, and handed out one by one.
+ * <p>
+ * The export is a single transaction, it sees the corpus as it was when it started. The transaction
+ * lasts as long as the client takes to read the export, a client which stops resumes after the last question it
+ * received rather than keeping it open.
+ */
+@Component
+public class CorpusExport {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${quora.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * @param afterQuestionId questions up to this id are skipped, 0 for the whole corpus.
+     * @param handler         receives the rows in question id then answer id order.
+     * @return number of rows exported.
+     * @throws IOException if the handler failed, the export stops there.
+     */
+    public long export(final long afterQuestionId, final CorpusRowHandler handler) throws IOException {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // The driver only keeps the cursor open, rather than reading every row up front, within a transaction
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = session.getNamedQuery("questionCorpusAfter")
+                    .setParameter("afterId", afterQuestionId)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                long rows = 0;
+                while (results.next()) {
+                    Object[] row = results.get();
+                    handler.handle(new CorpusRow((Number) row[0], (String) row[1], (String) row[2],
+                            (ZonedDateTime) row[3], (String) row[4], (String) row[5], (String) row[6],
+                            (ZonedDateTime) row[7], (String) row[8], (Number) row[9]));
+                    rows++;
+                }
+                return rows;
+            } finally {
+                // Nothing was written
+                transaction.rollback();
+            }
+        }
+    }
+}
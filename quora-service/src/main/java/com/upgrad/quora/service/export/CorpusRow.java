@@ -0,0 +1,93 @@
+package com.upgrad.quora.service.export;
+
+import java.time.ZonedDateTime;
+
+/**
+ * One row of the corpus export, a question with one of its answers. A question without answers comes as a single
+ * row without an answer, the answer fields are then null.
+ */
+public class CorpusRow {
+
+    private final long questionId;
+
+    private final String questionUuid;
+
+    private final String questionContent;
+
+    private final ZonedDateTime questionDate;
+
+    private final String questionUserUuid;
+
+    private final String answerUuid;
+
+    private final String answerContent;
+
+    private final ZonedDateTime answerDate;
+
+    private final String answerUserUuid;
+
+    private final int answerScore;
+
+    public CorpusRow(final Number questionId, final String questionUuid, final String questionContent,
+                     final ZonedDateTime questionDate, final String questionUserUuid, final String answerUuid,
+                     final String answerContent, final ZonedDateTime answerDate, final String answerUserUuid,
+                     final Number answerScore) {
+        this.questionId = questionId.longValue();
+        this.questionUuid = questionUuid;
+        this.questionContent = questionContent;
+        this.questionDate = questionDate;
+        this.questionUserUuid = questionUserUuid;
+        this.answerUuid = answerUuid;
+        this.answerContent = answerContent;
+        this.answerDate = answerDate;
+        this.answerUserUuid = answerUserUuid;
+        this.answerScore = answerScore == null ? 0 : answerScore.intValue();
+    }
+
+    /**
+     * Position of the question in the export, a client resumes after the last question it received in full.
+     */
+    public long getQuestionId() {
+        return questionId;
+    }
+
+    public String getQuestionUuid() {
+        return questionUuid;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+
+    public ZonedDateTime getQuestionDate() {
+        return questionDate;
+    }
+
+    public String getQuestionUserUuid() {
+        return questionUserUuid;
+    }
+
+    public boolean hasAnswer() {
+        return answerUuid != null;
+    }
+
+    public String getAnswerUuid() {
+        return answerUuid;
+    }
+
+    public String getAnswerContent() {
+        return answerContent;
+    }
+
+    public ZonedDateTime getAnswerDate() {
+        return answerDate;
+    }
+
+    public String getAnswerUserUuid() {
+        return answerUserUuid;
+    }
+
+    public int getAnswerScore() {
+        return answerScore;
+    }
+}
@@ -0,0 +1,16 @@
+package com.upgrad.quora.service.export;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of the corpus export as they are read, typically writing them out to the client.
+ */
+@FunctionalInterface
+public interface CorpusRowHandler {
+
+    /**
+     * @param row next row, in question id then answer id order.
+     * @throws IOException if the row could not be written, which ends the export.
+     */
+    void handle(CorpusRow row) throws IOException;
+}
@@ -0,0 +1,288 @@
+package com.upgrad.quora.service.invalidation;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies the invalidations sent by the other nodes to the caches of this node. A dedicated thread listens on the
+ * invalidation channel over its own connection, outside of the connection pool as it is held for good.
+ * <p>
+ * The notifications which arrived together are applied as one batch, a key invalidated by several of them is
+ * dropped once. Notifications sent while the connection was down are lost, so every cache is flushed once the
+ * listener has reconnected. A connection which stopped answering is detected by a query sent whenever the
+ * channel was quiet for the heartbeat interval.
+ * <p>
+ * The lag of an invalidation is the time from its sending to its application, it includes the skew between
+ * the clocks of the two nodes.
+ * <p>
+ * The listener is started as a lifecycle bean rather than when it is created, as nothing asks for it in the startup
+ * profile where the beans are created lazily.
+ */
+@Component
+public class InvalidationListener implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationListener.class);
+
+    @Autowired
+    private InvalidationPublisher publisher;
+
+    @Autowired(required = false)
+    private List<InvalidationSubscriber> subscribers = Collections.emptyList();
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Value("${quora.invalidation.poll-timeout-ms:500}")
+    private int pollTimeoutMillis;
+
+    @Value("${quora.invalidation.heartbeat-interval-ms:10000}")
+    private long heartbeatIntervalMillis;
+
+    @Value("${quora.invalidation.reconnect-delay-ms:5000}")
+    private long reconnectDelayMillis;
+
+    private final AtomicLong receivedMessages = new AtomicLong();
+
+    private final AtomicLong appliedInvalidations = new AtomicLong();
+
+    private final AtomicLong fullFlushes = new AtomicLong();
+
+    private volatile long lastLagMillis;
+
+    private volatile long maxLagMillis;
+
+    private volatile boolean connected;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    @Override
+    public void start() {
+        if (!publisher.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(pollTimeoutMillis + 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void stop(final Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    /**
+     * @return whether the listener thread was started and not stopped since, connected or not.
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * @return whether the listener is connected, invalidations are missed meanwhile otherwise.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return number of notifications received from the other nodes.
+     */
+    public long getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    /**
+     * @return number of keys invalidated, after removing the duplicates of each batch.
+     */
+    public long getAppliedInvalidations() {
+        return appliedInvalidations.get();
+    }
+
+    /**
+     * @return number of times every cache was flushed as invalidations may have been missed.
+     */
+    public long getFullFlushes() {
+        return fullFlushes.get();
+    }
+
+    /**
+     * @return lag of the latest batch applied, from the sending of its oldest notification, in milliseconds.
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * @return highest lag of a notification applied since the start, in milliseconds.
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + publisher.getChannel());
+                }
+                connected = true;
+                if (reconnecting) {
+                    LOG.info("Listening for cache invalidations again, flushing the caches");
+                    flushAll();
+                }
+                poll(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    LOG.warn("Lost the cache invalidation channel, reconnecting in {} ms", reconnectDelayMillis, e);
+                }
+            } finally {
+                connected = false;
+            }
+            reconnecting = true;
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", "quora-invalidation-listener");
+        // Bounds the wait for the heartbeat, a connection cut without a reset would otherwise block for good
+        properties.setProperty("socketTimeout", String.valueOf(Math.max(1, 2 * heartbeatIntervalMillis / 1000)));
+        Connection connection = DriverManager.getConnection(url, properties);
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    private void poll(final Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastHeard = System.currentTimeMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+            long now = System.currentTimeMillis();
+            if (notifications != null && notifications.length > 0) {
+                lastHeard = now;
+                apply(notifications);
+            } else if (now - lastHeard >= heartbeatIntervalMillis) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("select 1");
+                }
+                lastHeard = now;
+            }
+        }
+    }
+
+    private void apply(final PGNotification[] notifications) {
+        Map<InvalidationType, Set<String>> batch = new EnumMap<>(InvalidationType.class);
+        long sentAt = Long.MAX_VALUE;
+        for (PGNotification notification : notifications) {
+            if (!publisher.getChannel().equals(notification.getName())) {
+                continue;
+            }
+            InvalidationMessage message = InvalidationMessage.decode(notification.getParameter());
+            if (message == null) {
+                LOG.warn("Unreadable cache invalidation from process {}, flushing the caches", notification.getPID());
+                flushAll();
+                return;
+            }
+            if (message.getNodeId().equals(publisher.getNodeId())) {
+                continue;
+            }
+            receivedMessages.incrementAndGet();
+            sentAt = Math.min(sentAt, message.getSentAt());
+            message.getKeys().forEach((type, keys) -> batch.computeIfAbsent(type, t -> new LinkedHashSet<>()).addAll(keys));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<InvalidationType, Set<String>> entry : batch.entrySet()) {
+            for (String key : entry.getValue()) {
+                for (InvalidationSubscriber subscriber : subscribers) {
+                    try {
+                        subscriber.invalidate(entry.getKey(), key);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Could not invalidate {} {}, flushing the caches", entry.getKey(), key, e);
+                        flushAll();
+                        return;
+                    }
+                }
+                appliedInvalidations.incrementAndGet();
+            }
+        }
+        long lag = Math.max(0, System.currentTimeMillis() - sentAt);
+        lastLagMillis = lag;
+        if (lag > maxLagMillis) {
+            maxLagMillis = lag;
+        }
+        if (lag > heartbeatIntervalMillis) {
+            LOG.warn("Cache invalidations applied {} ms after they were sent", lag);
+        }
+    }
+
+    private void flushAll() {
+        fullFlushes.incrementAndGet();
+        for (InvalidationSubscriber subscriber : subscribers) {
+            subscriber.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.upgrad.quora.service.invalidation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Payload of a notification on the invalidation channel: a header line with the id of the sending node and the
+ * time it was sent, then one line per invalidation with its type and key. The invalidations of a transaction are
+ * split over several notifications when they do not fit the payload limit of PostgreSQL.
+ */
+final class InvalidationMessage {
+
+    // PostgreSQL rejects payloads of 8000 bytes or more
+    static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private final String nodeId;
+
+    private final long sentAt;
+
+    private final Map<InvalidationType, Set<String>> keys;
+
+    private InvalidationMessage(final String nodeId, final long sentAt, final Map<InvalidationType, Set<String>> keys) {
+        this.nodeId = nodeId;
+        this.sentAt = sentAt;
+        this.keys = keys;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return when the sending node sent the message, in epoch milliseconds of its clock.
+     */
+    long getSentAt() {
+        return sentAt;
+    }
+
+    Map<InvalidationType, Set<String>> getKeys() {
+        return keys;
+    }
+
+    static String entry(final InvalidationType type, final String key) {
+        return type.name() + ':' + key;
+    }
+
+    /**
+     * @param entries invalidations made by {@link #entry}, without duplicates.
+     * @return the payloads carrying the invalidations, as few as the payload limit allows.
+     */
+    static List<String> encode(final String nodeId, final long sentAt, final Collection<String> entries) {
+        String header = nodeId + ' ' + sentAt;
+        int headerBytes = header.getBytes(StandardCharsets.UTF_8).length;
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(header);
+        int payloadBytes = headerBytes;
+        for (String entry : entries) {
+            int entryBytes = entry.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (payloadBytes + entryBytes > MAX_PAYLOAD_BYTES && payloadBytes > headerBytes) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(header);
+                payloadBytes = headerBytes;
+            }
+            payload.append('\n').append(entry);
+            payloadBytes += entryBytes;
+        }
+        if (payloadBytes > headerBytes) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    /**
+     * @return the message, null if the payload is not one.
+     */
+    static InvalidationMessage decode(final String payload) {
+        String[] lines = payload.split("\n");
+        String[] header = lines[0].split(" ");
+        if (header.length != 2) {
+            return null;
+        }
+        long sentAt;
+        try {
+            sentAt = Long.parseLong(header[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Map<InvalidationType, Set<String>> keys = new EnumMap<>(InvalidationType.class);
+        for (int i = 1; i < lines.length; i++) {
+            int separator = lines[i].indexOf(':');
+            if (separator < 0) {
+                return null;
+            }
+            InvalidationType type;
+            try {
+                type = InvalidationType.valueOf(lines[i].substring(0, separator));
+            } catch (IllegalArgumentException e) {
+                // Sent by a newer version
+                return null;
+            }
+            keys.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(lines[i].substring(separator + 1));
+        }
+        return new InvalidationMessage(header[0], sentAt, keys);
+    }
+}
@@ -0,0 +1,93 @@
+package com.upgrad.quora.service.invalidation;
+
+import com.upgrad.quora.service.dao.OutboxDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Used by the business services to tell the other nodes what to drop from their caches once a change commits.
+ * The caches of this node are kept up to date by the services themselves.
+ * <p>
+ * The invalidations of a transaction are collected without duplicates and sent just before it commits with
+ * pg_notify, in as few notifications as the payload limit allows. PostgreSQL delivers them to the listening
+ * nodes if and only if the transaction commits, in commit order.
+ */
+@Component
+public class InvalidationPublisher {
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    private final boolean enabled;
+
+    private final String channel;
+
+    // Tells the notifications of this node apart from the ones of the other nodes
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public InvalidationPublisher(@Value("${quora.invalidation.enabled:false}") final boolean enabled,
+                                 @Value("${quora.invalidation.channel:quora_invalidation}") final String channel) {
+        // The channel is an identifier in LISTEN, it cannot be a bind parameter there
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("The invalidation channel must be a lower case identifier");
+        }
+        this.enabled = enabled;
+        this.channel = channel;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Invalidates a key on the other nodes if the current transaction commits.
+     *
+     * @param type type of the key.
+     * @param key  uuid or id, as documented by the type.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(final InvalidationType type, final String key) {
+        if (!enabled) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> entries = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(final boolean readOnly) {
+                    long sentAt = System.currentTimeMillis();
+                    for (String payload : InvalidationMessage.encode(nodeId, sentAt, entries)) {
+                        outboxDao.sendNotification(channel, payload);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationPublisher.this);
+                }
+            });
+            pending = entries;
+        }
+        pending.add(InvalidationMessage.entry(type, key));
+    }
+}
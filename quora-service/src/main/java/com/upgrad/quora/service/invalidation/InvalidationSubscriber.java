@@ -0,0 +1,20 @@
+package com.upgrad.quora.service.invalidation;
+
+/**
+ * Implemented by the beans which cache state of the database on this node, to drop what another node changed.
+ * <p>
+ * The invalidations are applied on the listener thread, outside of any transaction. They are at-most-once: when
+ * some may have been missed, on reconnecting to the database, {@link #invalidateAll()} is called instead.
+ */
+public interface InvalidationSubscriber {
+
+    /**
+     * Drops what is cached for the key, nothing happens for the types the subscriber does not cache.
+     */
+    void invalidate(InvalidationType type, String key);
+
+    /**
+     * Drops everything cached.
+     */
+    void invalidateAll();
+}
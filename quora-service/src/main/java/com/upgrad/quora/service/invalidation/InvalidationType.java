@@ -0,0 +1,28 @@
+package com.upgrad.quora.service.invalidation;
+
+/**
+ * What a cache invalidation sent to the other nodes refers to, and so what its key is.
+ */
+public enum InvalidationType {
+
+    /**
+     * A session signed out, keyed by {@link com.upgrad.quora.service.session.SessionStore#keyOf the store key} of
+     * its access token rather than by the token itself.
+     */
+    SESSION,
+
+    /**
+     * A user updated or deleted, keyed by user uuid.
+     */
+    USER,
+
+    /**
+     * The sessions of a deleted user, keyed by user id.
+     */
+    USER_SESSIONS,
+
+    /**
+     * The questions of a user, one of them created, edited or deleted, keyed by user uuid.
+     */
+    USER_QUESTIONS
+}
@@ -0,0 +1,37 @@
+package com.upgrad.quora.service.job;
+
+/**
+ * Implemented by the beans which run a type of background job, see {@link JobScheduler}.
+ * <p>
+ * A job is run at least once: it is run again when an attempt fails, or when the node running it dies or stops
+ * renewing its lease, so implementations must be idempotent. A job is run outside of any transaction, on a worker
+ * thread of the scheduler.
+ */
+public interface JobHandler {
+
+    /**
+     * @return type of the jobs run, unique among the handlers.
+     */
+    String getJobType();
+
+    /**
+     * Runs a job, an exception fails the attempt.
+     *
+     * @param payload payload the job was enqueued with, may be null.
+     */
+    void run(String payload) throws Exception;
+
+    /**
+     * @return most jobs of the type run at the same time by a node.
+     */
+    default int getMaxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * @return attempts after which a failing job is given up.
+     */
+    default int getMaxAttempts() {
+        return 5;
+    }
+}
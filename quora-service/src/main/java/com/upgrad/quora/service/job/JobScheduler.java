@@ -0,0 +1,307 @@
+package com.upgrad.quora.service.job;
+
+import com.upgrad.quora.service.dao.JobDao;
+import com.upgrad.quora.service.entity.JobEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the background jobs stored in the JOB table, spread over the nodes without a leader. Every node polls for
+ * the due jobs of the types it has a {@link JobHandler} for, claiming them with SELECT ... FOR UPDATE SKIP LOCKED
+ * so that the nodes never wait for each other, and as many as it has free workers for the type.
+ * <p>
+ * A claimed job is marked as running under a lease of the node, renewed while the job runs. A failed attempt is
+ * retried after an exponential backoff with jitter, until the job has used its attempts. The jobs of a node which
+ * died or stopped renewing its leases are released once the leases expire, and retried by any node.
+ */
+@Component
+public class JobScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobScheduler.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired(required = false)
+    private List<JobHandler> handlers = Collections.emptyList();
+
+    @Value("${quora.jobs.batch-size:20}")
+    private int batchSize;
+
+    @Value("${quora.jobs.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${quora.jobs.backoff-base-ms:1000}")
+    private long backoffBaseMillis;
+
+    @Value("${quora.jobs.backoff-max-ms:600000}")
+    private long backoffMaxMillis;
+
+    @Value("${quora.jobs.retention-hours:24}")
+    private int retentionHours;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Identifies the node in the leases, the process and host first for the operators
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, JobHandler> handlersByType = new LinkedHashMap<>();
+
+    private final Map<String, JobStatistics> statistics = new LinkedHashMap<>();
+
+    // Jobs being run by this node, their leases are renewed
+    private final Map<Long, String> runningJobs = new ConcurrentHashMap<>();
+
+    private ExecutorService workers;
+
+    @Autowired
+    public JobScheduler(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        int threads = 0;
+        for (JobHandler handler : handlers) {
+            if (handlersByType.put(handler.getJobType(), handler) != null) {
+                throw new IllegalStateException("Several handlers for the jobs of type " + handler.getJobType());
+            }
+            statistics.put(handler.getJobType(), new JobStatistics(handler.getJobType(), handler.getMaxConcurrency()));
+            threads += handler.getMaxConcurrency();
+        }
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "job-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workers != null) {
+            workers.shutdown();
+            // The jobs still running are released by the other nodes once their leases expire
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return counters of the job types this node runs.
+     */
+    public Collection<JobStatistics> getStatistics() {
+        return Collections.unmodifiableCollection(statistics.values());
+    }
+
+    /**
+     * Enqueues a job to be run as soon as possible, it can be claimed once the transaction commits.
+     *
+     * @param jobType type of the job, handled by a {@link JobHandler}.
+     * @param payload payload handed to the handler, may be null.
+     * @return the stored job.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public JobEntity enqueue(final String jobType, final String payload) {
+        return enqueue(jobType, payload, ZonedDateTime.now());
+    }
+
+    /**
+     * Enqueues a job to be run at the given time, it can be claimed once the transaction commits.
+     *
+     * @param jobType type of the job, handled by a {@link JobHandler}.
+     * @param payload payload handed to the handler, may be null.
+     * @param runAt   time from which the job can be run.
+     * @return the stored job.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public JobEntity enqueue(final String jobType, final String payload, final ZonedDateTime runAt) {
+        JobHandler handler = handlersByType.get(jobType);
+        if (handler == null) {
+            throw new IllegalArgumentException("No handler for the jobs of type " + jobType);
+        }
+        JobEntity jobEntity = new JobEntity();
+        jobEntity.setJobType(jobType);
+        jobEntity.setPayload(payload);
+        jobEntity.setStatus(JobStatus.PENDING);
+        jobEntity.setMaxAttempts(handler.getMaxAttempts());
+        jobEntity.setRunAt(runAt);
+        jobEntity.setCreatedAt(ZonedDateTime.now());
+        return jobDao.createJob(jobEntity);
+    }
+
+    /**
+     * Enqueues a job without payload to be run at the given time, unless a job of the type is already pending or
+     * running. A periodic job scheduled by every node is thus run by one node at a time.
+     *
+     * @param jobType type of the job, handled by a {@link JobHandler}.
+     * @param runAt   time from which the job can be run.
+     * @return true if the job was enqueued, false if one was already pending or running.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public boolean enqueueUnique(final String jobType, final ZonedDateTime runAt) {
+        JobHandler handler = handlersByType.get(jobType);
+        if (handler == null) {
+            throw new IllegalArgumentException("No handler for the jobs of type " + jobType);
+        }
+        return jobDao.createUniqueJob(jobType, jobType, handler.getMaxAttempts(), runAt);
+    }
+
+    /**
+     * Claims the due jobs of every type for the free workers of the type and starts them.
+     */
+    @Scheduled(fixedDelayString = "${quora.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        for (JobHandler handler : handlersByType.values()) {
+            JobStatistics typeStatistics = statistics.get(handler.getJobType());
+            int free = handler.getMaxConcurrency() - typeStatistics.running.get();
+            if (free <= 0) {
+                continue;
+            }
+            List<JobEntity> claimed = transactionTemplate.execute(status -> claim(handler.getJobType(), Math.min(free, batchSize)));
+            for (JobEntity job : claimed) {
+                typeStatistics.claimed.incrementAndGet();
+                typeStatistics.running.incrementAndGet();
+                runningJobs.put(job.getId(), job.getJobType());
+                workers.execute(() -> run(handler, typeStatistics, job));
+            }
+        }
+    }
+
+    /**
+     * Extends the leases of the jobs this node is running.
+     */
+    @Scheduled(fixedDelayString = "${quora.jobs.lease-renewal-interval-ms:20000}")
+    public void renewLeases() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(runningJobs.keySet());
+        int renewed = transactionTemplate.execute(status ->
+                jobDao.renewLeases(ids, nodeId, ZonedDateTime.now().plusNanos(leaseMillis * 1_000_000L)));
+        if (renewed < ids.size()) {
+            LOG.warn("Lost the lease of {} running jobs, they may be run again by another node", ids.size() - renewed);
+        }
+    }
+
+    /**
+     * Releases the jobs whose lease expired and counts the pending jobs.
+     */
+    @Scheduled(fixedDelayString = "${quora.jobs.lease-check-interval-ms:30000}")
+    public void releaseExpiredLeases() {
+        int released = transactionTemplate.execute(status -> jobDao.releaseExpiredLeases(ZonedDateTime.now()));
+        if (released > 0) {
+            LOG.warn("Released {} jobs whose lease expired", released);
+        }
+        Map<String, Long> pending = transactionTemplate.execute(status -> jobDao.getPendingJobCounts());
+        for (JobStatistics typeStatistics : statistics.values()) {
+            typeStatistics.pending = pending.getOrDefault(typeStatistics.getJobType(), 0L);
+        }
+    }
+
+    /**
+     * Removes the jobs which were done or given up longer ago than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${quora.jobs.purge-interval-ms:3600000}")
+    public void purgeFinished() {
+        transactionTemplate.execute(status -> jobDao.deleteFinishedJobs(ZonedDateTime.now().minusHours(retentionHours)));
+    }
+
+    private List<JobEntity> claim(final String jobType, final int limit) {
+        ZonedDateTime now = ZonedDateTime.now();
+        List<JobEntity> jobs = jobDao.claimDueJobs(jobType, now, limit);
+        for (JobEntity job : jobs) {
+            job.setStatus(JobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(nodeId);
+            job.setLockedUntil(now.plusNanos(leaseMillis * 1_000_000L));
+        }
+        return jobs;
+    }
+
+    private void run(final JobHandler handler, final JobStatistics typeStatistics, final JobEntity job) {
+        long start = System.nanoTime();
+        try {
+            handler.run(job.getPayload());
+            typeStatistics.runNanos.addAndGet(System.nanoTime() - start);
+            typeStatistics.succeeded.incrementAndGet();
+            end(job, () -> jobDao.finishJob(job.getId(), nodeId, JobStatus.DONE, null));
+        } catch (Exception e) {
+            typeStatistics.runNanos.addAndGet(System.nanoTime() - start);
+            String error = truncate(String.valueOf(e));
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                LOG.error("Giving up on job {} of type {} after {} attempts", job.getId(), job.getJobType(), job.getAttempts(), e);
+                typeStatistics.failed.incrementAndGet();
+                end(job, () -> jobDao.finishJob(job.getId(), nodeId, JobStatus.FAILED, error));
+            } else {
+                ZonedDateTime runAt = ZonedDateTime.now().plusNanos(backoffMillis(job.getAttempts()) * 1_000_000L);
+                LOG.warn("Attempt {} of job {} of type {} failed, retrying at {}", job.getAttempts(), job.getId(), job.getJobType(), runAt, e);
+                typeStatistics.retried.incrementAndGet();
+                end(job, () -> jobDao.retryJob(job.getId(), nodeId, runAt, error));
+            }
+        } finally {
+            runningJobs.remove(job.getId());
+            typeStatistics.running.decrementAndGet();
+        }
+    }
+
+    private void end(final JobEntity job, final BooleanSupplier update) {
+        try {
+            Boolean held = transactionTemplate.execute(status -> update.getAsBoolean());
+            if (!Boolean.TRUE.equals(held)) {
+                LOG.warn("Job {} of type {} ended after its lease was lost", job.getId(), job.getJobType());
+            }
+        } catch (RuntimeException e) {
+            // The job is released once its lease expires
+            LOG.warn("Could not record the end of job {} of type {}", job.getId(), job.getJobType(), e);
+        }
+    }
+
+    // Doubles with every attempt, spread by up to a fifth either way so that failing jobs do not retry together
+    private long backoffMillis(final int attempts) {
+        long backoff = backoffBaseMillis << Math.min(attempts - 1, 30);
+        if (backoff <= 0 || backoff > backoffMaxMillis) {
+            backoff = backoffMaxMillis;
+        }
+        return backoff + (long) (backoff * (ThreadLocalRandom.current().nextDouble() - 0.5) * 0.4);
+    }
+
+    private static String truncate(final String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
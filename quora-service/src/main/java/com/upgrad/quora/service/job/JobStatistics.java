@@ -0,0 +1,91 @@
+package com.upgrad.quora.service.job;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the jobs of a type run by this node, since the start.
+ */
+public class JobStatistics {
+
+    private final String jobType;
+
+    private final int maxConcurrency;
+
+    final AtomicLong claimed = new AtomicLong();
+
+    final AtomicLong succeeded = new AtomicLong();
+
+    final AtomicLong retried = new AtomicLong();
+
+    final AtomicLong failed = new AtomicLong();
+
+    final AtomicLong runNanos = new AtomicLong();
+
+    final AtomicInteger running = new AtomicInteger();
+
+    volatile long pending;
+
+    JobStatistics(final String jobType, final int maxConcurrency) {
+        this.jobType = jobType;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getJobType() {
+        return jobType;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getClaimed() {
+        return claimed.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * @return attempts which failed and were put back to be retried.
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * @return jobs given up after their last attempt failed.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return attempts run, whatever their outcome.
+     */
+    public long getRuns() {
+        return succeeded.get() + retried.get() + failed.get();
+    }
+
+    /**
+     * @return time spent running the attempts, in nanoseconds.
+     */
+    public long getRunNanos() {
+        return runNanos.get();
+    }
+
+    /**
+     * @return jobs being run by this node.
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return jobs of the type waiting in the JOB table for any node, as of the latest count.
+     */
+    public long getPending() {
+        return pending;
+    }
+}
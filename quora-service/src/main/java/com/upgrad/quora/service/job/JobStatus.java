@@ -0,0 +1,24 @@
+package com.upgrad.quora.service.job;
+
+/**
+ * State of a background job in the JOB table.
+ */
+public enum JobStatus {
+
+    /**
+     * Waiting to be claimed once its run time has come, after being enqueued or failing an attempt.
+     */
+    PENDING,
+
+    /**
+     * Claimed by a node, until the lease of the node expires.
+     */
+    RUNNING,
+
+    DONE,
+
+    /**
+     * Given up after its last attempt failed.
+     */
+    FAILED
+}
@@ -0,0 +1,461 @@
+package com.upgrad.quora.service.ranking;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.event.DomainEvent;
+import com.upgrad.quora.service.event.DomainEventSubscriber;
+import com.upgrad.quora.service.event.DomainEventType;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ChangeSet;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import com.upgrad.quora.service.sync.TransactionSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory rankings of the questions by number of answers, overall and for the trending windows, so that the
+ * home page does not scan the answers.
+ * <p>
+ * The rankings are loaded from the ANSWER table at startup. The answers posted and deleted through any node, the
+ * deletions of a user included, then come as outbox events and move the counts of their question by one, while
+ * the edited and deleted questions come from the change feed. Each ranking is a skip list ordered by count,
+ * reading the top N walks the first N entries without locking. The trending windows count the answers posted in
+ * the last hour, day and so on: answers are counted in fixed time buckets and a bucket is subtracted from a
+ * window once it slides out of it. The bucket of every answer in the windows is kept so that its deletion is
+ * taken from the right one.
+ * <p>
+ * The load reads with one repeatable read snapshot and keeps it: the events raised by the transactions the
+ * snapshot saw are already counted and left out, whether they are handed over before or after the load. A deleted
+ * question is counted again from the database, which takes it out of the rankings.
+ */
+@Component
+public class QuestionRankings implements SmartInitializingSingleton, DomainEventSubscriber {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuestionRankings.class);
+
+    private static final Pattern WINDOW_FORMAT = Pattern.compile("([1-9][0-9]{0,3})([mhd])");
+
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Value("${quora.ranking.follow-page-size:1000}")
+    private int pageSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate loadTemplate;
+
+    private final long bucketMillis;
+
+    private final Ranking top = new Ranking();
+
+    private final Map<Duration, TrendingWindow> trendingWindows = new LinkedHashMap<>();
+
+    private final List<String> windowNames;
+
+    private final long longestWindowMillis;
+
+    private final Map<String, String> contents = new ConcurrentHashMap<>();
+
+    // Answers posted per bucket start and question, as far back as the longest window
+    private final TreeMap<Long, Map<String, Integer>> buckets = new TreeMap<>();
+
+    // Bucket of every answer counted in the buckets
+    private final Map<String, Long> answerBuckets = new HashMap<>();
+
+    private SyncToken position = SyncToken.START;
+
+    // Snapshot of the last load, null before it
+    private TransactionSnapshot loaded;
+
+    @Autowired
+    public QuestionRankings(final PlatformTransactionManager transactionManager,
+                            @Value("${quora.ranking.bucket-ms:60000}") final long bucketMillis,
+                            @Value("${quora.ranking.trending-windows:1h,24h}") final String[] windows) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.loadTemplate = new TransactionTemplate(transactionManager);
+        this.loadTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.loadTemplate.setReadOnly(true);
+        this.bucketMillis = bucketMillis;
+        this.windowNames = Collections.unmodifiableList(Arrays.asList(windows));
+        for (String window : windows) {
+            Duration length = parseWindow(window);
+            if (length == null) {
+                throw new IllegalArgumentException("Invalid trending window " + window);
+            }
+            trendingWindows.put(length, new TrendingWindow(length));
+        }
+        this.longestWindowMillis = trendingWindows.keySet().stream().mapToLong(Duration::toMillis).max().orElse(0);
+    }
+
+    /**
+     * @param window length of a trending window such as 30m, 1h or 7d.
+     * @return the length, null if it is not in that format.
+     */
+    private static Duration parseWindow(final String window) {
+        Matcher matcher = WINDOW_FORMAT.matcher(window == null ? "" : window.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            default:
+                return Duration.ofDays(amount);
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * @param limit maximum number of questions.
+     * @return the questions with the most answers, most answered first.
+     */
+    public List<RankedQuestion> getTopByAnswers(final int limit) {
+        return top.first(limit);
+    }
+
+    /**
+     * @return number of answers to the question, 0 if it has none or is not known.
+     */
+    public long getAnswerCount(final String questionUuid) {
+        Long count = top.counts.get(questionUuid);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @param window length of the window such as 1h, one of the configured trending windows.
+     * @param limit  maximum number of questions.
+     * @return the questions with the most answers posted within the window, most answered first. Null if the
+     * window is not one of the configured ones.
+     */
+    public List<RankedQuestion> getTrending(final String window, final int limit) {
+        Duration length = parseWindow(window);
+        TrendingWindow trendingWindow = length == null ? null : trendingWindows.get(length);
+        return trendingWindow == null ? null : trendingWindow.ranking.first(limit);
+    }
+
+    /**
+     * @return the configured trending windows, as given in the configuration.
+     */
+    public List<String> getTrendingWindows() {
+        return windowNames;
+    }
+
+    /**
+     * Applies the question changes committed since the last call, the rankings are loaded again if the position is
+     * older than the deletions kept by the feed.
+     */
+    @Scheduled(fixedDelayString = "${quora.ranking.follow-interval-ms:1000}")
+    public synchronized void follow() {
+        if (!changeFeed.isResumable(position)) {
+            LOG.warn("The rankings fell behind the change feed, loading them again");
+            reload();
+            return;
+        }
+        ChangeSet changeSet;
+        do {
+            changeSet = changeFeed.readChanges(position, pageSize);
+            Set<String> recounted = new HashSet<>();
+            for (ContentChange change : changeSet.getChanges()) {
+                if (change.getKind() == ChangeKind.ANSWER) {
+                    // Counted from the events
+                    continue;
+                }
+                if (change.isDeleted()) {
+                    recounted.add(change.getUuid());
+                } else {
+                    contents.computeIfPresent(change.getUuid(), (uuid, content) -> change.getContent());
+                }
+            }
+            if (!recounted.isEmpty()) {
+                recount(recounted);
+            }
+            position = changeSet.getNextToken();
+        } while (changeSet.isHasMore());
+    }
+
+    /**
+     * Slides the trending windows forward, the answers of the buckets which left a window are subtracted from it.
+     */
+    @Scheduled(fixedRateString = "${quora.ranking.bucket-ms:60000}")
+    public synchronized void slideWindows() {
+        long currentBucket = bucketStart(System.currentTimeMillis());
+        for (TrendingWindow window : trendingWindows.values()) {
+            long horizon = currentBucket - window.length.toMillis() + bucketMillis;
+            if (horizon > window.horizon) {
+                for (Map<String, Integer> expired : buckets.subMap(window.horizon, horizon).values()) {
+                    expired.forEach((questionUuid, answers) -> window.ranking.add(questionUuid, -answers));
+                }
+                window.horizon = horizon;
+            }
+        }
+        long oldestBucket = currentBucket - longestWindowMillis + bucketMillis;
+        buckets.headMap(oldestBucket).clear();
+        answerBuckets.values().removeIf(bucket -> bucket < oldestBucket);
+        contents.keySet().removeIf(this::isUnranked);
+    }
+
+    /**
+     * Loads the rankings from the answers in the database.
+     */
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        // Taken first, the changes committed during the load are read again from the feed
+        position = changeFeed.currentPosition();
+        loadTemplate.execute(status -> {
+            loaded = answerDao.getCurrentSnapshot();
+            top.clear();
+            contents.clear();
+            buckets.clear();
+            answerBuckets.clear();
+            for (TrendingWindow window : trendingWindows.values()) {
+                window.ranking.clear();
+                window.horizon = bucketStart(now) - window.length.toMillis() + bucketMillis;
+            }
+
+            for (RankedQuestion question : answerDao.getAnswerCountsByQuestion()) {
+                contents.put(question.getUuid(), question.getContent());
+                top.add(question.getUuid(), question.getAnswers());
+            }
+            ZonedDateTime since = ZonedDateTime.now().minusNanos(longestWindowMillis * 1_000_000L);
+            for (Object[] answer : answerDao.getAnswerDatesSince(since)) {
+                addToBuckets((String) answer[0], (String) answer[1],
+                        ((ZonedDateTime) answer[2]).toInstant().toEpochMilli());
+            }
+            return null;
+        });
+        LOG.info("Loaded the rankings of {} answered questions in {}ms", contents.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Counts the answers of the questions again, a deleted question leaves the rankings.
+     */
+    private void recount(final Set<String> questionUuids) {
+        Map<String, RankedQuestion> counted = new HashMap<>();
+        List<Object[]> dates = transactionTemplate.execute(status -> {
+            answerDao.getAnswerCountsOfQuestions(questionUuids).forEach(question -> counted.put(question.getUuid(), question));
+            return answerDao.getAnswerDatesOfQuestionsSince(questionUuids,
+                    ZonedDateTime.now().minusNanos(longestWindowMillis * 1_000_000L));
+        });
+
+        for (String questionUuid : questionUuids) {
+            RankedQuestion question = counted.get(questionUuid);
+            if (question != null) {
+                contents.put(questionUuid, question.getContent());
+            }
+            top.set(questionUuid, question == null ? 0 : question.getAnswers());
+            for (Map.Entry<Long, Map<String, Integer>> bucket : buckets.entrySet()) {
+                Integer answers = bucket.getValue().remove(questionUuid);
+                if (answers != null) {
+                    trendingWindows.values().stream().filter(window -> bucket.getKey() >= window.horizon)
+                            .forEach(window -> window.ranking.add(questionUuid, -answers));
+                }
+            }
+        }
+        for (Object[] answer : dates) {
+            addToBuckets((String) answer[0], (String) answer[1],
+                    ((ZonedDateTime) answer[2]).toInstant().toEpochMilli());
+        }
+        questionUuids.forEach(this::forgetContentIfUnranked);
+    }
+
+    /**
+     * Counts the answers posted and deleted through any node, the events of the transactions the load saw excepted.
+     */
+    @Override
+    public synchronized void onEvent(final DomainEvent event) {
+        if (loaded != null && loaded.sees(event.getChangeXid())) {
+            return;
+        }
+        if (event.getType() == DomainEventType.ANSWER_CREATED) {
+            answerCreated(event.getAggregateId(), event.getParentId(),
+                    event.getOccurredAt().toInstant().toEpochMilli());
+        } else if (event.getType() == DomainEventType.ANSWER_DELETED) {
+            answerDeleted(event.getAggregateId(), event.getParentId());
+        }
+    }
+
+    private void answerCreated(final String answerUuid, final String questionUuid, final long postedAt) {
+        if (!contents.containsKey(questionUuid)) {
+            // Not ranked yet, a question deleted meanwhile stays out
+            QuestionEntity question = questionDao.getQuestionByUuid(questionUuid);
+            if (question == null) {
+                return;
+            }
+            contents.put(questionUuid, question.getContent());
+        }
+        top.add(questionUuid, 1);
+        addToBuckets(answerUuid, questionUuid, postedAt);
+    }
+
+    private void answerDeleted(final String answerUuid, final String questionUuid) {
+        // The question is no longer ranked if it was deleted first
+        if (top.contains(questionUuid)) {
+            top.add(questionUuid, -1);
+        }
+        Long bucket = answerBuckets.remove(answerUuid);
+        Map<String, Integer> counted = bucket == null ? null : buckets.get(bucket);
+        if (counted != null && counted.containsKey(questionUuid)) {
+            counted.computeIfPresent(questionUuid, (uuid, answers) -> answers == 1 ? null : answers - 1);
+            trendingWindows.values().stream().filter(window -> bucket >= window.horizon)
+                    .forEach(window -> window.ranking.add(questionUuid, -1));
+        }
+        forgetContentIfUnranked(questionUuid);
+    }
+
+    private void addToBuckets(final String answerUuid, final String questionUuid, final long postedAt) {
+        long bucket = bucketStart(postedAt);
+        boolean counted = false;
+        for (TrendingWindow window : trendingWindows.values()) {
+            if (bucket >= window.horizon) {
+                window.ranking.add(questionUuid, 1);
+                counted = true;
+            }
+        }
+        if (counted) {
+            buckets.computeIfAbsent(bucket, key -> new HashMap<>()).merge(questionUuid, 1, Integer::sum);
+            answerBuckets.put(answerUuid, bucket);
+        }
+    }
+
+    private void forgetContentIfUnranked(final String questionUuid) {
+        if (isUnranked(questionUuid)) {
+            contents.remove(questionUuid);
+        }
+    }
+
+    private boolean isUnranked(final String questionUuid) {
+        return !top.contains(questionUuid)
+                && trendingWindows.values().stream().noneMatch(window -> window.ranking.contains(questionUuid));
+    }
+
+    private long bucketStart(final long time) {
+        return time - Math.floorMod(time, bucketMillis);
+    }
+
+    private final class TrendingWindow {
+
+        private final Duration length;
+
+        private final Ranking ranking = new Ranking();
+
+        // Start of the oldest bucket counted in the window
+        private long horizon;
+
+        private TrendingWindow(final Duration length) {
+            this.length = length;
+        }
+    }
+
+    /**
+     * Answer counts of the questions, sorted by count. Updated under the lock of the rankings, read without.
+     */
+    private final class Ranking {
+
+        private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+        private final ConcurrentSkipListSet<Entry> order = new ConcurrentSkipListSet<>();
+
+        void add(final String questionUuid, final long delta) {
+            Long before = counts.get(questionUuid);
+            long after = (before == null ? 0 : before) + delta;
+            if (before != null) {
+                order.remove(new Entry(questionUuid, before));
+            }
+            if (after > 0) {
+                counts.put(questionUuid, after);
+                order.add(new Entry(questionUuid, after));
+            } else {
+                counts.remove(questionUuid);
+            }
+        }
+
+        void set(final String questionUuid, final long count) {
+            Long before = counts.get(questionUuid);
+            add(questionUuid, count - (before == null ? 0 : before));
+        }
+
+        boolean contains(final String questionUuid) {
+            return counts.containsKey(questionUuid);
+        }
+
+        void clear() {
+            counts.clear();
+            order.clear();
+        }
+
+        List<RankedQuestion> first(final int limit) {
+            List<RankedQuestion> questions = new ArrayList<>(limit);
+            for (Entry entry : order) {
+                if (questions.size() == limit) {
+                    break;
+                }
+                String content = contents.get(entry.questionUuid);
+                if (content != null) {
+                    questions.add(new RankedQuestion(entry.questionUuid, content, entry.count));
+                }
+            }
+            return questions;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final String questionUuid;
+
+        private final long count;
+
+        private Entry(final String questionUuid, final long count) {
+            this.questionUuid = questionUuid;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            int byCount = Long.compare(other.count, count);
+            return byCount != 0 ? byCount : questionUuid.compareTo(other.questionUuid);
+        }
+    }
+}
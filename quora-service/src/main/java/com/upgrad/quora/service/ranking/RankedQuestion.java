@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.ranking;
+
+/**
+ * A question in one of the rankings, with the number of answers it is ranked by.
+ */
+public class RankedQuestion {
+
+    private final String uuid;
+
+    private final String content;
+
+    private final long answers;
+
+    public RankedQuestion(final String uuid, final String content, final long answers) {
+        this.uuid = uuid;
+        this.content = content;
+        this.answers = answers;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public long getAnswers() {
+        return answers;
+    }
+}
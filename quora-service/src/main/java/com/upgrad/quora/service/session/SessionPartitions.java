@@ -0,0 +1,145 @@
+package com.upgrad.quora.service.session;
+
+import com.upgrad.quora.service.dao.SessionDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Maintains the monthly partitions of USER_AUTH, which is partitioned by the expiry of the sessions. The
+ * partitions of the current month and of the months ahead are created before sessions expiring then are stored,
+ * and a partition is dropped as a whole once every session in it has been expired for the retention period. The
+ * sessions stored in the default partition, because they expire outside of the partitions, are purged in batches.
+ * <p>
+ * An access token of a dropped session is no longer known, it is rejected as not signed in rather than as signed
+ * out. One node at a time maintains the partitions, the others skip the run.
+ * <p>
+ * Every partition is created, detached and dropped in a transaction of its own, so that USER_AUTH is locked
+ * briefly and the detached partition is dropped without it. The statements give up after the lock timeout rather
+ * than queue the sessions behind them, and the maintenance is carried on by the next run.
+ */
+@Component
+public class SessionPartitions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionPartitions.class);
+
+    private static final String PREFIX = "user_auth_p";
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Key of the advisory lock taken by the node maintaining the partitions
+    private static final long LOCK_KEY = 0x5553455241555448L;
+
+    @Autowired
+    private SessionDao sessionDao;
+
+    @Value("${quora.session.partitions.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${quora.session.partitions.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${quora.session.partitions.lock-timeout-ms:5000}")
+    private long lockTimeoutMillis;
+
+    @Value("${quora.session.batch-size:500}")
+    private int batchSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public SessionPartitions(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Creates the missing partitions, drops the expired ones and purges the expired sessions of the default
+     * partition.
+     */
+    @Scheduled(fixedDelayString = "${quora.session.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime purgeBefore = now.minusDays(retentionDays);
+        if (!maintain(dao -> { })) {
+            return;
+        }
+        Set<String> partitions = new HashSet<>(transactionTemplate.execute(status -> sessionDao.getPartitionNames()));
+        List<String> detached = new ArrayList<>(transactionTemplate.execute(status -> sessionDao.getDetachedPartitionNames()));
+        try {
+            YearMonth current = YearMonth.from(now);
+            for (int ahead = 0; ahead <= monthsAhead; ahead++) {
+                YearMonth month = current.plusMonths(ahead);
+                String name = PREFIX + MONTH.format(month);
+                if (!partitions.contains(name)) {
+                    if (!maintain(dao -> dao.createPartition(name, month.atDay(1).atStartOfDay(),
+                            month.plusMonths(1).atDay(1).atStartOfDay()))) {
+                        return;
+                    }
+                    LOG.info("Created the session partition {}", name);
+                }
+            }
+            for (String name : partitions) {
+                if (name.matches(PREFIX + "\\d{6}")) {
+                    YearMonth month = YearMonth.parse(name.substring(PREFIX.length()), MONTH);
+                    if (!month.plusMonths(1).atDay(1).atStartOfDay().isAfter(purgeBefore)) {
+                        if (!maintain(dao -> dao.detachPartition(name))) {
+                            return;
+                        }
+                        detached.add(name);
+                    }
+                }
+            }
+            for (String name : detached) {
+                if (name.matches(PREFIX + "\\d{6}")) {
+                    if (!maintain(dao -> dao.dropPartition(name))) {
+                        return;
+                    }
+                    LOG.info("Dropped the expired session partition {}", name);
+                }
+            }
+        } catch (PessimisticLockingFailureException e) {
+            LOG.warn("Gave up waiting for a lock of the sessions, the partitions are maintained on the next run", e);
+            return;
+        }
+        int total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> sessionDao.deleteExpiredDefaultSessions(purgeBefore, batchSize));
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            LOG.info("Purged {} expired sessions from the default session partition", total);
+        }
+    }
+
+    /**
+     * Runs a step of the maintenance in a transaction of its own, under the lock timeout.
+     *
+     * @return false if another node is maintaining the partitions.
+     */
+    private boolean maintain(final Consumer<SessionDao> step) {
+        return transactionTemplate.execute(status -> {
+            if (!sessionDao.tryLockPartitions(LOCK_KEY)) {
+                return false;
+            }
+            sessionDao.setLockTimeout(lockTimeoutMillis);
+            step.accept(sessionDao);
+            return true;
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.upgrad.quora.service.session;
+
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.dao.SessionDao;
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enforces the expiry of the sessions. The sessions in use on this node are kept by access token until they
+ * expire or are signed out, a session found there has not expired and the check takes no clock reading. The
+ * expiry of the others is compared with the current tick once, the ones still valid are then kept.
+ * <p>
+ * The sessions are evicted at their expiry by a {@link TimingWheel} advanced every tick, which makes the memory
+ * proportional to the sessions in use rather than to all the logins. Evicted sessions are marked signed out at
+ * their expiry in USER_AUTH in batches. A periodic sweep marks the sessions which expired without being used on
+ * this node, including the ones of the time the node was down.
+ */
+@Component
+public class SessionRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionRegistry.class);
+
+    @Autowired
+    private SessionDao sessionDao;
+
+    @Value("${quora.session.batch-size:500}")
+    private int batchSize;
+
+    private final long tickMillis;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Guarded by itself
+    private final TimingWheel<Session> wheel;
+
+    // Ids of the sessions which expired and are not yet marked in the database
+    private final Set<Integer> expiredIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public SessionRegistry(final PlatformTransactionManager transactionManager,
+                           @Value("${quora.session.tick-ms:1000}") final long tickMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tickMillis = tickMillis;
+        this.wheel = new TimingWheel<>(System.currentTimeMillis() / tickMillis);
+    }
+
+    /**
+     * @param userAuthToken session of the access token, not signed out.
+     * @return whether the session has expired, at the precision of a tick.
+     */
+    public boolean hasExpired(final UserAuthTokenEntity userAuthToken) {
+        if (sessions.containsKey(userAuthToken.getAccessToken())) {
+            return false;
+        }
+        synchronized (wheel) {
+            if (tickOf(userAuthToken.getExpiresAt()) <= wheel.getCurrentTick()) {
+                expiredIds.add(userAuthToken.getId());
+                return true;
+            }
+            track(userAuthToken);
+            return false;
+        }
+    }
+
+    /**
+     * Keeps a session signed in on this node once the transaction has committed.
+     */
+    public void sessionStarted(final UserAuthTokenEntity userAuthToken) {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (wheel) {
+                if (tickOf(userAuthToken.getExpiresAt()) > wheel.getCurrentTick()) {
+                    track(userAuthToken);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forgets a session signed out once the transaction has committed.
+     */
+    public void sessionEnded(final String accessToken) {
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (wheel) {
+                Session session = sessions.remove(accessToken);
+                if (session != null) {
+                    wheel.cancel(session.timer);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return number of sessions kept, the sessions in use on this node which have not expired.
+     */
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Evicts the sessions expired since the last tick and marks them in the database.
+     */
+    @Scheduled(fixedDelayString = "${quora.session.tick-ms:1000}")
+    public void tick() {
+        synchronized (wheel) {
+            wheel.advance(System.currentTimeMillis() / tickMillis, session -> {
+                sessions.remove(session.accessToken, session);
+                expiredIds.add(session.id);
+            });
+        }
+        markExpired();
+    }
+
+    /**
+     * Marks the sessions which expired without signing out and are not known to this node, batch by batch.
+     */
+    @Scheduled(fixedDelayString = "${quora.session.sweep-interval-ms:300000}")
+    public void sweep() {
+        ZonedDateTime now = ZonedDateTime.now();
+        int total = 0;
+        int marked;
+        do {
+            marked = transactionTemplate.execute(status -> sessionDao.expireOverdueSessions(now, batchSize));
+            total += marked;
+        } while (marked == batchSize);
+        if (total > 0) {
+            LOG.info("Marked {} expired sessions as signed out", total);
+        }
+    }
+
+    private void markExpired() {
+        while (!expiredIds.isEmpty()) {
+            List<Integer> batch = new ArrayList<>(batchSize);
+            Iterator<Integer> ids = expiredIds.iterator();
+            while (ids.hasNext() && batch.size() < batchSize) {
+                batch.add(ids.next());
+                ids.remove();
+            }
+            try {
+                transactionTemplate.execute(status -> sessionDao.expireSessions(batch));
+            } catch (RuntimeException e) {
+                // Retried on the next tick, the sweep marks them anyway
+                expiredIds.addAll(batch);
+                LOG.warn("Could not mark {} expired sessions", batch.size(), e);
+                return;
+            }
+        }
+    }
+
+    private void track(final UserAuthTokenEntity userAuthToken) {
+        Session session = new Session(userAuthToken.getId(), userAuthToken.getAccessToken());
+        Session previous = sessions.putIfAbsent(session.accessToken, session);
+        if (previous == null) {
+            session.timer = wheel.schedule(session, tickOf(userAuthToken.getExpiresAt()));
+        }
+    }
+
+    private long tickOf(final ZonedDateTime time) {
+        return time.toInstant().toEpochMilli() / tickMillis;
+    }
+
+    private static final class Session {
+
+        private final Integer id;
+
+        private final String accessToken;
+
+        private TimingWheel.Timer<Session> timer;
+
+        private Session(final Integer id, final String accessToken) {
+            this.id = id;
+            this.accessToken = accessToken;
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.upgrad.quora.service.session;
+
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.invalidation.InvalidationSubscriber;
+import com.upgrad.quora.service.invalidation.InvalidationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * Optional store of the sessions in a memory-mapped file, shared by the processes of a host and kept across their
+ * restarts. A session is found by access token without querying USER_AUTH, until it is older than the allowed
+ * staleness: a session signed out on another host is only seen once its record is verified against the database
+ * again. Records of signed out sessions are final and trusted as long as they are kept.
+ * <p>
+ * The file is an open addressing table with linear probing, each slot holding a record keyed by the first 128 bits
+ * of the SHA-256 of the access token and closed by a MAC. Readers take no lock: a record being written does not
+ * match its MAC and is read as missing, the caller then falls back to the database. Writers hold a lock on the file,
+ * they are rare as a session is written when it signs in or out and when it is verified. Slots are never emptied,
+ * the slot of an expired session is reused.
+ * <p>
+ * The file is trusted no more than its directory and secret: the directory must be owned by the user of the process
+ * and closed to the others (0700), and the MAC is keyed with the configured secret and the database, so the file of
+ * another environment or database is replaced and a record forged or altered without the secret is read as missing.
+ * <p>
+ * A session signed out on another host is invalidated by the key of its record, the record is then verified
+ * against the database on its next read instead of once it is stale.
+ */
+@Component
+public class SessionStore implements InvalidationSubscriber {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionStore.class);
+
+    private static final long MAGIC = 0x51554f5241534553L;
+
+    private static final int VERSION = 2;
+
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> PRIVATE_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 72;
+
+    private static final int MAX_PROBES = 32;
+
+    // Offsets within a slot
+    private static final int KEY_HIGH = 0;
+
+    private static final int KEY_LOW = 8;
+
+    private static final int USER_ID = 16;
+
+    private static final int ID = 24;
+
+    private static final int LOGIN_AT = 32;
+
+    private static final int EXPIRES_AT = 40;
+
+    private static final int LOGOUT_AT = 48;
+
+    private static final int VERIFIED_AT = 56;
+
+    private static final int CHECKSUM = 64;
+
+    @Value("${quora.session.store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${quora.session.store.directory:}")
+    private String directory;
+
+    @Value("${quora.session.store.secret:}")
+    private String secret;
+
+    @Value("${spring.datasource.url:}")
+    private String database;
+
+    @Value("${quora.session.store.slots:262144}")
+    private int slots;
+
+    @Value("${quora.session.store.max-staleness-ms:30000}")
+    private long maxStalenessMillis;
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private ThreadLocal<Mac> macs;
+
+    private long fingerprint;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private int mask;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalStateException("The number of session store slots must be a power of two");
+        }
+        if (secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("The session store needs a secret of at least " + MIN_SECRET_LENGTH
+                    + " characters in quora.session.store.secret");
+        }
+        Path path = privateDirectory().resolve("sessions.map");
+        initializeMac();
+        long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        // Processes starting together open the file one at a time
+        try (FileChannel initialization = FileChannel.open(path.resolveSibling("sessions.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock initializationLock = initialization.lock()) {
+            if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && Files.size(path) == size) {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (buffer.getLong(0) == MAGIC && buffer.getInt(8) == VERSION && buffer.getInt(12) == slots
+                        && buffer.getLong(16) == fingerprint) {
+                    mask = slots - 1;
+                    return;
+                }
+                channel.close();
+            }
+            // Replaced rather than resized, processes still mapping the previous file keep a valid mapping
+            Path created = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PRIVATE_FILE));
+            channel = FileChannel.open(created, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, slots);
+            buffer.putLong(16, fingerprint);
+            buffer.putLong(0, MAGIC);
+            Files.move(created, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOG.info("Created the session store {} with {} slots", path, slots);
+        }
+        mask = slots - 1;
+    }
+
+    // The configured directory, created if missing, once checked to be private to the user of the process
+    private Path privateDirectory() throws IOException {
+        if (directory.isEmpty()) {
+            throw new IllegalStateException("The session store needs a private directory in quora.session.store.directory");
+        }
+        Path path = Paths.get(directory).toAbsolutePath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(path, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+        }
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                || !Files.getOwner(path, LinkOption.NOFOLLOW_LINKS).equals(user)
+                || !Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS).equals(PRIVATE_DIRECTORY)) {
+            throw new IllegalStateException("The session store directory " + path + " must be a directory owned by "
+                    + user.getName() + " with mode 0700");
+        }
+        return path;
+    }
+
+    // Records are signed with a key derived from the secret and the database, the header holds its fingerprint
+    private void initializeMac() {
+        try {
+            Mac derivation = Mac.getInstance("HmacSHA256");
+            derivation.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            SecretKeySpec key = new SecretKeySpec(derivation.doFinal(database.getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+            macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance("HmacSHA256");
+                    mac.init(key);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            fingerprint = mac(new long[]{MAGIC, VERSION}, 2);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * @param accessToken access token of the session.
+     * @return the stored session, null if it is not stored, being written or to be verified against the database.
+     */
+    public StoredSession get(final String accessToken) {
+        if (buffer == null) {
+            return null;
+        }
+        long[] key = key(accessToken);
+        long[] record = new long[CHECKSUM / 8 + 1];
+        int slot = (int) key[0] & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            read(slot, record);
+            if (isEmpty(record)) {
+                return null;
+            }
+            if (record[CHECKSUM / 8] != checksum(record)) {
+                continue;
+            }
+            if (record[KEY_HIGH / 8] == key[0] && record[KEY_LOW / 8] == key[1]) {
+                long logoutAt = record[LOGOUT_AT / 8];
+                long verifiedAt = record[VERIFIED_AT / 8];
+                long now = System.currentTimeMillis();
+                // A record verified in the future is no more trusted than a stale one
+                if (logoutAt == 0 && (verifiedAt > now || now - verifiedAt > maxStalenessMillis)) {
+                    return null;
+                }
+                return new StoredSession((int) record[ID / 8], record[USER_ID / 8], record[LOGIN_AT / 8],
+                        record[EXPIRES_AT / 8], logoutAt);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a session as just read from the database.
+     */
+    public void put(final UserAuthTokenEntity userAuthToken) {
+        put(userAuthToken, System.currentTimeMillis());
+    }
+
+    void put(final UserAuthTokenEntity userAuthToken, final long verifiedAt) {
+        if (buffer == null) {
+            return;
+        }
+        long[] key = key(userAuthToken.getAccessToken());
+        long[] record = new long[CHECKSUM / 8 + 1];
+        record[KEY_HIGH / 8] = key[0];
+        record[KEY_LOW / 8] = key[1];
+        record[USER_ID / 8] = userAuthToken.getUser().getId();
+        record[ID / 8] = userAuthToken.getId();
+        record[LOGIN_AT / 8] = userAuthToken.getLoginAt().toInstant().toEpochMilli();
+        record[EXPIRES_AT / 8] = userAuthToken.getExpiresAt().toInstant().toEpochMilli();
+        record[LOGOUT_AT / 8] = userAuthToken.getLogoutAt() == null ? 0 : userAuthToken.getLogoutAt().toInstant().toEpochMilli();
+        record[VERIFIED_AT / 8] = verifiedAt;
+        write(record);
+    }
+
+    /**
+     * Stores a session signed in or out once the transaction has committed.
+     */
+    public void sessionChanged(final UserAuthTokenEntity userAuthToken) {
+        TransactionCallbacks.afterCommit(() -> put(userAuthToken));
+    }
+
+    /**
+     * Marks the sessions of a deleted user as signed out once the transaction has committed.
+     */
+    public void userDeleted(final long userId) {
+        TransactionCallbacks.afterCommit(() -> {
+            if (buffer == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long[] record = new long[CHECKSUM / 8 + 1];
+            synchronized (this) {
+                try (FileLock lock = channel.lock()) {
+                    for (int slot = 0; slot < slots; slot++) {
+                        read(slot, record);
+                        if (!isEmpty(record) && record[USER_ID / 8] == userId && record[LOGOUT_AT / 8] == 0
+                                && record[CHECKSUM / 8] == checksum(record)) {
+                            record[LOGOUT_AT / 8] = now;
+                            record[CHECKSUM / 8] = checksum(record);
+                            writeSlot(slot, record);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the key of the record of a session, to invalidate it without revealing the access token.
+     */
+    public String keyOf(final String accessToken) {
+        long[] key = key(accessToken);
+        return String.format("%016x%016x", key[0], key[1]);
+    }
+
+    @Override
+    public void invalidate(final InvalidationType type, final String key) {
+        if (type == InvalidationType.SESSION) {
+            unverify(new long[]{Long.parseUnsignedLong(key.substring(0, 16), 16),
+                    Long.parseUnsignedLong(key.substring(16), 16)});
+        } else if (type == InvalidationType.USER_SESSIONS) {
+            userDeleted(Long.parseLong(key));
+        }
+    }
+
+    /**
+     * Has every session not signed out verified against the database on its next read.
+     */
+    @Override
+    public void invalidateAll() {
+        unverify(null);
+    }
+
+    // The record of the key, every record if it is null
+    private synchronized void unverify(final long[] key) {
+        if (buffer == null) {
+            return;
+        }
+        long[] record = new long[CHECKSUM / 8 + 1];
+        int slot = key == null ? 0 : (int) key[0] & mask;
+        int count = key == null ? slots : MAX_PROBES;
+        try (FileLock lock = channel.lock()) {
+            for (int i = 0; i < count; i++, slot = (slot + 1) & mask) {
+                read(slot, record);
+                if (isEmpty(record)) {
+                    if (key != null) {
+                        return;
+                    }
+                    continue;
+                }
+                boolean matches = key == null || (record[KEY_HIGH / 8] == key[0] && record[KEY_LOW / 8] == key[1]);
+                if (matches && record[LOGOUT_AT / 8] == 0 && record[VERIFIED_AT / 8] != 0
+                        && record[CHECKSUM / 8] == checksum(record)) {
+                    record[VERIFIED_AT / 8] = 0;
+                    record[CHECKSUM / 8] = checksum(record);
+                    writeSlot(slot, record);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void write(final long[] record) {
+        record[CHECKSUM / 8] = checksum(record);
+        long now = System.currentTimeMillis();
+        long[] existing = new long[record.length];
+        try (FileLock lock = channel.lock()) {
+            int reusable = -1;
+            int slot = (int) record[KEY_HIGH / 8] & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+                read(slot, existing);
+                if (isEmpty(existing)) {
+                    writeSlot(reusable < 0 ? slot : reusable, record);
+                    return;
+                }
+                if (existing[KEY_HIGH / 8] == record[KEY_HIGH / 8] && existing[KEY_LOW / 8] == record[KEY_LOW / 8]) {
+                    // A signed out session stays signed out whatever the order of the writes
+                    if (existing[LOGOUT_AT / 8] != 0 && record[LOGOUT_AT / 8] == 0
+                            && existing[CHECKSUM / 8] == checksum(existing)) {
+                        record[LOGOUT_AT / 8] = existing[LOGOUT_AT / 8];
+                        record[CHECKSUM / 8] = checksum(record);
+                    }
+                    writeSlot(slot, record);
+                    return;
+                }
+                if (reusable < 0 && (existing[EXPIRES_AT / 8] < now || existing[CHECKSUM / 8] != checksum(existing))) {
+                    reusable = slot;
+                }
+            }
+            if (reusable >= 0) {
+                writeSlot(reusable, record);
+            }
+            // Otherwise the neighbourhood is full of live sessions and this one is read from the database
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void read(final int slot, final long[] record) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        for (int i = 0; i < record.length; i++) {
+            record[i] = buffer.getLong(offset + i * 8);
+        }
+    }
+
+    // The checksum is cleared first and written last, so a record is never read as complete while being written
+    private void writeSlot(final int slot, final long[] record) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        buffer.putLong(offset + CHECKSUM, 0);
+        for (int i = 0; i < CHECKSUM / 8; i++) {
+            buffer.putLong(offset + i * 8, record[i]);
+        }
+        buffer.putLong(offset + CHECKSUM, record[CHECKSUM / 8]);
+    }
+
+    private static boolean isEmpty(final long[] record) {
+        return record[KEY_HIGH / 8] == 0 && record[KEY_LOW / 8] == 0 && record[CHECKSUM / 8] == 0;
+    }
+
+    private long checksum(final long[] record) {
+        long mac = mac(record, CHECKSUM / 8);
+        return mac == 0 ? 1 : mac;
+    }
+
+    // The first 64 bits of the HMAC-SHA256 of the first words of the record
+    private long mac(final long[] record, final int words) {
+        Mac mac = macs.get();
+        for (int i = 0; i < words; i++) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                mac.update((byte) (record[i] >>> shift));
+            }
+        }
+        byte[] digest = mac.doFinal();
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (digest[i] & 0xff);
+        }
+        return value;
+    }
+
+    private long[] key(final String accessToken) {
+        byte[] digest = digests.get().digest(accessToken.getBytes(StandardCharsets.UTF_8));
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (digest[i] & 0xff);
+            low = (low << 8) | (digest[i + 8] & 0xff);
+        }
+        return new long[]{high, low};
+    }
+}
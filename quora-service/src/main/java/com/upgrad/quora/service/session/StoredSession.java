@@ -0,0 +1,51 @@
+package com.upgrad.quora.service.session;
+
+/**
+ * A session as kept in the {@link SessionStore}, the times in epoch milliseconds.
+ */
+public class StoredSession {
+
+    private final int id;
+
+    private final long userId;
+
+    private final long loginAt;
+
+    private final long expiresAt;
+
+    private final long logoutAt;
+
+    StoredSession(final int id, final long userId, final long loginAt, final long expiresAt, final long logoutAt) {
+        this.id = id;
+        this.userId = userId;
+        this.loginAt = loginAt;
+        this.expiresAt = expiresAt;
+        this.logoutAt = logoutAt;
+    }
+
+    /**
+     * @return id of the USER_AUTH row.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getLoginAt() {
+        return loginAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @return when the session was signed out, 0 if it was not.
+     */
+    public long getLogoutAt() {
+        return logoutAt;
+    }
+}
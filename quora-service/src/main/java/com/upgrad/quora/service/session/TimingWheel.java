@@ -0,0 +1,145 @@
+package com.upgrad.quora.service.session;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of timers due at a tick. Each level has 64 slots, a slot of the first level spans one
+ * tick and a slot of every further level spans all the slots of the level below. A timer is put in the level its
+ * due tick falls into, and moved down a level when the wheel reaches its slot, so advancing by one tick touches
+ * one slot plus, every 64 ticks, the slot of a level above.
+ * <p>
+ * Scheduling and cancelling a timer take constant time, the slots are intrusive doubly linked lists. Timers due
+ * beyond the range of the top level are parked in its last slot and rescheduled when reached. Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int LEVELS = 4;
+
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    // Sentinels of the slot lists, level by level
+    private final Timer<T>[] slots;
+
+    private long currentTick;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(final long currentTick) {
+        this.currentTick = currentTick;
+        this.slots = new Timer[SLOTS * LEVELS];
+        for (int i = 0; i < slots.length; i++) {
+            Timer<T> sentinel = new Timer<>(null, 0);
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            slots[i] = sentinel;
+        }
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param value   value handed back when the timer is due.
+     * @param dueTick tick at which the timer is due, after the current one.
+     * @return the timer, to cancel it.
+     */
+    Timer<T> schedule(final T value, final long dueTick) {
+        Timer<T> timer = new Timer<>(value, Math.max(dueTick, currentTick + 1));
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Removes a timer which is not due yet, nothing happens if it is already due or cancelled.
+     */
+    void cancel(final Timer<T> timer) {
+        if (timer.next != null) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    /**
+     * Advances the wheel up to the tick, handing the values of the timers due meanwhile to the consumer.
+     */
+    void advance(final long tick, final Consumer<T> due) {
+        while (currentTick < tick) {
+            currentTick++;
+            // Moves the timers of the upper slots reached by this tick down, level by level
+            for (int level = 1; level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+                Timer<T> sentinel = slots[level * SLOTS + slotIndex(currentTick, level)];
+                for (Timer<T> timer = sentinel.next; timer != sentinel; ) {
+                    Timer<T> next = timer.next;
+                    unlink(timer);
+                    insert(timer);
+                    timer = next;
+                }
+            }
+            Timer<T> sentinel = slots[slotIndex(currentTick, 0)];
+            while (sentinel.next != sentinel) {
+                Timer<T> timer = sentinel.next;
+                unlink(timer);
+                size--;
+                due.accept(timer.value);
+            }
+        }
+    }
+
+    private void insert(final Timer<T> timer) {
+        long delta = timer.dueTick - currentTick;
+        int index;
+        if (delta >= RANGE) {
+            // Parked in the top slot reached last, rescheduled from there
+            index = (LEVELS - 1) * SLOTS + slotIndex(currentTick + RANGE - 1, LEVELS - 1);
+        } else {
+            int level = 0;
+            while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+                level++;
+            }
+            index = level * SLOTS + slotIndex(Math.max(timer.dueTick, currentTick), level);
+        }
+        Timer<T> sentinel = slots[index];
+        timer.previous = sentinel.previous;
+        timer.next = sentinel;
+        sentinel.previous.next = timer;
+        sentinel.previous = timer;
+    }
+
+    private static <T> void unlink(final Timer<T> timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    private static int slotIndex(final long tick, final int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    static final class Timer<T> {
+
+        private final T value;
+
+        private final long dueTick;
+
+        private Timer<T> previous;
+
+        private Timer<T> next;
+
+        private Timer(final T value, final long dueTick) {
+            this.value = value;
+            this.dueTick = dueTick;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.similarity;
+
+import com.upgrad.quora.service.entity.QuestionEntity;
+
+import java.util.List;
+
+/**
+ * A newly posted question along with the existing questions it likely duplicates.
+ */
+public class CreatedQuestion {
+
+    private final QuestionEntity question;
+
+    private final List<SimilarQuestion> similarQuestions;
+
+    public CreatedQuestion(final QuestionEntity question, final List<SimilarQuestion> similarQuestions) {
+        this.question = question;
+        this.similarQuestions = similarQuestions;
+    }
+
+    public QuestionEntity getQuestion() {
+        return question;
+    }
+
+    /**
+     * @return the likely duplicates, most similar first.
+     */
+    public List<SimilarQuestion> getSimilarQuestions() {
+        return similarQuestions;
+    }
+}
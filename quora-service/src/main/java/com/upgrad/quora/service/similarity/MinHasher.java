@@ -0,0 +1,89 @@
+package com.upgrad.quora.service.similarity;
+
+import com.upgrad.quora.service.common.TextNormalizer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * MinHash signatures of texts over their character shingles. The share of positions at which two signatures
+ * agree estimates the Jaccard similarity of the shingle sets of the texts.
+ * <p>
+ * Texts are compared in their normalized form, see {@link TextNormalizer}. The hash functions are derived from
+ * the seed, signatures are only comparable between hashers with the same seed and length.
+ */
+final class MinHasher {
+
+    private final int shingleLength;
+
+    // Multiply-shift hash functions, one odd multiplier and one increment per signature position
+    private final long[] multipliers;
+
+    private final long[] increments;
+
+    MinHasher(final int signatureLength, final int shingleLength, final long seed) {
+        this.shingleLength = shingleLength;
+        this.multipliers = new long[signatureLength];
+        this.increments = new long[signatureLength];
+        Random random = new Random(seed);
+        for (int i = 0; i < signatureLength; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    int getSignatureLength() {
+        return multipliers.length;
+    }
+
+    int[] signature(final String text) {
+        int[] signature = new int[multipliers.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long shingle : shingles(TextNormalizer.normalize(text))) {
+            for (int i = 0; i < signature.length; i++) {
+                int hash = (int) ((multipliers[i] * shingle + increments[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return share of the positions at which the signatures agree.
+     */
+    static double similarity(final int[] signature, final int[] other) {
+        int agreeing = 0;
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == other[i]) {
+                agreeing++;
+            }
+        }
+        return (double) agreeing / signature.length;
+    }
+
+    private Set<Long> shingles(final String normalized) {
+        Set<Long> shingles = new HashSet<>();
+        if (normalized.length() <= shingleLength) {
+            shingles.add(hash(normalized, 0, normalized.length()));
+            return shingles;
+        }
+        for (int start = 0; start + shingleLength <= normalized.length(); start++) {
+            shingles.add(hash(normalized, start, start + shingleLength));
+        }
+        return shingles;
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(final String text, final int from, final int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
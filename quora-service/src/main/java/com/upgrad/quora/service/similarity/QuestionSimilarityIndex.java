@@ -0,0 +1,447 @@
+package com.upgrad.quora.service.similarity;
+
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ChangeSet;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory MinHash index of the question contents for finding the likely duplicates of a new question.
+ * <p>
+ * Each signature is split into bands of rows, and a question is filed under the hash of each of its bands.
+ * Questions sharing at least one band with the text looked up are the candidates, their similarity is
+ * estimated from the full signatures. With 32 bands of 4 rows a question half similar to the text is a
+ * candidate with a probability of about 0.87, one 80% similar almost surely. A lookup stops at its time budget
+ * or candidate limit and returns what it found until then.
+ * <p>
+ * The index follows the change feed, so it sees the questions posted, edited and deleted on every node, including
+ * the ones removed with their user. The changes made on this node are applied right after their commit as well,
+ * without waiting for the feed to reach them. Lookups do not lock, changes are applied one at a time. When the
+ * feed can no longer be resumed the index is built again aside from every question and then swapped in, the
+ * lookups and changes go on against the previous index meanwhile.
+ * <p>
+ * The index is written to a snapshot file periodically and on shutdown, along with its position in the change
+ * feed. At startup it is read back and brought up to date from the feed, instead of being built again from every
+ * question. A snapshot taken with other hashing parameters, or too old for the feed to still know the deletions
+ * since, is ignored, and so is one of a database which was reset since.
+ */
+@Component
+public class QuestionSimilarityIndex implements SmartInitializingSingleton {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuestionSimilarityIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x51534958;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Value("${quora.duplicates.min-similarity:0.5}")
+    private double minSimilarity;
+
+    @Value("${quora.duplicates.budget-micros:3000}")
+    private long budgetMicros;
+
+    @Value("${quora.duplicates.max-candidates:1000}")
+    private int maxCandidates;
+
+    @Value("${quora.duplicates.page-size:1000}")
+    private int pageSize;
+
+    private final MinHasher minHasher;
+
+    private final int bands;
+
+    private final int rows;
+
+    private final int shingleLength;
+
+    private final long seed;
+
+    private final Path snapshotFile;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Index index = new Index();
+
+    // Held while a change is applied to the index in use, and while it is swapped
+    private final Object writeLock = new Object();
+
+    private volatile SyncToken position = SyncToken.START;
+
+    private volatile boolean changedSinceSnapshot;
+
+    // Highest id of the questions read from the feed, a database with lower ids was reset since the snapshot
+    private volatile long highestQuestionId;
+
+    @Autowired
+    public QuestionSimilarityIndex(final PlatformTransactionManager transactionManager,
+                                   @Value("${quora.duplicates.bands:32}") final int bands,
+                                   @Value("${quora.duplicates.rows:4}") final int rows,
+                                   @Value("${quora.duplicates.shingle-length:5}") final int shingleLength,
+                                   @Value("${quora.duplicates.seed:20181}") final long seed,
+                                   @Value("${quora.duplicates.snapshot-file:}") final String snapshotFile) {
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleLength = shingleLength;
+        this.seed = seed;
+        this.minHasher = new MinHasher(bands * rows, shingleLength, seed);
+        this.snapshotFile = snapshotFile.isEmpty() ? null : Paths.get(snapshotFile);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        readSnapshot();
+        follow();
+        LOG.info("Indexed {} questions for duplicate detection in {}ms", index.questions.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param content text of a question.
+     * @param limit   maximum number of questions.
+     * @return the indexed questions similar to the text, most similar first.
+     */
+    public List<SimilarQuestion> findSimilar(final String content, final int limit) {
+        long deadline = System.nanoTime() + budgetMicros * 1000L;
+        Index searched = index;
+        int[] signature = minHasher.signature(content);
+        Set<String> candidates = new HashSet<>();
+        List<SimilarQuestion> similar = new ArrayList<>();
+
+        lookup:
+        for (int band = 0; band < bands; band++) {
+            Set<String> bucket = searched.buckets.get(bandKey(signature, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (String uuid : bucket) {
+                if (!candidates.add(uuid)) {
+                    continue;
+                }
+                if (candidates.size() > maxCandidates || System.nanoTime() > deadline) {
+                    LOG.debug("Stopped the duplicate lookup after {} candidates", candidates.size() - 1);
+                    break lookup;
+                }
+                IndexedQuestion question = searched.questions.get(uuid);
+                if (question == null) {
+                    continue;
+                }
+                double similarity = MinHasher.similarity(signature, question.signature);
+                if (similarity >= minSimilarity) {
+                    similar.add(new SimilarQuestion(uuid, question.content, similarity));
+                }
+            }
+        }
+
+        similar.sort(Comparator.comparingDouble(SimilarQuestion::getSimilarity).reversed());
+        return similar.size() > limit ? new ArrayList<>(similar.subList(0, limit)) : similar;
+    }
+
+    /**
+     * Indexes a question posted or edited on this node once the transaction has committed.
+     */
+    public void questionChanged(final String uuid, final String content) {
+        TransactionCallbacks.afterCommit(() -> put(uuid, content));
+    }
+
+    /**
+     * Removes a question deleted on this node once the transaction has committed.
+     */
+    public void questionDeleted(final String uuid) {
+        TransactionCallbacks.afterCommit(() -> remove(uuid));
+    }
+
+    /**
+     * Applies the question changes of the change feed since the last call.
+     */
+    @Scheduled(fixedDelayString = "${quora.duplicates.follow-interval-ms:1000}")
+    public synchronized void follow() {
+        if (!changeFeed.isResumable(position)) {
+            reindex();
+        }
+        ChangeSet changeSet;
+        do {
+            changeSet = changeFeed.readChanges(position, pageSize);
+            for (ContentChange change : changeSet.getChanges()) {
+                if (change.getKind() != ChangeKind.QUESTION) {
+                    continue;
+                }
+                if (change.isDeleted()) {
+                    remove(change.getUuid());
+                } else {
+                    put(change.getUuid(), change.getContent());
+                    highestQuestionId = Math.max(highestQuestionId, change.position().rowIdFor(SyncToken.Source.QUESTION));
+                }
+            }
+            position = changeSet.getNextToken();
+        } while (changeSet.isHasMore());
+    }
+
+    /**
+     * Writes the index to the snapshot file if it changed since the last snapshot.
+     */
+    @Scheduled(initialDelayString = "${quora.duplicates.snapshot-interval-ms:300000}",
+            fixedDelayString = "${quora.duplicates.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (snapshotFile == null || !changedSinceSnapshot) {
+            return;
+        }
+        changedSinceSnapshot = false;
+        // Taken before the questions are written, changes made meanwhile are applied again from the feed after a restart
+        SyncToken snapshotPosition = position;
+        long snapshotHighestQuestionId = highestQuestionId;
+        Path partial = null;
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            // Unique per writer, the processes of a host may share the snapshot file
+            partial = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(),
+                    snapshotFile.getFileName().toString(), ".partial");
+            int written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(bands);
+                out.writeInt(rows);
+                out.writeInt(shingleLength);
+                out.writeLong(seed);
+                out.writeUTF(snapshotPosition.encode());
+                out.writeLong(snapshotHighestQuestionId);
+                for (Map.Entry<String, IndexedQuestion> entry : index.questions.entrySet()) {
+                    out.writeBoolean(true);
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().content);
+                    for (int hash : entry.getValue().signature) {
+                        out.writeInt(hash);
+                    }
+                    written++;
+                }
+                out.writeBoolean(false);
+            }
+            Files.move(partial, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Wrote {} questions to the duplicate index snapshot", written);
+        } catch (IOException | RuntimeException e) {
+            changedSinceSnapshot = true;
+            LOG.warn("Could not write the duplicate index snapshot to {}", snapshotFile, e);
+            deletePartial(partial);
+        }
+    }
+
+    // The partial files are named uniquely, the ones of failed snapshots would otherwise pile up
+    private void deletePartial(final Path partial) {
+        if (partial == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            LOG.warn("Could not delete the partial duplicate index snapshot {}", partial, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private void readSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readInt() != bands
+                    || in.readInt() != rows || in.readInt() != shingleLength || in.readLong() != seed) {
+                LOG.info("Ignoring the duplicate index snapshot {} taken with other parameters", snapshotFile);
+                return;
+            }
+            SyncToken snapshotPosition = SyncToken.decode(in.readUTF());
+            long snapshotHighestQuestionId = in.readLong();
+            if (snapshotPosition == null || !changeFeed.isResumable(snapshotPosition)) {
+                LOG.info("Ignoring the outdated duplicate index snapshot {}", snapshotFile);
+                return;
+            }
+            if (transactionTemplate.execute(status -> questionDao.getMaxQuestionId()) < snapshotHighestQuestionId) {
+                LOG.info("Ignoring the duplicate index snapshot {} of questions no longer in the database", snapshotFile);
+                return;
+            }
+            Index read = new Index();
+            while (in.readBoolean()) {
+                String uuid = in.readUTF();
+                String content = in.readUTF();
+                int[] signature = new int[bands * rows];
+                for (int i = 0; i < signature.length; i++) {
+                    signature[i] = in.readInt();
+                }
+                read.file(uuid, new IndexedQuestion(content, signature));
+            }
+            swap(read);
+            position = snapshotPosition;
+            highestQuestionId = snapshotHighestQuestionId;
+        } catch (NoSuchFileException e) {
+            LOG.info("No duplicate index snapshot at {}, indexing all questions", snapshotFile);
+        } catch (IOException e) {
+            LOG.warn("Could not read the duplicate index snapshot {}, indexing all questions", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Builds the index again from the start of the change feed and swaps it in, following from where it ends.
+     */
+    private void reindex() {
+        LOG.warn("The duplicate index fell behind the kept deletions, indexing all questions again");
+        // Taken first, the changes committed during the rebuild are read again from the feed. The last change read
+        // could be older than the deletions kept, resuming after it would rebuild again
+        SyncToken current = changeFeed.currentPosition();
+        Index rebuilt = new Index();
+        SyncToken rebuiltPosition = SyncToken.START;
+        long rebuiltHighestQuestionId = 0;
+        ChangeSet changeSet;
+        do {
+            changeSet = changeFeed.readChanges(rebuiltPosition, pageSize);
+            for (ContentChange change : changeSet.getChanges()) {
+                if (change.getKind() != ChangeKind.QUESTION) {
+                    continue;
+                }
+                if (change.isDeleted()) {
+                    rebuilt.remove(change.getUuid());
+                } else {
+                    rebuilt.put(change.getUuid(), change.getContent());
+                    rebuiltHighestQuestionId = Math.max(rebuiltHighestQuestionId,
+                            change.position().rowIdFor(SyncToken.Source.QUESTION));
+                }
+            }
+            rebuiltPosition = changeSet.getNextToken();
+        } while (changeSet.isHasMore());
+        // The changes applied to the previous index meanwhile are in the feed from here on
+        swap(rebuilt);
+        position = current;
+        highestQuestionId = rebuiltHighestQuestionId;
+    }
+
+    private void swap(final Index rebuilt) {
+        synchronized (writeLock) {
+            index = rebuilt;
+            changedSinceSnapshot = true;
+        }
+    }
+
+    private void put(final String uuid, final String content) {
+        synchronized (writeLock) {
+            if (index.put(uuid, content)) {
+                changedSinceSnapshot = true;
+            }
+        }
+    }
+
+    private void remove(final String uuid) {
+        synchronized (writeLock) {
+            if (index.remove(uuid)) {
+                changedSinceSnapshot = true;
+            }
+        }
+    }
+
+    private long bandKey(final int[] signature, final int band) {
+        int hash = 1;
+        for (int row = band * rows; row < (band + 1) * rows; row++) {
+            hash = 31 * hash + signature[row];
+        }
+        return ((long) band << 32) | (hash & 0xffffffffL);
+    }
+
+    /**
+     * Questions and their bands, changed by one thread at a time and read by any number.
+     */
+    private final class Index {
+
+        private final Map<String, IndexedQuestion> questions = new ConcurrentHashMap<>();
+
+        // Questions by band, the band number in the high half of the key and the hash of its rows in the low half
+        private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+        /**
+         * @return false if the question was already indexed with that content.
+         */
+        private boolean put(final String uuid, final String content) {
+            IndexedQuestion indexed = questions.get(uuid);
+            if (indexed != null && indexed.content.equals(content)) {
+                return false;
+            }
+            remove(uuid);
+            file(uuid, new IndexedQuestion(content, minHasher.signature(content)));
+            return true;
+        }
+
+        /**
+         * @return false if the question was not indexed.
+         */
+        private boolean remove(final String uuid) {
+            IndexedQuestion indexed = questions.remove(uuid);
+            if (indexed == null) {
+                return false;
+            }
+            for (int band = 0; band < bands; band++) {
+                buckets.computeIfPresent(bandKey(indexed.signature, band), (k, bucket) -> {
+                    bucket.remove(uuid);
+                    return bucket.isEmpty() ? null : bucket;
+                });
+            }
+            return true;
+        }
+
+        private void file(final String uuid, final IndexedQuestion indexed) {
+            questions.put(uuid, indexed);
+            for (int band = 0; band < bands; band++) {
+                buckets.computeIfAbsent(bandKey(indexed.signature, band), k -> ConcurrentHashMap.newKeySet()).add(uuid);
+            }
+        }
+    }
+
+    private static final class IndexedQuestion {
+
+        private final String content;
+
+        private final int[] signature;
+
+        private IndexedQuestion(final String content, final int[] signature) {
+            this.content = content;
+            this.signature = signature;
+        }
+    }
+}
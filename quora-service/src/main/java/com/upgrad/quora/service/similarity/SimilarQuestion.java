@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.similarity;
+
+/**
+ * A question found similar to a given text, with the estimated share of text they have in common.
+ */
+public class SimilarQuestion {
+
+    private final String uuid;
+
+    private final String content;
+
+    private final double similarity;
+
+    public SimilarQuestion(final String uuid, final String content, final double similarity) {
+        this.uuid = uuid;
+        this.content = content;
+        this.similarity = similarity;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,238 @@
+package com.upgrad.quora.service.suggest;
+
+import com.upgrad.quora.service.common.TextNormalizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable path-compressed trie over the normalized texts of the questions. Every node keeps the best ranked
+ * questions below it, so a lookup walks the prefix and copies the node's list without visiting the subtree.
+ * <p>
+ * The nodes are laid out in flat arrays, the children of a node next to each other in order of their first
+ * character. Edge labels are not copied, they are ranges of the sorted keys. A trie is built once and never
+ * changed, any number of threads may read it.
+ */
+final class PrefixTrie {
+
+    static final PrefixTrie EMPTY = new PrefixTrie(Collections.<QuestionSuggestion>emptyList(), 1);
+
+    // Entries, sorted by key
+    private final String[] keys;
+
+    private final QuestionSuggestion[] suggestions;
+
+    // Nodes, the root first
+    private final int[] labelKey;
+
+    private final int[] labelFrom;
+
+    private final int[] labelTo;
+
+    private final int[] firstChild;
+
+    private final int[] childCount;
+
+    private final int[] bestFrom;
+
+    private final int[] bestCount;
+
+    // Entry indices of the best ranked questions of every node, best first
+    private final int[] best;
+
+    /**
+     * @param questions  questions to suggest, the ones without letters or digits are left out.
+     * @param maxPerNode number of best ranked questions kept per node, the most a lookup can return.
+     */
+    PrefixTrie(final List<QuestionSuggestion> questions, final int maxPerNode) {
+        String[] normalized = new String[questions.size()];
+        List<Integer> order = new ArrayList<>(questions.size());
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = TextNormalizer.normalize(questions.get(i).getContent());
+            if (!normalized[i].isEmpty()) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparing(i -> normalized[i]));
+        this.keys = new String[order.size()];
+        this.suggestions = new QuestionSuggestion[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            keys[i] = normalized[order.get(i)];
+            suggestions[i] = questions.get(order.get(i));
+        }
+
+        Comparator<Integer> ranking = Comparator
+                .comparingLong((Integer entry) -> -suggestions[entry].getAnswers())
+                .thenComparingInt(entry -> keys[entry].length())
+                .thenComparing(entry -> keys[entry]);
+        Node root = new Node(0, 0, 0);
+        addChildren(root, 0, keys.length, 0, ranking, maxPerNode);
+
+        // Laid out breadth first so that the children of each node are contiguous
+        List<Node> nodes = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            nodes.add(node);
+            pending.addAll(node.children);
+        }
+        int count = nodes.size();
+        this.labelKey = new int[count];
+        this.labelFrom = new int[count];
+        this.labelTo = new int[count];
+        this.firstChild = new int[count];
+        this.childCount = new int[count];
+        this.bestFrom = new int[count];
+        this.bestCount = new int[count];
+        int bestTotal = 0;
+        for (Node node : nodes) {
+            bestTotal += node.best.length;
+        }
+        this.best = new int[bestTotal];
+
+        int nextChild = 1;
+        int nextBest = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = nodes.get(i);
+            labelKey[i] = node.key;
+            labelFrom[i] = node.from;
+            labelTo[i] = node.to;
+            firstChild[i] = nextChild;
+            childCount[i] = node.children.size();
+            nextChild += node.children.size();
+            bestFrom[i] = nextBest;
+            bestCount[i] = node.best.length;
+            System.arraycopy(node.best, 0, best, nextBest, node.best.length);
+            nextBest += node.best.length;
+        }
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param prefix normalized prefix, not empty.
+     * @param limit  maximum number of questions, at most the number kept per node.
+     * @return the best ranked questions whose normalized text starts with the prefix, best first.
+     */
+    List<QuestionSuggestion> lookup(final String prefix, final int limit) {
+        if (keys.length == 0) {
+            return Collections.emptyList();
+        }
+        int node = 0;
+        int matched = 0;
+        while (true) {
+            String label = keys[labelKey[node]];
+            for (int i = labelFrom[node]; i < labelTo[node]; i++) {
+                if (matched == prefix.length()) {
+                    return best(node, limit);
+                }
+                if (label.charAt(i) != prefix.charAt(matched)) {
+                    return Collections.emptyList();
+                }
+                matched++;
+            }
+            if (matched == prefix.length()) {
+                return best(node, limit);
+            }
+            node = child(node, prefix.charAt(matched));
+            if (node < 0) {
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    private List<QuestionSuggestion> best(final int node, final int limit) {
+        int count = Math.min(limit, bestCount[node]);
+        List<QuestionSuggestion> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            found.add(suggestions[best[bestFrom[node] + i]]);
+        }
+        return found;
+    }
+
+    // Binary search on the first characters of the children labels
+    private int child(final int node, final char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char first = keys[labelKey[middle]].charAt(labelFrom[middle]);
+            if (first < c) {
+                low = middle + 1;
+            } else if (first > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the nodes of the keys in [from, to), which share their first depth characters, as children of the parent.
+     */
+    private void addChildren(final Node parent, final int from, final int to, final int depth,
+                             final Comparator<Integer> ranking, final int maxPerNode) {
+        List<Integer> candidates = new ArrayList<>();
+        int start = from;
+        // Keys ending at this depth sort first and belong to the parent itself
+        while (start < to && keys[start].length() == depth) {
+            candidates.add(start++);
+        }
+        while (start < to) {
+            char c = keys[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && keys[end].charAt(depth) == c) {
+                end++;
+            }
+            int common = commonPrefixLength(keys[start], keys[end - 1], depth + 1);
+            Node child = new Node(start, depth, common);
+            addChildren(child, start, end, common, ranking, maxPerNode);
+            parent.children.add(child);
+            for (int entry : child.best) {
+                candidates.add(entry);
+            }
+            start = end;
+        }
+        candidates.sort(ranking);
+        parent.best = new int[Math.min(maxPerNode, candidates.size())];
+        for (int i = 0; i < parent.best.length; i++) {
+            parent.best[i] = candidates.get(i);
+        }
+    }
+
+    private static int commonPrefixLength(final String first, final String last, final int from) {
+        int length = from;
+        int max = Math.min(first.length(), last.length());
+        while (length < max && first.charAt(length) == last.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static final class Node {
+
+        private final int key;
+
+        private final int from;
+
+        private final int to;
+
+        private final List<Node> children = new ArrayList<>();
+
+        private int[] best;
+
+        private Node(final int key, final int from, final int to) {
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
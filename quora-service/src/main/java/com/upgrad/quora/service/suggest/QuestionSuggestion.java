@@ -0,0 +1,34 @@
+package com.upgrad.quora.service.suggest;
+
+/**
+ * A question suggested for a typed prefix.
+ */
+public class QuestionSuggestion {
+
+    private final String uuid;
+
+    private final String content;
+
+    private final long answers;
+
+    public QuestionSuggestion(final String uuid, final String content, final long answers) {
+        this.uuid = uuid;
+        this.content = content;
+        this.answers = answers;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @return number of answers to the question when the suggestions were built, suggestions are ranked by it.
+     */
+    public long getAnswers() {
+        return answers;
+    }
+}
@@ -0,0 +1,271 @@
+package com.upgrad.quora.service.suggest;
+
+import com.upgrad.quora.service.common.TextNormalizer;
+import com.upgrad.quora.service.common.TransactionCallbacks;
+import com.upgrad.quora.service.ranking.QuestionRankings;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ChangeSet;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Type-ahead suggestions of questions for the text typed so far, the most answered questions starting with it
+ * first, matched on the normalized texts.
+ * <p>
+ * Suggestions are served from an immutable {@link PrefixTrie} which is replaced as a whole, readers never lock.
+ * The questions changed since the current trie began to be built are kept aside and merged into the results.
+ * A new trie is built in the background after a change, no sooner than ten times the last build took so that
+ * large tries are not rebuilt back to back, and right away once many changes are pending. Every prefix keeps a
+ * few spare questions to stand in for the changed ones dropped from its results. Answer counts are taken from
+ * the question rankings at build time, a trie is also rebuilt periodically to follow them.
+ * <p>
+ * The question texts follow the change feed, so the questions posted, edited and deleted on every node are
+ * suggested, the changes made on this node right after their commit. When the feed can no longer be resumed
+ * the texts are read again from its start, and the questions deleted in the meantime are dropped.
+ */
+@Component
+public class QuestionSuggestions implements SmartInitializingSingleton {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuestionSuggestions.class);
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private QuestionRankings questionRankings;
+
+    @Value("${quora.suggest.max-results:10}")
+    private int maxResults;
+
+    @Value("${quora.suggest.spare-results:10}")
+    private int spareResults;
+
+    @Value("${quora.suggest.max-pending-changes:1000}")
+    private int maxPendingChanges;
+
+    @Value("${quora.suggest.page-size:1000}")
+    private int pageSize;
+
+    @Value("${quora.suggest.refresh-interval-ms:600000}")
+    private long refreshIntervalMillis;
+
+    private final Map<String, String> contents = new ConcurrentHashMap<>();
+
+    // Questions changed since the current trie began to be built, empty for the deleted ones
+    private final Map<String, Optional<String>> recentChanges = new ConcurrentHashMap<>();
+
+    private volatile PrefixTrie trie = PrefixTrie.EMPTY;
+
+    private volatile long builtAt;
+
+    private volatile long buildMillis;
+
+    // Set when the spare questions of a prefix ran out, the next build is not delayed
+    private volatile boolean shortOfSpares;
+
+    private volatile SyncToken position = SyncToken.START;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "question-suggest-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        follow();
+        build();
+        LOG.info("Built the suggestions of {} questions", trie.size());
+    }
+
+    /**
+     * @param prefix text typed so far.
+     * @param limit  maximum number of questions, at most {@link #getMaxResults()}.
+     * @return the questions starting with the text, most answered first. Empty if the text has no letter or digit.
+     */
+    public List<QuestionSuggestion> suggest(final String prefix, final int limit) {
+        String normalized = TextNormalizer.normalize(prefix);
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Optional<String>> changes = recentChanges.isEmpty() ? null : new HashMap<>(recentChanges);
+        if (changes == null) {
+            return trie.lookup(normalized, limit);
+        }
+
+        // Takes the spare questions too in case changed questions have to be dropped from the trie's results
+        List<QuestionSuggestion> kept = trie.lookup(normalized, limit + spareResults);
+        List<QuestionSuggestion> found = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (QuestionSuggestion suggestion : kept) {
+            if (!changes.containsKey(suggestion.getUuid()) && seen.add(suggestion.getUuid())) {
+                found.add(suggestion);
+            }
+        }
+        if (found.size() < limit && kept.size() == limit + spareResults) {
+            shortOfSpares = true;
+        }
+        for (Map.Entry<String, Optional<String>> change : changes.entrySet()) {
+            String content = change.getValue().orElse(null);
+            if (content != null && TextNormalizer.normalize(content).startsWith(normalized)) {
+                found.add(new QuestionSuggestion(change.getKey(), content, questionRankings.getAnswerCount(change.getKey())));
+            }
+        }
+        found.sort(Comparator.comparingLong((QuestionSuggestion suggestion) -> -suggestion.getAnswers())
+                .thenComparing(suggestion -> TextNormalizer.normalize(suggestion.getContent()),
+                        Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder())));
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Suggests a question posted or edited on this node once the transaction has committed.
+     */
+    public void questionChanged(final String uuid, final String content) {
+        TransactionCallbacks.afterCommit(() -> apply(uuid, content));
+    }
+
+    /**
+     * Stops suggesting a question deleted on this node once the transaction has committed.
+     */
+    public void questionDeleted(final String uuid) {
+        TransactionCallbacks.afterCommit(() -> apply(uuid, null));
+    }
+
+    /**
+     * Applies the question changes of the change feed since the last call.
+     */
+    @Scheduled(fixedDelayString = "${quora.suggest.follow-interval-ms:1000}")
+    public synchronized void follow() {
+        if (!changeFeed.isResumable(position)) {
+            reload();
+            return;
+        }
+        ChangeSet changeSet;
+        do {
+            changeSet = changeFeed.readChanges(position, pageSize);
+            for (ContentChange change : changeSet.getChanges()) {
+                if (change.getKind() == ChangeKind.QUESTION) {
+                    apply(change.getUuid(), change.isDeleted() ? null : change.getContent());
+                }
+            }
+            position = changeSet.getNextToken();
+        } while (changeSet.isHasMore());
+    }
+
+    /**
+     * Starts building a new trie in the background if questions changed or the answer counts are due for a refresh.
+     */
+    @Scheduled(fixedDelayString = "${quora.suggest.rebuild-interval-ms:2000}")
+    public void rebuild() {
+        long sinceBuilt = System.currentTimeMillis() - builtAt;
+        boolean changed = !recentChanges.isEmpty() && (sinceBuilt >= 10 * buildMillis || shortOfSpares
+                || recentChanges.size() >= maxPendingChanges);
+        boolean due = changed || sinceBuilt >= refreshIntervalMillis;
+        if (due && building.compareAndSet(false, true)) {
+            builder.execute(() -> {
+                try {
+                    build();
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not rebuild the question suggestions", e);
+                } finally {
+                    building.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * Reads the question texts again from the start of the change feed, which drops the questions deleted since.
+     */
+    private void reload() {
+        // Taken first, the changes committed during the reload are read again from the feed. The last change read
+        // could be older than the deletions kept, resuming after it would reload again
+        SyncToken current = changeFeed.currentPosition();
+        Map<String, String> reloaded = new HashMap<>();
+        SyncToken from = SyncToken.START;
+        ChangeSet changeSet;
+        do {
+            changeSet = changeFeed.readChanges(from, pageSize);
+            for (ContentChange change : changeSet.getChanges()) {
+                if (change.getKind() != ChangeKind.QUESTION) {
+                    continue;
+                }
+                if (change.isDeleted()) {
+                    reloaded.remove(change.getUuid());
+                } else {
+                    reloaded.put(change.getUuid(), change.getContent());
+                }
+            }
+            from = changeSet.getNextToken();
+        } while (changeSet.isHasMore());
+
+        for (String uuid : new ArrayList<>(contents.keySet())) {
+            if (!reloaded.containsKey(uuid)) {
+                apply(uuid, null);
+            }
+        }
+        reloaded.forEach(this::apply);
+        position = current;
+        LOG.info("Reloaded the suggestions of {} questions, the change feed could not be resumed", reloaded.size());
+    }
+
+    private synchronized void apply(final String uuid, final String content) {
+        if (content == null) {
+            if (contents.remove(uuid) == null) {
+                return;
+            }
+        } else if (content.equals(contents.put(uuid, content))) {
+            return;
+        }
+        recentChanges.put(uuid, Optional.ofNullable(content));
+    }
+
+    private void build() {
+        // Changes made from here on stay aside until the next build
+        Map<String, Optional<String>> included = new HashMap<>(recentChanges);
+        long start = System.currentTimeMillis();
+        List<QuestionSuggestion> questions = new ArrayList<>(contents.size());
+        contents.forEach((uuid, content) ->
+                questions.add(new QuestionSuggestion(uuid, content, questionRankings.getAnswerCount(uuid))));
+        trie = new PrefixTrie(questions, maxResults + spareResults);
+        builtAt = start;
+        buildMillis = System.currentTimeMillis() - start;
+        shortOfSpares = false;
+        // Keeps aside the questions changed again while building
+        included.forEach(recentChanges::remove);
+        LOG.debug("Built the suggestions of {} questions in {}ms", questions.size(), buildMillis);
+    }
+}
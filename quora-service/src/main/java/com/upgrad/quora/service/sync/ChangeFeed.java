@@ -0,0 +1,88 @@
+package com.upgrad.quora.service.sync;
+
+import com.upgrad.quora.service.dao.ChangeFeedDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges the question, answer and tombstone tables into one change feed, read page by page with keyset
+ * pagination on (transaction id, source, id), which the change_xid indexes serve directly.
+ * <p>
+ * Every row is stamped by the database with the id of the transaction which wrote it. Transactions do not commit
+ * in the order of their ids, so only the changes of the transactions older than the oldest one still running are
+ * handed out: those have all ended and no row with a lower id can become visible after them. A long transaction
+ * holds the feed back until it ends instead of having its changes skipped.
+ */
+@Component
+public class ChangeFeed {
+
+    private static final Comparator<ContentChange> FEED_ORDER = Comparator.comparing(ContentChange::position);
+
+    @Autowired
+    private ChangeFeedDao changeFeedDao;
+
+    @Value("${quora.sync.tombstone-retention-days:30}")
+    private int tombstoneRetentionDays;
+
+    /**
+     * @param since position to continue after.
+     * @param limit maximum number of changes in the page.
+     * @return the next changes in feed order.
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public ChangeSet readChanges(final SyncToken since, final int limit) {
+        long horizon = changeFeedDao.getCommittedHorizon();
+
+        // Each source is read one row past the limit, which is enough to know if the merged feed has more
+        List<ContentChange> merged = new ArrayList<>();
+        merged.addAll(changeFeedDao.getQuestionChanges(since, horizon, limit + 1));
+        merged.addAll(changeFeedDao.getAnswerChanges(since, horizon, limit + 1));
+        merged.addAll(changeFeedDao.getTombstones(since, horizon, limit + 1));
+        merged.sort(FEED_ORDER);
+
+        boolean hasMore = merged.size() > limit;
+        List<ContentChange> page = hasMore ? new ArrayList<>(merged.subList(0, limit)) : merged;
+        SyncToken nextToken = page.isEmpty() ? since : page.get(page.size() - 1).position();
+        return new ChangeSet(page, nextToken, hasMore);
+    }
+
+    /**
+     * @return the position before the changes of the transactions still running: the changes before it are all
+     * visible to a read starting now, the later ones are read from the feed.
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public SyncToken currentPosition() {
+        return new SyncToken(changeFeedDao.getCommittedHorizon() - 1, SyncToken.Source.TOMBSTONE, Long.MAX_VALUE,
+                ZonedDateTime.now());
+    }
+
+    /**
+     * A client whose token is older than the tombstones kept could miss deletions, it has to reload
+     * everything instead.
+     *
+     * @param since position the client wants to continue after.
+     * @return true if the deletions since that position are still known.
+     */
+    public boolean isResumable(final SyncToken since) {
+        return since.equals(SyncToken.START)
+                || since.getChangedAt().isAfter(ZonedDateTime.now().minusDays(tombstoneRetentionDays));
+    }
+
+    /**
+     * Removes the tombstones older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${quora.sync.purge-interval-ms:3600000}")
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void purgeTombstones() {
+        changeFeedDao.deleteTombstonesBefore(ZonedDateTime.now().minusDays(tombstoneRetentionDays));
+    }
+}
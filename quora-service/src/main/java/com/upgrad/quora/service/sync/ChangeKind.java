@@ -0,0 +1,8 @@
+package com.upgrad.quora.service.sync;
+
+/**
+ * Kind of content reported by the change feed.
+ */
+public enum ChangeKind {
+    QUESTION, ANSWER
+}
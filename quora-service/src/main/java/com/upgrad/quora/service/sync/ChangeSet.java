@@ -0,0 +1,39 @@
+package com.upgrad.quora.service.sync;
+
+import java.util.List;
+
+/**
+ * One page of the change feed.
+ */
+public class ChangeSet {
+
+    private final List<ContentChange> changes;
+
+    private final SyncToken nextToken;
+
+    private final boolean hasMore;
+
+    public ChangeSet(final List<ContentChange> changes, final SyncToken nextToken, final boolean hasMore) {
+        this.changes = changes;
+        this.nextToken = nextToken;
+        this.hasMore = hasMore;
+    }
+
+    public List<ContentChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Token to pass as 'since' on the next call, it points right after the last change of this page.
+     */
+    public SyncToken getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * True if more changes are already available and the next page can be requested straight away.
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
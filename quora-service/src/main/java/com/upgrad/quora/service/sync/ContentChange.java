@@ -0,0 +1,87 @@
+package com.upgrad.quora.service.sync;
+
+import java.time.ZonedDateTime;
+
+/**
+ * One entry of the change feed, either the current state of a question or answer, or the tombstone of a
+ * deleted one.
+ */
+public class ContentChange {
+
+    private final long rowId;
+
+    private final String uuid;
+
+    private final String questionUuid;
+
+    private final String content;
+
+    private final ZonedDateTime changedAt;
+
+    private final long changeXid;
+
+    private final ChangeKind kind;
+
+    private final boolean deleted;
+
+    /**
+     * Current state of a question or answer.
+     */
+    public ContentChange(final Number rowId, final String uuid, final String questionUuid, final String content,
+                         final ZonedDateTime changedAt, final Number changeXid, final ChangeKind kind) {
+        this(rowId, uuid, questionUuid, content, changedAt, changeXid, kind, false);
+    }
+
+    /**
+     * Tombstone of a deleted question or answer.
+     */
+    public ContentChange(final Number rowId, final String uuid, final String questionUuid,
+                         final ZonedDateTime changedAt, final Number changeXid, final ChangeKind kind) {
+        this(rowId, uuid, questionUuid, null, changedAt, changeXid, kind, true);
+    }
+
+    private ContentChange(final Number rowId, final String uuid, final String questionUuid, final String content,
+                          final ZonedDateTime changedAt, final Number changeXid, final ChangeKind kind,
+                          final boolean deleted) {
+        this.rowId = rowId.longValue();
+        this.uuid = uuid;
+        this.questionUuid = questionUuid;
+        this.content = content;
+        this.changedAt = changedAt;
+        this.changeXid = changeXid.longValue();
+        this.kind = kind;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Position of this change in the feed, the row id is only unique within its source table.
+     */
+    public SyncToken position() {
+        return new SyncToken(changeXid, deleted ? SyncToken.Source.TOMBSTONE : SyncToken.Source.valueOf(kind.name()), rowId,
+                changedAt);
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getQuestionUuid() {
+        return questionUuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public ChangeKind getKind() {
+        return kind;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
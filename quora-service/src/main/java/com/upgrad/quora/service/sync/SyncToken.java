@@ -0,0 +1,132 @@
+package com.upgrad.quora.service.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position in the change feed. The feed is ordered by the id of the transaction which wrote the change, then by
+ * source table, then by row id, so a position is unique and a client resuming from it neither misses nor repeats
+ * a change. The time of the change is carried along to tell if the deletions since the position are still kept.
+ * <p>
+ * Clients see the position only as an opaque url-safe string.
+ */
+public final class SyncToken implements Comparable<SyncToken> {
+
+    /**
+     * Tables feeding the change feed, in their tie-breaking order.
+     */
+    public enum Source {
+        QUESTION, ANSWER, TOMBSTONE
+    }
+
+    private static final String VERSION = "2";
+
+    // Tokens ordered by change time, before the feed followed the transaction ids
+    private static final String TIME_ORDERED_VERSION = "1";
+
+    private static final Comparator<SyncToken> ORDER = Comparator
+            .comparingLong((SyncToken token) -> token.changeXid)
+            .thenComparing(token -> token.source)
+            .thenComparingLong(token -> token.rowId);
+
+    /**
+     * Position before every change, used for the initial sync.
+     */
+    public static final SyncToken START = new SyncToken(-1, Source.QUESTION, -1, Instant.EPOCH.atZone(ZoneId.systemDefault()));
+
+    /**
+     * Position of a token in the previous format, the deletions since then are never resumable and the client
+     * reloads everything.
+     */
+    static final SyncToken EXPIRED = new SyncToken(-1, Source.TOMBSTONE, Long.MAX_VALUE, Instant.EPOCH.atZone(ZoneId.systemDefault()));
+
+    private final long changeXid;
+
+    private final Source source;
+
+    private final long rowId;
+
+    private final Instant changedAt;
+
+    public SyncToken(final long changeXid, final Source source, final long rowId, final ZonedDateTime changedAt) {
+        this.changeXid = changeXid;
+        this.source = source;
+        this.rowId = rowId;
+        // The database keeps microseconds
+        this.changedAt = changedAt.toInstant().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * @param token string produced by {@link #encode()}.
+     * @return the decoded position, or null if the string is not a valid token.
+     */
+    public static SyncToken decode(final String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length == 4 && TIME_ORDERED_VERSION.equals(parts[0])) {
+                return EXPIRED;
+            }
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                return null;
+            }
+            long micros = Long.parseLong(parts[4]);
+            Instant changedAt = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L);
+            return new SyncToken(Long.parseLong(parts[1]), Source.values()[Integer.parseInt(parts[2])],
+                    Long.parseLong(parts[3]), changedAt.atZone(ZoneId.systemDefault()));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        long micros = changedAt.getEpochSecond() * 1_000_000L + changedAt.getNano() / 1000L;
+        String raw = VERSION + ":" + changeXid + ":" + source.ordinal() + ":" + rowId + ":" + micros;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getChangeXid() {
+        return changeXid;
+    }
+
+    public ZonedDateTime getChangedAt() {
+        return changedAt.atZone(ZoneId.systemDefault());
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Row id to continue after when reading the given source table, so that the rows of the same transaction
+     * which come before this position are skipped and the ones after it are kept.
+     */
+    public long rowIdFor(final Source table) {
+        if (table.compareTo(source) < 0) {
+            return Long.MAX_VALUE;
+        }
+        if (table.compareTo(source) > 0) {
+            return -1L;
+        }
+        return rowId;
+    }
+
+    @Override
+    public int compareTo(final SyncToken other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof SyncToken && compareTo((SyncToken) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(changeXid) * 31 * 31 + source.hashCode() * 31 + Long.hashCode(rowId);
+    }
+}
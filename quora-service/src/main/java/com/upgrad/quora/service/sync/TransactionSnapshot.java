@@ -0,0 +1,50 @@
+package com.upgrad.quora.service.sync;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Transactions whose writes a database snapshot sees: every transaction older than xmin, and the ones older
+ * than xmax which were no longer running when the snapshot was taken. A view loaded with a snapshot uses it to
+ * leave out the later events of the transactions it already has.
+ */
+public final class TransactionSnapshot {
+
+    private final long xmin;
+
+    private final long xmax;
+
+    private final Set<Long> running;
+
+    private TransactionSnapshot(final long xmin, final long xmax, final Set<Long> running) {
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.running = running;
+    }
+
+    /**
+     * @param snapshot text of a snapshot as the database prints it, xmin:xmax:running ids separated by commas.
+     * @return the snapshot.
+     */
+    public static TransactionSnapshot parse(final String snapshot) {
+        String[] parts = snapshot.split(":", -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid transaction snapshot " + snapshot);
+        }
+        Set<Long> running = new HashSet<>();
+        for (String xid : parts[2].split(",")) {
+            if (!xid.isEmpty()) {
+                running.add(Long.parseLong(xid));
+            }
+        }
+        return new TransactionSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), running);
+    }
+
+    /**
+     * @param xid id of a transaction which committed.
+     * @return true if the snapshot sees what the transaction wrote.
+     */
+    public boolean sees(final long xid) {
+        return xid < xmin || (xid < xmax && !running.contains(xid));
+    }
+}
@@ -0,0 +1,54 @@
+package com.upgrad.quora.service.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class UserQuestionCacheTest {
+
+    private final UserQuestionCache cache = new UserQuestionCache(100, 1 << 20);
+
+    //This test case passes when a load is cached although the questions of another user were written while it ran.
+    @Test
+    public void loadIsCachedDespiteWritesOfOtherUsers() {
+        long stamp = cache.stamp();
+        cache.invalidate("other-user");
+        cache.questionCreated("other-user", new QuestionSummary("question-2", "content"));
+
+        cache.put("user", questions("question-1"), stamp);
+        assertNotNull(cache.get("user"));
+    }
+
+    //This test case passes when a load is not cached if the questions of its user were written while it ran.
+    @Test
+    public void loadIsNotCachedAfterAWriteOfItsUser() {
+        long stamp = cache.stamp();
+        cache.questionDeleted("user", "question-1");
+
+        cache.put("user", questions("question-1"), stamp);
+        assertNull(cache.get("user"));
+
+        cache.put("user", questions(), cache.stamp());
+        assertEquals(0, cache.get("user").size());
+    }
+
+    //This test case passes when the loads begun before the write versions were forgotten are not cached.
+    @Test
+    public void loadIsNotCachedOnceTheWriteVersionsAreForgotten() {
+        long stamp = cache.stamp();
+        cache.invalidateAll();
+
+        cache.put("user", questions("question-1"), stamp);
+        assertNull(cache.get("user"));
+    }
+
+    private static List<QuestionSummary> questions(final String... uuids) {
+        return Arrays.stream(uuids).map(uuid -> new QuestionSummary(uuid, "content")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,68 @@
+package com.upgrad.quora.service.counter;
+
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DeltaBufferTest {
+
+    private final CountDownLatch applying = new CountDownLatch(1);
+
+    private final CountDownLatch committing = new CountDownLatch(1);
+
+    // Counter column and number of source rows by id, as the database has them
+    private final Map<Long, Integer> counters = new ConcurrentHashMap<>();
+
+    private final Map<Long, Integer> sources = new ConcurrentHashMap<>();
+
+    private final DeltaBuffer buffer = new DeltaBuffer(mock(PlatformTransactionManager.class), "test counters") {
+        @Override
+        protected void apply(final Map<Long, Integer> deltas) {
+            applying.countDown();
+            try {
+                committing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            deltas.forEach((id, delta) -> counters.merge(id, delta, Integer::sum));
+        }
+    };
+
+    //This test case passes when a range counted while a flush of its deltas commits does not get them applied twice.
+    @Test
+    public void reconcileWaitsForTheFlushInFlight() throws Exception {
+        counters.put(1L, 1);
+        sources.put(1L, 2);
+        buffer.addAfterCommit(1L, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> flush = executor.submit(() -> buffer.flushDeltas(100));
+            assertTrue(applying.await(5, TimeUnit.SECONDS));
+            Future<?> reconcile = executor.submit(() -> buffer.reconcileRanges(10, 10, (fromId, toId) -> {
+                sources.forEach(counters::put);
+                return sources.size();
+            }));
+            // Gives the reconciliation the time to count the range before the flush commits
+            Thread.sleep(200);
+            committing.countDown();
+            flush.get(5, TimeUnit.SECONDS);
+            reconcile.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Integer.valueOf(2), counters.get(1L));
+    }
+}
@@ -0,0 +1,88 @@
+package com.upgrad.quora.service.ranking;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.event.DomainEvent;
+import com.upgrad.quora.service.event.DomainEventType;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.TransactionSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QuestionRankingsTest {
+
+    private final AnswerDao answerDao = mock(AnswerDao.class);
+
+    private final QuestionDao questionDao = mock(QuestionDao.class);
+
+    private final QuestionRankings rankings =
+            new QuestionRankings(mock(PlatformTransactionManager.class), 60000, new String[]{"1h", "24h"});
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(rankings, "answerDao", answerDao);
+        ReflectionTestUtils.setField(rankings, "questionDao", questionDao);
+        ReflectionTestUtils.setField(rankings, "changeFeed", mock(ChangeFeed.class));
+
+        // Loaded while transaction 102 was still running
+        when(answerDao.getCurrentSnapshot()).thenReturn(TransactionSnapshot.parse("100:105:102"));
+        when(answerDao.getAnswerCountsByQuestion())
+                .thenReturn(Collections.singletonList(new RankedQuestion("question-1", "content", 1)));
+        when(answerDao.getAnswerDatesSince(any()))
+                .thenReturn(Collections.singletonList(new Object[]{"answer-1", "question-1", ZonedDateTime.now()}));
+        rankings.reload();
+    }
+
+    //This test case passes when only the answers of the transactions the load did not see are counted from the events.
+    @Test
+    public void answerCreatedIsCountedUnlessTheLoadSawIt() {
+        rankings.onEvent(event(DomainEventType.ANSWER_CREATED, "answer-2", "question-1", 101));
+        assertEquals(1, rankings.getAnswerCount("question-1"));
+
+        rankings.onEvent(event(DomainEventType.ANSWER_CREATED, "answer-3", "question-1", 102));
+        assertEquals(2, rankings.getAnswerCount("question-1"));
+        assertEquals(2, rankings.getTrending("1h", 10).get(0).getAnswers());
+    }
+
+    //This test case passes when a deleted answer is taken out of the top questions and of the bucket it was posted in.
+    @Test
+    public void answerDeletedLeavesTheRankings() {
+        rankings.onEvent(event(DomainEventType.ANSWER_DELETED, "answer-1", "question-1", 110));
+
+        assertEquals(0, rankings.getAnswerCount("question-1"));
+        assertTrue(rankings.getTopByAnswers(10).isEmpty());
+        assertTrue(rankings.getTrending("24h", 10).isEmpty());
+    }
+
+    //This test case passes when the first answer to a question ranks it and an answer to a deleted question does not.
+    @Test
+    public void answerCreatedRanksItsQuestion() {
+        QuestionEntity question = new QuestionEntity();
+        question.setContent("other content");
+        when(questionDao.getQuestionByUuid("question-2")).thenReturn(question);
+
+        rankings.onEvent(event(DomainEventType.ANSWER_CREATED, "answer-2", "question-2", 110));
+        rankings.onEvent(event(DomainEventType.ANSWER_CREATED, "answer-3", "question-3", 111));
+
+        assertEquals(1, rankings.getAnswerCount("question-2"));
+        assertEquals("other content", rankings.getTopByAnswers(10).get(1).getContent());
+        assertEquals(0, rankings.getAnswerCount("question-3"));
+    }
+
+    private static DomainEvent event(final DomainEventType type, final String answerUuid, final String questionUuid,
+                                     final long changeXid) {
+        return new DomainEvent(changeXid, type, answerUuid, questionUuid, null, ZonedDateTime.now(), changeXid);
+    }
+}
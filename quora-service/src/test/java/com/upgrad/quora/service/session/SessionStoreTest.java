@@ -0,0 +1,177 @@
+package com.upgrad.quora.service.session;
+
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SessionStoreTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private SessionStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath().resolve("sessions");
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora", 30000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    //This test case passes when a stored session is read back by its access token.
+    @Test
+    public void storedSessionIsFound() {
+        store.put(session("token-1", 7, null));
+
+        StoredSession stored = store.get("token-1");
+        assertNotNull(stored);
+        assertEquals(7, stored.getUserId());
+        assertNull(store.get("token-2"));
+    }
+
+    //This test case passes when a signed in session is read from the database once it is stale.
+    @Test
+    public void staleSessionIsNotServed() throws IOException {
+        store.close();
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora", 50);
+        store.put(session("token-1", 7, null), System.currentTimeMillis() - 100);
+
+        assertNull(store.get("token-1"));
+    }
+
+    //This test case passes when a session verified in the future is not trusted.
+    @Test
+    public void sessionVerifiedInTheFutureIsNotServed() {
+        store.put(session("token-1", 7, null), System.currentTimeMillis() + 60000);
+
+        assertNull(store.get("token-1"));
+    }
+
+    //This test case passes when a signed out session stays signed out whatever its staleness.
+    @Test
+    public void signedOutSessionIsServedWhenStale() throws IOException {
+        store.close();
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora", 50);
+        store.put(session("token-1", 7, ZonedDateTime.now()), System.currentTimeMillis() - 100);
+
+        assertNotNull(store.get("token-1").getLogoutAt());
+    }
+
+    //This test case passes when the sessions are kept across a restart with the same secret and database.
+    @Test
+    public void sessionsAreKeptOnReopen() throws IOException {
+        store.put(session("token-1", 7, null));
+        store.close();
+
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora", 30000);
+        assertNotNull(store.get("token-1"));
+    }
+
+    //This test case passes when the file of another secret is replaced rather than trusted.
+    @Test
+    public void fileOfAnotherSecretIsReplaced() throws IOException {
+        store.put(session("token-1", 7, null));
+        store.close();
+
+        store = open("fedcba9876543210fedcba9876543210", "jdbc:postgresql://localhost:5432/quora", 30000);
+        assertNull(store.get("token-1"));
+    }
+
+    //This test case passes when the file of another database is replaced rather than trusted.
+    @Test
+    public void fileOfAnotherDatabaseIsReplaced() throws IOException {
+        store.put(session("token-1", 7, null));
+        store.close();
+
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora_test", 30000);
+        assertNull(store.get("token-1"));
+    }
+
+    //This test case passes when a record altered in the file is read as missing.
+    @Test
+    public void alteredRecordIsNotServed() throws IOException {
+        store.put(session("token-1", 7, null));
+        byte[] content = Files.readAllBytes(directory.resolve("sessions.map"));
+        int userId = -1;
+        // The user id is the only non zero word of the record holding 7
+        for (int offset = 64; offset < content.length; offset += 8) {
+            if (ByteBuffer.wrap(content, offset, 8).getLong() == 7) {
+                userId = offset;
+                break;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("sessions.map"), StandardOpenOption.WRITE)) {
+            channel.write((ByteBuffer) ByteBuffer.allocate(8).putLong(1).flip(), userId);
+        }
+
+        assertNull(store.get("token-1"));
+    }
+
+    //This test case passes when a directory open to the other users is refused.
+    @Test(expected = IllegalStateException.class)
+    public void sharedDirectoryIsRefused() throws IOException {
+        store.close();
+        Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        store = open(SECRET, "jdbc:postgresql://localhost:5432/quora", 30000);
+    }
+
+    //This test case passes when a store without a secret is refused.
+    @Test(expected = IllegalStateException.class)
+    public void missingSecretIsRefused() throws IOException {
+        store.close();
+
+        store = open("", "jdbc:postgresql://localhost:5432/quora", 30000);
+    }
+
+    private SessionStore open(final String secret, final String database, final long maxStalenessMillis) throws IOException {
+        SessionStore sessionStore = new SessionStore();
+        ReflectionTestUtils.setField(sessionStore, "enabled", true);
+        ReflectionTestUtils.setField(sessionStore, "directory", directory.toString());
+        ReflectionTestUtils.setField(sessionStore, "secret", secret);
+        ReflectionTestUtils.setField(sessionStore, "database", database);
+        ReflectionTestUtils.setField(sessionStore, "slots", 1024);
+        ReflectionTestUtils.setField(sessionStore, "maxStalenessMillis", maxStalenessMillis);
+        sessionStore.open();
+        return sessionStore;
+    }
+
+    private static UserAuthTokenEntity session(final String accessToken, final long userId, final ZonedDateTime logoutAt) {
+        UserEntity user = new UserEntity();
+        user.setId(userId);
+        UserAuthTokenEntity session = new UserAuthTokenEntity();
+        session.setId(1);
+        session.setUser(user);
+        session.setAccessToken(accessToken);
+        session.setLoginAt(ZonedDateTime.now());
+        session.setExpiresAt(ZonedDateTime.now().plusHours(8));
+        session.setLogoutAt(logoutAt);
+        return session;
+    }
+}
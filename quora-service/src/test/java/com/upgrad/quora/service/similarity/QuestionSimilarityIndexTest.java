@@ -0,0 +1,68 @@
+package com.upgrad.quora.service.similarity;
+
+import com.upgrad.quora.service.dao.ChangeFeedDao;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QuestionSimilarityIndexTest {
+
+    private final ChangeFeedDao changeFeedDao = mock(ChangeFeedDao.class);
+
+    private final QuestionSimilarityIndex similarityIndex =
+            new QuestionSimilarityIndex(mock(PlatformTransactionManager.class), 32, 4, 5, 20181, "");
+
+    @Before
+    public void setUp() {
+        ChangeFeed changeFeed = new ChangeFeed();
+        ReflectionTestUtils.setField(changeFeed, "changeFeedDao", changeFeedDao);
+        ReflectionTestUtils.setField(changeFeed, "tombstoneRetentionDays", 30);
+        ReflectionTestUtils.setField(similarityIndex, "changeFeed", changeFeed);
+        ReflectionTestUtils.setField(similarityIndex, "minSimilarity", 0.5);
+        ReflectionTestUtils.setField(similarityIndex, "budgetMicros", 1_000_000L);
+        ReflectionTestUtils.setField(similarityIndex, "maxCandidates", 1000);
+        ReflectionTestUtils.setField(similarityIndex, "pageSize", 1000);
+
+        when(changeFeedDao.getCommittedHorizon()).thenReturn(100L);
+        when(changeFeedDao.getQuestionChanges(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        when(changeFeedDao.getAnswerChanges(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        when(changeFeedDao.getTombstones(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+    }
+
+    //This test case passes when a reindex whose last change is older than the kept deletions is not repeated.
+    @Test
+    public void reindexResumesAfterALastChangeOlderThanTheRetention() {
+        ContentChange question = new ContentChange(1, "question-1", "question-1",
+                "How do I index questions for duplicates?", ZonedDateTime.now().minusDays(60), 42, ChangeKind.QUESTION);
+        when(changeFeedDao.getQuestionChanges(eq(SyncToken.START), anyLong(), anyInt()))
+                .thenReturn(Collections.singletonList(question));
+        // The position of a token which predates the kept deletions
+        ReflectionTestUtils.setField(similarityIndex, "position", question.position());
+
+        similarityIndex.follow();
+        similarityIndex.follow();
+        similarityIndex.follow();
+
+        verify(changeFeedDao, times(1)).getQuestionChanges(eq(SyncToken.START), anyLong(), anyInt());
+        assertEquals("question-1",
+                similarityIndex.findSimilar("How do I index questions for duplicates?", 10).get(0).getUuid());
+    }
+}
@@ -0,0 +1,70 @@
+package com.upgrad.quora.service.suggest;
+
+import com.upgrad.quora.service.dao.ChangeFeedDao;
+import com.upgrad.quora.service.ranking.QuestionRankings;
+import com.upgrad.quora.service.sync.ChangeFeed;
+import com.upgrad.quora.service.sync.ChangeKind;
+import com.upgrad.quora.service.sync.ContentChange;
+import com.upgrad.quora.service.sync.SyncToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QuestionSuggestionsTest {
+
+    private final ChangeFeedDao changeFeedDao = mock(ChangeFeedDao.class);
+
+    private final QuestionSuggestions suggestions = new QuestionSuggestions();
+
+    @Before
+    public void setUp() {
+        ChangeFeed changeFeed = new ChangeFeed();
+        ReflectionTestUtils.setField(changeFeed, "changeFeedDao", changeFeedDao);
+        ReflectionTestUtils.setField(changeFeed, "tombstoneRetentionDays", 30);
+        ReflectionTestUtils.setField(suggestions, "changeFeed", changeFeed);
+        ReflectionTestUtils.setField(suggestions, "questionRankings", mock(QuestionRankings.class));
+        ReflectionTestUtils.setField(suggestions, "pageSize", 1000);
+
+        when(changeFeedDao.getCommittedHorizon()).thenReturn(100L);
+        when(changeFeedDao.getQuestionChanges(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        when(changeFeedDao.getAnswerChanges(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        when(changeFeedDao.getTombstones(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+    }
+
+    @After
+    public void tearDown() {
+        suggestions.shutdown();
+    }
+
+    //This test case passes when a reload whose last change is older than the kept deletions is not repeated.
+    @Test
+    public void reloadResumesAfterALastChangeOlderThanTheRetention() {
+        ContentChange question = new ContentChange(1, "question-1", "question-1", "What is a trie?",
+                ZonedDateTime.now().minusDays(60), 42, ChangeKind.QUESTION);
+        when(changeFeedDao.getQuestionChanges(eq(SyncToken.START), anyLong(), anyInt()))
+                .thenReturn(Collections.singletonList(question));
+        // The position of a token which predates the kept deletions
+        ReflectionTestUtils.setField(suggestions, "position", question.position());
+
+        suggestions.follow();
+        suggestions.follow();
+        suggestions.follow();
+
+        verify(changeFeedDao, times(1)).getQuestionChanges(eq(SyncToken.START), anyLong(), anyInt());
+        assertEquals("question-1", suggestions.suggest("what is", 10).get(0).getUuid());
+    }
+}